@@ -72,10 +72,25 @@ class PaymentMethodTokenHybridDecrypt implements HybridDecrypt {
       throws GeneralSecurityException {
     try {
       JsonObject json = JsonParser.parseString(new String(ciphertext, UTF_8)).getAsJsonObject();
+      return decrypt(json, contextInfo);
+    } catch (JsonParseException | IllegalStateException e) {
+      throw new GeneralSecurityException("cannot decrypt; failed to parse JSON", e);
+    }
+  }
+
+  /**
+   * Decrypts an already parsed ciphertext.
+   *
+   * <p>This lets {@link PaymentMethodTokenRecipient} parse the signed message once and try it with
+   * each of its recipient keys.
+   */
+  byte[] decrypt(final JsonObject json, final byte[] contextInfo)
+      throws GeneralSecurityException {
+    try {
       validate(json);
       byte[] demKey = kem(json, contextInfo);
       return dem(json, demKey);
-    } catch (JsonParseException | IllegalStateException e) {
+    } catch (IllegalStateException e) {
       throw new GeneralSecurityException("cannot decrypt; failed to parse JSON", e);
     }
   }
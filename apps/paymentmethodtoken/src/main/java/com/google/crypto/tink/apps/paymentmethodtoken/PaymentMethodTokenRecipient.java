@@ -18,7 +18,7 @@ package com.google.crypto.tink.apps.paymentmethodtoken;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
 
-import com.google.crypto.tink.HybridDecrypt;
+import com.google.crypto.tink.PublicKeyVerify;
 import com.google.crypto.tink.apps.paymentmethodtoken.PaymentMethodTokenConstants.ProtocolVersionConfig;
 import com.google.crypto.tink.subtle.Base64;
 import com.google.crypto.tink.subtle.EcdsaVerifyJce;
@@ -34,6 +34,10 @@ import java.security.interfaces.ECPublicKey;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 import org.joda.time.Instant;
 
 /**
@@ -61,6 +65,10 @@ import org.joda.time.Instant;
  * String plaintext = recipient.unseal(ciphertext);
  * }</pre>
  *
+ * <p>A recipient is thread-safe and caches the verifiers it builds from the sender's keys, so it
+ * should be built once and reused for all tokens. Many tokens can be unsealed at once with {@link
+ * #unsealAll}.
+ *
  * <h3>Custom decryption</h3>
  *
  * <p>Recipients that store private keys in HSM can provide implementations of {@link
@@ -85,10 +93,19 @@ import org.joda.time.Instant;
 public final class PaymentMethodTokenRecipient {
   private final String protocolVersion;
   private final List<SenderVerifyingKeysProvider> senderVerifyingKeysProviders;
-  private final List<HybridDecrypt> hybridDecrypters = new ArrayList<>();
+  private final List<PaymentMethodTokenHybridDecrypt> hybridDecrypters = new ArrayList<>();
   private final String senderId;
   private final String recipientId;
 
+  /**
+   * Index in {@link #hybridDecrypters} of the last decrypter that succeeded, tried first on the
+   * next token. Tokens are usually encrypted with the most recent recipient key.
+   */
+  private volatile int lastSuccessfulDecrypterIndex = 0;
+
+  /** The verifier built for the last intermediate signing key seen in an ECv2 message. */
+  private volatile IntermediateSigningKeyVerifier lastIntermediateSigningKeyVerifier = null;
+
   PaymentMethodTokenRecipient(
       String protocolVersion,
       List<SenderVerifyingKeysProvider> senderVerifyingKeysProviders,
@@ -194,12 +211,11 @@ public final class PaymentMethodTokenRecipient {
         final GooglePaymentsPublicKeysManager googlePaymentsPublicKeysManager)
         throws GeneralSecurityException {
       this.senderVerifyingKeysProviders.add(
-          new SenderVerifyingKeysProvider() {
+          new CachingTrustedSigningKeysProvider() {
             @Override
-            public List<ECPublicKey> get(String protocolVersion) throws GeneralSecurityException {
+            String fetchTrustedSigningKeysJson() throws GeneralSecurityException {
               try {
-                return parseTrustedSigningKeysJson(
-                    protocolVersion, googlePaymentsPublicKeysManager.getTrustedSigningKeysJson());
+                return googlePaymentsPublicKeysManager.getTrustedSigningKeysJson();
               } catch (IOException e) {
                 throw new GeneralSecurityException("Failed to fetch keys!", e);
               }
@@ -240,10 +256,10 @@ public final class PaymentMethodTokenRecipient {
     public Builder senderVerifyingKeys(final String trustedSigningKeysJson)
         throws GeneralSecurityException {
       this.senderVerifyingKeysProviders.add(
-          new SenderVerifyingKeysProvider() {
+          new CachingTrustedSigningKeysProvider() {
             @Override
-            public List<ECPublicKey> get(String protocolVersion) throws GeneralSecurityException {
-              return parseTrustedSigningKeysJson(protocolVersion, trustedSigningKeysJson);
+            String fetchTrustedSigningKeysJson() {
+              return trustedSigningKeysJson;
             }
           });
       return this;
@@ -267,10 +283,10 @@ public final class PaymentMethodTokenRecipient {
      */
     public Builder addSenderVerifyingKey(final String val) throws GeneralSecurityException {
       this.senderVerifyingKeysProviders.add(
-          new SenderVerifyingKeysProvider() {
+          new SingleKeyProvider() {
             @Override
-            public List<ECPublicKey> get(String protocolVersion) throws GeneralSecurityException {
-              return Collections.singletonList(PaymentMethodTokenUtil.x509EcPublicKey(val));
+            ECPublicKey loadPublicKey() throws GeneralSecurityException {
+              return PaymentMethodTokenUtil.x509EcPublicKey(val);
             }
           });
       return this;
@@ -287,10 +303,10 @@ public final class PaymentMethodTokenRecipient {
      */
     public Builder addSenderVerifyingKey(final ECPublicKey val) throws GeneralSecurityException {
       this.senderVerifyingKeysProviders.add(
-          new SenderVerifyingKeysProvider() {
+          new SingleKeyProvider() {
             @Override
-            public List<ECPublicKey> get(String protocolVersion) throws GeneralSecurityException {
-              return Collections.singletonList(val);
+            ECPublicKey loadPublicKey() {
+              return val;
             }
           });
       return this;
@@ -350,6 +366,34 @@ public final class PaymentMethodTokenRecipient {
     }
   }
 
+  /**
+   * Unseals each of the given {@code sealedMessages} as {@link #unseal} would, running the work on
+   * {@code executor}.
+   *
+   * <p>Returns one {@link Future} per message, in the same order as {@code sealedMessages}. If a
+   * message cannot be unsealed, {@link Future#get} of its future throws an {@link
+   * java.util.concurrent.ExecutionException} whose cause is the {@link GeneralSecurityException}
+   * thrown by {@link #unseal}; this does not affect the other messages.
+   *
+   * @since 1.?.?
+   */
+  public List<Future<String>> unsealAll(List<String> sealedMessages, Executor executor) {
+    List<Future<String>> results = new ArrayList<>(sealedMessages.size());
+    for (final String sealedMessage : sealedMessages) {
+      FutureTask<String> task =
+          new FutureTask<String>(
+              new Callable<String>() {
+                @Override
+                public String call() throws GeneralSecurityException {
+                  return unseal(sealedMessage);
+                }
+              });
+      executor.execute(task);
+      results.add(task);
+    }
+    return results;
+  }
+
   private String unsealECV1(String sealedMessage) throws GeneralSecurityException {
     JsonObject jsonMsg = JsonParser.parseString(sealedMessage).getAsJsonObject();
     validateECV1(jsonMsg);
@@ -382,11 +426,7 @@ public final class PaymentMethodTokenRecipient {
     String signedMessage =
         jsonMsg.get(PaymentMethodTokenConstants.JSON_SIGNED_MESSAGE_KEY).getAsString();
     byte[] signedBytes = getSignedBytes(protocolVersion, signedMessage);
-    verify(
-        protocolVersion,
-        senderVerifyingKeysProviders,
-        Collections.singletonList(signature),
-        signedBytes);
+    verify(getSenderVerifiers(), Collections.singletonList(signature), signedBytes);
     return signedMessage;
   }
 
@@ -397,8 +437,7 @@ public final class PaymentMethodTokenRecipient {
         jsonMsg.get(PaymentMethodTokenConstants.JSON_SIGNED_MESSAGE_KEY).getAsString();
     byte[] signedBytes = getSignedBytes(protocolVersion, signedMessage);
     verify(
-        protocolVersion,
-        verifyIntermediateSigningKey(jsonMsg),
+        Collections.singletonList(verifyIntermediateSigningKey(jsonMsg)),
         Collections.singletonList(signature),
         signedBytes);
     return signedMessage;
@@ -434,40 +473,53 @@ public final class PaymentMethodTokenRecipient {
     }
   }
 
+  private List<PublicKeyVerify> getSenderVerifiers() throws GeneralSecurityException {
+    if (senderVerifyingKeysProviders.size() == 1) {
+      return senderVerifyingKeysProviders.get(0).get(protocolVersion);
+    }
+    List<PublicKeyVerify> verifiers = new ArrayList<>();
+    for (SenderVerifyingKeysProvider verifyingKeysProvider : senderVerifyingKeysProviders) {
+      verifiers.addAll(verifyingKeysProvider.get(protocolVersion));
+    }
+    return verifiers;
+  }
+
   private static void verify(
-      final String protocolVersion,
-      final List<SenderVerifyingKeysProvider> senderVerifyingKeysProviders,
+      final List<PublicKeyVerify> verifiers,
       final List<byte[]> signatures,
       final byte[] signedBytes)
       throws GeneralSecurityException {
-    boolean verified = false;
-    for (SenderVerifyingKeysProvider verifyingKeysProvider : senderVerifyingKeysProviders) {
-      for (ECPublicKey publicKey : verifyingKeysProvider.get(protocolVersion)) {
-        EcdsaVerifyJce verifier =
-            new EcdsaVerifyJce(
-                publicKey, PaymentMethodTokenConstants.ECDSA_HASH_SHA256, EcdsaEncoding.DER);
-        for (byte[] signature : signatures) {
-          try {
-            verifier.verify(signature, signedBytes);
-            // No exception means the signature is valid.
-            verified = true;
-          } catch (GeneralSecurityException e) {
-            // ignored, try again
-          }
+    for (PublicKeyVerify verifier : verifiers) {
+      for (byte[] signature : signatures) {
+        try {
+          verifier.verify(signature, signedBytes);
+          // No exception means the signature is valid.
+          return;
+        } catch (GeneralSecurityException e) {
+          // ignored, try again
         }
       }
     }
-    if (!verified) {
-      throw new GeneralSecurityException("cannot verify signature");
-    }
+    throw new GeneralSecurityException("cannot verify signature");
   }
 
   private String decrypt(String ciphertext) throws GeneralSecurityException {
-    for (HybridDecrypt hybridDecrypter : hybridDecrypters) {
+    JsonObject json;
+    try {
+      json = JsonParser.parseString(ciphertext).getAsJsonObject();
+    } catch (JsonParseException | IllegalStateException e) {
+      throw new GeneralSecurityException("cannot decrypt");
+    }
+    int first = lastSuccessfulDecrypterIndex;
+    int size = hybridDecrypters.size();
+    for (int i = 0; i < size; i++) {
+      int index = (first + i) % size;
       try {
         byte[] cleartext =
-            hybridDecrypter.decrypt(
-                ciphertext.getBytes(UTF_8), PaymentMethodTokenConstants.GOOGLE_CONTEXT_INFO_ECV1);
+            hybridDecrypters
+                .get(index)
+                .decrypt(json, PaymentMethodTokenConstants.GOOGLE_CONTEXT_INFO_ECV1);
+        lastSuccessfulDecrypterIndex = index;
         return new String(cleartext, UTF_8);
       } catch (GeneralSecurityException e) {
         // ignored, try again
@@ -509,11 +561,8 @@ public final class PaymentMethodTokenRecipient {
     }
   }
 
-  /**
-   * Verifies the intermediate key and returns a singleton list containing of {@code
-   * SenderVerifyingKeysProvider} that provides the verified key.
-   */
-  private List<SenderVerifyingKeysProvider> verifyIntermediateSigningKey(JsonObject jsonMsg)
+  /** Verifies the intermediate key and returns a verifier for it. */
+  private PublicKeyVerify verifyIntermediateSigningKey(JsonObject jsonMsg)
       throws GeneralSecurityException {
     JsonObject intermediateSigningKey =
         jsonMsg.get(PaymentMethodTokenConstants.JSON_INTERMEDIATE_SIGNING_KEY).getAsJsonObject();
@@ -532,22 +581,16 @@ public final class PaymentMethodTokenRecipient {
         PaymentMethodTokenUtil.toLengthValue(
             // The order of the parameters matters.
             senderId, protocolVersion, signedKeyAsString);
-    verify(protocolVersion, senderVerifyingKeysProviders, signatures, signedBytes);
+    verify(getSenderVerifiers(), signatures, signedBytes);
     JsonObject signedKey = JsonParser.parseString(signedKeyAsString).getAsJsonObject();
     validateSignedKey(signedKey);
-    final String key = signedKey.get(PaymentMethodTokenConstants.JSON_KEY_VALUE_KEY).getAsString();
-    SenderVerifyingKeysProvider provider =
-        new SenderVerifyingKeysProvider() {
-          @Override
-          public List<ECPublicKey> get(String protocolVersion) throws GeneralSecurityException {
-            if (PaymentMethodTokenRecipient.this.protocolVersion.equals(protocolVersion)) {
-              return Collections.singletonList(PaymentMethodTokenUtil.x509EcPublicKey(key));
-            } else {
-              return Collections.emptyList();
-            }
-          }
-        };
-    return Collections.singletonList(provider);
+    String key = signedKey.get(PaymentMethodTokenConstants.JSON_KEY_VALUE_KEY).getAsString();
+    IntermediateSigningKeyVerifier cached = lastIntermediateSigningKeyVerifier;
+    if (cached == null || !cached.keyValue.equals(key)) {
+      cached = new IntermediateSigningKeyVerifier(key, newVerifier(key));
+      lastIntermediateSigningKeyVerifier = cached;
+    }
+    return cached.verifier;
   }
 
   private JsonObject validateIntermediateSigningKey(final JsonObject intermediateSigningKey)
@@ -578,9 +621,27 @@ public final class PaymentMethodTokenRecipient {
     }
   }
 
-  private static List<ECPublicKey> parseTrustedSigningKeysJson(
+  private static PublicKeyVerify newVerifier(String x509PublicKey)
+      throws GeneralSecurityException {
+    return newVerifier(PaymentMethodTokenUtil.x509EcPublicKey(x509PublicKey));
+  }
+
+  private static PublicKeyVerify newVerifier(ECPublicKey publicKey)
+      throws GeneralSecurityException {
+    return new EcdsaVerifyJce(
+        publicKey, PaymentMethodTokenConstants.ECDSA_HASH_SHA256, EcdsaEncoding.DER);
+  }
+
+  /**
+   * Parses the trusted signing keys for {@code protocolVersion}.
+   *
+   * <p>Keys without expiration are skipped unless the protocol version is ECv1, in which case they
+   * never expire. Since the result is cached, keys that expire later are filtered out by the
+   * caller with {@link TrustedSigningKey#isExpired}.
+   */
+  private static List<TrustedSigningKey> parseTrustedSigningKeysJson(
       String protocolVersion, String trustedSigningKeysJson) throws GeneralSecurityException {
-    List<ECPublicKey> senderVerifyingKeys = new ArrayList<>();
+    List<TrustedSigningKey> senderVerifyingKeys = new ArrayList<>();
     try {
       JsonArray keys =
           JsonParser.parseString(trustedSigningKeysJson)
@@ -592,9 +653,9 @@ public final class PaymentMethodTokenRecipient {
         if (protocolVersion.equals(
             key.get(PaymentMethodTokenConstants.JSON_PROTOCOL_VERSION_KEY).getAsString())) {
 
+          long expirationInMillis = Long.MAX_VALUE;
           if (key.has(PaymentMethodTokenConstants.JSON_KEY_EXPIRATION_KEY)) {
-            // If message expiration is present, checking it.
-            long expirationInMillis =
+            expirationInMillis =
                 Long.parseLong(
                     key.get(PaymentMethodTokenConstants.JSON_KEY_EXPIRATION_KEY).getAsString());
             if (expirationInMillis <= Instant.now().getMillis()) {
@@ -611,19 +672,129 @@ public final class PaymentMethodTokenRecipient {
           }
 
           senderVerifyingKeys.add(
-              PaymentMethodTokenUtil.x509EcPublicKey(key.get("keyValue").getAsString()));
+              new TrustedSigningKey(
+                  newVerifier(key.get("keyValue").getAsString()), expirationInMillis));
         }
       }
     } catch (JsonParseException | IllegalStateException e) {
       throw new GeneralSecurityException("failed to extract trusted signing public keys", e);
     }
-    if (senderVerifyingKeys.isEmpty()) {
-      throw new GeneralSecurityException("no trusted keys are available for this protocol version");
-    }
     return senderVerifyingKeys;
   }
 
+  /**
+   * Returns the verifiers that should be used to check the sender's signatures.
+   *
+   * <p>Implementations are called at least once per unsealed message and must be thread-safe.
+   */
   private interface SenderVerifyingKeysProvider {
-    List<ECPublicKey> get(String protocolVersion) throws GeneralSecurityException;
+    List<PublicKeyVerify> get(String protocolVersion) throws GeneralSecurityException;
+  }
+
+  /**
+   * A provider whose keys come from a JSON document in the format accepted by {@link
+   * Builder#senderVerifyingKeys}.
+   *
+   * <p>The JSON is parsed and the verifiers are built only when the document differs from the one
+   * seen on the previous call. Key expiration is still checked on every call.
+   */
+  private abstract static class CachingTrustedSigningKeysProvider
+      implements SenderVerifyingKeysProvider {
+    private volatile ParsedTrustedSigningKeys parsed;
+
+    abstract String fetchTrustedSigningKeysJson() throws GeneralSecurityException;
+
+    @Override
+    public List<PublicKeyVerify> get(String protocolVersion) throws GeneralSecurityException {
+      String trustedSigningKeysJson = fetchTrustedSigningKeysJson();
+      ParsedTrustedSigningKeys current = parsed;
+      if (current == null || !current.isParsedFrom(protocolVersion, trustedSigningKeysJson)) {
+        // Concurrent callers may both rebuild after a key rotation; that is harmless because the
+        // results are equivalent and the last one wins.
+        current =
+            new ParsedTrustedSigningKeys(
+                protocolVersion,
+                trustedSigningKeysJson,
+                parseTrustedSigningKeysJson(protocolVersion, trustedSigningKeysJson));
+        parsed = current;
+      }
+      long nowInMillis = Instant.now().getMillis();
+      List<PublicKeyVerify> verifiers = new ArrayList<>(current.keys.size());
+      for (TrustedSigningKey key : current.keys) {
+        if (!key.isExpired(nowInMillis)) {
+          verifiers.add(key.verifier);
+        }
+      }
+      if (verifiers.isEmpty()) {
+        throw new GeneralSecurityException(
+            "no trusted keys are available for this protocol version");
+      }
+      return verifiers;
+    }
+  }
+
+  /** The trusted signing keys parsed from a given JSON document. */
+  private static final class ParsedTrustedSigningKeys {
+    private final String protocolVersion;
+    private final String trustedSigningKeysJson;
+    private final List<TrustedSigningKey> keys;
+
+    ParsedTrustedSigningKeys(
+        String protocolVersion, String trustedSigningKeysJson, List<TrustedSigningKey> keys) {
+      this.protocolVersion = protocolVersion;
+      this.trustedSigningKeysJson = trustedSigningKeysJson;
+      this.keys = keys;
+    }
+
+    boolean isParsedFrom(String protocolVersion, String trustedSigningKeysJson) {
+      // GooglePaymentsPublicKeysManager returns the same instance for as long as its cache is
+      // valid, so the reference check is the common case.
+      return this.protocolVersion.equals(protocolVersion)
+          && (this.trustedSigningKeysJson == trustedSigningKeysJson
+              || this.trustedSigningKeysJson.equals(trustedSigningKeysJson));
+    }
+  }
+
+  /** A verifier for a trusted signing key together with the key's expiration. */
+  private static final class TrustedSigningKey {
+    private final PublicKeyVerify verifier;
+    private final long expirationInMillis;
+
+    TrustedSigningKey(PublicKeyVerify verifier, long expirationInMillis) {
+      this.verifier = verifier;
+      this.expirationInMillis = expirationInMillis;
+    }
+
+    boolean isExpired(long nowInMillis) {
+      return expirationInMillis <= nowInMillis;
+    }
+  }
+
+  /** A provider of a single fixed key, whose verifier is built on first use. */
+  private abstract static class SingleKeyProvider implements SenderVerifyingKeysProvider {
+    private volatile List<PublicKeyVerify> verifiers;
+
+    abstract ECPublicKey loadPublicKey() throws GeneralSecurityException;
+
+    @Override
+    public List<PublicKeyVerify> get(String protocolVersion) throws GeneralSecurityException {
+      List<PublicKeyVerify> current = verifiers;
+      if (current == null) {
+        current = Collections.singletonList(newVerifier(loadPublicKey()));
+        verifiers = current;
+      }
+      return current;
+    }
+  }
+
+  /** The verifier built for an intermediate signing key. */
+  private static final class IntermediateSigningKeyVerifier {
+    private final String keyValue;
+    private final PublicKeyVerify verifier;
+
+    IntermediateSigningKeyVerifier(String keyValue, PublicKeyVerify verifier) {
+      this.keyValue = keyValue;
+      this.verifier = verifier;
+    }
   }
 }
@@ -17,6 +17,7 @@
 package com.google.crypto.tink.apps.paymentmethodtoken;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import com.google.api.client.testing.http.MockHttpTransport;
@@ -29,6 +30,12 @@ import com.google.gson.JsonParser;
 import java.security.GeneralSecurityException;
 import java.security.interfaces.ECPrivateKey;
 import java.security.interfaces.ECPublicKey;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import org.joda.time.Duration;
 import org.joda.time.Instant;
 import org.junit.Test;
@@ -256,6 +263,40 @@ public class PaymentMethodTokenRecipientTest {
     assertEquals(PLAINTEXT, recipient.unseal(CIPHERTEXT_EC_V1));
   }
 
+  @Test
+  public void testUnsealAll() throws Exception {
+    PaymentMethodTokenRecipient recipient =
+        new PaymentMethodTokenRecipient.Builder()
+            .senderVerifyingKeys(GOOGLE_VERIFYING_PUBLIC_KEYS_JSON)
+            .recipientId(RECIPIENT_ID)
+            .addRecipientPrivateKey(ALTERNATE_MERCHANT_PRIVATE_KEY_PKCS8_BASE64)
+            .addRecipientPrivateKey(MERCHANT_PRIVATE_KEY_PKCS8_BASE64)
+            .build();
+    List<String> sealedMessages = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      sealedMessages.add(CIPHERTEXT_EC_V1);
+    }
+    sealedMessages.add(CIPHERTEXT_EC_V1.replace("signedMessage", "signedMessag"));
+
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<String>> results = recipient.unsealAll(sealedMessages, executor);
+
+      assertEquals(sealedMessages.size(), results.size());
+      for (int i = 0; i < 10; i++) {
+        assertEquals(PLAINTEXT, results.get(i).get());
+      }
+      try {
+        results.get(10).get();
+        fail("Expected ExecutionException");
+      } catch (ExecutionException e) {
+        assertTrue(e.getCause() instanceof GeneralSecurityException);
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
   @Test
   public void testShouldDecryptECV1WithNonStrictJsonEncoding() throws Exception {
     PaymentMethodTokenRecipient recipient =
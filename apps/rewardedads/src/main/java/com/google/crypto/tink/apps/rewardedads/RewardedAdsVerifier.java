@@ -17,6 +17,7 @@
 package com.google.crypto.tink.apps.rewardedads;
 
 import com.google.api.client.http.javanet.NetHttpTransport;
+import com.google.crypto.tink.PublicKeyVerify;
 import com.google.crypto.tink.subtle.Base64;
 import com.google.crypto.tink.subtle.EcdsaVerifyJce;
 import com.google.crypto.tink.subtle.EllipticCurves;
@@ -159,11 +160,9 @@ public final class RewardedAdsVerifier {
       throws GeneralSecurityException {
     boolean foundKeyId = false;
     for (VerifyingPublicKeysProvider provider : verifyingPublicKeysProviders) {
-      Map<Long, ECPublicKey> publicKeys = provider.get();
-      if (publicKeys.containsKey(keyId)) {
+      PublicKeyVerify verifier = provider.get().get(keyId);
+      if (verifier != null) {
         foundKeyId = true;
-        ECPublicKey publicKey = publicKeys.get(keyId);
-        EcdsaVerifyJce verifier = new EcdsaVerifyJce(publicKey, HashType.SHA256, EcdsaEncoding.DER);
         verifier.verify(signature, tbs);
       }
     }
@@ -187,11 +186,11 @@ public final class RewardedAdsVerifier {
     public Builder fetchVerifyingPublicKeysWith(final KeysDownloader downloader)
         throws GeneralSecurityException {
       this.verifyingPublicKeysProviders.add(
-          new VerifyingPublicKeysProvider() {
+          new CachingJsonVerifiersProvider() {
             @Override
-            public Map<Long, ECPublicKey> get() throws GeneralSecurityException {
+            String fetchPublicKeysJson() throws GeneralSecurityException {
               try {
-                return parsePublicKeysJson(downloader.download());
+                return downloader.download();
               } catch (IOException e) {
                 throw new GeneralSecurityException("Failed to fetch keys!", e);
               }
@@ -234,10 +233,10 @@ public final class RewardedAdsVerifier {
     public Builder setVerifyingPublicKeys(final String publicKeysJson)
         throws GeneralSecurityException {
       this.verifyingPublicKeysProviders.add(
-          new VerifyingPublicKeysProvider() {
+          new CachingJsonVerifiersProvider() {
             @Override
-            public Map<Long, ECPublicKey> get() throws GeneralSecurityException {
-              return parsePublicKeysJson(publicKeysJson);
+            String fetchPublicKeysJson() {
+              return publicKeysJson;
             }
           });
       return this;
@@ -262,11 +261,10 @@ public final class RewardedAdsVerifier {
     public Builder addVerifyingPublicKey(final long keyId, final String val)
         throws GeneralSecurityException {
       this.verifyingPublicKeysProviders.add(
-          new VerifyingPublicKeysProvider() {
+          new SingleKeyVerifierProvider(keyId) {
             @Override
-            public Map<Long, ECPublicKey> get() throws GeneralSecurityException {
-              return Collections.singletonMap(
-                  keyId, EllipticCurves.getEcPublicKey(Base64.decode(val)));
+            ECPublicKey loadPublicKey() throws GeneralSecurityException {
+              return EllipticCurves.getEcPublicKey(Base64.decode(val));
             }
           });
       return this;
@@ -284,10 +282,10 @@ public final class RewardedAdsVerifier {
     public Builder addVerifyingPublicKey(final long keyId, final ECPublicKey val)
         throws GeneralSecurityException {
       this.verifyingPublicKeysProviders.add(
-          new VerifyingPublicKeysProvider() {
+          new SingleKeyVerifierProvider(keyId) {
             @Override
-            public Map<Long, ECPublicKey> get() throws GeneralSecurityException {
-              return Collections.singletonMap(keyId, val);
+            ECPublicKey loadPublicKey() {
+              return val;
             }
           });
       return this;
@@ -319,7 +317,95 @@ public final class RewardedAdsVerifier {
     return publicKeys;
   }
 
+  private static Map<Long, PublicKeyVerify> newVerifiers(Map<Long, ECPublicKey> publicKeys)
+      throws GeneralSecurityException {
+    Map<Long, PublicKeyVerify> verifiers = new HashMap<>();
+    for (Map.Entry<Long, ECPublicKey> entry : publicKeys.entrySet()) {
+      verifiers.put(entry.getKey(), newVerifier(entry.getValue()));
+    }
+    return Collections.unmodifiableMap(verifiers);
+  }
+
+  private static PublicKeyVerify newVerifier(ECPublicKey publicKey)
+      throws GeneralSecurityException {
+    return new EcdsaVerifyJce(publicKey, HashType.SHA256, EcdsaEncoding.DER);
+  }
+
+  /**
+   * Returns the verifiers, indexed by key id, that should be used to check a signature.
+   *
+   * <p>Implementations are called once per {@link #verify} and must be thread-safe.
+   */
   private interface VerifyingPublicKeysProvider {
-    Map<Long, ECPublicKey> get() throws GeneralSecurityException;
+    Map<Long, PublicKeyVerify> get() throws GeneralSecurityException;
+  }
+
+  /**
+   * A provider whose keys come from a JSON document in the format accepted by {@link
+   * Builder#setVerifyingPublicKeys}.
+   *
+   * <p>The JSON is parsed and the verifiers are built only when the document differs from the one
+   * seen on the previous call, so a {@link KeysDownloader} serving its cached data costs a single
+   * string comparison.
+   */
+  private abstract static class CachingJsonVerifiersProvider
+      implements VerifyingPublicKeysProvider {
+    private volatile ParsedPublicKeys parsed;
+
+    abstract String fetchPublicKeysJson() throws GeneralSecurityException;
+
+    @Override
+    public Map<Long, PublicKeyVerify> get() throws GeneralSecurityException {
+      String publicKeysJson = fetchPublicKeysJson();
+      ParsedPublicKeys current = parsed;
+      if (current != null && current.isParsedFrom(publicKeysJson)) {
+        return current.verifiers;
+      }
+      // Concurrent callers may both rebuild after a key rotation; that is harmless because the
+      // results are equivalent and the last one wins.
+      current =
+          new ParsedPublicKeys(publicKeysJson, newVerifiers(parsePublicKeysJson(publicKeysJson)));
+      parsed = current;
+      return current.verifiers;
+    }
+  }
+
+  /** Verifiers built from a given JSON document. */
+  private static final class ParsedPublicKeys {
+    private final String publicKeysJson;
+    private final Map<Long, PublicKeyVerify> verifiers;
+
+    ParsedPublicKeys(String publicKeysJson, Map<Long, PublicKeyVerify> verifiers) {
+      this.publicKeysJson = publicKeysJson;
+      this.verifiers = verifiers;
+    }
+
+    boolean isParsedFrom(String publicKeysJson) {
+      // KeysDownloader returns the same instance for as long as its cache is valid, so the
+      // reference check is the common case.
+      return this.publicKeysJson == publicKeysJson || this.publicKeysJson.equals(publicKeysJson);
+    }
+  }
+
+  /** A provider of a single fixed key, whose verifier is built on first use. */
+  private abstract static class SingleKeyVerifierProvider implements VerifyingPublicKeysProvider {
+    private final long keyId;
+    private volatile Map<Long, PublicKeyVerify> verifiers;
+
+    SingleKeyVerifierProvider(long keyId) {
+      this.keyId = keyId;
+    }
+
+    abstract ECPublicKey loadPublicKey() throws GeneralSecurityException;
+
+    @Override
+    public Map<Long, PublicKeyVerify> get() throws GeneralSecurityException {
+      Map<Long, PublicKeyVerify> current = verifiers;
+      if (current == null) {
+        current = Collections.singletonMap(keyId, newVerifier(loadPublicKey()));
+        verifiers = current;
+      }
+      return current;
+    }
   }
 }
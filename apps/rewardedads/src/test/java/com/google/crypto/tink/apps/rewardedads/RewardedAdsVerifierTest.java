@@ -34,6 +34,7 @@ import java.net.URI;
 import java.nio.charset.Charset;
 import java.security.GeneralSecurityException;
 import java.util.Arrays;
+import java.util.concurrent.Executors;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
@@ -153,6 +154,46 @@ public class RewardedAdsVerifierTest {
     verifier.verify(signUrl(REWARD_URL, GOOGLE_SIGNING_PRIVATE_KEY_PKCS8_BASE64, KEY_ID));
   }
 
+  @Test
+  public void testShouldUseNewKeysWhenDownloadedDataChanges() throws Exception {
+    JsonObject rotatedKeysJson =
+        JsonParser.parseString(GOOGLE_VERIFYING_PUBLIC_KEYS_JSON).getAsJsonObject();
+    rotatedKeysJson
+        .getAsJsonArray("keys")
+        .get(0)
+        .getAsJsonObject()
+        .addProperty("base64", ALTERNATE_PUBLIC_SIGNING_KEY);
+    final String[] downloadedData = {GOOGLE_VERIFYING_PUBLIC_KEYS_JSON};
+    KeysDownloader downloader =
+        new KeysDownloader(
+            Executors.newSingleThreadExecutor(),
+            new MockHttpTransport.Builder().build(),
+            "https://someUrl" /* unused */) {
+          @Override
+          public String download() {
+            return downloadedData[0];
+          }
+        };
+    RewardedAdsVerifier verifier =
+        new RewardedAdsVerifier.Builder().fetchVerifyingPublicKeysWith(downloader).build();
+    String signedUrl = signUrl(REWARD_URL, GOOGLE_SIGNING_PRIVATE_KEY_PKCS8_BASE64, KEY_ID);
+    verifier.verify(signedUrl);
+    // Same data as a new instance must still verify.
+    downloadedData[0] = new String(GOOGLE_VERIFYING_PUBLIC_KEYS_JSON);
+    verifier.verify(signedUrl);
+
+    downloadedData[0] = rotatedKeysJson.toString();
+    try {
+      verifier.verify(signedUrl);
+      fail("Expected GeneralSecurityException");
+    } catch (GeneralSecurityException e) {
+      assertEquals("Invalid signature", e.getMessage());
+    }
+
+    downloadedData[0] = GOOGLE_VERIFYING_PUBLIC_KEYS_JSON;
+    verifier.verify(signedUrl);
+  }
+
   @Test
   public void testShouldFailIfVerifyingWithDifferentKey() throws Exception {
     JsonObject trustedKeysJson =
@@ -254,7 +254,7 @@ public final class WebPushHybridDecrypt implements HybridDecrypt {
 
   private byte[] decrypt(final byte[] key, final byte[] nonce, final byte[] ciphertext)
       throws GeneralSecurityException {
-    Cipher cipher = EngineFactory.CIPHER.getInstance("AES/GCM/NoPadding");
+    Cipher cipher = EngineFactory.CIPHER.getThreadLocalInstance("AES/GCM/NoPadding");
     GCMParameterSpec params = new GCMParameterSpec(8 * WebPushConstants.TAG_SIZE, nonce);
     cipher.init(Cipher.DECRYPT_MODE, new SecretKeySpec(key, "AES"), params);
     byte[] plaintext = cipher.doFinal(ciphertext);
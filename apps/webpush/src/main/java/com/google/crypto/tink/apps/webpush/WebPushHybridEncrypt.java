@@ -248,7 +248,7 @@ public final class WebPushHybridEncrypt implements HybridEncrypt {
 
   private byte[] encrypt(final byte[] key, final byte[] nonce, final byte[] plaintext)
       throws GeneralSecurityException {
-    Cipher cipher = EngineFactory.CIPHER.getInstance("AES/GCM/NoPadding");
+    Cipher cipher = EngineFactory.CIPHER.getThreadLocalInstance("AES/GCM/NoPadding");
     GCMParameterSpec params = new GCMParameterSpec(8 * WebPushConstants.TAG_SIZE, nonce);
     cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(key, "AES"), params);
     byte[] paddedPlaintext = new byte[plaintext.length + 1 + paddingSize];
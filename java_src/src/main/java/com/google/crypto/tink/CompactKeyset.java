@@ -0,0 +1,308 @@
+// Copyright 2022 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+
+package com.google.crypto.tink;
+
+import com.google.crypto.tink.proto.KeyData;
+import com.google.crypto.tink.proto.KeyStatusType;
+import com.google.crypto.tink.proto.Keyset;
+import com.google.crypto.tink.proto.KeysetInfo;
+import com.google.protobuf.ByteString;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * An immutable copy of a keyset that takes as little memory as possible, for programs that keep
+ * very many keysets in memory, e.g. one per tenant.
+ *
+ * <p>A {@link KeysetHandle} holds a {@link Keyset} proto: several objects per key, and a copy of
+ * the type URL in every key. A primitive created from it holds a {@link PrimitiveSet} and the JCE
+ * objects of every key. A {@link CompactKeyset} instead keeps only the key ids, the primary key id
+ * and the serialized keys of one keyset, the latter packed into a single byte array with the
+ * offsets of the keys in it. Everything else (the type URL, status, output prefix type and key
+ * material type of each key) is kept in a layout that is shared by all keysets with the same
+ * structure, e.g. all keysets created from the same key templates. The offsets are kept per keyset,
+ * since the serialized size of a key can differ between keys of the same template (e.g. ECDSA and
+ * RSA keys, whose integers are encoded with a varying number of bytes).
+ *
+ * <p>No primitive is kept: {@link #getPrimitive} creates a new one on every call, directly from the
+ * packed keys and only for the enabled keys, without building a {@link Keyset} or a {@link
+ * KeysetHandle}. Callers that use a keyset often should keep the primitive while they need it, e.g.
+ * in a {@code TenantKeysetCache} whose loader returns {@link #toKeysetHandle}.
+ *
+ * <p>Like a {@link KeysetHandle}, a {@link CompactKeyset} holds secret key material, and doesn't
+ * give access to it.
+ */
+public final class CompactKeyset {
+  // Bounds the number of layouts kept for sharing; keysets with other layouts get their own.
+  private static final int MAX_SHARED_LAYOUTS = 4096;
+
+  // Keysets with at most this many keys find key ids by scanning keyIds, which fits in one cache
+  // line; larger keysets keep an index sorted by key id.
+  private static final int MAX_SCANNED_KEYS = 8;
+
+  private static final ConcurrentMap<Layout, Layout> sharedLayouts = new ConcurrentHashMap<>();
+
+  /** Everything about a keyset except its key ids and serialized keys. Immutable. */
+  private static final class Layout {
+    final String[] typeUrls;
+    final int[] keyMaterialTypes;
+    final int[] statuses;
+    final int[] outputPrefixTypes;
+    private final int hashCode;
+
+    Layout(String[] typeUrls, int[] keyMaterialTypes, int[] statuses, int[] outputPrefixTypes) {
+      this.typeUrls = typeUrls;
+      this.keyMaterialTypes = keyMaterialTypes;
+      this.statuses = statuses;
+      this.outputPrefixTypes = outputPrefixTypes;
+      int hash = Arrays.hashCode(typeUrls);
+      hash = 31 * hash + Arrays.hashCode(keyMaterialTypes);
+      hash = 31 * hash + Arrays.hashCode(statuses);
+      this.hashCode = 31 * hash + Arrays.hashCode(outputPrefixTypes);
+    }
+
+    int size() {
+      return typeUrls.length;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof Layout)) {
+        return false;
+      }
+      Layout other = (Layout) o;
+      return hashCode == other.hashCode
+          && Arrays.equals(typeUrls, other.typeUrls)
+          && Arrays.equals(keyMaterialTypes, other.keyMaterialTypes)
+          && Arrays.equals(statuses, other.statuses)
+          && Arrays.equals(outputPrefixTypes, other.outputPrefixTypes);
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+  }
+
+  private final Layout layout;
+  private final int[] keyIds;
+  private final byte[] values;
+  // The serialized key with index i is stored in values[valueEnds[i - 1]..valueEnds[i]).
+  private final int[] valueEnds;
+  private final int primaryKeyId;
+  // The indexes of the keys, sorted by key id; null if the keyset has at most MAX_SCANNED_KEYS keys.
+  private final int[] keyIdOrder;
+
+  private CompactKeyset(
+      Layout layout, int[] keyIds, byte[] values, int[] valueEnds, int primaryKeyId) {
+    this.layout = layout;
+    this.keyIds = keyIds;
+    this.values = values;
+    this.valueEnds = valueEnds;
+    this.primaryKeyId = primaryKeyId;
+    this.keyIdOrder = keyIds.length > MAX_SCANNED_KEYS ? sortByKeyId(keyIds) : null;
+  }
+
+  private static int[] sortByKeyId(int[] keyIds) {
+    // Sorts (key id, index) pairs packed into longs, which orders them by key id.
+    long[] pairs = new long[keyIds.length];
+    for (int i = 0; i < keyIds.length; i++) {
+      pairs[i] = ((long) keyIds[i] << 32) | i;
+    }
+    Arrays.sort(pairs);
+    int[] order = new int[keyIds.length];
+    for (int i = 0; i < keyIds.length; i++) {
+      order[i] = (int) pairs[i];
+    }
+    return order;
+  }
+
+  /** Returns a compact copy of the keyset in {@code handle}. */
+  public static CompactKeyset fromKeysetHandle(KeysetHandle handle) {
+    Keyset keyset = handle.getKeyset();
+    int size = keyset.getKeyCount();
+    String[] typeUrls = new String[size];
+    int[] keyMaterialTypes = new int[size];
+    int[] statuses = new int[size];
+    int[] outputPrefixTypes = new int[size];
+    int[] valueEnds = new int[size];
+    int[] keyIds = new int[size];
+    int valuesSize = 0;
+    for (int i = 0; i < size; i++) {
+      Keyset.Key key = keyset.getKey(i);
+      KeyData keyData = key.getKeyData();
+      typeUrls[i] = keyData.getTypeUrl();
+      keyMaterialTypes[i] = keyData.getKeyMaterialTypeValue();
+      statuses[i] = key.getStatusValue();
+      outputPrefixTypes[i] = key.getOutputPrefixTypeValue();
+      valuesSize += keyData.getValue().size();
+      valueEnds[i] = valuesSize;
+      keyIds[i] = key.getKeyId();
+    }
+    byte[] values = new byte[valuesSize];
+    for (int i = 0; i < size; i++) {
+      keyset.getKey(i).getKeyData().getValue().copyTo(values, i == 0 ? 0 : valueEnds[i - 1]);
+    }
+    Layout layout = shareLayout(new Layout(typeUrls, keyMaterialTypes, statuses, outputPrefixTypes));
+    return new CompactKeyset(layout, keyIds, values, valueEnds, keyset.getPrimaryKeyId());
+  }
+
+  private static Layout shareLayout(Layout layout) {
+    Layout shared = sharedLayouts.get(layout);
+    if (shared != null) {
+      return shared;
+    }
+    if (sharedLayouts.size() >= MAX_SHARED_LAYOUTS) {
+      return layout;
+    }
+    shared = sharedLayouts.putIfAbsent(layout, layout);
+    return shared == null ? layout : shared;
+  }
+
+  /** Returns the number of keys in the keyset. */
+  public int size() {
+    return layout.size();
+  }
+
+  /** Returns the id of the primary key. */
+  public int getPrimaryKeyId() {
+    return primaryKeyId;
+  }
+
+  /** Returns true if the keyset contains a key with id {@code keyId}. */
+  public boolean containsKeyId(int keyId) {
+    return indexOf(keyId) >= 0;
+  }
+
+  /** Returns the index of a key with id {@code keyId}, or -1 if there is none. */
+  private int indexOf(int keyId) {
+    if (keyIdOrder == null) {
+      for (int i = 0; i < keyIds.length; i++) {
+        if (keyIds[i] == keyId) {
+          return i;
+        }
+      }
+      return -1;
+    }
+    int low = 0;
+    int high = keyIdOrder.length - 1;
+    while (low <= high) {
+      int middle = (low + high) >>> 1;
+      int id = keyIds[keyIdOrder[middle]];
+      if (id < keyId) {
+        low = middle + 1;
+      } else if (id > keyId) {
+        high = middle - 1;
+      } else {
+        return keyIdOrder[middle];
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * @return the {@link com.google.crypto.tink.proto.KeysetInfo} that doesn't contain actual key
+   *     material.
+   */
+  public KeysetInfo getKeysetInfo() {
+    KeysetInfo.Builder info = KeysetInfo.newBuilder().setPrimaryKeyId(primaryKeyId);
+    for (int i = 0; i < size(); i++) {
+      info.addKeyInfo(
+          KeysetInfo.KeyInfo.newBuilder()
+              .setTypeUrl(layout.typeUrls[i])
+              .setStatusValue(layout.statuses[i])
+              .setOutputPrefixTypeValue(layout.outputPrefixTypes[i])
+              .setKeyId(keyIds[i])
+              .build());
+    }
+    return info.build();
+  }
+
+  /** Returns a {@link KeysetHandle} with the same keyset. */
+  public KeysetHandle toKeysetHandle() throws GeneralSecurityException {
+    return KeysetHandle.fromKeyset(toKeyset());
+  }
+
+  /**
+   * Returns a new primitive from this keyset, using the global registry, as {@link
+   * KeysetHandle#getPrimitive} does. The primitive isn't kept.
+   */
+  public <P> P getPrimitive(Class<P> targetClassObject) throws GeneralSecurityException {
+    Class<?> inputPrimitiveClassObject = Registry.getInputPrimitive(targetClassObject);
+    if (inputPrimitiveClassObject == null) {
+      throw new GeneralSecurityException("No wrapper found for " + targetClassObject.getName());
+    }
+    return getPrimitiveWithKnownInputPrimitive(targetClassObject, inputPrimitiveClassObject);
+  }
+
+  private <B, P> P getPrimitiveWithKnownInputPrimitive(
+      Class<P> classObject, Class<B> inputPrimitiveClassObject) throws GeneralSecurityException {
+    // Only the enabled keys are unpacked; the others are neither validated nor used.
+    List<Keyset.Key> enabledKeys = new ArrayList<>(size());
+    for (int i = 0; i < size(); i++) {
+      if (layout.statuses[i] == KeyStatusType.ENABLED_VALUE) {
+        enabledKeys.add(toKey(i));
+      }
+    }
+    Util.validateKeyset(primaryKeyId, enabledKeys);
+    PrimitiveSet<B> primitives = PrimitiveSet.newPrimitiveSet(inputPrimitiveClassObject);
+    for (Keyset.Key key : enabledKeys) {
+      B primitive =
+          Registry.getPrimitive(key.getKeyData(), inputPrimitiveClassObject, key.getKeyId());
+      PrimitiveSet.Entry<B> entry = primitives.addPrimitive(primitive, key);
+      if (key.getKeyId() == primaryKeyId) {
+        primitives.setPrimary(entry);
+      }
+    }
+    return Registry.wrap(primitives, classObject);
+  }
+
+  Keyset toKeyset() {
+    Keyset.Builder keyset = Keyset.newBuilder().setPrimaryKeyId(primaryKeyId);
+    for (int i = 0; i < size(); i++) {
+      keyset.addKey(toKey(i));
+    }
+    return keyset.build();
+  }
+
+  /** Returns the key with index {@code i}, unpacked. */
+  private Keyset.Key toKey(int i) {
+    int start = i == 0 ? 0 : valueEnds[i - 1];
+    KeyData keyData =
+        KeyData.newBuilder()
+            .setTypeUrl(layout.typeUrls[i])
+            .setValue(ByteString.copyFrom(values, start, valueEnds[i] - start))
+            .setKeyMaterialTypeValue(layout.keyMaterialTypes[i])
+            .build();
+    return Keyset.Key.newBuilder()
+        .setKeyData(keyData)
+        .setStatusValue(layout.statuses[i])
+        .setKeyId(keyIds[i])
+        .setOutputPrefixTypeValue(layout.outputPrefixTypes[i])
+        .build();
+  }
+
+  /** Returns true if this keyset and {@code other} share their layout. Visible for testing. */
+  boolean sharesLayoutWith(CompactKeyset other) {
+    return layout == other.layout;
+  }
+}
@@ -0,0 +1,271 @@
+// Copyright 2022 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+
+package com.google.crypto.tink;
+
+import com.google.crypto.tink.proto.KeyData;
+import com.google.protobuf.ByteString;
+import java.io.Closeable;
+import java.security.GeneralSecurityException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Generates keys for expensive key templates ahead of time, on background threads.
+ *
+ * <p>Generating an RSA key, in particular a 4096-bit one, can take from hundreds of milliseconds to
+ * seconds. A {@link KeysetManager} that uses a {@link KeyPregenerator} (see {@link
+ * KeysetManager#useKeyPregenerator}) takes new keys for the configured templates from a bounded
+ * pool instead, which is refilled with {@link Registry#newKeyData} in the background. Templates
+ * that are not configured, and configured ones whose pool is empty, still generate the key inline.
+ *
+ * <p>Every pooled key is handed out at most once. Pooled keys are secret key material held in
+ * memory until they are used or the pregenerator is closed, so only configure the templates that
+ * need it and keep the pools small.
+ *
+ * <pre>{@code
+ * KeyPregenerator pregenerator =
+ *     KeyPregenerator.newBuilder()
+ *         .addTemplate(KeyTemplates.get("RSA_SSA_PSS_4096_SHA512_SHA512_64_F4"), 8)
+ *         .build();
+ * KeysetManager manager = KeysetManager.withEmptyKeyset().useKeyPregenerator(pregenerator);
+ * }</pre>
+ */
+public final class KeyPregenerator implements Closeable {
+  private static final Logger logger = Logger.getLogger(KeyPregenerator.class.getName());
+
+  /** The pool of one key template, without its output prefix type. */
+  private final class Pool {
+    private final com.google.crypto.tink.proto.KeyTemplate keyTemplate;
+    private final BlockingQueue<KeyData> keys;
+    private final int size;
+    private final AtomicInteger pendingGenerations = new AtomicInteger();
+
+    Pool(com.google.crypto.tink.proto.KeyTemplate keyTemplate, int size) {
+      this.keyTemplate = keyTemplate;
+      this.keys = new ArrayBlockingQueue<>(size);
+      this.size = size;
+    }
+
+    /** Starts as many generations as are needed to fill the pool. */
+    void refill() {
+      while (true) {
+        int pending = pendingGenerations.get();
+        if (closed || keys.size() + pending >= size) {
+          return;
+        }
+        if (!pendingGenerations.compareAndSet(pending, pending + 1)) {
+          continue;
+        }
+        try {
+          executor.execute(
+              new Runnable() {
+                @Override
+                public void run() {
+                  generate();
+                }
+              });
+        } catch (RejectedExecutionException e) {
+          pendingGenerations.decrementAndGet();
+          return;
+        }
+      }
+    }
+
+    private void generate() {
+      try {
+        if (!closed) {
+          keys.offer(Registry.newKeyData(keyTemplate));
+          // close() may have cleared the pool between the check above and the offer. It sets
+          // closed before it clears, so checking again catches a key that was added after that.
+          if (closed) {
+            keys.clear();
+          }
+        }
+      } catch (GeneralSecurityException | RuntimeException e) {
+        // Not retried here, so that a broken template doesn't keep a thread busy. The next take()
+        // tries again, and generates its key inline.
+        logger.log(
+            Level.WARNING, "cannot pregenerate a key of type " + keyTemplate.getTypeUrl(), e);
+      } finally {
+        pendingGenerations.decrementAndGet();
+      }
+    }
+  }
+
+  /** Identifies a template by its type URL and key format, ignoring the output prefix type. */
+  private static final class TemplateId {
+    private final com.google.crypto.tink.proto.KeyTemplate keyTemplate;
+    private final String typeUrl;
+    private final ByteString value;
+
+    TemplateId(com.google.crypto.tink.proto.KeyTemplate keyTemplate) {
+      this.keyTemplate = keyTemplate;
+      this.typeUrl = keyTemplate.getTypeUrl();
+      this.value = keyTemplate.getValue();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof TemplateId)) {
+        return false;
+      }
+      TemplateId other = (TemplateId) o;
+      return typeUrl.equals(other.typeUrl) && value.equals(other.value);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * typeUrl.hashCode() + value.hashCode();
+    }
+  }
+
+  private final Map<TemplateId, Pool> pools;
+  private final ExecutorService executor;
+  private final boolean ownsExecutor;
+  private volatile boolean closed = false;
+
+  private KeyPregenerator(Builder builder) {
+    if (builder.executor != null) {
+      this.executor = builder.executor;
+      this.ownsExecutor = false;
+    } else {
+      this.executor = Executors.newFixedThreadPool(builder.threads, new DaemonThreadFactory());
+      this.ownsExecutor = true;
+    }
+    Map<TemplateId, Pool> pools = new HashMap<>();
+    for (Map.Entry<TemplateId, Integer> entry : builder.poolSizes.entrySet()) {
+      pools.put(entry.getKey(), new Pool(entry.getKey().keyTemplate, entry.getValue()));
+    }
+    this.pools = pools;
+    for (Pool pool : pools.values()) {
+      pool.refill();
+    }
+  }
+
+  public static Builder newBuilder() {
+    return new Builder();
+  }
+
+  /** Returns how many keys for {@code keyTemplate} are ready to be used. */
+  public int available(KeyTemplate keyTemplate) {
+    Pool pool = pools.get(new TemplateId(keyTemplate.getProto()));
+    return pool == null ? 0 : pool.keys.size();
+  }
+
+  /**
+   * Returns a key for {@code keyTemplate}: a pooled one if there is one, otherwise a key generated
+   * inline. Either way, the pool starts refilling in the background.
+   */
+  KeyData newKeyData(com.google.crypto.tink.proto.KeyTemplate keyTemplate)
+      throws GeneralSecurityException {
+    Pool pool = pools.get(new TemplateId(keyTemplate));
+    if (pool == null) {
+      return Registry.newKeyData(keyTemplate);
+    }
+    KeyData keyData = pool.keys.poll();
+    pool.refill();
+    if (keyData == null) {
+      keyData = Registry.newKeyData(keyTemplate);
+    }
+    return keyData;
+  }
+
+  /**
+   * Stops generating keys and drops the pooled ones. {@link KeysetManager}s that use this
+   * pregenerator generate their keys inline from now on.
+   */
+  @Override
+  public void close() {
+    closed = true;
+    if (ownsExecutor) {
+      executor.shutdownNow();
+    }
+    for (Pool pool : pools.values()) {
+      pool.keys.clear();
+    }
+  }
+
+  private static final class DaemonThreadFactory implements ThreadFactory {
+    @Override
+    public Thread newThread(Runnable runnable) {
+      Thread thread = Executors.defaultThreadFactory().newThread(runnable);
+      thread.setDaemon(true);
+      thread.setName("tink-key-pregenerator");
+      return thread;
+    }
+  }
+
+  /** Builder for {@link KeyPregenerator}. */
+  public static final class Builder {
+    private final Map<TemplateId, Integer> poolSizes = new HashMap<>();
+    private ExecutorService executor;
+    private int threads = 1;
+
+    private Builder() {}
+
+    /**
+     * Keeps up to {@code poolSize} keys for {@code keyTemplate} ready. The output prefix type of
+     * {@code keyTemplate} doesn't matter: the pool serves all templates that only differ in it.
+     */
+    public Builder addTemplate(KeyTemplate keyTemplate, int poolSize) {
+      if (poolSize <= 0) {
+        throw new IllegalArgumentException("poolSize must be positive");
+      }
+      poolSizes.put(new TemplateId(keyTemplate.getProto()), poolSize);
+      return this;
+    }
+
+    /** Sets the number of background threads. 1 by default; ignored with {@link #setExecutor}. */
+    public Builder setThreads(int threads) {
+      if (threads <= 0) {
+        throw new IllegalArgumentException("threads must be positive");
+      }
+      this.threads = threads;
+      return this;
+    }
+
+    /**
+     * Generates the keys on {@code executor} instead of threads owned by the pregenerator. {@link
+     * KeyPregenerator#close} doesn't shut it down.
+     */
+    public Builder setExecutor(ExecutorService executor) {
+      this.executor = executor;
+      return this;
+    }
+
+    public KeyPregenerator build() throws GeneralSecurityException {
+      if (poolSizes.isEmpty()) {
+        throw new GeneralSecurityException("no key template added");
+      }
+      for (TemplateId templateId : poolSizes.keySet()) {
+        // Fails early if no key manager is registered for the template.
+        Registry.getUntypedKeyManager(templateId.typeUrl);
+      }
+      return new KeyPregenerator(this);
+    }
+  }
+}
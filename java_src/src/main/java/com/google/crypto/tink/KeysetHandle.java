@@ -16,6 +16,7 @@
 
 package com.google.crypto.tink;
 
+import com.google.crypto.tink.internal.TinkEvents;
 import com.google.crypto.tink.proto.EncryptedKeyset;
 import com.google.crypto.tink.proto.KeyData;
 import com.google.crypto.tink.proto.KeyStatusType;
@@ -132,9 +133,21 @@ public final class KeysetHandle {
    */
   public static final KeysetHandle read(KeysetReader reader, Aead masterKey)
       throws GeneralSecurityException, IOException {
-    EncryptedKeyset encryptedKeyset = reader.readEncrypted();
-    assertEnoughEncryptedKeyMaterial(encryptedKeyset);
-    return new KeysetHandle(decrypt(encryptedKeyset, masterKey));
+    Object event = TinkEvents.begin(TinkEvents.Type.KEYSET_READ);
+    EncryptedKeyset encryptedKeyset = null;
+    Keyset keyset = null;
+    try {
+      encryptedKeyset = reader.readEncrypted();
+      assertEnoughEncryptedKeyMaterial(encryptedKeyset);
+      keyset = decrypt(encryptedKeyset, masterKey);
+      return new KeysetHandle(keyset);
+    } finally {
+      commitReadEvent(
+          event,
+          "read",
+          keyset,
+          encryptedKeyset == null ? 0 : encryptedKeyset.getEncryptedKeyset().size());
+    }
   }
 
   /**
@@ -149,15 +162,27 @@ public final class KeysetHandle {
    */
   public static final KeysetHandle readNoSecret(KeysetReader reader)
       throws GeneralSecurityException, IOException {
+    Object event = TinkEvents.begin(TinkEvents.Type.KEYSET_READ);
+    Keyset keyset = null;
+    KeysetHandle handle = null;
     try {
-      Keyset keyset = reader.read();
+      keyset = reader.read();
       assertNoSecretKeyMaterial(keyset);
-      return KeysetHandle.fromKeyset(keyset);
+      handle = KeysetHandle.fromKeyset(keyset);
+      return handle;
     } catch (
         @SuppressWarnings("UnusedException")
         InvalidProtocolBufferException e) {
       // Do not propagate InvalidProtocolBufferException to guarantee no key material is leaked
       throw new GeneralSecurityException("invalid keyset");
+    } finally {
+      if (event != null) {
+        commitReadEvent(
+            event,
+            "readNoSecret",
+            handle == null ? null : keyset,
+            keyset == null ? 0 : keyset.getSerializedSize());
+      }
     }
   }
 
@@ -173,16 +198,49 @@ public final class KeysetHandle {
    */
   public static final KeysetHandle readNoSecret(final byte[] serialized)
       throws GeneralSecurityException {
+    Object event = TinkEvents.begin(TinkEvents.Type.KEYSET_READ);
+    Keyset keyset = null;
+    KeysetHandle handle = null;
     try {
-      Keyset keyset = Keyset.parseFrom(serialized, ExtensionRegistryLite.getEmptyRegistry());
+      keyset = Keyset.parseFrom(serialized, ExtensionRegistryLite.getEmptyRegistry());
       assertNoSecretKeyMaterial(keyset);
-      return KeysetHandle.fromKeyset(keyset);
+      handle = KeysetHandle.fromKeyset(keyset);
+      return handle;
     } catch (
         @SuppressWarnings("UnusedException")
         InvalidProtocolBufferException e) {
       // Do not propagate InvalidProtocolBufferException to guarantee no key material is leaked
       throw new GeneralSecurityException("invalid keyset");
+    } finally {
+      commitReadEvent(event, "readNoSecret", handle == null ? null : keyset, serialized.length);
+    }
+  }
+
+  /**
+   * Ends a {@link TinkEvents.Type#KEYSET_READ} event, if it is recorded. {@code keyset} is the
+   * keyset that was read, or null if reading it failed.
+   */
+  private static void commitReadEvent(Object event, String operation, Keyset keyset, long size) {
+    if (event == null) {
+      return;
+    }
+    if (keyset == null) {
+      TinkEvents.commit(event, operation, "", 0, size, /* succeeded= */ false);
+      return;
+    }
+    String primaryTypeUrl = "";
+    for (Keyset.Key key : keyset.getKeyList()) {
+      if (key.getKeyId() == keyset.getPrimaryKeyId()) {
+        primaryTypeUrl = key.getKeyData().getTypeUrl();
+      }
     }
+    TinkEvents.commit(
+        event,
+        operation,
+        primaryTypeUrl,
+        keyset.getPrimaryKeyId() & 0xffffffffL,
+        size,
+        /* succeeded= */ true);
   }
 
   /** Serializes, encrypts with {@code masterKey} and writes the keyset to {@code outputStream}. */
@@ -348,7 +406,8 @@ public final class KeysetHandle {
     PrimitiveSet<B> primitives = PrimitiveSet.newPrimitiveSet(inputPrimitiveClassObject);
     for (Keyset.Key key : keyset.getKeyList()) {
       if (key.getStatus() == KeyStatusType.ENABLED) {
-        B primitive = Registry.getPrimitive(key.getKeyData(), inputPrimitiveClassObject);
+        B primitive =
+            Registry.getPrimitive(key.getKeyData(), inputPrimitiveClassObject, key.getKeyId());
         PrimitiveSet.Entry<B> entry = primitives.addPrimitive(primitive, key);
         if (key.getKeyId() == keyset.getPrimaryKeyId()) {
           primitives.setPrimary(entry);
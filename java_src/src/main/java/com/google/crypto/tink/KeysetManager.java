@@ -39,6 +39,9 @@ public final class KeysetManager {
   @GuardedBy("this")
   private final Keyset.Builder keysetBuilder;
 
+  @GuardedBy("this")
+  private KeyPregenerator keyPregenerator;
+
   private KeysetManager(Keyset.Builder val) {
     keysetBuilder = val;
   }
@@ -53,6 +56,18 @@ public final class KeysetManager {
     return new KeysetManager(Keyset.newBuilder());
   }
 
+  /**
+   * Takes the new keys for the templates configured in {@code keyPregenerator} from its pools of
+   * pregenerated keys, instead of generating them inline. Keys for other templates are still
+   * generated inline.
+   *
+   * @return this {@link KeysetManager}
+   */
+  public synchronized KeysetManager useKeyPregenerator(KeyPregenerator keyPregenerator) {
+    this.keyPregenerator = keyPregenerator;
+    return this;
+  }
+
   /** @return a {@link KeysetHandle} of the managed keyset */
   public synchronized KeysetHandle getKeysetHandle() throws GeneralSecurityException {
     return KeysetHandle.fromKeyset(keysetBuilder.build());
@@ -299,7 +314,11 @@ public final class KeysetManager {
 
   private synchronized Keyset.Key newKey(com.google.crypto.tink.proto.KeyTemplate keyTemplate)
       throws GeneralSecurityException {
-    return createKeysetKey(Registry.newKeyData(keyTemplate), keyTemplate.getOutputPrefixType());
+    KeyData keyData =
+        keyPregenerator == null
+            ? Registry.newKeyData(keyTemplate)
+            : keyPregenerator.newKeyData(keyTemplate);
+    return createKeysetKey(keyData, keyTemplate.getOutputPrefixType());
   }
 
   private synchronized Keyset.Key createKeysetKey(
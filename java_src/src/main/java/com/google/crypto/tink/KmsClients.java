@@ -16,6 +16,7 @@
 
 package com.google.crypto.tink;
 
+import com.google.crypto.tink.internal.TinkEvents;
 import java.security.GeneralSecurityException;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -23,6 +24,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.ServiceLoader;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * A container for {@link KmsClient}-objects that are needed by {@link KeyManager}-objects for
@@ -35,7 +37,11 @@ import java.util.concurrent.CopyOnWriteArrayList;
  */
 public final class KmsClients {
   // The list of KmsClients loaded automatically using ServiceLoader.
-  private static List<KmsClient> autoClients;
+  private static volatile List<KmsClient> autoClients;
+
+  // Guards loading autoClients. ServiceLoader reads from the classpath, which is I/O that should
+  // not run inside a monitor.
+  private static final ReentrantLock autoClientsLock = new ReentrantLock();
 
   private static final CopyOnWriteArrayList<KmsClient> clients =
       new CopyOnWriteArrayList<KmsClient>();
@@ -52,12 +58,21 @@ public final class KmsClients {
    * @throws GeneralSecurityException if cannot found any KMS clients that support {@code keyUri}
    */
   public static KmsClient get(String keyUri) throws GeneralSecurityException {
-    for (KmsClient client : clients) {
-      if (client.doesSupport(keyUri)) {
-        return client;
+    Object event = TinkEvents.begin(TinkEvents.Type.KMS_CLIENT_LOOKUP);
+    boolean succeeded = false;
+    try {
+      for (KmsClient client : clients) {
+        if (client.doesSupport(keyUri)) {
+          succeeded = true;
+          return client;
+        }
+      }
+      throw new GeneralSecurityException("No KMS client does support: " + keyUri);
+    } finally {
+      if (event != null) {
+        TinkEvents.commit(event, "get", TinkEvents.uriScheme(keyUri), 0, 0, succeeded);
       }
     }
-    throw new GeneralSecurityException("No KMS client does support: " + keyUri);
   }
 
   /**
@@ -73,17 +88,35 @@ public final class KmsClients {
    *
    * @throws GeneralSecurityException if cannot found any KMS clients that support {@code keyUri}
    */
-  public static synchronized KmsClient getAutoLoaded(String keyUri)
-      throws GeneralSecurityException {
-    if (autoClients == null) {
-      autoClients = loadAutoKmsClients();
-    }
-    for (KmsClient client : autoClients) {
-      if (client.doesSupport(keyUri)) {
-        return client;
+  public static KmsClient getAutoLoaded(String keyUri) throws GeneralSecurityException {
+    Object event = TinkEvents.begin(TinkEvents.Type.KMS_CLIENT_LOOKUP);
+    boolean succeeded = false;
+    try {
+      List<KmsClient> loadedClients = autoClients;
+      if (loadedClients == null) {
+        autoClientsLock.lock();
+        try {
+          loadedClients = autoClients;
+          if (loadedClients == null) {
+            loadedClients = loadAutoKmsClients();
+            autoClients = loadedClients;
+          }
+        } finally {
+          autoClientsLock.unlock();
+        }
+      }
+      for (KmsClient client : loadedClients) {
+        if (client.doesSupport(keyUri)) {
+          succeeded = true;
+          return client;
+        }
+      }
+      throw new GeneralSecurityException("No KMS client does support: " + keyUri);
+    } finally {
+      if (event != null) {
+        TinkEvents.commit(event, "getAutoLoaded", TinkEvents.uriScheme(keyUri), 0, 0, succeeded);
       }
     }
-    throw new GeneralSecurityException("No KMS client does support: " + keyUri);
   }
 
   private static List<KmsClient> loadAutoKmsClients() {
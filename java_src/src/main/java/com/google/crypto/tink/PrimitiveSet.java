@@ -120,6 +120,35 @@ public final class PrimitiveSet<P> {
     return found != null ? found : Collections.<Entry<P>>emptyList();
   }
 
+  /**
+   * Returns the entries whose non-RAW identifier equals the first {@link
+   * CryptoFormat#NON_RAW_PREFIX_SIZE} bytes of {@code data}, or an empty list if there are none.
+   *
+   * <p>Unlike {@link #getPrimitive(byte[])}, this neither copies {@code data} nor allocates, so it
+   * is cheap to call on ciphertexts that turn out to be invalid.
+   */
+  public List<Entry<P>> getPrimitiveForPrefixOf(final byte[] data) {
+    if (data.length < CryptoFormat.NON_RAW_PREFIX_SIZE) {
+      return Collections.<Entry<P>>emptyList();
+    }
+    List<NonRawEntries<P>> candidates = nonRawEntries;
+    if (candidates == null) {
+      candidates = buildNonRawEntries();
+    }
+    for (int i = 0; i < candidates.size(); i++) {
+      NonRawEntries<P> candidate = candidates.get(i);
+      if (candidate.hasPrefixOf(data)) {
+        return candidate.entries;
+      }
+    }
+    return Collections.<Entry<P>>emptyList();
+  }
+
+  /** Returns true if the set contains at least one primitive using RAW prefix. */
+  public boolean hasRawPrimitives() {
+    return hasRawPrimitives;
+  }
+
   /** Returns the entries with primitives identified by the ciphertext prefix of {@code key}. */
   protected List<Entry<P>> getPrimitive(Keyset.Key key) throws GeneralSecurityException {
     return getPrimitive(CryptoFormat.getOutputPrefix(key));
@@ -138,6 +167,15 @@ public final class PrimitiveSet<P> {
   private final ConcurrentMap<Prefix, List<Entry<P>>> primitives =
       new ConcurrentHashMap<Prefix, List<Entry<P>>>();
 
+  /**
+   * The non-RAW entries of {@code primitives}, as a list that can be searched without allocating.
+   * Cleared whenever a primitive is added and built again on the next lookup, so that adding n
+   * primitives takes O(n) and not O(n^2).
+   */
+  private volatile List<NonRawEntries<P>> nonRawEntries = null;
+
+  private volatile boolean hasRawPrimitives = false;
+
   private Entry<P> primary;
   private final Class<P> primitiveClass;
 
@@ -182,6 +220,11 @@ public final class PrimitiveSet<P> {
             key.getStatus(),
             key.getOutputPrefixType(),
             key.getKeyId());
+    addEntry(entry);
+    return entry;
+  }
+
+  private synchronized void addEntry(Entry<P> entry) {
     List<Entry<P>> list = new ArrayList<Entry<P>>();
     list.add(entry);
     // Cannot use [] as keys in hash map, convert to Prefix wrapper class.
@@ -193,13 +236,50 @@ public final class PrimitiveSet<P> {
       newList.add(entry);
       primitives.put(identifier, Collections.unmodifiableList(newList));
     }
-    return entry;
+    if (entry.identifier.length == 0) {
+      hasRawPrimitives = true;
+    }
+    nonRawEntries = null;
   }
 
   public Class<P> getPrimitiveClass() {
     return primitiveClass;
   }
 
+  private synchronized List<NonRawEntries<P>> buildNonRawEntries() {
+    if (nonRawEntries != null) {
+      return nonRawEntries;
+    }
+    List<NonRawEntries<P>> newNonRawEntries = new ArrayList<NonRawEntries<P>>();
+    for (List<Entry<P>> entries : primitives.values()) {
+      byte[] identifier = entries.get(0).identifier;
+      if (identifier.length == CryptoFormat.NON_RAW_PREFIX_SIZE) {
+        newNonRawEntries.add(new NonRawEntries<P>(identifier, entries));
+      }
+    }
+    nonRawEntries = Collections.unmodifiableList(newNonRawEntries);
+    return nonRawEntries;
+  }
+
+  private static final class NonRawEntries<P> {
+    private final byte[] prefix;
+    private final List<Entry<P>> entries;
+
+    private NonRawEntries(byte[] prefix, List<Entry<P>> entries) {
+      this.prefix = prefix;
+      this.entries = entries;
+    }
+
+    private boolean hasPrefixOf(byte[] data) {
+      for (int i = 0; i < prefix.length; i++) {
+        if (prefix[i] != data[i]) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+
   private static class Prefix implements Comparable<Prefix> {
     private final byte[] prefix;
 
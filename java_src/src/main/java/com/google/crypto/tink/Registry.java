@@ -17,6 +17,7 @@
 package com.google.crypto.tink;
 
 import com.google.crypto.tink.config.internal.TinkFipsUtil;
+import com.google.crypto.tink.internal.TinkEvents;
 import com.google.crypto.tink.proto.KeyData;
 import com.google.protobuf.ByteString;
 import com.google.protobuf.InvalidProtocolBufferException;
@@ -31,6 +32,8 @@ import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
@@ -76,6 +79,10 @@ import java.util.logging.Logger;
 public final class Registry {
   private static final Logger logger = Logger.getLogger(Registry.class.getName());
 
+  // Serializes registrations. Lookups, key generation and primitive creation only read the maps
+  // below and don't take it, so they never wait for each other or for a registration.
+  private static final ReentrantLock registrationLock = new ReentrantLock();
+
   private static final ConcurrentMap<String, KeyManagerContainer> keyManagerMap =
       new ConcurrentHashMap<>(); // typeUrl -> KeyManager mapping
 
@@ -94,6 +101,31 @@ public final class Registry {
   private static final ConcurrentMap<String, KeyTemplate> keyTemplateMap =
       new ConcurrentHashMap<>(); // name -> KeyTemplate mapping
 
+  private static final ConcurrentMap<String, LazyKeyTypes> lazyKeyTypeMap =
+      new ConcurrentHashMap<>(); // typeUrl -> pending lazy registration
+
+  /**
+   * Registers the key managers of one or more key types when they are first used. See {@link
+   * #registerKeyTypesLazily}.
+   */
+  public static interface KeyTypeRegistration {
+    /** Registers the key managers, typically by calling {@code XyzKeyManager.register}. */
+    void register() throws GeneralSecurityException;
+  }
+
+  /** A {@link KeyTypeRegistration} that hasn't run yet, and the type URLs waiting for it. */
+  private static final class LazyKeyTypes {
+    final KeyTypeRegistration registration;
+    final String[] typeUrls;
+    // Set while the registration runs. Guarded by registrationLock.
+    boolean running;
+
+    LazyKeyTypes(KeyTypeRegistration registration, String[] typeUrls) {
+      this.registration = registration;
+      this.typeUrls = typeUrls;
+    }
+  }
+
   /**
    * A container which either is constructed from a {@link KeyTypeManager} or from a {@link
    * KeyManager}.
@@ -312,12 +344,60 @@ public final class Registry {
     };
   }
 
-  private static synchronized KeyManagerContainer getKeyManagerContainerOrThrow(String typeUrl)
+  private static KeyManagerContainer getKeyManagerContainerOrThrow(String typeUrl)
       throws GeneralSecurityException {
-    if (!keyManagerMap.containsKey(typeUrl)) {
+    KeyManagerContainer container = keyManagerMap.get(typeUrl);
+    if (container == null && registerLazyKeyType(typeUrl)) {
+      container = keyManagerMap.get(typeUrl);
+    }
+    if (container == null) {
       throw new GeneralSecurityException("No key manager found for key type " + typeUrl);
     }
-    return keyManagerMap.get(typeUrl);
+    return container;
+  }
+
+  /**
+   * Runs the pending lazy registration of {@code typeUrl}, if there is one. Returns true if the key
+   * type may have been registered in the meantime.
+   */
+  private static boolean registerLazyKeyType(String typeUrl) throws GeneralSecurityException {
+    LazyKeyTypes lazyKeyTypes = lazyKeyTypeMap.get(typeUrl);
+    if (lazyKeyTypes == null) {
+      return false;
+    }
+    runLazyRegistration(lazyKeyTypes);
+    return true;
+  }
+
+  private static void runLazyRegistration(LazyKeyTypes lazyKeyTypes)
+      throws GeneralSecurityException {
+    registrationLock.lock();
+    try {
+      // Another thread may have run it while this one waited for the lock. If it is running on
+      // this thread, the registration itself needs the registry, e.g. registering a key manager
+      // looks up key templates, which runs all pending registrations: it must not run again.
+      if (lazyKeyTypes.running || !lazyKeyTypeMap.containsValue(lazyKeyTypes)) {
+        return;
+      }
+      lazyKeyTypes.running = true;
+      try {
+        lazyKeyTypes.registration.register();
+      } finally {
+        lazyKeyTypes.running = false;
+      }
+      for (String typeUrl : lazyKeyTypes.typeUrls) {
+        lazyKeyTypeMap.remove(typeUrl, lazyKeyTypes);
+      }
+    } finally {
+      registrationLock.unlock();
+    }
+  }
+
+  /** Runs all pending lazy registrations. */
+  private static void registerAllLazyKeyTypes() throws GeneralSecurityException {
+    for (LazyKeyTypes lazyKeyTypes : lazyKeyTypeMap.values()) {
+      runLazyRegistration(lazyKeyTypes);
+    }
   }
 
   /**
@@ -328,13 +408,19 @@ public final class Registry {
    *
    * <p>This method is intended for testing.
    */
-  static synchronized void reset() {
-    keyManagerMap.clear();
-    keyDeriverMap.clear();
-    newKeyAllowedMap.clear();
-    catalogueMap.clear();
-    primitiveWrapperMap.clear();
-    keyTemplateMap.clear();
+  static void reset() {
+    registrationLock.lock();
+    try {
+      keyManagerMap.clear();
+      keyDeriverMap.clear();
+      newKeyAllowedMap.clear();
+      catalogueMap.clear();
+      primitiveWrapperMap.clear();
+      keyTemplateMap.clear();
+      lazyKeyTypeMap.clear();
+    } finally {
+      registrationLock.unlock();
+    }
   }
 
   /**
@@ -349,24 +435,29 @@ public final class Registry {
    * @deprecated Catalogues are no longer supported.
    */
   @Deprecated
-  public static synchronized void addCatalogue(String catalogueName, Catalogue<?> catalogue)
+  public static void addCatalogue(String catalogueName, Catalogue<?> catalogue)
       throws GeneralSecurityException {
-    if (catalogueName == null) {
-      throw new IllegalArgumentException("catalogueName must be non-null.");
-    }
-    if (catalogue == null) {
-      throw new IllegalArgumentException("catalogue must be non-null.");
-    }
-    if (catalogueMap.containsKey(catalogueName.toLowerCase(Locale.US))) {
-      Catalogue<?> existing = catalogueMap.get(catalogueName.toLowerCase(Locale.US));
-      if (!catalogue.getClass().getName().equals(existing.getClass().getName())) {
-        logger.warning(
-            "Attempted overwrite of a catalogueName catalogue for name " + catalogueName);
-        throw new GeneralSecurityException(
-            "catalogue for name " + catalogueName + " has been already registered");
+    registrationLock.lock();
+    try {
+      if (catalogueName == null) {
+        throw new IllegalArgumentException("catalogueName must be non-null.");
       }
+      if (catalogue == null) {
+        throw new IllegalArgumentException("catalogue must be non-null.");
+      }
+      if (catalogueMap.containsKey(catalogueName.toLowerCase(Locale.US))) {
+        Catalogue<?> existing = catalogueMap.get(catalogueName.toLowerCase(Locale.US));
+        if (!catalogue.getClass().getName().equals(existing.getClass().getName())) {
+          logger.warning(
+              "Attempted overwrite of a catalogueName catalogue for name " + catalogueName);
+          throw new GeneralSecurityException(
+              "catalogue for name " + catalogueName + " has been already registered");
+        }
+      }
+      catalogueMap.put(catalogueName.toLowerCase(Locale.US), catalogue);
+    } finally {
+      registrationLock.unlock();
     }
-    catalogueMap.put(catalogueName.toLowerCase(Locale.US), catalogue);
   }
 
   /**
@@ -429,7 +520,7 @@ public final class Registry {
    *     of the class of {@code manager}, or the registration tries to re-enable the generation
    *     of new keys.
    */
-  public static synchronized <P> void registerKeyManager(final KeyManager<P> manager)
+  public static <P> void registerKeyManager(final KeyManager<P> manager)
       throws GeneralSecurityException {
     registerKeyManager(manager, /* newKeyAllowed= */ true);
   }
@@ -449,8 +540,10 @@ public final class Registry {
    *       <ul>
    *         <li>The key manager was already registered, but it contains new key templates.
    *         <li>The key manager is new, but it contains existing key templates.
+   *
+   * <p>Must be called with {@code registrationLock} held.
    */
-  private static synchronized <KeyProtoT extends MessageLite, KeyFormatProtoT extends MessageLite>
+  private static <KeyProtoT extends MessageLite, KeyFormatProtoT extends MessageLite>
       void ensureKeyManagerInsertable(
           String typeUrl,
           Class<?> implementingClass,
@@ -509,16 +602,22 @@ public final class Registry {
    *     of the class of {@code manager}, or the registration tries to re-enable the generation
    *     of new keys.
    */
-  public static synchronized <P> void registerKeyManager(
+  public static <P> void registerKeyManager(
       final KeyManager<P> manager, boolean newKeyAllowed) throws GeneralSecurityException {
-    if (manager == null) {
-      throw new IllegalArgumentException("key manager must be non-null.");
+    registrationLock.lock();
+    try {
+      if (manager == null) {
+        throw new IllegalArgumentException("key manager must be non-null.");
+      }
+      String typeUrl = manager.getKeyType();
+      // Use an empty key format because old-style key managers don't export their key formats
+      ensureKeyManagerInsertable(
+          typeUrl, manager.getClass(), Collections.emptyMap(), newKeyAllowed);
+      newKeyAllowedMap.put(typeUrl, Boolean.valueOf(newKeyAllowed));
+      keyManagerMap.putIfAbsent(typeUrl, createContainerFor(manager));
+    } finally {
+      registrationLock.unlock();
     }
-    String typeUrl = manager.getKeyType();
-    // Use an empty key format because old-style key managers don't export their key formats
-    ensureKeyManagerInsertable(typeUrl, manager.getClass(), Collections.emptyMap(), newKeyAllowed);
-    keyManagerMap.putIfAbsent(typeUrl, createContainerFor(manager));
-    newKeyAllowedMap.put(typeUrl, Boolean.valueOf(newKeyAllowed));
   }
 
   /**
@@ -537,27 +636,32 @@ public final class Registry {
    *     keys.
    * @throws GeneralSecurityException if there's an existing key template.
    */
-  public static synchronized <KeyProtoT extends MessageLite> void registerKeyManager(
+  public static <KeyProtoT extends MessageLite> void registerKeyManager(
       final KeyTypeManager<KeyProtoT> manager, boolean newKeyAllowed)
       throws GeneralSecurityException {
-    if (manager == null) {
-      throw new IllegalArgumentException("key manager must be non-null.");
-    }
-    String typeUrl = manager.getKeyType();
-    ensureKeyManagerInsertable(
-        typeUrl,
-        manager.getClass(),
-        newKeyAllowed ? manager.keyFactory().keyFormats() : Collections.emptyMap(),
-        newKeyAllowed);
-
-    if (!keyManagerMap.containsKey(typeUrl)) {
-      keyManagerMap.put(typeUrl, createContainerFor(manager));
-      keyDeriverMap.put(typeUrl, createDeriverFor(manager));
-      if (newKeyAllowed) {
-        registerKeyTemplates(typeUrl, manager.keyFactory().keyFormats());
+    registrationLock.lock();
+    try {
+      if (manager == null) {
+        throw new IllegalArgumentException("key manager must be non-null.");
       }
+      String typeUrl = manager.getKeyType();
+      ensureKeyManagerInsertable(
+          typeUrl,
+          manager.getClass(),
+          newKeyAllowed ? manager.keyFactory().keyFormats() : Collections.emptyMap(),
+          newKeyAllowed);
+
+      newKeyAllowedMap.put(typeUrl, Boolean.valueOf(newKeyAllowed));
+      if (!keyManagerMap.containsKey(typeUrl)) {
+        keyManagerMap.put(typeUrl, createContainerFor(manager));
+        keyDeriverMap.put(typeUrl, createDeriverFor(manager));
+        if (newKeyAllowed) {
+          registerKeyTemplates(typeUrl, manager.keyFactory().keyFormats());
+        }
+      }
+    } finally {
+      registrationLock.unlock();
     }
-    newKeyAllowedMap.put(typeUrl, Boolean.valueOf(newKeyAllowed));
   }
 
   /**
@@ -576,70 +680,75 @@ public final class Registry {
    *     keys.
    * @throws GeneralSecurityException if there's an existing key template.
    */
-  public static synchronized <KeyProtoT extends MessageLite, PublicKeyProtoT extends MessageLite>
+  public static <KeyProtoT extends MessageLite, PublicKeyProtoT extends MessageLite>
       void registerAsymmetricKeyManagers(
           final PrivateKeyTypeManager<KeyProtoT, PublicKeyProtoT> privateKeyTypeManager,
           final KeyTypeManager<PublicKeyProtoT> publicKeyTypeManager,
           boolean newKeyAllowed)
           throws GeneralSecurityException {
-    if (privateKeyTypeManager == null || publicKeyTypeManager == null) {
-      throw new IllegalArgumentException("given key managers must be non-null.");
-    }
-    String privateTypeUrl = privateKeyTypeManager.getKeyType();
-    String publicTypeUrl = publicKeyTypeManager.getKeyType();
-    ensureKeyManagerInsertable(
-        privateTypeUrl,
-        privateKeyTypeManager.getClass(),
-        newKeyAllowed ? privateKeyTypeManager.keyFactory().keyFormats() : Collections.emptyMap(),
-        newKeyAllowed);
-    // No key format because a public key manager cannot create new keys
-    ensureKeyManagerInsertable(
-        publicTypeUrl, publicKeyTypeManager.getClass(), Collections.emptyMap(), false);
-    if (privateTypeUrl.equals(publicTypeUrl)) {
-      throw new GeneralSecurityException("Private and public key type must be different.");
-    }
+    registrationLock.lock();
+    try {
+      if (privateKeyTypeManager == null || publicKeyTypeManager == null) {
+        throw new IllegalArgumentException("given key managers must be non-null.");
+      }
+      String privateTypeUrl = privateKeyTypeManager.getKeyType();
+      String publicTypeUrl = publicKeyTypeManager.getKeyType();
+      ensureKeyManagerInsertable(
+          privateTypeUrl,
+          privateKeyTypeManager.getClass(),
+          newKeyAllowed ? privateKeyTypeManager.keyFactory().keyFormats() : Collections.emptyMap(),
+          newKeyAllowed);
+      // No key format because a public key manager cannot create new keys
+      ensureKeyManagerInsertable(
+          publicTypeUrl, publicKeyTypeManager.getClass(), Collections.emptyMap(), false);
+      if (privateTypeUrl.equals(publicTypeUrl)) {
+        throw new GeneralSecurityException("Private and public key type must be different.");
+      }
 
-    if (keyManagerMap.containsKey(privateTypeUrl)) {
-      Class<?> existingPublicKeyManagerClass =
-          keyManagerMap.get(privateTypeUrl).publicKeyManagerClassOrNull();
-      if (existingPublicKeyManagerClass != null) {
-        if (!existingPublicKeyManagerClass
-            .getName()
-            .equals(publicKeyTypeManager.getClass().getName())) {
-          logger.warning(
-              "Attempted overwrite of a registered key manager for key type "
-                  + privateTypeUrl
-                  + " with inconsistent public key type "
-                  + publicTypeUrl);
-          throw new GeneralSecurityException(
-              String.format(
-                  "public key manager corresponding to %s is already registered with %s, cannot"
-                      + " be re-registered with %s",
-                  privateKeyTypeManager.getClass().getName(),
-                  existingPublicKeyManagerClass.getName(),
-                  publicKeyTypeManager.getClass().getName()));
+      if (keyManagerMap.containsKey(privateTypeUrl)) {
+        Class<?> existingPublicKeyManagerClass =
+            keyManagerMap.get(privateTypeUrl).publicKeyManagerClassOrNull();
+        if (existingPublicKeyManagerClass != null) {
+          if (!existingPublicKeyManagerClass
+              .getName()
+              .equals(publicKeyTypeManager.getClass().getName())) {
+            logger.warning(
+                "Attempted overwrite of a registered key manager for key type "
+                    + privateTypeUrl
+                    + " with inconsistent public key type "
+                    + publicTypeUrl);
+            throw new GeneralSecurityException(
+                String.format(
+                    "public key manager corresponding to %s is already registered with %s, cannot"
+                        + " be re-registered with %s",
+                    privateKeyTypeManager.getClass().getName(),
+                    existingPublicKeyManagerClass.getName(),
+                    publicKeyTypeManager.getClass().getName()));
+          }
         }
       }
-    }
 
-    if (!keyManagerMap.containsKey(privateTypeUrl)
-        || keyManagerMap.get(privateTypeUrl).publicKeyManagerClassOrNull() == null) {
-      keyManagerMap.put(
-          privateTypeUrl,
-          createPrivateKeyContainerFor(privateKeyTypeManager, publicKeyTypeManager));
-      keyDeriverMap.put(privateTypeUrl, createDeriverFor(privateKeyTypeManager));
-      if (newKeyAllowed) {
-        registerKeyTemplates(
-            privateKeyTypeManager.getKeyType(), privateKeyTypeManager.keyFactory().keyFormats());
+      newKeyAllowedMap.put(privateTypeUrl, newKeyAllowed);
+      if (!keyManagerMap.containsKey(privateTypeUrl)
+          || keyManagerMap.get(privateTypeUrl).publicKeyManagerClassOrNull() == null) {
+        keyManagerMap.put(
+            privateTypeUrl,
+            createPrivateKeyContainerFor(privateKeyTypeManager, publicKeyTypeManager));
+        keyDeriverMap.put(privateTypeUrl, createDeriverFor(privateKeyTypeManager));
+        if (newKeyAllowed) {
+          registerKeyTemplates(
+              privateKeyTypeManager.getKeyType(), privateKeyTypeManager.keyFactory().keyFormats());
+        }
       }
+      newKeyAllowedMap.put(publicTypeUrl, false);
+      if (!keyManagerMap.containsKey(publicTypeUrl)) {
+        keyManagerMap.put(publicTypeUrl, createContainerFor(publicKeyTypeManager));
+        // We do not allow key derivation for public key types. It doesn't seem like this would make
+        // sense.
+      }
+    } finally {
+      registrationLock.unlock();
     }
-    newKeyAllowedMap.put(privateTypeUrl, newKeyAllowed);
-    if (!keyManagerMap.containsKey(publicTypeUrl)) {
-      keyManagerMap.put(publicTypeUrl, createContainerFor(publicKeyTypeManager));
-      // We do not allow key derivation for public key types. It doesn't seem like this would make
-      // sense.
-    }
-    newKeyAllowedMap.put(publicTypeUrl, false);
   }
 
   private static <KeyFormatProtoT extends MessageLite> void registerKeyTemplates(
@@ -668,7 +777,7 @@ public final class Registry {
    * @deprecated use {@link #registerKeyManager(KeyManager) registerKeyManager(KeyManager&lt;P&gt;)}
    */
   @Deprecated
-  public static synchronized <P> void registerKeyManager(
+  public static <P> void registerKeyManager(
       String typeUrl, final KeyManager<P> manager) throws GeneralSecurityException {
     registerKeyManager(typeUrl, manager, /* newKeyAllowed= */ true);
   }
@@ -686,7 +795,7 @@ public final class Registry {
    *     registerKeyManager(KeyManager&lt;P&gt;, boolean)}
    */
   @Deprecated
-  public static synchronized <P> void registerKeyManager(
+  public static <P> void registerKeyManager(
       String typeUrl, final KeyManager<P> manager, boolean newKeyAllowed)
       throws GeneralSecurityException {
     if (manager == null) {
@@ -699,6 +808,32 @@ public final class Registry {
     registerKeyManager(manager, newKeyAllowed);
   }
 
+  /**
+   * Defers the registration of the key types {@code typeUrls} until one of them is first used.
+   *
+   * <p>Looking up a key manager for one of {@code typeUrls}, e.g. to create a primitive or a new
+   * key, runs {@code registration} once and then uses the key managers it registered, with the
+   * same checks as if they had been registered up front. Until then neither the key managers nor
+   * their protos are loaded, which shortens the start-up of programs that only use a few key types.
+   * Looking up a key template by name runs all pending registrations.
+   *
+   * <p>Type URLs that already have a key manager or a pending registration are skipped.
+   */
+  public static void registerKeyTypesLazily(KeyTypeRegistration registration, String... typeUrls) {
+    checkNotNull(registration);
+    registrationLock.lock();
+    try {
+      LazyKeyTypes lazyKeyTypes = new LazyKeyTypes(registration, typeUrls.clone());
+      for (String typeUrl : lazyKeyTypes.typeUrls) {
+        if (!keyManagerMap.containsKey(typeUrl)) {
+          lazyKeyTypeMap.putIfAbsent(typeUrl, lazyKeyTypes);
+        }
+      }
+    } finally {
+      registrationLock.unlock();
+    }
+  }
+
   /**
    * Tries to register {@code wrapper} as a new SetWrapper for primitive {@code P}.
    *
@@ -711,29 +846,34 @@ public final class Registry {
    *     of the class of {@code manager}, or the registration tries to re-enable the generation of
    *     new keys.
    */
-  public static synchronized <B, P> void registerPrimitiveWrapper(
+  public static <B, P> void registerPrimitiveWrapper(
       final PrimitiveWrapper<B, P> wrapper) throws GeneralSecurityException {
-    if (wrapper == null) {
-      throw new IllegalArgumentException("wrapper must be non-null");
-    }
-    Class<P> classObject = wrapper.getPrimitiveClass();
-    if (primitiveWrapperMap.containsKey(classObject)) {
-      @SuppressWarnings("unchecked") // We know that we only inserted objects of the correct type.
-      PrimitiveWrapper<?, P> existingWrapper =
-          (PrimitiveWrapper<?, P>) primitiveWrapperMap.get(classObject);
-      if (!wrapper.getClass().getName().equals(existingWrapper.getClass().getName())) {
-        logger.warning(
-            "Attempted overwrite of a registered PrimitiveWrapper for type " + classObject);
-        throw new GeneralSecurityException(
-            String.format(
-                "PrimitiveWrapper for primitive (%s) is already registered to be %s, "
-                    + "cannot be re-registered with %s",
-                classObject.getName(),
-                existingWrapper.getClass().getName(),
-                wrapper.getClass().getName()));
+    registrationLock.lock();
+    try {
+      if (wrapper == null) {
+        throw new IllegalArgumentException("wrapper must be non-null");
+      }
+      Class<P> classObject = wrapper.getPrimitiveClass();
+      if (primitiveWrapperMap.containsKey(classObject)) {
+        @SuppressWarnings("unchecked") // We know that we only inserted objects of the correct type.
+        PrimitiveWrapper<?, P> existingWrapper =
+            (PrimitiveWrapper<?, P>) primitiveWrapperMap.get(classObject);
+        if (!wrapper.getClass().getName().equals(existingWrapper.getClass().getName())) {
+          logger.warning(
+              "Attempted overwrite of a registered PrimitiveWrapper for type " + classObject);
+          throw new GeneralSecurityException(
+              String.format(
+                  "PrimitiveWrapper for primitive (%s) is already registered to be %s, "
+                      + "cannot be re-registered with %s",
+                  classObject.getName(),
+                  existingWrapper.getClass().getName(),
+                  wrapper.getClass().getName()));
+        }
       }
+      primitiveWrapperMap.put(classObject, wrapper);
+    } finally {
+      registrationLock.unlock();
     }
-    primitiveWrapperMap.put(classObject, wrapper);
   }
 
   /**
@@ -792,6 +932,13 @@ public final class Registry {
             + toCommaSeparatedString(container.supportedPrimitives()));
   }
 
+  private static boolean isNewKeyAllowed(String typeUrl) {
+    // Registration stores the flag before the key manager, so the flag is only missing if the
+    // registry was reset in the meantime.
+    Boolean newKeyAllowed = newKeyAllowedMap.get(typeUrl);
+    return newKeyAllowed != null && newKeyAllowed.booleanValue();
+  }
+
   /**
    * Convenience method for generating a new {@link KeyData} for the specified {@code template}.
    *
@@ -802,11 +949,11 @@ public final class Registry {
    *
    * @return a new {@link KeyData}
    */
-  public static synchronized KeyData
+  public static KeyData
       newKeyData(com.google.crypto.tink.proto.KeyTemplate keyTemplate)
       throws GeneralSecurityException {
     KeyManager<?> manager = getUntypedKeyManager(keyTemplate.getTypeUrl());
-    if (newKeyAllowedMap.get(keyTemplate.getTypeUrl()).booleanValue()) {
+    if (isNewKeyAllowed(keyTemplate.getTypeUrl())) {
       return manager.newKeyData(keyTemplate.getValue());
     } else {
       throw new GeneralSecurityException(
@@ -824,7 +971,7 @@ public final class Registry {
    *
    * @return a new {@link KeyData}
    */
-  public static synchronized KeyData newKeyData(com.google.crypto.tink.KeyTemplate keyTemplate)
+  public static KeyData newKeyData(com.google.crypto.tink.KeyTemplate keyTemplate)
       throws GeneralSecurityException {
     return newKeyData(keyTemplate.getProto());
   }
@@ -837,10 +984,10 @@ public final class Registry {
    *
    * @return a new key
    */
-  public static synchronized MessageLite newKey(
+  public static MessageLite newKey(
       com.google.crypto.tink.proto.KeyTemplate keyTemplate) throws GeneralSecurityException {
     KeyManager<?> manager = getUntypedKeyManager(keyTemplate.getTypeUrl());
-    if (newKeyAllowedMap.get(keyTemplate.getTypeUrl()).booleanValue()) {
+    if (isNewKeyAllowed(keyTemplate.getTypeUrl())) {
       return manager.newKey(keyTemplate.getValue());
     } else {
       throw new GeneralSecurityException(
@@ -856,10 +1003,10 @@ public final class Registry {
    *
    * @return a new key
    */
-  public static synchronized MessageLite newKey(String typeUrl, MessageLite format)
+  public static MessageLite newKey(String typeUrl, MessageLite format)
       throws GeneralSecurityException {
     KeyManager<?> manager = getKeyManager(typeUrl);
-    if (newKeyAllowedMap.get(typeUrl).booleanValue()) {
+    if (isNewKeyAllowed(typeUrl)) {
       return manager.newKey(format);
     } else {
       throw new GeneralSecurityException("newKey-operation not permitted for key type " + typeUrl);
@@ -876,15 +1023,18 @@ public final class Registry {
    *
    * <p>This functions ignores {@code keyTemplate.getOutputPrefix()}.
    */
-  static synchronized KeyData deriveKey(
+  static KeyData deriveKey(
       com.google.crypto.tink.proto.KeyTemplate keyTemplate, InputStream randomStream)
       throws GeneralSecurityException {
     String typeUrl = keyTemplate.getTypeUrl();
-    if (!keyDeriverMap.containsKey(typeUrl)) {
+    KeyDeriverContainer deriver = keyDeriverMap.get(typeUrl);
+    if (deriver == null && registerLazyKeyType(typeUrl)) {
+      deriver = keyDeriverMap.get(typeUrl);
+    }
+    if (deriver == null) {
       throw new GeneralSecurityException(
           "No keymanager registered or key manager cannot derive keys for " + typeUrl);
     }
-    KeyDeriverContainer deriver = keyDeriverMap.get(typeUrl);
     return deriver.deriveKey(keyTemplate.getValue(), randomStream);
   }
 
@@ -938,8 +1088,18 @@ public final class Registry {
 
   private static <P> P getPrimitiveInternal(
       String typeUrl, MessageLite key, Class<P> primitiveClass) throws GeneralSecurityException {
-    KeyManager<P> manager = getKeyManagerInternal(typeUrl, primitiveClass);
-    return manager.getPrimitive(key);
+    Object event = TinkEvents.begin(TinkEvents.Type.PRIMITIVE_CREATION);
+    boolean succeeded = false;
+    try {
+      KeyManager<P> manager = getKeyManagerInternal(typeUrl, primitiveClass);
+      P primitive = manager.getPrimitive(key);
+      succeeded = true;
+      return primitive;
+    } finally {
+      if (event != null) {
+        TinkEvents.commit(event, "getPrimitive", typeUrl, 0, key.getSerializedSize(), succeeded);
+      }
+    }
   }
 
   /**
@@ -975,8 +1135,25 @@ public final class Registry {
   private static <P> P getPrimitiveInternal(
       String typeUrl, ByteString serializedKey, Class<P> primitiveClass)
       throws GeneralSecurityException {
-    KeyManager<P> manager = getKeyManagerInternal(typeUrl, primitiveClass);
-    return manager.getPrimitive(serializedKey);
+    return getPrimitiveInternal(typeUrl, serializedKey, primitiveClass, 0);
+  }
+
+  private static <P> P getPrimitiveInternal(
+      String typeUrl, ByteString serializedKey, Class<P> primitiveClass, int keyId)
+      throws GeneralSecurityException {
+    Object event = TinkEvents.begin(TinkEvents.Type.PRIMITIVE_CREATION);
+    boolean succeeded = false;
+    try {
+      KeyManager<P> manager = getKeyManagerInternal(typeUrl, primitiveClass);
+      P primitive = manager.getPrimitive(serializedKey);
+      succeeded = true;
+      return primitive;
+    } finally {
+      if (event != null) {
+        TinkEvents.commit(
+            event, "getPrimitive", typeUrl, keyId & 0xffffffffL, serializedKey.size(), succeeded);
+      }
+    }
   }
 
   /**
@@ -1035,6 +1212,13 @@ public final class Registry {
     return getPrimitive(keyData.getTypeUrl(), keyData.getValue(), primitiveClass);
   }
 
+  /** Like {@link #getPrimitive(KeyData, Class)}, for the key with id {@code keyId} in a keyset. */
+  static <P> P getPrimitive(KeyData keyData, Class<P> primitiveClass, int keyId)
+      throws GeneralSecurityException {
+    return getPrimitiveInternal(
+        keyData.getTypeUrl(), keyData.getValue(), checkNotNull(primitiveClass), keyId);
+  }
+
   /**
    * Looks up the globally registered PrimitiveWrapper for this primitive and wraps the given
    * PrimitiveSet with it.
@@ -1054,9 +1238,29 @@ public final class Registry {
               + ", got "
               + primitiveSet.getPrimitiveClass());
     }
-    @SuppressWarnings("unchecked") // We just checked correctness
-    P result = ((PrimitiveWrapper<B, P>) wrapper).wrap(primitiveSet);
-    return result;
+    Object event = TinkEvents.begin(TinkEvents.Type.PRIMITIVE_WRAP);
+    boolean succeeded = false;
+    try {
+      @SuppressWarnings("unchecked") // We just checked correctness
+      P result = ((PrimitiveWrapper<B, P>) wrapper).wrap(primitiveSet);
+      succeeded = true;
+      return result;
+    } finally {
+      if (event != null) {
+        int size = 0;
+        for (List<PrimitiveSet.Entry<B>> entries : primitiveSet.getAll()) {
+          size += entries.size();
+        }
+        PrimitiveSet.Entry<B> primary = primitiveSet.getPrimary();
+        TinkEvents.commit(
+            event,
+            clazz.getSimpleName(),
+            /* keyTypeUrl= */ null,
+            primary == null ? 0 : primary.getKeyId() & 0xffffffffL,
+            size,
+            succeeded);
+      }
+    }
   }
 
   public static <P> P wrap(PrimitiveSet<P> primitiveSet)
@@ -1070,7 +1274,13 @@ public final class Registry {
    *
    * @since 1.6.0
    */
-  public static synchronized List<String> keyTemplates() {
+  public static List<String> keyTemplates() {
+    try {
+      registerAllLazyKeyTypes();
+    } catch (GeneralSecurityException e) {
+      // Only the templates of the key types that could be registered are listed.
+      logger.log(Level.WARNING, "cannot register key types lazily", e);
+    }
     List<String> results = new ArrayList<>();
     for (String name : keyTemplateMap.keySet()) {
       results.add(name);
@@ -1079,8 +1289,14 @@ public final class Registry {
     return Collections.unmodifiableList(results);
   }
 
-  /** Internal API that returns an unmodifiable map of registered key templates and their names. */
-  static synchronized Map<String, KeyTemplate> keyTemplateMap() {
+  /**
+   * Internal API that returns an unmodifiable map of registered key templates and their names.
+   *
+   * <p>Key templates are looked up by name, which doesn't identify a key type, so this runs all
+   * pending lazy registrations first.
+   */
+  static Map<String, KeyTemplate> keyTemplateMap() throws GeneralSecurityException {
+    registerAllLazyKeyTypes();
     return Collections.unmodifiableMap(keyTemplateMap);
   }
   /**
@@ -1114,12 +1330,17 @@ public final class Registry {
    *
    * @throws GeneralSecurityException if any key manager has already been registered.
    */
-  public static synchronized <P> void restrictToFipsIfEmpty() throws GeneralSecurityException {
-    if (keyManagerMap.isEmpty()) {
-      TinkFipsUtil.setFipsRestricted();
-      return;
+  public static <P> void restrictToFipsIfEmpty() throws GeneralSecurityException {
+    registrationLock.lock();
+    try {
+      if (keyManagerMap.isEmpty() && lazyKeyTypeMap.isEmpty()) {
+        TinkFipsUtil.setFipsRestricted();
+        return;
+      }
+      throw new GeneralSecurityException("Could not enable FIPS mode as Registry is not empty.");
+    } finally {
+      registrationLock.unlock();
     }
-    throw new GeneralSecurityException("Could not enable FIPS mode as Registry is not empty.");
   }
 
   private Registry() {}
@@ -26,6 +26,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.Charset;
 import java.security.GeneralSecurityException;
+import java.util.List;
 
 /** Various helpers. */
 class Util {
@@ -77,11 +78,21 @@ class Util {
    * @throws GeneralSecurityException if {@code keyset} is invalid.
    */
   public static void validateKeyset(Keyset keyset) throws GeneralSecurityException {
-    int primaryKeyId = keyset.getPrimaryKeyId();
+    validateKeyset(keyset.getPrimaryKeyId(), keyset.getKeyList());
+  }
+
+  /**
+   * Validates a keyset given as its primary key id and its keys, without building a {@code
+   * Keyset}.
+   *
+   * @throws GeneralSecurityException if the keyset is invalid.
+   */
+  public static void validateKeyset(int primaryKeyId, List<Keyset.Key> keys)
+      throws GeneralSecurityException {
     boolean hasPrimaryKey = false;
     boolean containsOnlyPublicKeyMaterial = true;
     int numEnabledKeys = 0;
-    for (Keyset.Key key : keyset.getKeyList()) {
+    for (Keyset.Key key : keys) {
       if (key.getStatus() != KeyStatusType.ENABLED) {
         continue;
       }
@@ -21,11 +21,11 @@ import com.google.crypto.tink.CryptoFormat;
 import com.google.crypto.tink.PrimitiveSet;
 import com.google.crypto.tink.PrimitiveWrapper;
 import com.google.crypto.tink.Registry;
+import com.google.crypto.tink.internal.FailureCounter;
 import com.google.crypto.tink.subtle.Bytes;
 import java.security.GeneralSecurityException;
 import java.util.Arrays;
 import java.util.List;
-import java.util.logging.Logger;
 
 /**
  * AeadWrapper is the implementation of SetWrapper for the Aead primitive.
@@ -34,10 +34,10 @@ import java.util.logging.Logger;
  * first try all primitives whose keyId starts with the prefix of the ciphertext. If none of these
  * succeed, we try the raw primitives. If any succeeds, we return the ciphertext, otherwise we
  * simply throw a GeneralSecurityException.
+ *
+ * <p>Failed decryptions are not logged one by one, but counted in {@link FailureCounter#AEAD}.
  */
 public class AeadWrapper implements PrimitiveWrapper<Aead, Aead> {
-  private static final Logger logger = Logger.getLogger(AeadWrapper.class.getName());
-
   private static class WrappedAead implements Aead {
     private final PrimitiveSet<Aead> pSet;
     private WrappedAead(PrimitiveSet<Aead> pSet) {
@@ -56,30 +56,36 @@ public class AeadWrapper implements PrimitiveWrapper<Aead, Aead> {
     public byte[] decrypt(final byte[] ciphertext, final byte[] associatedData)
         throws GeneralSecurityException {
       if (ciphertext.length > CryptoFormat.NON_RAW_PREFIX_SIZE) {
-        byte[] prefix = Arrays.copyOfRange(ciphertext, 0, CryptoFormat.NON_RAW_PREFIX_SIZE);
-        byte[] ciphertextNoPrefix =
-            Arrays.copyOfRange(ciphertext, CryptoFormat.NON_RAW_PREFIX_SIZE, ciphertext.length);
-        List<PrimitiveSet.Entry<Aead>> entries = pSet.getPrimitive(prefix);
-        for (PrimitiveSet.Entry<Aead> entry : entries) {
-          try {
-            return entry.getPrimitive().decrypt(ciphertextNoPrefix, associatedData);
-          } catch (GeneralSecurityException e) {
-            logger.info("ciphertext prefix matches a key, but cannot decrypt: " + e.toString());
-            continue;
+        // Only copy the ciphertext once a key matches its prefix, so that ciphertexts with an
+        // unknown prefix are rejected without allocating.
+        List<PrimitiveSet.Entry<Aead>> entries = pSet.getPrimitiveForPrefixOf(ciphertext);
+        if (!entries.isEmpty()) {
+          byte[] ciphertextNoPrefix =
+              Arrays.copyOfRange(ciphertext, CryptoFormat.NON_RAW_PREFIX_SIZE, ciphertext.length);
+          for (PrimitiveSet.Entry<Aead> entry : entries) {
+            try {
+              return entry.getPrimitive().decrypt(ciphertextNoPrefix, associatedData);
+            } catch (GeneralSecurityException e) {
+              FailureCounter.AEAD.recordPrefixMatchFailure();
+              continue;
+            }
           }
         }
       }
 
       // Let's try all RAW keys.
-      List<PrimitiveSet.Entry<Aead>> entries = pSet.getRawPrimitives();
-      for (PrimitiveSet.Entry<Aead> entry : entries) {
-        try {
-          return entry.getPrimitive().decrypt(ciphertext, associatedData);
-        } catch (GeneralSecurityException e) {
-          continue;
+      if (pSet.hasRawPrimitives()) {
+        List<PrimitiveSet.Entry<Aead>> entries = pSet.getRawPrimitives();
+        for (PrimitiveSet.Entry<Aead> entry : entries) {
+          try {
+            return entry.getPrimitive().decrypt(ciphertext, associatedData);
+          } catch (GeneralSecurityException e) {
+            continue;
+          }
         }
       }
       // nothing works.
+      FailureCounter.AEAD.recordFailure();
       throw new GeneralSecurityException("decryption failed");
     }
   }
@@ -21,6 +21,7 @@ import com.google.crypto.tink.KeyTemplate;
 import com.google.crypto.tink.KeyTypeManager;
 import com.google.crypto.tink.Registry;
 import com.google.crypto.tink.aead.subtle.AesGcmSiv;
+import com.google.crypto.tink.aead.subtle.PortableAesGcmSiv;
 import com.google.crypto.tink.proto.AesGcmSivKey;
 import com.google.crypto.tink.proto.AesGcmSivKeyFormat;
 import com.google.crypto.tink.proto.KeyData.KeyMaterialType;
@@ -41,7 +42,7 @@ import javax.crypto.NoSuchPaddingException;
 
 /**
  * This key manager generates new {@code AesGcmSivKey} keys and produces new instances of {@code
- * AesGcmSiv}.
+ * AesGcmSiv}, or of {@code PortableAesGcmSiv} if no installed JCE provider supports AES-GCM-SIV.
  */
 public final class AesGcmSivKeyManager extends KeyTypeManager<AesGcmSivKey> {
   AesGcmSivKeyManager() {
@@ -50,7 +51,11 @@ public final class AesGcmSivKeyManager extends KeyTypeManager<AesGcmSivKey> {
         new PrimitiveFactory<Aead, AesGcmSivKey>(Aead.class) {
           @Override
           public Aead getPrimitive(AesGcmSivKey key) throws GeneralSecurityException {
-            return new AesGcmSiv(key.getKeyValue().toByteArray());
+            if (canUseProviderAesGcmSiv()) {
+              return new AesGcmSiv(key.getKeyValue().toByteArray());
+            }
+            // Stock OpenJDK has no provider for AES-GCM-SIV.
+            return new PortableAesGcmSiv(key.getKeyValue().toByteArray());
           }
         });
   }
@@ -139,9 +144,18 @@ public final class AesGcmSivKeyManager extends KeyTypeManager<AesGcmSivKey> {
     };
   }
 
-  private static boolean canUseAesGcmSive() {
+  // Set once a provider for AES-GCM-SIV has been found. Only this positive result is cached: a
+  // provider (e.g. Conscrypt) may be installed after this class is initialized, so as long as
+  // none is found, each new primitive looks again.
+  private static volatile boolean providerAesGcmSivFound = false;
+
+  private static boolean canUseProviderAesGcmSiv() {
+    if (providerAesGcmSivFound) {
+      return true;
+    }
     try {
       Cipher.getInstance("AES/GCM-SIV/NoPadding");
+      providerAesGcmSivFound = true;
       return true;
     } catch (NoSuchAlgorithmException | NoSuchPaddingException ex) {
       return false;
@@ -149,9 +163,7 @@ public final class AesGcmSivKeyManager extends KeyTypeManager<AesGcmSivKey> {
   }
 
   public static void register(boolean newKeyAllowed) throws GeneralSecurityException {
-    if (canUseAesGcmSive()) {
-      Registry.registerKeyManager(new AesGcmSivKeyManager(), newKeyAllowed);
-    }
+    Registry.registerKeyManager(new AesGcmSivKeyManager(), newKeyAllowed);
   }
 
   /**
@@ -18,6 +18,7 @@ package com.google.crypto.tink.aead; // instead of subtle, because it depends on
 
 import com.google.crypto.tink.Aead;
 import com.google.crypto.tink.Registry;
+import com.google.crypto.tink.internal.TinkEvents;
 import com.google.crypto.tink.proto.KeyTemplate;
 import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
@@ -55,20 +56,33 @@ public final class KmsEnvelopeAead implements Aead {
   @Override
   public byte[] encrypt(final byte[] plaintext, final byte[] associatedData)
       throws GeneralSecurityException {
-    // Generate a new DEK.
-    byte[] dek = Registry.newKey(dekTemplate).toByteArray();
-    // Wrap it with remote.
-    byte[] encryptedDek = remote.encrypt(dek, EMPTY_AAD);
-    // Use DEK to encrypt plaintext.
-    Aead aead = Registry.getPrimitive(dekTemplate.getTypeUrl(), dek, Aead.class);
-    byte[] payload = aead.encrypt(plaintext, associatedData);
-    // Build ciphertext protobuf and return result.
-    return buildCiphertext(encryptedDek, payload);
+    Object event = TinkEvents.begin(TinkEvents.Type.KMS_ENVELOPE_AEAD);
+    boolean succeeded = false;
+    try {
+      // Generate a new DEK.
+      byte[] dek = Registry.newKey(dekTemplate).toByteArray();
+      // Wrap it with remote.
+      byte[] encryptedDek = remote.encrypt(dek, EMPTY_AAD);
+      // Use DEK to encrypt plaintext.
+      Aead aead = Registry.getPrimitive(dekTemplate.getTypeUrl(), dek, Aead.class);
+      byte[] payload = aead.encrypt(plaintext, associatedData);
+      // Build ciphertext protobuf and return result.
+      byte[] ciphertext = buildCiphertext(encryptedDek, payload);
+      succeeded = true;
+      return ciphertext;
+    } finally {
+      if (event != null) {
+        TinkEvents.commit(
+            event, "encrypt", dekTemplate.getTypeUrl(), 0, plaintext.length, succeeded);
+      }
+    }
   }
 
   @Override
   public byte[] decrypt(final byte[] ciphertext, final byte[] associatedData)
       throws GeneralSecurityException {
+    Object event = TinkEvents.begin(TinkEvents.Type.KMS_ENVELOPE_AEAD);
+    boolean succeeded = false;
     try {
       ByteBuffer buffer = ByteBuffer.wrap(ciphertext);
       int encryptedDekSize = buffer.getInt();
@@ -83,11 +97,18 @@ public final class KmsEnvelopeAead implements Aead {
       byte[] dek = remote.decrypt(encryptedDek, EMPTY_AAD);
       // Use DEK to decrypt payload.
       Aead aead = Registry.getPrimitive(dekTemplate.getTypeUrl(), dek, Aead.class);
-      return aead.decrypt(payload, associatedData);
+      byte[] plaintext = aead.decrypt(payload, associatedData);
+      succeeded = true;
+      return plaintext;
     } catch (IndexOutOfBoundsException
              | BufferUnderflowException
              | NegativeArraySizeException e) {
       throw new GeneralSecurityException("invalid ciphertext", e);
+    } finally {
+      if (event != null) {
+        TinkEvents.commit(
+            event, "decrypt", dekTemplate.getTypeUrl(), 0, ciphertext.length, succeeded);
+      }
     }
   }
 
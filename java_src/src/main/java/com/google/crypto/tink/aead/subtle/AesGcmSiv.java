@@ -42,17 +42,7 @@ import javax.crypto.spec.SecretKeySpec;
  */
 @Alpha
 public final class AesGcmSiv implements Aead {
-  private static final ThreadLocal<Cipher> localCipher =
-      new ThreadLocal<Cipher>() {
-        @Override
-        protected Cipher initialValue() {
-          try {
-            return EngineFactory.CIPHER.getInstance("AES/GCM-SIV/NoPadding");
-          } catch (GeneralSecurityException ex) {
-            throw new IllegalStateException(ex);
-          }
-        }
-      };
+  private static final String CIPHER_ALGORITHM = "AES/GCM-SIV/NoPadding";
 
   // All instances of this class use a 12 byte IV and a 16 byte tag.
   private static final int IV_SIZE_IN_BYTES = 12;
@@ -80,13 +70,13 @@ public final class AesGcmSiv implements Aead {
     byte[] iv = Random.randBytes(IV_SIZE_IN_BYTES);
     System.arraycopy(iv, 0, ciphertext, 0, IV_SIZE_IN_BYTES);
 
-    AlgorithmParameterSpec params = getParams(iv);
-    localCipher.get().init(Cipher.ENCRYPT_MODE, keySpec, params);
+    AlgorithmParameterSpec params = getParams(ciphertext, 0, IV_SIZE_IN_BYTES);
+    Cipher cipher = EngineFactory.CIPHER.getThreadLocalInstance(CIPHER_ALGORITHM);
+    cipher.init(Cipher.ENCRYPT_MODE, keySpec, params);
     if (associatedData != null && associatedData.length != 0) {
-      localCipher.get().updateAAD(associatedData);
+      cipher.updateAAD(associatedData);
     }
-    int written =
-        localCipher.get().doFinal(plaintext, 0, plaintext.length, ciphertext, IV_SIZE_IN_BYTES);
+    int written = cipher.doFinal(plaintext, 0, plaintext.length, ciphertext, IV_SIZE_IN_BYTES);
     // For security reasons, AES-GCM encryption must always use tag of TAG_SIZE_IN_BYTES bytes. If
     // so, written must be equal to plaintext.length + TAG_SIZE_IN_BYTES.
 
@@ -113,17 +103,12 @@ public final class AesGcmSiv implements Aead {
     }
 
     AlgorithmParameterSpec params = getParams(ciphertext, 0, IV_SIZE_IN_BYTES);
-    localCipher.get().init(Cipher.DECRYPT_MODE, keySpec, params);
+    Cipher cipher = EngineFactory.CIPHER.getThreadLocalInstance(CIPHER_ALGORITHM);
+    cipher.init(Cipher.DECRYPT_MODE, keySpec, params);
     if (associatedData != null && associatedData.length != 0) {
-      localCipher.get().updateAAD(associatedData);
+      cipher.updateAAD(associatedData);
     }
-    return localCipher
-        .get()
-        .doFinal(ciphertext, IV_SIZE_IN_BYTES, ciphertext.length - IV_SIZE_IN_BYTES);
-  }
-
-  private static AlgorithmParameterSpec getParams(final byte[] iv) throws GeneralSecurityException {
-    return getParams(iv, 0, iv.length);
+    return cipher.doFinal(ciphertext, IV_SIZE_IN_BYTES, ciphertext.length - IV_SIZE_IN_BYTES);
   }
 
   private static AlgorithmParameterSpec getParams(final byte[] buf, int offset, int len)
@@ -0,0 +1,174 @@
+// Copyright 2022 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+
+package com.google.crypto.tink.aead.subtle;
+
+/**
+ * POLYVAL, the universal hash function of AES-GCM-SIV, as defined in <a
+ * href="https://www.rfc-editor.org/rfc/rfc8452#section-3">RFC 8452, section 3</a>.
+ *
+ * <p>Field elements are 16 bytes in little-endian order: bit {@code i} of byte {@code j} is the
+ * coefficient of {@code x^(8j + i)}. They are held as two longs, {@code lo} for bytes 0 to 7 and
+ * {@code hi} for bytes 8 to 15.
+ *
+ * <p>dot(a, H) = a * H * x^-128 is computed as a * H', with H' = H * x^-128 precomputed, using
+ * 4-bit multiplication tables for H'. This implementation is not constant time with respect to the
+ * data being hashed, as lookups into the table depend on it.
+ */
+final class Polyval {
+  static final int BLOCK_SIZE = 16;
+
+  // x^128 + x^127 + x^126 + x^121 + 1, without the x^128 term, in the upper long.
+  private static final long REDUCTION_HI = (1L << 63) | (1L << 62) | (1L << 57);
+
+  // REDUCE_LO[n], REDUCE_HI[n] is n(x) * x^128 mod P, for every 4-bit polynomial n(x).
+  private static final long[] REDUCE_LO = new long[16];
+  private static final long[] REDUCE_HI = new long[16];
+
+  static {
+    long[] e = {1, 0};
+    for (int i = 0; i < 128; i++) {
+      mulX(e);
+    }
+    fillTable(e[0], e[1], REDUCE_LO, REDUCE_HI);
+  }
+
+  // tableLo[n], tableHi[n] is n(x) * H', for every 4-bit polynomial n(x).
+  private final long[] tableLo = new long[16];
+  private final long[] tableHi = new long[16];
+
+  private long stateLo;
+  private long stateHi;
+
+  /** Creates a POLYVAL instance for the 16-byte key {@code h} starting at {@code offset}. */
+  Polyval(final byte[] h, int offset) {
+    long[] e = {load64(h, offset), load64(h, offset + 8)};
+    for (int i = 0; i < 128; i++) {
+      divX(e);
+    }
+    fillTable(e[0], e[1], tableLo, tableHi);
+  }
+
+  /**
+   * Hashes {@code length} bytes of {@code data} starting at {@code offset}, right-padded with
+   * zeros to a multiple of 16 bytes.
+   */
+  void updatePadded(final byte[] data, int offset, int length) {
+    int end = offset + length;
+    int fullBlocksEnd = offset + (length & ~(BLOCK_SIZE - 1));
+    for (int i = offset; i < fullBlocksEnd; i += BLOCK_SIZE) {
+      updateBlock(load64(data, i), load64(data, i + 8));
+    }
+    if (fullBlocksEnd < end) {
+      byte[] block = new byte[BLOCK_SIZE];
+      System.arraycopy(data, fullBlocksEnd, block, 0, end - fullBlocksEnd);
+      updateBlock(load64(block, 0), load64(block, 8));
+    }
+  }
+
+  /** Hashes the block with the bit lengths of the associated data and of the plaintext. */
+  void updateLengths(long associatedDataLength, long plaintextLength) {
+    updateBlock(8 * associatedDataLength, 8 * plaintextLength);
+  }
+
+  /** Writes the 16-byte hash of everything passed so far to {@code out} at {@code offset}. */
+  void finish(byte[] out, int offset) {
+    store64(stateLo, out, offset);
+    store64(stateHi, out, offset + 8);
+  }
+
+  // state = (state + block) * H'.
+  private void updateBlock(long blockLo, long blockHi) {
+    long aLo = stateLo ^ blockLo;
+    long aHi = stateHi ^ blockHi;
+    long lo = 0;
+    long hi = 0;
+    // Horner's method over the nibbles of a, from the highest degree to the lowest.
+    for (int shift = 60; shift >= 0; shift -= 4) {
+      int top = (int) (hi >>> 60);
+      hi = (hi << 4) | (lo >>> 60);
+      lo = (lo << 4) ^ REDUCE_LO[top];
+      hi ^= REDUCE_HI[top];
+      int n = (int) (aHi >>> shift) & 0xf;
+      lo ^= tableLo[n];
+      hi ^= tableHi[n];
+    }
+    for (int shift = 60; shift >= 0; shift -= 4) {
+      int top = (int) (hi >>> 60);
+      hi = (hi << 4) | (lo >>> 60);
+      lo = (lo << 4) ^ REDUCE_LO[top];
+      hi ^= REDUCE_HI[top];
+      int n = (int) (aLo >>> shift) & 0xf;
+      lo ^= tableLo[n];
+      hi ^= tableHi[n];
+    }
+    stateLo = lo;
+    stateHi = hi;
+  }
+
+  // Sets table[n] to n(x) * e, for every 4-bit polynomial n(x).
+  private static void fillTable(long eLo, long eHi, long[] tableLo, long[] tableHi) {
+    long[] e = {eLo, eHi};
+    for (int bit = 1; bit < 16; bit <<= 1) {
+      tableLo[bit] = e[0];
+      tableHi[bit] = e[1];
+      mulX(e);
+    }
+    for (int n = 1; n < 16; n++) {
+      int low = n & -n;
+      tableLo[n] = tableLo[low] ^ tableLo[n ^ low];
+      tableHi[n] = tableHi[low] ^ tableHi[n ^ low];
+    }
+  }
+
+  // e = e * x mod P.
+  private static void mulX(long[] e) {
+    long carry = e[1] >>> 63;
+    e[1] = (e[1] << 1) | (e[0] >>> 63);
+    e[0] <<= 1;
+    if (carry != 0) {
+      e[0] ^= 1;
+      e[1] ^= REDUCTION_HI;
+    }
+  }
+
+  // e = e * x^-1 mod P.
+  private static void divX(long[] e) {
+    long carry = e[0] & 1;
+    if (carry != 0) {
+      // Add P, so that e is divisible by x. The x^128 term becomes x^127 after the shift.
+      e[0] ^= 1;
+      e[1] ^= REDUCTION_HI;
+    }
+    e[0] = (e[0] >>> 1) | (e[1] << 63);
+    e[1] = (e[1] >>> 1) | (carry << 63);
+  }
+
+  private static long load64(final byte[] in, int offset) {
+    long result = 0;
+    for (int i = 7; i >= 0; i--) {
+      result = (result << 8) | (in[offset + i] & 0xff);
+    }
+    return result;
+  }
+
+  private static void store64(long value, byte[] out, int offset) {
+    for (int i = 0; i < 8; i++) {
+      out[offset + i] = (byte) (value >>> (8 * i));
+    }
+  }
+}
@@ -0,0 +1,223 @@
+// Copyright 2022 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+
+package com.google.crypto.tink.aead.subtle;
+
+import com.google.crypto.tink.Aead;
+import com.google.crypto.tink.annotations.Alpha;
+import com.google.crypto.tink.subtle.EngineFactory;
+import com.google.crypto.tink.subtle.Random;
+import com.google.crypto.tink.subtle.Validators;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+import javax.crypto.AEADBadTagException;
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * AES-GCM-SIV, as defined in RFC 8452, that does not need a JCE provider for the {@code
+ * AES/GCM-SIV/NoPadding} transformation.
+ *
+ * <p>Only the AES block cipher is taken from JCE, as {@code AES/ECB/NoPadding}. POLYVAL is
+ * computed by {@link Polyval}. The counter mode of AES-GCM-SIV increments a 32-bit little-endian
+ * counter, which {@code AES/CTR} in JCE does not support, so the key stream is computed by
+ * encrypting counter blocks with ECB, many blocks per call.
+ *
+ * <p>Ciphertexts have the same format as those of {@link AesGcmSiv}: a 12-byte nonce, the
+ * encrypted plaintext and a 16-byte tag.
+ */
+@Alpha
+public final class PortableAesGcmSiv implements Aead {
+  private static final String ECB_ALGORITHM = "AES/ECB/NoPadding";
+  private static final int BLOCK_SIZE = 16;
+  private static final int IV_SIZE_IN_BYTES = 12;
+  private static final int TAG_SIZE_IN_BYTES = 16;
+  // Number of key stream bytes computed per call to the cipher.
+  private static final int KEY_STREAM_CHUNK_SIZE = 4096;
+
+  private final SecretKey keyGeneratingKey;
+  private final int keySize;
+
+  public PortableAesGcmSiv(final byte[] key) throws GeneralSecurityException {
+    Validators.validateAesKeySize(key.length);
+    keyGeneratingKey = new SecretKeySpec(key, "AES");
+    keySize = key.length;
+  }
+
+  @Override
+  public byte[] encrypt(final byte[] plaintext, final byte[] associatedData)
+      throws GeneralSecurityException {
+    // Check that ciphertext is not longer than the max. size of a Java array.
+    if (plaintext.length > Integer.MAX_VALUE - IV_SIZE_IN_BYTES - TAG_SIZE_IN_BYTES) {
+      throw new GeneralSecurityException("plaintext too long");
+    }
+    byte[] aad = associatedData == null ? new byte[0] : associatedData;
+    byte[] ciphertext = new byte[IV_SIZE_IN_BYTES + plaintext.length + TAG_SIZE_IN_BYTES];
+    byte[] iv = Random.randBytes(IV_SIZE_IN_BYTES);
+    System.arraycopy(iv, 0, ciphertext, 0, IV_SIZE_IN_BYTES);
+    int tagOffset = IV_SIZE_IN_BYTES + plaintext.length;
+
+    Cipher aes = EngineFactory.CIPHER.getThreadLocalInstance(ECB_ALGORITHM);
+    byte[] derivedKeys = deriveKeys(aes, ciphertext);
+    try {
+      aes.init(Cipher.ENCRYPT_MODE, encryptionKey(derivedKeys));
+      computeTag(aes, derivedKeys, ciphertext, aad, plaintext, 0, plaintext.length, ciphertext,
+          tagOffset);
+      applyKeyStream(
+          aes, ciphertext, tagOffset, plaintext, 0, plaintext.length, ciphertext,
+          IV_SIZE_IN_BYTES);
+    } finally {
+      Arrays.fill(derivedKeys, (byte) 0);
+    }
+    return ciphertext;
+  }
+
+  @Override
+  public byte[] decrypt(final byte[] ciphertext, final byte[] associatedData)
+      throws GeneralSecurityException {
+    if (ciphertext.length < IV_SIZE_IN_BYTES + TAG_SIZE_IN_BYTES) {
+      throw new GeneralSecurityException("ciphertext too short");
+    }
+    byte[] aad = associatedData == null ? new byte[0] : associatedData;
+    int plaintextLength = ciphertext.length - IV_SIZE_IN_BYTES - TAG_SIZE_IN_BYTES;
+    int tagOffset = IV_SIZE_IN_BYTES + plaintextLength;
+    byte[] plaintext = new byte[plaintextLength];
+    byte[] expectedTag = new byte[TAG_SIZE_IN_BYTES];
+
+    Cipher aes = EngineFactory.CIPHER.getThreadLocalInstance(ECB_ALGORITHM);
+    byte[] derivedKeys = deriveKeys(aes, ciphertext);
+    try {
+      aes.init(Cipher.ENCRYPT_MODE, encryptionKey(derivedKeys));
+      applyKeyStream(
+          aes, ciphertext, tagOffset, ciphertext, IV_SIZE_IN_BYTES, plaintextLength, plaintext, 0);
+      computeTag(aes, derivedKeys, ciphertext, aad, plaintext, 0, plaintextLength, expectedTag, 0);
+    } finally {
+      Arrays.fill(derivedKeys, (byte) 0);
+    }
+    int diff = 0;
+    for (int i = 0; i < TAG_SIZE_IN_BYTES; i++) {
+      diff |= expectedTag[i] ^ ciphertext[tagOffset + i];
+    }
+    if (diff != 0) {
+      Arrays.fill(plaintext, (byte) 0);
+      throw new AEADBadTagException("tag mismatch");
+    }
+    return plaintext;
+  }
+
+  /**
+   * Derives the message authentication key (the first 16 bytes of the result) and the message
+   * encryption key (the rest) from the nonce at the start of {@code nonce}, see RFC 8452, section
+   * 4.
+   */
+  private byte[] deriveKeys(Cipher aes, final byte[] nonce) throws GeneralSecurityException {
+    int blocks = keySize == 16 ? 4 : 6;
+    byte[] counterBlocks = new byte[blocks * BLOCK_SIZE];
+    for (int i = 0; i < blocks; i++) {
+      counterBlocks[i * BLOCK_SIZE] = (byte) i;
+      System.arraycopy(nonce, 0, counterBlocks, i * BLOCK_SIZE + 4, IV_SIZE_IN_BYTES);
+    }
+    aes.init(Cipher.ENCRYPT_MODE, keyGeneratingKey);
+    aes.doFinal(counterBlocks, 0, counterBlocks.length, counterBlocks, 0);
+    byte[] derivedKeys = new byte[blocks * 8];
+    for (int i = 0; i < blocks; i++) {
+      System.arraycopy(counterBlocks, i * BLOCK_SIZE, derivedKeys, i * 8, 8);
+    }
+    Arrays.fill(counterBlocks, (byte) 0);
+    return derivedKeys;
+  }
+
+  private static SecretKey encryptionKey(final byte[] derivedKeys) {
+    return new SecretKeySpec(derivedKeys, BLOCK_SIZE, derivedKeys.length - BLOCK_SIZE, "AES");
+  }
+
+  /**
+   * Computes the tag over {@code aad} and the plaintext and writes it to {@code out} at {@code
+   * outOffset}. {@code aes} must be initialized with the message encryption key.
+   */
+  private static void computeTag(
+      Cipher aes,
+      final byte[] derivedKeys,
+      final byte[] nonce,
+      final byte[] aad,
+      final byte[] plaintext,
+      int plaintextOffset,
+      int plaintextLength,
+      byte[] out,
+      int outOffset)
+      throws GeneralSecurityException {
+    Polyval polyval = new Polyval(derivedKeys, 0);
+    polyval.updatePadded(aad, 0, aad.length);
+    polyval.updatePadded(plaintext, plaintextOffset, plaintextLength);
+    polyval.updateLengths(aad.length, plaintextLength);
+    polyval.finish(out, outOffset);
+    for (int i = 0; i < IV_SIZE_IN_BYTES; i++) {
+      out[outOffset + i] ^= nonce[i];
+    }
+    out[outOffset + BLOCK_SIZE - 1] &= (byte) 0x7f;
+    aes.doFinal(out, outOffset, BLOCK_SIZE, out, outOffset);
+  }
+
+  /**
+   * XORs {@code length} bytes of {@code in} with the key stream derived from the tag and writes
+   * the result to {@code out}, see RFC 8452, section 4. {@code aes} must be initialized with the
+   * message encryption key.
+   */
+  private static void applyKeyStream(
+      Cipher aes,
+      final byte[] tag,
+      int tagOffset,
+      final byte[] in,
+      int inOffset,
+      int length,
+      byte[] out,
+      int outOffset)
+      throws GeneralSecurityException {
+    if (length == 0) {
+      return;
+    }
+    int chunkSize = Math.min(KEY_STREAM_CHUNK_SIZE, (length + BLOCK_SIZE - 1) & ~(BLOCK_SIZE - 1));
+    byte[] counterBlocks = new byte[chunkSize];
+    byte[] keyStream = new byte[chunkSize];
+    // Only the first 4 bytes of the counter block change, so the last 12 are set once.
+    for (int i = 0; i < chunkSize; i += BLOCK_SIZE) {
+      System.arraycopy(tag, tagOffset, counterBlocks, i, BLOCK_SIZE);
+      counterBlocks[i + BLOCK_SIZE - 1] |= (byte) 0x80;
+    }
+    int counter =
+        (tag[tagOffset] & 0xff)
+            | (tag[tagOffset + 1] & 0xff) << 8
+            | (tag[tagOffset + 2] & 0xff) << 16
+            | (tag[tagOffset + 3] & 0xff) << 24;
+    for (int position = 0; position < length; position += chunkSize) {
+      int n = Math.min(chunkSize, length - position);
+      int blocksLength = (n + BLOCK_SIZE - 1) & ~(BLOCK_SIZE - 1);
+      for (int i = 0; i < blocksLength; i += BLOCK_SIZE) {
+        counterBlocks[i] = (byte) counter;
+        counterBlocks[i + 1] = (byte) (counter >>> 8);
+        counterBlocks[i + 2] = (byte) (counter >>> 16);
+        counterBlocks[i + 3] = (byte) (counter >>> 24);
+        counter++;
+      }
+      aes.doFinal(counterBlocks, 0, blocksLength, keyStream, 0);
+      for (int i = 0; i < n; i++) {
+        out[outOffset + position + i] = (byte) (in[inOffset + position + i] ^ keyStream[i]);
+      }
+    }
+  }
+}
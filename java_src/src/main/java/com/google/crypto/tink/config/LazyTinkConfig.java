@@ -0,0 +1,240 @@
+// Copyright 2022 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+
+package com.google.crypto.tink.config;
+
+import com.google.crypto.tink.Registry;
+import com.google.crypto.tink.aead.AeadWrapper;
+import com.google.crypto.tink.aead.AesCtrHmacAeadKeyManager;
+import com.google.crypto.tink.aead.AesEaxKeyManager;
+import com.google.crypto.tink.aead.AesGcmKeyManager;
+import com.google.crypto.tink.aead.AesGcmSivKeyManager;
+import com.google.crypto.tink.aead.ChaCha20Poly1305KeyManager;
+import com.google.crypto.tink.aead.KmsAeadKeyManager;
+import com.google.crypto.tink.aead.KmsEnvelopeAeadKeyManager;
+import com.google.crypto.tink.aead.XChaCha20Poly1305KeyManager;
+import com.google.crypto.tink.daead.AesSivKeyManager;
+import com.google.crypto.tink.daead.DeterministicAeadWrapper;
+import com.google.crypto.tink.hybrid.EciesAeadHkdfPrivateKeyManager;
+import com.google.crypto.tink.hybrid.HpkePrivateKeyManager;
+import com.google.crypto.tink.hybrid.HybridDecryptWrapper;
+import com.google.crypto.tink.hybrid.HybridEncryptWrapper;
+import com.google.crypto.tink.mac.AesCmacKeyManager;
+import com.google.crypto.tink.mac.HmacKeyManager;
+import com.google.crypto.tink.mac.MacWrapper;
+import com.google.crypto.tink.prf.AesCmacPrfKeyManager;
+import com.google.crypto.tink.prf.HkdfPrfKeyManager;
+import com.google.crypto.tink.prf.HmacPrfKeyManager;
+import com.google.crypto.tink.prf.PrfSetWrapper;
+import com.google.crypto.tink.signature.EcdsaSignKeyManager;
+import com.google.crypto.tink.signature.Ed25519PrivateKeyManager;
+import com.google.crypto.tink.signature.PublicKeySignWrapper;
+import com.google.crypto.tink.signature.PublicKeyVerifyWrapper;
+import com.google.crypto.tink.signature.RsaSsaPkcs1SignKeyManager;
+import com.google.crypto.tink.signature.RsaSsaPssSignKeyManager;
+import com.google.crypto.tink.streamingaead.AesCtrHmacStreamingKeyManager;
+import com.google.crypto.tink.streamingaead.AesGcmHkdfStreamingKeyManager;
+import com.google.crypto.tink.streamingaead.StreamingAeadWrapper;
+import java.security.GeneralSecurityException;
+
+/**
+ * Registers with the {@link Registry} the same key types as {@link TinkConfig#register}, but only
+ * loads the key manager of a key type when a key of that type is first used.
+ *
+ * <p>{@link TinkConfig#register} loads and initializes all key managers and their protos up front,
+ * which takes a noticeable part of the start-up of short-lived processes that only use one or two
+ * key types. With
+ *
+ * <pre>{@code
+ * LazyTinkConfig.register();
+ * }</pre>
+ *
+ * only the primitive wrappers are registered right away. The key managers are registered by the
+ * first lookup of their type URL, e.g. when a primitive is created from a keyset that contains
+ * such a key, exactly as the per-primitive configs would have registered them; in FIPS-only mode
+ * the same key types are left out. Looking up a key template by name with {@link
+ * com.google.crypto.tink.KeyTemplates#get} registers all key types.
+ *
+ * <p>This class doesn't refer to the per-primitive configs such as {@code AeadConfig}: loading one
+ * of them registers its key types eagerly.
+ */
+public final class LazyTinkConfig {
+  private static final String TYPE_URL_PREFIX = "type.googleapis.com/google.crypto.tink.";
+
+  /**
+   * Registers the primitive wrappers, and the key managers of all key types supported in Tink for
+   * registration on first use.
+   */
+  public static void register() throws GeneralSecurityException {
+    // The wrappers are registered through their own public register methods, not through the
+    // per-primitive configs. This is why all nine wrapper classes are public.
+    AeadWrapper.register();
+    DeterministicAeadWrapper.register();
+    HybridDecryptWrapper.register();
+    HybridEncryptWrapper.register();
+    MacWrapper.register();
+    PrfSetWrapper.register();
+    PublicKeySignWrapper.register();
+    PublicKeyVerifyWrapper.register();
+    StreamingAeadWrapper.register();
+
+    registerLazily(KeyType.HMAC, "HmacKey");
+    registerLazily(KeyType.AES_CTR_HMAC_AEAD, "AesCtrHmacAeadKey");
+    registerLazily(KeyType.AES_GCM, "AesGcmKey");
+    registerLazily(KeyType.ECDSA, "EcdsaPrivateKey", "EcdsaPublicKey");
+    registerLazily(KeyType.RSA_SSA_PKCS1, "RsaSsaPkcs1PrivateKey", "RsaSsaPkcs1PublicKey");
+    // PrfConfig has no FIPS-only mode.
+    registerLazily(KeyType.AES_CMAC_PRF, "AesCmacPrfKey");
+    registerLazily(KeyType.HKDF_PRF, "HkdfPrfKey");
+    registerLazily(KeyType.HMAC_PRF, "HmacPrfKey");
+
+    if (TinkFips.useOnlyFips()) {
+      // If Tink is built in FIPS-mode do not register algorithms which are not compatible.
+      return;
+    }
+
+    registerLazily(KeyType.AES_CMAC, "AesCmacKey");
+    registerLazily(KeyType.AES_EAX, "AesEaxKey");
+    registerLazily(KeyType.AES_GCM_SIV, "AesGcmSivKey");
+    registerLazily(KeyType.CHACHA20_POLY1305, "ChaCha20Poly1305Key");
+    registerLazily(KeyType.KMS_AEAD, "KmsAeadKey");
+    registerLazily(KeyType.KMS_ENVELOPE_AEAD, "KmsEnvelopeAeadKey");
+    registerLazily(KeyType.XCHACHA20_POLY1305, "XChaCha20Poly1305Key");
+    registerLazily(KeyType.AES_SIV, "AesSivKey");
+    registerLazily(
+        KeyType.ECIES_AEAD_HKDF, "EciesAeadHkdfPrivateKey", "EciesAeadHkdfPublicKey");
+    registerLazily(KeyType.HPKE, "HpkePrivateKey", "HpkePublicKey");
+    registerLazily(KeyType.RSA_SSA_PSS, "RsaSsaPssPrivateKey", "RsaSsaPssPublicKey");
+    registerLazily(KeyType.ED25519, "Ed25519PrivateKey", "Ed25519PublicKey");
+    registerLazily(KeyType.AES_CTR_HMAC_STREAMING, "AesCtrHmacStreamingKey");
+    registerLazily(KeyType.AES_GCM_HKDF_STREAMING, "AesGcmHkdfStreamingKey");
+  }
+
+  private static void registerLazily(KeyType keyType, String... protoNames) {
+    String[] typeUrls = new String[protoNames.length];
+    for (int i = 0; i < protoNames.length; i++) {
+      typeUrls[i] = TYPE_URL_PREFIX + protoNames[i];
+    }
+    Registry.registerKeyTypesLazily(keyType, typeUrls);
+  }
+
+  /**
+   * The key types, each registered by one call of its key manager's {@code register} method.
+   *
+   * <p>A switch in one class rather than a class per key type, so that {@link #register} itself
+   * loads as few classes as possible.
+   */
+  private static enum KeyType implements Registry.KeyTypeRegistration {
+    HMAC,
+    AES_CMAC,
+    AES_CTR_HMAC_AEAD,
+    AES_GCM,
+    AES_EAX,
+    AES_GCM_SIV,
+    CHACHA20_POLY1305,
+    KMS_AEAD,
+    KMS_ENVELOPE_AEAD,
+    XCHACHA20_POLY1305,
+    AES_SIV,
+    ECIES_AEAD_HKDF,
+    HPKE,
+    AES_CMAC_PRF,
+    HKDF_PRF,
+    HMAC_PRF,
+    ECDSA,
+    RSA_SSA_PKCS1,
+    RSA_SSA_PSS,
+    ED25519,
+    AES_CTR_HMAC_STREAMING,
+    AES_GCM_HKDF_STREAMING;
+
+    @Override
+    public void register() throws GeneralSecurityException {
+      switch (this) {
+        case HMAC:
+          HmacKeyManager.register(/* newKeyAllowed= */ true);
+          return;
+        case AES_CMAC:
+          AesCmacKeyManager.register(/* newKeyAllowed= */ true);
+          return;
+        case AES_CTR_HMAC_AEAD:
+          AesCtrHmacAeadKeyManager.register(/* newKeyAllowed= */ true);
+          return;
+        case AES_GCM:
+          AesGcmKeyManager.register(/* newKeyAllowed= */ true);
+          return;
+        case AES_EAX:
+          AesEaxKeyManager.register(/* newKeyAllowed= */ true);
+          return;
+        case AES_GCM_SIV:
+          AesGcmSivKeyManager.register(/* newKeyAllowed= */ true);
+          return;
+        case CHACHA20_POLY1305:
+          ChaCha20Poly1305KeyManager.register(/* newKeyAllowed= */ true);
+          return;
+        case KMS_AEAD:
+          KmsAeadKeyManager.register(/* newKeyAllowed= */ true);
+          return;
+        case KMS_ENVELOPE_AEAD:
+          KmsEnvelopeAeadKeyManager.register(/* newKeyAllowed= */ true);
+          return;
+        case XCHACHA20_POLY1305:
+          XChaCha20Poly1305KeyManager.register(/* newKeyAllowed= */ true);
+          return;
+        case AES_SIV:
+          AesSivKeyManager.register(/* newKeyAllowed= */ true);
+          return;
+        case ECIES_AEAD_HKDF:
+          EciesAeadHkdfPrivateKeyManager.registerPair(/* newKeyAllowed= */ true);
+          return;
+        case HPKE:
+          HpkePrivateKeyManager.registerPair(/* newKeyAllowed= */ true);
+          return;
+        case AES_CMAC_PRF:
+          AesCmacPrfKeyManager.register(/* newKeyAllowed= */ true);
+          return;
+        case HKDF_PRF:
+          HkdfPrfKeyManager.register(/* newKeyAllowed= */ true);
+          return;
+        case HMAC_PRF:
+          HmacPrfKeyManager.register(/* newKeyAllowed= */ true);
+          return;
+        case ECDSA:
+          EcdsaSignKeyManager.registerPair(/* newKeyAllowed= */ true);
+          return;
+        case RSA_SSA_PKCS1:
+          RsaSsaPkcs1SignKeyManager.registerPair(/* newKeyAllowed= */ true);
+          return;
+        case RSA_SSA_PSS:
+          RsaSsaPssSignKeyManager.registerPair(/* newKeyAllowed= */ true);
+          return;
+        case ED25519:
+          Ed25519PrivateKeyManager.registerPair(/* newKeyAllowed= */ true);
+          return;
+        case AES_CTR_HMAC_STREAMING:
+          AesCtrHmacStreamingKeyManager.register(/* newKeyAllowed= */ true);
+          return;
+        case AES_GCM_HKDF_STREAMING:
+          AesGcmHkdfStreamingKeyManager.register(/* newKeyAllowed= */ true);
+          return;
+      }
+      throw new GeneralSecurityException("unknown key type " + this);
+    }
+  }
+
+  private LazyTinkConfig() {}
+}
@@ -21,11 +21,11 @@ import com.google.crypto.tink.DeterministicAead;
 import com.google.crypto.tink.PrimitiveSet;
 import com.google.crypto.tink.PrimitiveWrapper;
 import com.google.crypto.tink.Registry;
+import com.google.crypto.tink.internal.FailureCounter;
 import com.google.crypto.tink.subtle.Bytes;
 import java.security.GeneralSecurityException;
 import java.util.Arrays;
 import java.util.List;
-import java.util.logging.Logger;
 
 /**
  * The implementation of {@code PrimitiveWrapper<DeterministicAead>}.
@@ -35,11 +35,12 @@ import java.util.logging.Logger;
  * with the primary key. To decrypt, the primitive uses the prefix of the ciphertext to efficiently
  * select the right key in the set. If the keys associated with the prefix do not work, the
  * primitive tries all keys with {@link com.google.crypto.tink.proto.OutputPrefixType#RAW}.
+ *
+ * <p>Failed decryptions are not logged one by one, but counted in {@link
+ * FailureCounter#DETERMINISTIC_AEAD}.
  */
 public class DeterministicAeadWrapper
     implements PrimitiveWrapper<DeterministicAead, DeterministicAead> {
-  private static final Logger logger = Logger.getLogger(DeterministicAeadWrapper.class.getName());
-
   private static class WrappedDeterministicAead implements DeterministicAead {
     private PrimitiveSet<DeterministicAead> primitives;
 
@@ -62,32 +63,39 @@ public class DeterministicAeadWrapper
     public byte[] decryptDeterministically(final byte[] ciphertext, final byte[] associatedData)
         throws GeneralSecurityException {
       if (ciphertext.length > CryptoFormat.NON_RAW_PREFIX_SIZE) {
-        byte[] prefix = Arrays.copyOfRange(ciphertext, 0, CryptoFormat.NON_RAW_PREFIX_SIZE);
-        byte[] ciphertextNoPrefix =
-            Arrays.copyOfRange(ciphertext, CryptoFormat.NON_RAW_PREFIX_SIZE, ciphertext.length);
-        List<PrimitiveSet.Entry<DeterministicAead>> entries = primitives.getPrimitive(prefix);
-        for (PrimitiveSet.Entry<DeterministicAead> entry : entries) {
-          try {
-            return entry
-                .getPrimitive()
-                .decryptDeterministically(ciphertextNoPrefix, associatedData);
-          } catch (GeneralSecurityException e) {
-            logger.info("ciphertext prefix matches a key, but cannot decrypt: " + e.toString());
-            continue;
+        // Only copy the ciphertext once a key matches its prefix, so that ciphertexts with an
+        // unknown prefix are rejected without allocating.
+        List<PrimitiveSet.Entry<DeterministicAead>> entries =
+            primitives.getPrimitiveForPrefixOf(ciphertext);
+        if (!entries.isEmpty()) {
+          byte[] ciphertextNoPrefix =
+              Arrays.copyOfRange(ciphertext, CryptoFormat.NON_RAW_PREFIX_SIZE, ciphertext.length);
+          for (PrimitiveSet.Entry<DeterministicAead> entry : entries) {
+            try {
+              return entry
+                  .getPrimitive()
+                  .decryptDeterministically(ciphertextNoPrefix, associatedData);
+            } catch (GeneralSecurityException e) {
+              FailureCounter.DETERMINISTIC_AEAD.recordPrefixMatchFailure();
+              continue;
+            }
           }
         }
       }
 
       // Let's try all RAW keys.
-      List<PrimitiveSet.Entry<DeterministicAead>> entries = primitives.getRawPrimitives();
-      for (PrimitiveSet.Entry<DeterministicAead> entry : entries) {
-        try {
-          return entry.getPrimitive().decryptDeterministically(ciphertext, associatedData);
-        } catch (GeneralSecurityException e) {
-          continue;
+      if (primitives.hasRawPrimitives()) {
+        List<PrimitiveSet.Entry<DeterministicAead>> entries = primitives.getRawPrimitives();
+        for (PrimitiveSet.Entry<DeterministicAead> entry : entries) {
+          try {
+            return entry.getPrimitive().decryptDeterministically(ciphertext, associatedData);
+          } catch (GeneralSecurityException e) {
+            continue;
+          }
         }
       }
       // nothing works.
+      FailureCounter.DETERMINISTIC_AEAD.recordFailure();
       throw new GeneralSecurityException("decryption failed");
     }
   }
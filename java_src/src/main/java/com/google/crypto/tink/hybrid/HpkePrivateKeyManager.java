@@ -0,0 +1,186 @@
+// Copyright 2022 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink.hybrid;
+
+import com.google.crypto.tink.HybridDecrypt;
+import com.google.crypto.tink.KeyTemplate;
+import com.google.crypto.tink.KeyTypeManager;
+import com.google.crypto.tink.PrivateKeyTypeManager;
+import com.google.crypto.tink.Registry;
+import com.google.crypto.tink.hybrid.internal.HpkeDecrypt;
+import com.google.crypto.tink.proto.HpkeAead;
+import com.google.crypto.tink.proto.HpkeKdf;
+import com.google.crypto.tink.proto.HpkeKem;
+import com.google.crypto.tink.proto.HpkeKeyFormat;
+import com.google.crypto.tink.proto.HpkeParams;
+import com.google.crypto.tink.proto.HpkePrivateKey;
+import com.google.crypto.tink.proto.HpkePublicKey;
+import com.google.crypto.tink.proto.KeyData.KeyMaterialType;
+import com.google.crypto.tink.subtle.Validators;
+import com.google.crypto.tink.subtle.X25519;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.ExtensionRegistryLite;
+import com.google.protobuf.InvalidProtocolBufferException;
+import java.security.GeneralSecurityException;
+import java.security.InvalidKeyException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * This key manager generates new {@code HpkePrivateKey} keys and produces new instances of {@link
+ * HpkeDecrypt}.
+ *
+ * <p>Only DHKEM(X25519, HKDF-SHA256) with HKDF-SHA256 in the base mode of RFC 9180 is supported,
+ * together with AES-128-GCM, AES-256-GCM or ChaCha20Poly1305.
+ */
+public final class HpkePrivateKeyManager
+    extends PrivateKeyTypeManager<HpkePrivateKey, HpkePublicKey> {
+  HpkePrivateKeyManager() {
+    super(
+        HpkePrivateKey.class,
+        HpkePublicKey.class,
+        new KeyTypeManager.PrimitiveFactory<HybridDecrypt, HpkePrivateKey>(HybridDecrypt.class) {
+          @Override
+          public HybridDecrypt getPrimitive(HpkePrivateKey recipientPrivateKey)
+              throws GeneralSecurityException {
+            return HpkeDecrypt.createHpkeDecrypt(recipientPrivateKey);
+          }
+        });
+  }
+
+  @Override
+  public String getKeyType() {
+    return "type.googleapis.com/google.crypto.tink.HpkePrivateKey";
+  }
+
+  @Override
+  public int getVersion() {
+    return 0;
+  }
+
+  @Override
+  public HpkePublicKey getPublicKey(HpkePrivateKey key) throws GeneralSecurityException {
+    return key.getPublicKey();
+  }
+
+  @Override
+  public KeyMaterialType keyMaterialType() {
+    return KeyMaterialType.ASYMMETRIC_PRIVATE;
+  }
+
+  @Override
+  public HpkePrivateKey parseKey(ByteString byteString) throws InvalidProtocolBufferException {
+    return HpkePrivateKey.parseFrom(byteString, ExtensionRegistryLite.getEmptyRegistry());
+  }
+
+  @Override
+  public void validateKey(HpkePrivateKey key) throws GeneralSecurityException {
+    if (key.getPrivateKey().size() != HpkePublicKeyManager.X25519_KEY_SIZE_IN_BYTES) {
+      throw new GeneralSecurityException("invalid HPKE private key");
+    }
+    if (!key.hasPublicKey()) {
+      throw new GeneralSecurityException("missing HPKE public key");
+    }
+    Validators.validateVersion(key.getVersion(), getVersion());
+    new HpkePublicKeyManager().validateKey(key.getPublicKey());
+  }
+
+  @Override
+  public KeyFactory<HpkeKeyFormat, HpkePrivateKey> keyFactory() {
+    return new KeyFactory<HpkeKeyFormat, HpkePrivateKey>(HpkeKeyFormat.class) {
+      @Override
+      public void validateKeyFormat(HpkeKeyFormat keyFormat) throws GeneralSecurityException {
+        HpkePublicKeyManager.validateParams(keyFormat.getParams());
+      }
+
+      @Override
+      public HpkeKeyFormat parseKeyFormat(ByteString byteString)
+          throws InvalidProtocolBufferException {
+        return HpkeKeyFormat.parseFrom(byteString, ExtensionRegistryLite.getEmptyRegistry());
+      }
+
+      @Override
+      public HpkePrivateKey createKey(HpkeKeyFormat keyFormat) throws GeneralSecurityException {
+        byte[] privateKey = X25519.generatePrivateKey();
+        byte[] publicKey;
+        try {
+          publicKey = X25519.publicFromPrivate(privateKey);
+        } catch (InvalidKeyException e) {
+          throw new GeneralSecurityException(e);
+        }
+        HpkePublicKey hpkePublicKey =
+            HpkePublicKey.newBuilder()
+                .setVersion(getVersion())
+                .setParams(keyFormat.getParams())
+                .setPublicKey(ByteString.copyFrom(publicKey))
+                .build();
+        return HpkePrivateKey.newBuilder()
+            .setVersion(getVersion())
+            .setPublicKey(hpkePublicKey)
+            .setPrivateKey(ByteString.copyFrom(privateKey))
+            .build();
+      }
+
+      @Override
+      public Map<String, KeyFactory.KeyFormat<HpkeKeyFormat>> keyFormats()
+          throws GeneralSecurityException {
+        Map<String, KeyFactory.KeyFormat<HpkeKeyFormat>> result = new HashMap<>();
+        result.put(
+            "DHKEM_X25519_HKDF_SHA256_HKDF_SHA256_AES_128_GCM",
+            createKeyFormat(HpkeAead.AES_128_GCM, KeyTemplate.OutputPrefixType.TINK));
+        result.put(
+            "DHKEM_X25519_HKDF_SHA256_HKDF_SHA256_AES_128_GCM_RAW",
+            createKeyFormat(HpkeAead.AES_128_GCM, KeyTemplate.OutputPrefixType.RAW));
+        result.put(
+            "DHKEM_X25519_HKDF_SHA256_HKDF_SHA256_AES_256_GCM",
+            createKeyFormat(HpkeAead.AES_256_GCM, KeyTemplate.OutputPrefixType.TINK));
+        result.put(
+            "DHKEM_X25519_HKDF_SHA256_HKDF_SHA256_AES_256_GCM_RAW",
+            createKeyFormat(HpkeAead.AES_256_GCM, KeyTemplate.OutputPrefixType.RAW));
+        result.put(
+            "DHKEM_X25519_HKDF_SHA256_HKDF_SHA256_CHACHA20_POLY1305",
+            createKeyFormat(HpkeAead.CHACHA20_POLY1305, KeyTemplate.OutputPrefixType.TINK));
+        result.put(
+            "DHKEM_X25519_HKDF_SHA256_HKDF_SHA256_CHACHA20_POLY1305_RAW",
+            createKeyFormat(HpkeAead.CHACHA20_POLY1305, KeyTemplate.OutputPrefixType.RAW));
+        return Collections.unmodifiableMap(result);
+      }
+    };
+  }
+
+  /**
+   * Registers the {@link HpkePrivateKeyManager} and the {@link HpkePublicKeyManager} with the
+   * registry, so that HPKE keys can be used with Tink.
+   */
+  public static void registerPair(boolean newKeyAllowed) throws GeneralSecurityException {
+    Registry.registerAsymmetricKeyManagers(
+        new HpkePrivateKeyManager(), new HpkePublicKeyManager(), newKeyAllowed);
+  }
+
+  private static KeyFactory.KeyFormat<HpkeKeyFormat> createKeyFormat(
+      HpkeAead aead, KeyTemplate.OutputPrefixType prefixType) {
+    HpkeParams params =
+        HpkeParams.newBuilder()
+            .setKem(HpkeKem.DHKEM_X25519_HKDF_SHA256)
+            .setKdf(HpkeKdf.HKDF_SHA256)
+            .setAead(aead)
+            .build();
+    return new KeyFactory.KeyFormat<>(
+        HpkeKeyFormat.newBuilder().setParams(params).build(), prefixType);
+  }
+}
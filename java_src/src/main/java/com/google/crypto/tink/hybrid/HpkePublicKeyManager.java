@@ -0,0 +1,96 @@
+// Copyright 2022 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink.hybrid;
+
+import com.google.crypto.tink.HybridEncrypt;
+import com.google.crypto.tink.KeyTypeManager;
+import com.google.crypto.tink.hybrid.internal.HpkeEncrypt;
+import com.google.crypto.tink.proto.HpkeAead;
+import com.google.crypto.tink.proto.HpkeKdf;
+import com.google.crypto.tink.proto.HpkeKem;
+import com.google.crypto.tink.proto.HpkeParams;
+import com.google.crypto.tink.proto.HpkePublicKey;
+import com.google.crypto.tink.proto.KeyData.KeyMaterialType;
+import com.google.crypto.tink.subtle.Validators;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.ExtensionRegistryLite;
+import com.google.protobuf.InvalidProtocolBufferException;
+import java.security.GeneralSecurityException;
+
+/**
+ * This key manager produces new instances of {@link HpkeEncrypt}. It doesn't support key
+ * generation.
+ */
+class HpkePublicKeyManager extends KeyTypeManager<HpkePublicKey> {
+  static final int X25519_KEY_SIZE_IN_BYTES = 32;
+
+  public HpkePublicKeyManager() {
+    super(
+        HpkePublicKey.class,
+        new KeyTypeManager.PrimitiveFactory<HybridEncrypt, HpkePublicKey>(HybridEncrypt.class) {
+          @Override
+          public HybridEncrypt getPrimitive(HpkePublicKey recipientPublicKey)
+              throws GeneralSecurityException {
+            return HpkeEncrypt.createHpkeEncrypt(recipientPublicKey);
+          }
+        });
+  }
+
+  @Override
+  public String getKeyType() {
+    return "type.googleapis.com/google.crypto.tink.HpkePublicKey";
+  }
+
+  @Override
+  public int getVersion() {
+    return 0;
+  }
+
+  @Override
+  public KeyMaterialType keyMaterialType() {
+    return KeyMaterialType.ASYMMETRIC_PUBLIC;
+  }
+
+  @Override
+  public HpkePublicKey parseKey(ByteString byteString) throws InvalidProtocolBufferException {
+    return HpkePublicKey.parseFrom(byteString, ExtensionRegistryLite.getEmptyRegistry());
+  }
+
+  @Override
+  public void validateKey(HpkePublicKey key) throws GeneralSecurityException {
+    Validators.validateVersion(key.getVersion(), getVersion());
+    validateParams(key.getParams());
+    if (key.getPublicKey().size() != X25519_KEY_SIZE_IN_BYTES) {
+      throw new GeneralSecurityException("invalid HPKE public key");
+    }
+  }
+
+  /** Checks that {@code params} only uses the KEM, KDF and AEAD that Tink implements. */
+  static void validateParams(HpkeParams params) throws GeneralSecurityException {
+    if (params.getKem() != HpkeKem.DHKEM_X25519_HKDF_SHA256) {
+      throw new GeneralSecurityException("invalid HPKE KEM: " + params.getKem());
+    }
+    if (params.getKdf() != HpkeKdf.HKDF_SHA256) {
+      throw new GeneralSecurityException("invalid HPKE KDF: " + params.getKdf());
+    }
+    if (params.getAead() != HpkeAead.AES_128_GCM
+        && params.getAead() != HpkeAead.AES_256_GCM
+        && params.getAead() != HpkeAead.CHACHA20_POLY1305) {
+      throw new GeneralSecurityException("invalid HPKE AEAD: " + params.getAead());
+    }
+  }
+}
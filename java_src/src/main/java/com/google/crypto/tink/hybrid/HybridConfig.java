@@ -107,5 +107,6 @@ public final class HybridConfig {
     }
 
     EciesAeadHkdfPrivateKeyManager.registerPair(/*newKeyAllowed=*/true);
+    HpkePrivateKeyManager.registerPair(/*newKeyAllowed=*/true);
   }
 }
@@ -0,0 +1,99 @@
+// Copyright 2022 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink.hybrid;
+
+import com.google.crypto.tink.HybridDecrypt;
+import com.google.crypto.tink.subtle.AesGcmJce;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+
+/**
+ * Decrypts ciphertexts created by {@link MultiRecipientHybridEncrypt} for one of the recipients.
+ *
+ * <p>The wrapped DEM keys in the ciphertext header are tried in order with the recipient's {@link
+ * HybridDecrypt} primitive until one of them decrypts, and the DEM key found this way is used to
+ * decrypt the payload.
+ */
+public final class MultiRecipientHybridDecrypt implements HybridDecrypt {
+  private final HybridDecrypt recipient;
+
+  /** @param recipient the {@link HybridDecrypt} primitive of the recipient's keyset */
+  public MultiRecipientHybridDecrypt(HybridDecrypt recipient) {
+    this.recipient = recipient;
+  }
+
+  @Override
+  public byte[] decrypt(final byte[] ciphertext, final byte[] contextInfo)
+      throws GeneralSecurityException {
+    ByteBuffer buffer = ByteBuffer.wrap(ciphertext);
+    if (buffer.remaining() < MultiRecipientHybridEncrypt.HEADER_PREFIX_SIZE) {
+      throw new GeneralSecurityException("ciphertext too short");
+    }
+    if (buffer.get() != MultiRecipientHybridEncrypt.VERSION) {
+      throw new GeneralSecurityException("unknown ciphertext version");
+    }
+    int numberOfRecipients = buffer.getInt();
+    if (numberOfRecipients <= 0 || numberOfRecipients > buffer.remaining() / 4) {
+      throw new GeneralSecurityException("invalid number of recipients");
+    }
+    // Find the end of the header before decrypting anything, so that a malformed ciphertext is
+    // rejected without any public key operation.
+    int[] wrappedKeyOffsets = new int[numberOfRecipients];
+    int[] wrappedKeyLengths = new int[numberOfRecipients];
+    for (int i = 0; i < numberOfRecipients; i++) {
+      if (buffer.remaining() < 4) {
+        throw new GeneralSecurityException("ciphertext too short");
+      }
+      int length = buffer.getInt();
+      if (length < 0 || length > buffer.remaining()) {
+        throw new GeneralSecurityException("ciphertext too short");
+      }
+      wrappedKeyOffsets[i] = buffer.position();
+      wrappedKeyLengths[i] = length;
+      buffer.position(buffer.position() + length);
+    }
+    byte[] associatedData =
+        MultiRecipientHybridEncrypt.associatedData(
+            Arrays.copyOf(ciphertext, buffer.position()), contextInfo);
+    byte[] payload = Arrays.copyOfRange(ciphertext, buffer.position(), ciphertext.length);
+
+    for (int i = 0; i < numberOfRecipients; i++) {
+      byte[] wrappedKey =
+          Arrays.copyOfRange(
+              ciphertext, wrappedKeyOffsets[i], wrappedKeyOffsets[i] + wrappedKeyLengths[i]);
+      byte[] demKey;
+      try {
+        demKey = recipient.decrypt(wrappedKey, contextInfo);
+      } catch (GeneralSecurityException e) {
+        // Wrapped for another recipient.
+        continue;
+      }
+      try {
+        if (demKey.length != MultiRecipientHybridEncrypt.DEM_KEY_SIZE_IN_BYTES) {
+          continue;
+        }
+        return new AesGcmJce(demKey).decrypt(payload, associatedData);
+      } catch (GeneralSecurityException e) {
+        continue;
+      } finally {
+        Arrays.fill(demKey, (byte) 0);
+      }
+    }
+    throw new GeneralSecurityException("decryption failed");
+  }
+}
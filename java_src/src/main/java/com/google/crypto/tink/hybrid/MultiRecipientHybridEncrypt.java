@@ -0,0 +1,118 @@
+// Copyright 2022 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink.hybrid;
+
+import com.google.crypto.tink.HybridEncrypt;
+import com.google.crypto.tink.subtle.AesGcmJce;
+import com.google.crypto.tink.subtle.Bytes;
+import com.google.crypto.tink.subtle.Random;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Hybrid encryption of one plaintext to several recipients, where the plaintext is encrypted only
+ * once.
+ *
+ * <p>{@link #encrypt} picks a fresh random 256-bit DEM (data encapsulation mechanism) key,
+ * encrypts the plaintext once with AES-GCM under that key, and then encrypts the DEM key to every
+ * recipient with the recipient's {@link HybridEncrypt} primitive (usually ECIES-AEAD-HKDF, so the
+ * DEM key is wrapped with the ECIES KEM). Encrypting to N recipients thus costs one pass over the
+ * plaintext plus N KEM operations, instead of N passes over the plaintext.
+ *
+ * <p>The ciphertext has the following format:
+ *
+ * <pre>
+ *   version (1 byte, 0x01)
+ *   number of recipients (4 bytes, big endian)
+ *   for every recipient: length of the wrapped key (4 bytes, big endian) || wrapped key
+ *   AES-GCM ciphertext of the plaintext, with the header and {@code contextInfo} as associated data
+ * </pre>
+ *
+ * <p>Recipients decrypt with {@link MultiRecipientHybridDecrypt} and their normal {@link
+ * com.google.crypto.tink.HybridDecrypt} primitive. If the recipients' keys use the TINK output
+ * prefix, every wrapped key starts with the key id of its recipient, so a recipient skips the
+ * wrapped keys of the others without any public key operation.
+ *
+ * <p>All recipients can decrypt the plaintext with the same DEM key. A recipient can therefore
+ * create a new ciphertext that the other recipients of the same message accept; this mode must not
+ * be used where recipients need to know which of them created a ciphertext.
+ */
+public final class MultiRecipientHybridEncrypt implements HybridEncrypt {
+  static final byte VERSION = 1;
+  static final int DEM_KEY_SIZE_IN_BYTES = 32;
+  static final int HEADER_PREFIX_SIZE = 1 + 4;
+
+  private final List<HybridEncrypt> recipients;
+
+  /**
+   * @param recipients the {@link HybridEncrypt} primitives of the recipients, in the order in which
+   *     their wrapped keys are stored in the ciphertext
+   */
+  public MultiRecipientHybridEncrypt(List<HybridEncrypt> recipients)
+      throws GeneralSecurityException {
+    if (recipients.isEmpty()) {
+      throw new GeneralSecurityException("at least one recipient is required");
+    }
+    this.recipients = Collections.unmodifiableList(new ArrayList<HybridEncrypt>(recipients));
+  }
+
+  /**
+   * Encrypts {@code plaintext} to all recipients. {@code contextInfo} is passed to every
+   * recipient's {@link HybridEncrypt} and authenticated together with the plaintext and the wrapped
+   * keys of all recipients.
+   *
+   * @return resulting ciphertext.
+   */
+  @Override
+  public byte[] encrypt(final byte[] plaintext, final byte[] contextInfo)
+      throws GeneralSecurityException {
+    byte[] demKey = Random.randBytes(DEM_KEY_SIZE_IN_BYTES);
+    try {
+      List<byte[]> wrappedKeys = new ArrayList<>(recipients.size());
+      int headerSize = HEADER_PREFIX_SIZE;
+      for (HybridEncrypt recipient : recipients) {
+        byte[] wrappedKey = recipient.encrypt(demKey, contextInfo);
+        wrappedKeys.add(wrappedKey);
+        headerSize += 4 + wrappedKey.length;
+      }
+      ByteBuffer header = ByteBuffer.allocate(headerSize);
+      header.put(VERSION).putInt(wrappedKeys.size());
+      for (byte[] wrappedKey : wrappedKeys) {
+        header.putInt(wrappedKey.length).put(wrappedKey);
+      }
+      byte[] headerBytes = header.array();
+      byte[] payload =
+          new AesGcmJce(demKey).encrypt(plaintext, associatedData(headerBytes, contextInfo));
+      return Bytes.concat(headerBytes, payload);
+    } finally {
+      Arrays.fill(demKey, (byte) 0);
+    }
+  }
+
+  /**
+   * Returns the associated data of the payload: the whole header followed by {@code contextInfo}.
+   * The header encodes its own length, so the concatenation is unambiguous.
+   */
+  static byte[] associatedData(byte[] header, byte[] contextInfo)
+      throws GeneralSecurityException {
+    return contextInfo == null ? header : Bytes.concat(header, contextInfo);
+  }
+}
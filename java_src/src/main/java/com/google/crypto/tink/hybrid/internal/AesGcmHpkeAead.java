@@ -0,0 +1,97 @@
+// Copyright 2022 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink.hybrid.internal;
+
+import com.google.crypto.tink.subtle.EngineFactory;
+import com.google.errorprone.annotations.Immutable;
+import java.security.GeneralSecurityException;
+import java.security.InvalidAlgorithmParameterException;
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/** AES-GCM {@link HpkeAead}, with a key of 16 or 32 bytes. */
+@Immutable
+public final class AesGcmHpkeAead implements HpkeAead {
+  private static final int NONCE_LENGTH = 12;
+  private static final int TAG_LENGTH_IN_BITS = 128;
+
+  private final int keyLength;
+
+  /** @param keyLength the key length in bytes, either 16 or 32 */
+  public AesGcmHpkeAead(int keyLength) throws InvalidAlgorithmParameterException {
+    if (keyLength != 16 && keyLength != 32) {
+      throw new InvalidAlgorithmParameterException("Unsupported key length: " + keyLength);
+    }
+    this.keyLength = keyLength;
+  }
+
+  private Cipher init(int mode, byte[] key, byte[] nonce) throws GeneralSecurityException {
+    if (key.length != keyLength) {
+      throw new InvalidAlgorithmParameterException("Unexpected key length: " + key.length);
+    }
+    if (nonce.length != NONCE_LENGTH) {
+      throw new InvalidAlgorithmParameterException("Unexpected nonce length: " + nonce.length);
+    }
+    Cipher cipher = EngineFactory.CIPHER.getThreadLocalInstance("AES/GCM/NoPadding");
+    cipher.init(
+        mode, new SecretKeySpec(key, "AES"), new GCMParameterSpec(TAG_LENGTH_IN_BITS, nonce));
+    return cipher;
+  }
+
+  @Override
+  public byte[] seal(byte[] key, byte[] nonce, byte[] plaintext, byte[] associatedData)
+      throws GeneralSecurityException {
+    Cipher cipher = init(Cipher.ENCRYPT_MODE, key, nonce);
+    if (associatedData != null && associatedData.length != 0) {
+      cipher.updateAAD(associatedData);
+    }
+    return cipher.doFinal(plaintext);
+  }
+
+  @Override
+  public byte[] open(byte[] key, byte[] nonce, byte[] ciphertext, byte[] associatedData)
+      throws GeneralSecurityException {
+    Cipher cipher = init(Cipher.DECRYPT_MODE, key, nonce);
+    if (associatedData != null && associatedData.length != 0) {
+      cipher.updateAAD(associatedData);
+    }
+    return cipher.doFinal(ciphertext);
+  }
+
+  @Override
+  public byte[] getAeadId() throws GeneralSecurityException {
+    switch (keyLength) {
+      case 16:
+        return HpkeUtil.AES_128_GCM_AEAD_ID;
+      case 32:
+        return HpkeUtil.AES_256_GCM_AEAD_ID;
+      default:
+        throw new GeneralSecurityException("Could not determine HPKE AEAD ID");
+    }
+  }
+
+  @Override
+  public int getKeyLength() {
+    return keyLength;
+  }
+
+  @Override
+  public int getNonceLength() {
+    return NONCE_LENGTH;
+  }
+}
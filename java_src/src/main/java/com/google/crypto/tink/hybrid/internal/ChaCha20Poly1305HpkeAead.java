@@ -0,0 +1,60 @@
+// Copyright 2022 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink.hybrid.internal;
+
+import com.google.crypto.tink.subtle.InsecureNonceChaCha20Poly1305;
+import com.google.errorprone.annotations.Immutable;
+import java.security.GeneralSecurityException;
+
+/** ChaCha20-Poly1305 {@link HpkeAead}. */
+@Immutable
+public final class ChaCha20Poly1305HpkeAead implements HpkeAead {
+  private static final int KEY_LENGTH = 32;
+
+  @Override
+  public byte[] seal(byte[] key, byte[] nonce, byte[] plaintext, byte[] associatedData)
+      throws GeneralSecurityException {
+    if (key.length != KEY_LENGTH) {
+      throw new GeneralSecurityException("Unexpected key length: " + key.length);
+    }
+    return new InsecureNonceChaCha20Poly1305(key).encrypt(nonce, plaintext, associatedData);
+  }
+
+  @Override
+  public byte[] open(byte[] key, byte[] nonce, byte[] ciphertext, byte[] associatedData)
+      throws GeneralSecurityException {
+    if (key.length != KEY_LENGTH) {
+      throw new GeneralSecurityException("Unexpected key length: " + key.length);
+    }
+    return new InsecureNonceChaCha20Poly1305(key).decrypt(nonce, ciphertext, associatedData);
+  }
+
+  @Override
+  public byte[] getAeadId() throws GeneralSecurityException {
+    return HpkeUtil.CHACHA20_POLY1305_AEAD_ID;
+  }
+
+  @Override
+  public int getKeyLength() {
+    return KEY_LENGTH;
+  }
+
+  @Override
+  public int getNonceLength() {
+    return InsecureNonceChaCha20Poly1305.NONCE_SIZE_IN_BYTES;
+  }
+}
@@ -0,0 +1,47 @@
+// Copyright 2022 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink.hybrid.internal;
+
+import com.google.errorprone.annotations.Immutable;
+import java.security.GeneralSecurityException;
+
+/**
+ * Interface for the authenticated encryption with associated data (AEAD) of HPKE, see
+ * https://www.rfc-editor.org/rfc/rfc9180.html#section-4.
+ *
+ * <p>Unlike {@link com.google.crypto.tink.Aead}, the key and the nonce are chosen by the caller,
+ * and the nonce is not part of the ciphertext.
+ */
+@Immutable
+public interface HpkeAead {
+  /** Returns Seal(key, nonce, aad, pt) of RFC 9180. */
+  byte[] seal(byte[] key, byte[] nonce, byte[] plaintext, byte[] associatedData)
+      throws GeneralSecurityException;
+
+  /** Returns Open(key, nonce, aad, ct) of RFC 9180. */
+  byte[] open(byte[] key, byte[] nonce, byte[] ciphertext, byte[] associatedData)
+      throws GeneralSecurityException;
+
+  /** Returns the AEAD identifier of RFC 9180. */
+  byte[] getAeadId() throws GeneralSecurityException;
+
+  /** Returns the key length in bytes, i.e. Nk in RFC 9180. */
+  int getKeyLength();
+
+  /** Returns the nonce length in bytes, i.e. Nn in RFC 9180. */
+  int getNonceLength();
+}
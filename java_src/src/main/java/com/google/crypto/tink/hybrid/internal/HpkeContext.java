@@ -0,0 +1,128 @@
+// Copyright 2022 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink.hybrid.internal;
+
+import com.google.crypto.tink.subtle.Bytes;
+import java.math.BigInteger;
+import java.security.GeneralSecurityException;
+
+/**
+ * The context of an HPKE sender or recipient in base mode, i.e. the output of the key schedule of
+ * RFC 9180, section 5.1, together with the sequence number of the next message.
+ */
+public final class HpkeContext {
+  private static final byte[] EMPTY_IKM = new byte[0];
+
+  private final HpkeAead aead;
+  private final BigInteger maxSequenceNumber;
+  private final byte[] key;
+  private final byte[] baseNonce;
+  private final byte[] encapsulatedKey;
+  private BigInteger sequenceNumber;
+
+  private HpkeContext(byte[] encapsulatedKey, byte[] key, byte[] baseNonce, HpkeAead aead) {
+    this.encapsulatedKey = encapsulatedKey;
+    this.key = key;
+    this.baseNonce = baseNonce;
+    this.sequenceNumber = BigInteger.ZERO;
+    this.aead = aead;
+    this.maxSequenceNumber =
+        BigInteger.ONE.shiftLeft(8 * baseNonce.length).subtract(BigInteger.ONE);
+  }
+
+  /** Returns KeySchedule() of RFC 9180 in base mode. */
+  static HpkeContext createContext(
+      byte[] encapsulatedKey,
+      byte[] sharedSecret,
+      HpkeKem kem,
+      HpkeKdf kdf,
+      HpkeAead aead,
+      byte[] info)
+      throws GeneralSecurityException {
+    byte[] suiteId = HpkeUtil.hpkeSuiteId(kem.getKemId(), kdf.getKdfId(), aead.getAeadId());
+    byte[] pskIdHash = kdf.labeledExtract(HpkeUtil.EMPTY_SALT, EMPTY_IKM, "psk_id_hash", suiteId);
+    byte[] infoHash = kdf.labeledExtract(HpkeUtil.EMPTY_SALT, info, "info_hash", suiteId);
+    byte[] keyScheduleContext = Bytes.concat(HpkeUtil.BASE_MODE, pskIdHash, infoHash);
+    byte[] secret = kdf.labeledExtract(sharedSecret, EMPTY_IKM, "secret", suiteId);
+
+    byte[] key =
+        kdf.labeledExpand(secret, keyScheduleContext, "key", suiteId, aead.getKeyLength());
+    byte[] baseNonce =
+        kdf.labeledExpand(
+            secret, keyScheduleContext, "base_nonce", suiteId, aead.getNonceLength());
+    return new HpkeContext(encapsulatedKey, key, baseNonce, aead);
+  }
+
+  /** Returns SetupBaseS() of RFC 9180, section 5.1.1. */
+  public static HpkeContext createSenderContext(
+      byte[] recipientPublicKey, HpkeKem kem, HpkeKdf kdf, HpkeAead aead, byte[] info)
+      throws GeneralSecurityException {
+    HpkeKemEncapOutput encapOutput = kem.encapsulate(recipientPublicKey);
+    return createContext(
+        encapOutput.getEncapsulatedKey(), encapOutput.getSharedSecret(), kem, kdf, aead, info);
+  }
+
+  /** Returns SetupBaseR() of RFC 9180, section 5.1.1. */
+  public static HpkeContext createRecipientContext(
+      byte[] encapsulatedKey,
+      byte[] recipientPrivateKey,
+      byte[] recipientPublicKey,
+      HpkeKem kem,
+      HpkeKdf kdf,
+      HpkeAead aead,
+      byte[] info)
+      throws GeneralSecurityException {
+    byte[] sharedSecret = kem.decapsulate(encapsulatedKey, recipientPrivateKey, recipientPublicKey);
+    return createContext(encapsulatedKey, sharedSecret, kem, kdf, aead, info);
+  }
+
+  /** Returns the nonce of the next message, i.e. ComputeNonce() of RFC 9180, section 5.2. */
+  private byte[] computeNonce() throws GeneralSecurityException {
+    if (sequenceNumber.compareTo(maxSequenceNumber) >= 0) {
+      throw new GeneralSecurityException("message limit reached");
+    }
+    byte[] sequence = sequenceNumber.toByteArray();
+    byte[] nonce = baseNonce.clone();
+    // The sequence number is smaller than 2^(8 * Nn) - 1, so it has at most Nn + 1 bytes, the
+    // first of which is a sign byte.
+    for (int i = 1; i <= sequence.length && i <= nonce.length; i++) {
+      nonce[nonce.length - i] ^= sequence[sequence.length - i];
+    }
+    return nonce;
+  }
+
+  /** Returns the encapsulated key, i.e. the "enc" output of SetupBaseS(). */
+  public byte[] getEncapsulatedKey() {
+    return encapsulatedKey;
+  }
+
+  /** Returns ContextS.Seal() of RFC 9180, section 5.2. */
+  public synchronized byte[] seal(byte[] plaintext, byte[] associatedData)
+      throws GeneralSecurityException {
+    byte[] ciphertext = aead.seal(key, computeNonce(), plaintext, associatedData);
+    sequenceNumber = sequenceNumber.add(BigInteger.ONE);
+    return ciphertext;
+  }
+
+  /** Returns ContextR.Open() of RFC 9180, section 5.2. */
+  public synchronized byte[] open(byte[] ciphertext, byte[] associatedData)
+      throws GeneralSecurityException {
+    byte[] plaintext = aead.open(key, computeNonce(), ciphertext, associatedData);
+    sequenceNumber = sequenceNumber.add(BigInteger.ONE);
+    return plaintext;
+  }
+}
@@ -0,0 +1,93 @@
+// Copyright 2022 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink.hybrid.internal;
+
+import com.google.crypto.tink.HybridDecrypt;
+import com.google.crypto.tink.proto.HpkeParams;
+import com.google.crypto.tink.proto.HpkePrivateKey;
+import com.google.errorprone.annotations.Immutable;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+
+/**
+ * Hybrid Public Key Encryption (HPKE) decryption in base mode, see RFC 9180.
+ *
+ * <p>Decrypts ciphertexts created by {@link HpkeEncrypt}.
+ */
+@Immutable
+public final class HpkeDecrypt implements HybridDecrypt {
+  private static final byte[] EMPTY_ASSOCIATED_DATA = new byte[0];
+
+  @SuppressWarnings("Immutable") // We copy this on creation and never output it.
+  private final byte[] recipientPrivateKey;
+
+  @SuppressWarnings("Immutable") // We copy this on creation and never output it.
+  private final byte[] recipientPublicKey;
+
+  private final HpkeKem kem;
+  private final HpkeKdf kdf;
+  private final HpkeAead aead;
+
+  private HpkeDecrypt(
+      byte[] recipientPrivateKey,
+      byte[] recipientPublicKey,
+      HpkeKem kem,
+      HpkeKdf kdf,
+      HpkeAead aead) {
+    this.recipientPrivateKey = recipientPrivateKey;
+    this.recipientPublicKey = recipientPublicKey;
+    this.kem = kem;
+    this.kdf = kdf;
+    this.aead = aead;
+  }
+
+  /** Returns an {@link HpkeDecrypt} for {@code recipientPrivateKey}. */
+  public static HpkeDecrypt createHpkeDecrypt(HpkePrivateKey recipientPrivateKey)
+      throws GeneralSecurityException {
+    if (recipientPrivateKey.getPrivateKey().isEmpty()) {
+      throw new IllegalArgumentException("HpkePrivateKey.private_key is empty.");
+    }
+    if (!recipientPrivateKey.hasPublicKey()
+        || recipientPrivateKey.getPublicKey().getPublicKey().isEmpty()) {
+      throw new IllegalArgumentException("HpkePrivateKey.public_key is missing.");
+    }
+    HpkeParams params = recipientPrivateKey.getPublicKey().getParams();
+    return new HpkeDecrypt(
+        recipientPrivateKey.getPrivateKey().toByteArray(),
+        recipientPrivateKey.getPublicKey().getPublicKey().toByteArray(),
+        HpkePrimitiveFactory.createKem(params),
+        HpkePrimitiveFactory.createKdf(params),
+        HpkePrimitiveFactory.createAead(params));
+  }
+
+  @Override
+  public byte[] decrypt(final byte[] ciphertext, final byte[] contextInfo)
+      throws GeneralSecurityException {
+    int encapsulatedKeyLength = kem.getEncapsulatedKeyLength();
+    if (ciphertext.length < encapsulatedKeyLength) {
+      throw new GeneralSecurityException("Ciphertext is too short.");
+    }
+    byte[] info = contextInfo == null ? new byte[0] : contextInfo;
+    byte[] encapsulatedKey = Arrays.copyOf(ciphertext, encapsulatedKeyLength);
+    HpkeContext context =
+        HpkeContext.createRecipientContext(
+            encapsulatedKey, recipientPrivateKey, recipientPublicKey, kem, kdf, aead, info);
+    return context.open(
+        Arrays.copyOfRange(ciphertext, encapsulatedKeyLength, ciphertext.length),
+        EMPTY_ASSOCIATED_DATA);
+  }
+}
@@ -0,0 +1,73 @@
+// Copyright 2022 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink.hybrid.internal;
+
+import com.google.crypto.tink.HybridEncrypt;
+import com.google.crypto.tink.proto.HpkeParams;
+import com.google.crypto.tink.proto.HpkePublicKey;
+import com.google.crypto.tink.subtle.Bytes;
+import com.google.errorprone.annotations.Immutable;
+import java.security.GeneralSecurityException;
+
+/**
+ * Hybrid Public Key Encryption (HPKE) encryption in base mode, see RFC 9180.
+ *
+ * <p>{@code contextInfo} is used as the HPKE "info" parameter, and the associated data of the AEAD
+ * is empty. The ciphertext is the encapsulated key followed by the AEAD ciphertext.
+ */
+@Immutable
+public final class HpkeEncrypt implements HybridEncrypt {
+  private static final byte[] EMPTY_ASSOCIATED_DATA = new byte[0];
+
+  @SuppressWarnings("Immutable") // We copy this on creation and never output it.
+  private final byte[] recipientPublicKey;
+
+  private final HpkeKem kem;
+  private final HpkeKdf kdf;
+  private final HpkeAead aead;
+
+  private HpkeEncrypt(byte[] recipientPublicKey, HpkeKem kem, HpkeKdf kdf, HpkeAead aead) {
+    this.recipientPublicKey = recipientPublicKey;
+    this.kem = kem;
+    this.kdf = kdf;
+    this.aead = aead;
+  }
+
+  /** Returns an {@link HpkeEncrypt} for {@code recipientPublicKey}. */
+  public static HpkeEncrypt createHpkeEncrypt(HpkePublicKey recipientPublicKey)
+      throws GeneralSecurityException {
+    if (recipientPublicKey.getPublicKey().isEmpty()) {
+      throw new IllegalArgumentException("HpkePublicKey.public_key is empty.");
+    }
+    HpkeParams params = recipientPublicKey.getParams();
+    return new HpkeEncrypt(
+        recipientPublicKey.getPublicKey().toByteArray(),
+        HpkePrimitiveFactory.createKem(params),
+        HpkePrimitiveFactory.createKdf(params),
+        HpkePrimitiveFactory.createAead(params));
+  }
+
+  @Override
+  public byte[] encrypt(final byte[] plaintext, final byte[] contextInfo)
+      throws GeneralSecurityException {
+    byte[] info = contextInfo == null ? new byte[0] : contextInfo;
+    HpkeContext context =
+        HpkeContext.createSenderContext(recipientPublicKey, kem, kdf, aead, info);
+    byte[] ciphertext = context.seal(plaintext, EMPTY_ASSOCIATED_DATA);
+    return Bytes.concat(context.getEncapsulatedKey(), ciphertext);
+  }
+}
@@ -0,0 +1,55 @@
+// Copyright 2022 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink.hybrid.internal;
+
+import com.google.errorprone.annotations.Immutable;
+import java.security.GeneralSecurityException;
+
+/**
+ * Interface for the key derivation function (KDF) of HPKE, see
+ * https://www.rfc-editor.org/rfc/rfc9180.html#section-4.
+ */
+@Immutable
+public interface HpkeKdf {
+  /** Returns LabeledExtract(salt, label, ikm) of RFC 9180. */
+  byte[] labeledExtract(byte[] salt, byte[] ikm, String label, byte[] suiteId)
+      throws GeneralSecurityException;
+
+  /** Returns LabeledExpand(prk, label, info, length) of RFC 9180. */
+  byte[] labeledExpand(byte[] prk, byte[] info, String label, byte[] suiteId, int length)
+      throws GeneralSecurityException;
+
+  /**
+   * Returns LabeledExpand(LabeledExtract(salt, extractLabel, ikm), expandLabel, info, length), as
+   * used by the KEM and the key schedule of RFC 9180.
+   */
+  byte[] extractAndExpand(
+      byte[] salt,
+      byte[] ikm,
+      String extractLabel,
+      byte[] info,
+      String expandLabel,
+      byte[] suiteId,
+      int length)
+      throws GeneralSecurityException;
+
+  /** Returns the KDF identifier of RFC 9180. */
+  byte[] getKdfId() throws GeneralSecurityException;
+
+  /** Returns the output length of the underlying hash function in bytes, i.e. Nh in RFC 9180. */
+  int getMacLength() throws GeneralSecurityException;
+}
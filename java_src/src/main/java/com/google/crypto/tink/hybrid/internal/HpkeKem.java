@@ -0,0 +1,47 @@
+// Copyright 2022 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink.hybrid.internal;
+
+import com.google.errorprone.annotations.Immutable;
+import java.security.GeneralSecurityException;
+
+/**
+ * Interface for the key encapsulation mechanism (KEM) of HPKE, see
+ * https://www.rfc-editor.org/rfc/rfc9180.html#section-4.
+ */
+@Immutable
+public interface HpkeKem {
+  /**
+   * Generates a fresh shared secret and its encapsulation for {@code recipientPublicKey}, i.e.
+   * Encap() in RFC 9180.
+   */
+  HpkeKemEncapOutput encapsulate(byte[] recipientPublicKey) throws GeneralSecurityException;
+
+  /**
+   * Recovers the shared secret from {@code encapsulatedKey}, i.e. Decap() in RFC 9180. {@code
+   * recipientPublicKey} must be the public key of {@code recipientPrivateKey}.
+   */
+  byte[] decapsulate(
+      byte[] encapsulatedKey, byte[] recipientPrivateKey, byte[] recipientPublicKey)
+      throws GeneralSecurityException;
+
+  /** Returns the KEM identifier of RFC 9180. */
+  byte[] getKemId() throws GeneralSecurityException;
+
+  /** Returns the length of the encapsulated key in bytes, i.e. Nenc in RFC 9180. */
+  int getEncapsulatedKeyLength();
+}
@@ -0,0 +1,36 @@
+// Copyright 2022 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink.hybrid.internal;
+
+/** The output of {@link HpkeKem#encapsulate}: a shared secret and its encapsulation. */
+public final class HpkeKemEncapOutput {
+  private final byte[] sharedSecret;
+  private final byte[] encapsulatedKey;
+
+  public HpkeKemEncapOutput(byte[] sharedSecret, byte[] encapsulatedKey) {
+    this.sharedSecret = sharedSecret;
+    this.encapsulatedKey = encapsulatedKey;
+  }
+
+  public byte[] getSharedSecret() {
+    return sharedSecret;
+  }
+
+  public byte[] getEncapsulatedKey() {
+    return encapsulatedKey;
+  }
+}
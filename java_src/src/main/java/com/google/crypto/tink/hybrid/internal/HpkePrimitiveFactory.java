@@ -0,0 +1,59 @@
+// Copyright 2022 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink.hybrid.internal;
+
+import com.google.crypto.tink.proto.HpkeParams;
+import java.security.GeneralSecurityException;
+
+/** Creates the HPKE building blocks described by {@link HpkeParams}. */
+final class HpkePrimitiveFactory {
+  /** Returns the {@link HpkeKem} of {@code params}. */
+  static HpkeKem createKem(HpkeParams params) throws GeneralSecurityException {
+    switch (params.getKem()) {
+      case DHKEM_X25519_HKDF_SHA256:
+        return new X25519HpkeKem(new HkdfHpkeKdf("HmacSha256"));
+      default:
+        throw new GeneralSecurityException("Unrecognized HPKE KEM identifier");
+    }
+  }
+
+  /** Returns the {@link HpkeKdf} of {@code params}. */
+  static HpkeKdf createKdf(HpkeParams params) throws GeneralSecurityException {
+    switch (params.getKdf()) {
+      case HKDF_SHA256:
+        return new HkdfHpkeKdf("HmacSha256");
+      default:
+        throw new GeneralSecurityException("Unrecognized HPKE KDF identifier");
+    }
+  }
+
+  /** Returns the {@link HpkeAead} of {@code params}. */
+  static HpkeAead createAead(HpkeParams params) throws GeneralSecurityException {
+    switch (params.getAead()) {
+      case AES_128_GCM:
+        return new AesGcmHpkeAead(16);
+      case AES_256_GCM:
+        return new AesGcmHpkeAead(32);
+      case CHACHA20_POLY1305:
+        return new ChaCha20Poly1305HpkeAead();
+      default:
+        throw new GeneralSecurityException("Unrecognized HPKE AEAD identifier");
+    }
+  }
+
+  private HpkePrimitiveFactory() {}
+}
@@ -0,0 +1,85 @@
+// Copyright 2022 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink.hybrid.internal;
+
+import com.google.crypto.tink.subtle.Bytes;
+import java.nio.charset.Charset;
+import java.security.GeneralSecurityException;
+
+/** Constants and helper functions of HPKE (RFC 9180). */
+public final class HpkeUtil {
+  // Mode identifier, https://www.rfc-editor.org/rfc/rfc9180.html#section-5-4.
+  public static final byte[] BASE_MODE = intToByteArray(1, 0x00);
+
+  // KEM identifiers, https://www.rfc-editor.org/rfc/rfc9180.html#section-7.1.
+  public static final byte[] X25519_HKDF_SHA256_KEM_ID = intToByteArray(2, 0x0020);
+
+  // KDF identifiers, https://www.rfc-editor.org/rfc/rfc9180.html#section-7.2.
+  public static final byte[] HKDF_SHA256_KDF_ID = intToByteArray(2, 0x0001);
+
+  // AEAD identifiers, https://www.rfc-editor.org/rfc/rfc9180.html#section-7.3.
+  public static final byte[] AES_128_GCM_AEAD_ID = intToByteArray(2, 0x0001);
+  public static final byte[] AES_256_GCM_AEAD_ID = intToByteArray(2, 0x0002);
+  public static final byte[] CHACHA20_POLY1305_AEAD_ID = intToByteArray(2, 0x0003);
+
+  public static final byte[] EMPTY_SALT = new byte[0];
+
+  private static final byte[] KEM = toBytes("KEM");
+  private static final byte[] HPKE = toBytes("HPKE");
+  private static final byte[] HPKE_V1 = toBytes("HPKE-v1");
+
+  /**
+   * Returns the big-endian encoding of {@code value} in {@code capacity} bytes, i.e. I2OSP(value,
+   * capacity).
+   */
+  public static byte[] intToByteArray(int capacity, int value) {
+    final byte[] result = new byte[capacity];
+    for (int i = 0; i < capacity; i++) {
+      result[i] = (byte) ((value >> (8 * (capacity - i - 1))) & 0xFF);
+    }
+    return result;
+  }
+
+  /** Returns the suite id of a KEM, used in its labeled HKDF calls. */
+  static byte[] kemSuiteId(byte[] kemId) throws GeneralSecurityException {
+    return Bytes.concat(KEM, kemId);
+  }
+
+  /** Returns the suite id of an HPKE suite, used in the labeled HKDF calls of the key schedule. */
+  static byte[] hpkeSuiteId(byte[] kemId, byte[] kdfId, byte[] aeadId)
+      throws GeneralSecurityException {
+    return Bytes.concat(HPKE, kemId, kdfId, aeadId);
+  }
+
+  /** Returns the input key material of LabeledExtract(). */
+  static byte[] labelIkm(String label, byte[] ikm, byte[] suiteId)
+      throws GeneralSecurityException {
+    return Bytes.concat(HPKE_V1, suiteId, toBytes(label), ikm);
+  }
+
+  /** Returns the info of LabeledExpand(). */
+  static byte[] labelInfo(String label, byte[] info, byte[] suiteId, int length)
+      throws GeneralSecurityException {
+    return Bytes.concat(intToByteArray(2, length), HPKE_V1, suiteId, toBytes(label), info);
+  }
+
+  private static byte[] toBytes(String s) {
+    return s.getBytes(Charset.forName("US-ASCII"));
+  }
+
+  private HpkeUtil() {}
+}
@@ -0,0 +1,97 @@
+// Copyright 2022 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink.hybrid.internal;
+
+import com.google.crypto.tink.subtle.Bytes;
+import com.google.crypto.tink.subtle.X25519;
+import com.google.errorprone.annotations.Immutable;
+import java.security.GeneralSecurityException;
+
+/** DHKEM(X25519, HKDF-SHA256) {@link HpkeKem}, see RFC 9180, section 4.1. */
+@Immutable
+public final class X25519HpkeKem implements HpkeKem {
+  private static final int SHARED_SECRET_LENGTH = 32;
+
+  private final HkdfHpkeKdf hkdf;
+
+  /** Construct X25519-based {@link HpkeKem} using {@code hkdf} to derive the shared secret. */
+  public X25519HpkeKem(HkdfHpkeKdf hkdf) {
+    this.hkdf = hkdf;
+  }
+
+  private byte[] deriveKemSharedSecret(
+      byte[] dhSharedSecret, byte[] senderPublicKey, byte[] recipientPublicKey)
+      throws GeneralSecurityException {
+    byte[] kemContext = Bytes.concat(senderPublicKey, recipientPublicKey);
+    return hkdf.extractAndExpand(
+        HpkeUtil.EMPTY_SALT,
+        dhSharedSecret,
+        "eae_prk",
+        kemContext,
+        "shared_secret",
+        HpkeUtil.kemSuiteId(HpkeUtil.X25519_HKDF_SHA256_KEM_ID),
+        SHARED_SECRET_LENGTH);
+  }
+
+  private static byte[] computeDhSharedSecret(byte[] privateKey, byte[] publicKey)
+      throws GeneralSecurityException {
+    byte[] dhSharedSecret = X25519.computeSharedSecret(privateKey, publicKey);
+    // RFC 9180, section 7.1.4: the all-zero value must be rejected.
+    byte allBits = 0;
+    for (byte b : dhSharedSecret) {
+      allBits |= b;
+    }
+    if (allBits == 0) {
+      throw new GeneralSecurityException("invalid X25519 public key");
+    }
+    return dhSharedSecret;
+  }
+
+  /** Helper function factored out to facilitate unit testing with a fixed ephemeral key. */
+  HpkeKemEncapOutput encapsulate(byte[] recipientPublicKey, byte[] senderPrivateKey)
+      throws GeneralSecurityException {
+    byte[] dhSharedSecret = computeDhSharedSecret(senderPrivateKey, recipientPublicKey);
+    byte[] senderPublicKey = X25519.publicFromPrivate(senderPrivateKey);
+    byte[] kemSharedSecret =
+        deriveKemSharedSecret(dhSharedSecret, senderPublicKey, recipientPublicKey);
+    return new HpkeKemEncapOutput(kemSharedSecret, senderPublicKey);
+  }
+
+  @Override
+  public HpkeKemEncapOutput encapsulate(byte[] recipientPublicKey)
+      throws GeneralSecurityException {
+    return encapsulate(recipientPublicKey, X25519.generatePrivateKey());
+  }
+
+  @Override
+  public byte[] decapsulate(
+      byte[] encapsulatedKey, byte[] recipientPrivateKey, byte[] recipientPublicKey)
+      throws GeneralSecurityException {
+    byte[] dhSharedSecret = computeDhSharedSecret(recipientPrivateKey, encapsulatedKey);
+    return deriveKemSharedSecret(dhSharedSecret, encapsulatedKey, recipientPublicKey);
+  }
+
+  @Override
+  public byte[] getKemId() throws GeneralSecurityException {
+    return HpkeUtil.X25519_HKDF_SHA256_KEM_ID;
+  }
+
+  @Override
+  public int getEncapsulatedKeyLength() {
+    return 32;
+  }
+}
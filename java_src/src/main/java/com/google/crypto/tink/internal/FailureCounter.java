@@ -0,0 +1,82 @@
+// Copyright 2022 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink.internal;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * Aggregated counts of failed decryptions or verifications in a primitive wrapper, for Tink
+ * internal use only.
+ *
+ * <p>Wrappers record failures here instead of logging each of them, so that a burst of invalid
+ * ciphertexts does not cost more than rejecting them. A summary is logged when a count reaches a
+ * power of two, i.e. at most 64 times over the lifetime of the process.
+ *
+ * <p>This applies to every keyset {@code Aead}, {@code DeterministicAead} and {@code Mac}: the
+ * INFO message that the wrappers used to log for each key whose prefix matched but that could not
+ * decrypt or verify the input is no longer logged. Which inputs are accepted and which exceptions
+ * are thrown is unchanged.
+ */
+public final class FailureCounter {
+  private static final Logger logger = Logger.getLogger(FailureCounter.class.getName());
+
+  /** Failures of the keyset Aead primitive. */
+  public static final FailureCounter AEAD = new FailureCounter("Aead");
+  /** Failures of the keyset DeterministicAead primitive. */
+  public static final FailureCounter DETERMINISTIC_AEAD = new FailureCounter("DeterministicAead");
+  /** Failures of the keyset Mac primitive. */
+  public static final FailureCounter MAC = new FailureCounter("Mac");
+
+  private final String primitiveName;
+  private final AtomicLong failures = new AtomicLong();
+  private final AtomicLong prefixMatchFailures = new AtomicLong();
+
+  private FailureCounter(String primitiveName) {
+    this.primitiveName = primitiveName;
+  }
+
+  /** Records that no key in the keyset could decrypt or verify an input. */
+  public void recordFailure() {
+    long count = failures.incrementAndGet();
+    if (Long.bitCount(count) == 1) {
+      logger.info(String.format("%s: %d inputs rejected so far", primitiveName, count));
+    }
+  }
+
+  /** Records that a key matched the prefix of an input, but could not decrypt or verify it. */
+  public void recordPrefixMatchFailure() {
+    long count = prefixMatchFailures.incrementAndGet();
+    if (Long.bitCount(count) == 1) {
+      logger.info(
+          String.format(
+              "%s: %d inputs matched the prefix of a key, but could not be decrypted or verified"
+                  + " with it so far",
+              primitiveName, count));
+    }
+  }
+
+  /** Returns how many inputs no key in the keyset could decrypt or verify. */
+  public long getFailures() {
+    return failures.get();
+  }
+
+  /** Returns how often a key matched the prefix of an input, but could not process it. */
+  public long getPrefixMatchFailures() {
+    return prefixMatchFailures.get();
+  }
+}
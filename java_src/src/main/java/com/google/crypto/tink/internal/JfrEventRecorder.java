@@ -0,0 +1,243 @@
+// Copyright 2022 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+
+package com.google.crypto.tink.internal;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.FlightRecorderListener;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import jdk.jfr.StackTrace;
+
+/**
+ * Emits {@link TinkEvents} as JDK Flight Recorder events.
+ *
+ * <p>This class references jdk.jfr and is only loaded by {@link TinkEvents} after it checked that
+ * JFR is available.
+ */
+final class JfrEventRecorder implements TinkEvents.Recorder {
+  /** Whether any recording is running. Events are not even created otherwise. */
+  private volatile boolean recording = false;
+
+  JfrEventRecorder() {
+    // Called right away if Flight Recorder is already initialized.
+    FlightRecorder.addListener(
+        new FlightRecorderListener() {
+          @Override
+          public void recorderInitialized(FlightRecorder recorder) {
+            update(recorder);
+          }
+
+          @Override
+          public void recordingStateChanged(Recording changed) {
+            update(FlightRecorder.getFlightRecorder());
+          }
+        });
+  }
+
+  private void update(FlightRecorder flightRecorder) {
+    boolean running = false;
+    for (Recording r : flightRecorder.getRecordings()) {
+      if (r.getState() == RecordingState.RUNNING) {
+        running = true;
+      }
+    }
+    recording = running;
+  }
+
+  @Override
+  public Object begin(TinkEvents.Type type) {
+    if (!recording) {
+      return null;
+    }
+    TinkEvent event = newEvent(type);
+    if (!event.isEnabled()) {
+      return null;
+    }
+    event.begin();
+    return event;
+  }
+
+  @Override
+  public void commit(
+      Object event,
+      String operation,
+      String keyTypeUrl,
+      long keyId,
+      long payloadSize,
+      boolean succeeded) {
+    TinkEvent tinkEvent = (TinkEvent) event;
+    tinkEvent.end();
+    if (tinkEvent.shouldCommit()) {
+      tinkEvent.operation = operation;
+      tinkEvent.succeeded = succeeded;
+      tinkEvent.setAttributes(keyTypeUrl, keyId, payloadSize);
+      tinkEvent.commit();
+    }
+  }
+
+  private static TinkEvent newEvent(TinkEvents.Type type) {
+    switch (type) {
+      case KEYSET_READ:
+        return new KeysetReadEvent();
+      case PRIMITIVE_CREATION:
+        return new PrimitiveCreationEvent();
+      case PRIMITIVE_WRAP:
+        return new PrimitiveWrapEvent();
+      case KMS_ENVELOPE_AEAD:
+        return new KmsEnvelopeAeadEvent();
+      case KMS_CLIENT_LOOKUP:
+        return new KmsClientLookupEvent();
+      case STREAMING_SEGMENT:
+        return new StreamingSegmentEvent();
+    }
+    throw new IllegalArgumentException("unknown event type: " + type);
+  }
+
+  /** The fields all events have. Each event type declares the attributes that apply to it. */
+  @Category("Tink")
+  @StackTrace(false)
+  abstract static class TinkEvent extends Event {
+    @Label("Operation")
+    String operation;
+
+    @Label("Succeeded")
+    @Description("False if the operation threw an exception")
+    boolean succeeded;
+
+    abstract void setAttributes(String keyTypeUrl, long keyId, long payloadSize);
+  }
+
+  @Name("com.google.crypto.tink.KeysetRead")
+  @Label("Keyset Read")
+  @Description("A keyset is read by KeysetHandle")
+  static final class KeysetReadEvent extends TinkEvent {
+    @Label("Primary Key Type URL")
+    String keyTypeUrl;
+
+    @Label("Primary Key ID")
+    long keyId;
+
+    @Label("Keyset Size")
+    @DataAmount
+    long payloadSize;
+
+    @Override
+    void setAttributes(String keyTypeUrl, long keyId, long payloadSize) {
+      this.keyTypeUrl = keyTypeUrl;
+      this.keyId = keyId;
+      this.payloadSize = payloadSize;
+    }
+  }
+
+  @Name("com.google.crypto.tink.PrimitiveCreation")
+  @Label("Primitive Creation")
+  @Description("The Registry creates a primitive for a key")
+  static final class PrimitiveCreationEvent extends TinkEvent {
+    @Label("Key Type URL")
+    String keyTypeUrl;
+
+    @Label("Key ID")
+    long keyId;
+
+    @Label("Key Size")
+    @DataAmount
+    long payloadSize;
+
+    @Override
+    void setAttributes(String keyTypeUrl, long keyId, long payloadSize) {
+      this.keyTypeUrl = keyTypeUrl;
+      this.keyId = keyId;
+      this.payloadSize = payloadSize;
+    }
+  }
+
+  @Name("com.google.crypto.tink.PrimitiveWrap")
+  @Label("Primitive Wrap")
+  @Description("A set of primitives is wrapped into a keyset primitive")
+  static final class PrimitiveWrapEvent extends TinkEvent {
+    @Label("Primary Key ID")
+    long keyId;
+
+    @Label("Primitives")
+    long primitiveCount;
+
+    @Override
+    void setAttributes(String keyTypeUrl, long keyId, long payloadSize) {
+      this.keyId = keyId;
+      this.primitiveCount = payloadSize;
+    }
+  }
+
+  @Name("com.google.crypto.tink.KmsEnvelopeAead")
+  @Label("KMS Envelope AEAD")
+  @Description("KmsEnvelopeAead encrypts or decrypts, including the KMS call")
+  static final class KmsEnvelopeAeadEvent extends TinkEvent {
+    @Label("DEK Type URL")
+    String keyTypeUrl;
+
+    @Label("Payload Size")
+    @DataAmount
+    long payloadSize;
+
+    @Override
+    void setAttributes(String keyTypeUrl, long keyId, long payloadSize) {
+      this.keyTypeUrl = keyTypeUrl;
+      this.payloadSize = payloadSize;
+    }
+  }
+
+  @Name("com.google.crypto.tink.KmsClientLookup")
+  @Label("KMS Client Lookup")
+  @Description("A KmsClient is looked up for a key URI")
+  static final class KmsClientLookupEvent extends TinkEvent {
+    @Label("Key URI Scheme")
+    String uriScheme;
+
+    @Override
+    void setAttributes(String keyTypeUrl, long keyId, long payloadSize) {
+      this.uriScheme = keyTypeUrl;
+    }
+  }
+
+  /** Disabled by default, as there is one event per segment, i.e. usually per 4 KiB to 1 MiB. */
+  @Name("com.google.crypto.tink.StreamingSegment")
+  @Label("Streaming Segment")
+  @Description("A segment of a streaming AEAD ciphertext is encrypted or decrypted")
+  @Enabled(false)
+  static final class StreamingSegmentEvent extends TinkEvent {
+    @Label("Key Type URL")
+    String keyTypeUrl;
+
+    @Label("Segment Size")
+    @DataAmount
+    long payloadSize;
+
+    @Override
+    void setAttributes(String keyTypeUrl, long keyId, long payloadSize) {
+      this.keyTypeUrl = keyTypeUrl;
+      this.payloadSize = payloadSize;
+    }
+  }
+}
@@ -0,0 +1,150 @@
+// Copyright 2022 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+
+package com.google.crypto.tink.internal;
+
+/**
+ * Diagnostic events of Tink, for Tink internal use only.
+ *
+ * <p>On runtimes with JDK Flight Recorder (JFR), the events are emitted as JFR events in the
+ * category "Tink", so that slow keyset loading, primitive creation, KMS calls or streaming
+ * encryption show up next to GC and I/O in a recording. Elsewhere, e.g. on Android, the JFR
+ * implementation is never loaded and all methods do nothing.
+ *
+ * <p>Usage:
+ *
+ * <pre>{@code
+ * Object event = TinkEvents.begin(TinkEvents.Type.KEYSET_READ);
+ * boolean succeeded = false;
+ * try {
+ *   ... // the measured operation
+ *   succeeded = true;
+ * } finally {
+ *   TinkEvents.commit(event, "read", keyTypeUrl, keyId, payloadSize, succeeded);
+ * }
+ * }</pre>
+ *
+ * <p>Events are committed in a {@code finally} block, so that failed operations, e.g. a KMS call
+ * that times out, are recorded too.
+ *
+ * <p>{@link #begin} returns null unless a JFR recording is running and has the event enabled, so
+ * the cost without recording is one volatile read; callers only compute the attributes of an event
+ * if it is not null.
+ */
+public final class TinkEvents {
+  /** The events emitted by Tink. */
+  public enum Type {
+    /**
+     * A keyset is read by {@code KeysetHandle}. Attributes: the key type URL and id of the primary
+     * key, and the size of the serialized (possibly encrypted) keyset.
+     */
+    KEYSET_READ,
+    /**
+     * A primitive is created for a single key by the {@code Registry}. Attributes: the key type
+     * URL, the key id (0 if the key is not part of a keyset), and the size of the serialized key.
+     */
+    PRIMITIVE_CREATION,
+    /**
+     * A set of primitives is wrapped into a keyset primitive. Attributes: the primitive interface,
+     * as operation, the id of the primary key, and the number of primitives in the set, passed as
+     * payload size.
+     */
+    PRIMITIVE_WRAP,
+    /**
+     * {@code KmsEnvelopeAead} encrypts or decrypts, including the call to the KMS. Attributes: the
+     * key type URL of the data encryption key, and the size of the plaintext or ciphertext. The
+     * primitive doesn't know the id of its key, so there is none.
+     */
+    KMS_ENVELOPE_AEAD,
+    /**
+     * A {@code KmsClient} is looked up. Attributes: the URI scheme of the key, e.g. gcp-kms://,
+     * passed as key type URL.
+     */
+    KMS_CLIENT_LOOKUP,
+    /**
+     * A segment of a streaming AEAD ciphertext is encrypted or decrypted. Attributes: the key type
+     * URL, and the size of the segment.
+     */
+    STREAMING_SEGMENT
+  }
+
+  /** Records events. Implemented by {@code JfrEventRecorder}. */
+  interface Recorder {
+    Object begin(Type type);
+
+    void commit(
+        Object event,
+        String operation,
+        String keyTypeUrl,
+        long keyId,
+        long payloadSize,
+        boolean succeeded);
+  }
+
+  private static final String JFR_RECORDER = "com.google.crypto.tink.internal.JfrEventRecorder";
+
+  private static final Recorder recorder = loadRecorder();
+
+  /**
+   * Starts timing an event of {@code type}. Returns null if the event is not recorded; otherwise,
+   * the returned object must be passed to {@link #commit}.
+   */
+  public static Object begin(Type type) {
+    if (recorder == null) {
+      return null;
+    }
+    return recorder.begin(type);
+  }
+
+  /**
+   * Ends the event returned by {@link #begin} and records it with the given attributes, and whether
+   * the operation succeeded or threw. Attributes that the {@link Type} of the event doesn't list
+   * are ignored. Does nothing if {@code event} is null.
+   */
+  public static void commit(
+      Object event,
+      String operation,
+      String keyTypeUrl,
+      long keyId,
+      long payloadSize,
+      boolean succeeded) {
+    if (event == null) {
+      return;
+    }
+    recorder.commit(event, operation, keyTypeUrl, keyId, payloadSize, succeeded);
+  }
+
+  /** Returns the scheme of {@code uri}, e.g. "gcp-kms://", without the rest of the URI. */
+  public static String uriScheme(String uri) {
+    int end = uri.indexOf("://");
+    return end < 0 ? "" : uri.substring(0, end + 3);
+  }
+
+  private static Recorder loadRecorder() {
+    try {
+      // Only load the JFR implementation if JFR exists, so that its references to jdk.jfr are
+      // never resolved elsewhere.
+      Class.forName("jdk.jfr.FlightRecorder");
+      return (Recorder) Class.forName(JFR_RECORDER).getDeclaredConstructor().newInstance();
+    } catch (ReflectiveOperationException | LinkageError | RuntimeException e) {
+      // No JFR, JFR is disabled, or the JFR implementation is not on the classpath.
+      return null;
+    }
+  }
+
+  private TinkEvents() {}
+}
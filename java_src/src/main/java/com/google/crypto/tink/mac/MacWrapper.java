@@ -21,12 +21,12 @@ import com.google.crypto.tink.Mac;
 import com.google.crypto.tink.PrimitiveSet;
 import com.google.crypto.tink.PrimitiveWrapper;
 import com.google.crypto.tink.Registry;
+import com.google.crypto.tink.internal.FailureCounter;
 import com.google.crypto.tink.proto.OutputPrefixType;
 import com.google.crypto.tink.subtle.Bytes;
 import java.security.GeneralSecurityException;
 import java.util.Arrays;
 import java.util.List;
-import java.util.logging.Logger;
 
 /**
  * MacWrapper is the implementation of PrimitiveWrapper for the Mac primitive.
@@ -36,10 +36,10 @@ import java.util.logging.Logger;
  * the primary key. To verify a tag, the primitive uses the prefix of the tag to efficiently select
  * the right key in the set. If the keys associated with the prefix do not validate the tag, the
  * primitive tries all keys with {@link com.google.crypto.tink.proto.OutputPrefixType#RAW}.
+ *
+ * <p>Failed verifications are not logged one by one, but counted in {@link FailureCounter#MAC}.
  */
-class MacWrapper implements PrimitiveWrapper<Mac, Mac> {
-  private static final Logger logger = Logger.getLogger(MacWrapper.class.getName());
-
+public class MacWrapper implements PrimitiveWrapper<Mac, Mac> {
   private static class WrappedMac implements Mac {
     private final PrimitiveSet<Mac> primitives;
     private final byte[] formatVersion = new byte[] {0};
@@ -67,36 +67,42 @@ class MacWrapper implements PrimitiveWrapper<Mac, Mac> {
         // clearly insecure, thus should be discouraged.
         throw new GeneralSecurityException("tag too short");
       }
-      byte[] prefix = Arrays.copyOf(mac, CryptoFormat.NON_RAW_PREFIX_SIZE);
-      byte[] macNoPrefix = Arrays.copyOfRange(mac, CryptoFormat.NON_RAW_PREFIX_SIZE, mac.length);
-      List<PrimitiveSet.Entry<Mac>> entries = primitives.getPrimitive(prefix);
-      for (PrimitiveSet.Entry<Mac> entry : entries) {
-        try {
-          if (entry.getOutputPrefixType().equals(OutputPrefixType.LEGACY)) {
-            entry.getPrimitive().verifyMac(macNoPrefix, Bytes.concat(data, formatVersion));
-          } else {
-            entry.getPrimitive().verifyMac(macNoPrefix, data);
+      // Only copy the tag once a key matches its prefix, so that tags with an unknown prefix are
+      // rejected without allocating.
+      List<PrimitiveSet.Entry<Mac>> entries = primitives.getPrimitiveForPrefixOf(mac);
+      if (!entries.isEmpty()) {
+        byte[] macNoPrefix = Arrays.copyOfRange(mac, CryptoFormat.NON_RAW_PREFIX_SIZE, mac.length);
+        for (PrimitiveSet.Entry<Mac> entry : entries) {
+          try {
+            if (entry.getOutputPrefixType().equals(OutputPrefixType.LEGACY)) {
+              entry.getPrimitive().verifyMac(macNoPrefix, Bytes.concat(data, formatVersion));
+            } else {
+              entry.getPrimitive().verifyMac(macNoPrefix, data);
+            }
+            // If there is no exception, the MAC is valid and we can return.
+            return;
+          } catch (GeneralSecurityException e) {
+            FailureCounter.MAC.recordPrefixMatchFailure();
+            // Ignored as we want to continue verification with the remaining keys.
           }
-          // If there is no exception, the MAC is valid and we can return.
-          return;
-        } catch (GeneralSecurityException e) {
-          logger.info("tag prefix matches a key, but cannot verify: " + e);
-          // Ignored as we want to continue verification with the remaining keys.
         }
       }
 
       // None "non-raw" key matched, so let's try the raw keys (if any exist).
-      entries = primitives.getRawPrimitives();
-      for (PrimitiveSet.Entry<Mac> entry : entries) {
-        try {
-          entry.getPrimitive().verifyMac(mac, data);
-          // If there is no exception, the MAC is valid and we can return.
-          return;
-        } catch (GeneralSecurityException ignored) {
-          // Ignored as we want to continue verification with other raw keys.
+      if (primitives.hasRawPrimitives()) {
+        entries = primitives.getRawPrimitives();
+        for (PrimitiveSet.Entry<Mac> entry : entries) {
+          try {
+            entry.getPrimitive().verifyMac(mac, data);
+            // If there is no exception, the MAC is valid and we can return.
+            return;
+          } catch (GeneralSecurityException ignored) {
+            // Ignored as we want to continue verification with other raw keys.
+          }
         }
       }
       // nothing works.
+      FailureCounter.MAC.recordFailure();
       throw new GeneralSecurityException("invalid MAC");
     }
   }
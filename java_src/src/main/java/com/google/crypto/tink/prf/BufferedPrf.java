@@ -0,0 +1,70 @@
+// Copyright 2022 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+
+package com.google.crypto.tink.prf;
+
+import com.google.errorprone.annotations.Immutable;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+
+/**
+ * A {@link Prf} that writes its output into a buffer provided by the caller.
+ *
+ * <p>This is meant for callers that compute very many short PRF outputs, for example to assign
+ * records to shards or buckets, and for which the allocation of the output of {@link
+ * Prf#compute} dominates. {@link PrfSet#computePrimaryLong} and the other primitive-returning
+ * methods of {@link PrfSet} use it when the primary PRF implements it.
+ */
+@Immutable
+public interface BufferedPrf extends Prf {
+  /**
+   * Returns the first 8 bytes of the PRF of {@code input}, interpreted as a big-endian long.
+   *
+   * <p>This is the same as converting {@code compute(input, 8)} to a long.
+   */
+  long computeLong(byte[] input) throws GeneralSecurityException;
+
+  /**
+   * Computes the PRF on {@code input} and writes the first {@code outputLength} bytes of the result
+   * to {@code output}, starting at {@code offset}.
+   *
+   * @throws GeneralSecurityException if the PRF cannot compute {@code outputLength} bytes
+   * @throws IndexOutOfBoundsException if the range does not fit into {@code output}
+   */
+  void compute(byte[] input, byte[] output, int offset, int outputLength)
+      throws GeneralSecurityException;
+
+  /**
+   * Computes the PRF on the remaining bytes of {@code input} and writes the first {@code
+   * outputLength} bytes of the result to {@code output}, starting at {@code offset}. The position
+   * of {@code input} is advanced to its limit.
+   *
+   * @throws GeneralSecurityException if the PRF cannot compute {@code outputLength} bytes
+   * @throws IndexOutOfBoundsException if the range does not fit into {@code output}
+   */
+  void compute(ByteBuffer input, byte[] output, int offset, int outputLength)
+      throws GeneralSecurityException;
+
+  /**
+   * Sets {@code output[i]} to the first 8 bytes of the PRF of {@code inputs[i]}, interpreted as a
+   * big-endian long, for every {@code i}. This gives the same results as calling {@link
+   * #computeLong} for each input.
+   *
+   * @throws IllegalArgumentException if {@code output} is shorter than {@code inputs}
+   */
+  void computeLongs(byte[][] inputs, long[] output) throws GeneralSecurityException;
+}
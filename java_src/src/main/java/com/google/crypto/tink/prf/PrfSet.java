@@ -17,6 +17,7 @@
 package com.google.crypto.tink.prf;
 
 import com.google.errorprone.annotations.Immutable;
+import java.nio.ByteBuffer;
 import java.security.GeneralSecurityException;
 import java.util.Map;
 
@@ -41,6 +42,100 @@ public abstract class PrfSet {
    * the parameters.
    */
   public byte[] computePrimary(byte[] input, int outputLength) throws GeneralSecurityException {
-    return getPrfs().get(getPrimaryId()).compute(input, outputLength);
+    return getPrimaryPrf().compute(input, outputLength);
+  }
+
+  /**
+   * Computes the primary PRF on {@code input} and writes the first {@code outputLength} bytes of
+   * the result to {@code output}, starting at {@code offset}.
+   *
+   * <p>If the primary PRF is a {@link BufferedPrf}, no output array is allocated.
+   */
+  public void computePrimary(byte[] input, byte[] output, int offset, int outputLength)
+      throws GeneralSecurityException {
+    Prf prf = getPrimaryPrf();
+    if (prf instanceof BufferedPrf) {
+      ((BufferedPrf) prf).compute(input, output, offset, outputLength);
+      return;
+    }
+    checkRange(output, offset, outputLength);
+    System.arraycopy(prf.compute(input, outputLength), 0, output, offset, outputLength);
+  }
+
+  /**
+   * Computes the primary PRF on the remaining bytes of {@code input} and writes the first {@code
+   * outputLength} bytes of the result to {@code output}, starting at {@code offset}. The position
+   * of {@code input} is advanced to its limit.
+   */
+  public void computePrimary(ByteBuffer input, byte[] output, int offset, int outputLength)
+      throws GeneralSecurityException {
+    Prf prf = getPrimaryPrf();
+    if (prf instanceof BufferedPrf) {
+      ((BufferedPrf) prf).compute(input, output, offset, outputLength);
+      return;
+    }
+    checkRange(output, offset, outputLength);
+    byte[] inputBytes = new byte[input.remaining()];
+    input.get(inputBytes);
+    System.arraycopy(prf.compute(inputBytes, outputLength), 0, output, offset, outputLength);
+  }
+
+  /**
+   * Returns the first 8 bytes of the primary PRF of {@code input}, interpreted as a big-endian
+   * long. This is meant as a keyed hash, e.g. to assign records to shards.
+   */
+  public long computePrimaryLong(byte[] input) throws GeneralSecurityException {
+    Prf prf = getPrimaryPrf();
+    if (prf instanceof BufferedPrf) {
+      return ((BufferedPrf) prf).computeLong(input);
+    }
+    return toLong(prf.compute(input, 8));
+  }
+
+  /**
+   * Returns the first 4 bytes of the primary PRF of {@code input}, interpreted as a big-endian
+   * int.
+   */
+  public int computePrimaryInt(byte[] input) throws GeneralSecurityException {
+    return (int) (computePrimaryLong(input) >>> 32);
+  }
+
+  /**
+   * Sets {@code output[i]} to {@code computePrimaryLong(inputs[i])} for every {@code i}.
+   *
+   * @throws IllegalArgumentException if {@code output} is shorter than {@code inputs}
+   */
+  public void computePrimaryLongs(byte[][] inputs, long[] output)
+      throws GeneralSecurityException {
+    Prf prf = getPrimaryPrf();
+    if (prf instanceof BufferedPrf) {
+      ((BufferedPrf) prf).computeLongs(inputs, output);
+      return;
+    }
+    if (output.length < inputs.length) {
+      throw new IllegalArgumentException("output is shorter than inputs");
+    }
+    for (int i = 0; i < inputs.length; i++) {
+      output[i] = toLong(prf.compute(inputs[i], 8));
+    }
+  }
+
+  /** Returns the primary PRF. Subclasses may override this to avoid the map lookup. */
+  Prf getPrimaryPrf() throws GeneralSecurityException {
+    return getPrfs().get(getPrimaryId());
+  }
+
+  private static void checkRange(byte[] output, int offset, int length) {
+    if (offset < 0 || length < 0 || offset > output.length - length) {
+      throw new IndexOutOfBoundsException("output range out of bounds");
+    }
+  }
+
+  private static long toLong(byte[] bytes) {
+    long result = 0;
+    for (int i = 0; i < 8; i++) {
+      result = (result << 8) | (bytes[i] & 0xff);
+    }
+    return result;
   }
 }
@@ -41,6 +41,8 @@ public class PrfSetWrapper implements PrimitiveWrapper<Prf, PrfSet> {
 
     private final int primaryKeyId;
 
+    private final Prf primaryPrf;
+
     private WrappedPrfSet(PrimitiveSet<Prf> primitives) throws GeneralSecurityException {
       if (primitives.getRawPrimitives().isEmpty()) {
         throw new GeneralSecurityException("No primitives provided.");
@@ -61,6 +63,7 @@ public class PrfSetWrapper implements PrimitiveWrapper<Prf, PrfSet> {
         mutablePrfMap.put(entry.getKeyId(), entry.getPrimitive());
       }
       keyIdToPrfMap = Collections.unmodifiableMap(mutablePrfMap);
+      primaryPrf = keyIdToPrfMap.get(primaryKeyId);
     }
 
     @Override
@@ -72,6 +75,11 @@ public class PrfSetWrapper implements PrimitiveWrapper<Prf, PrfSet> {
     public Map<Integer, Prf> getPrfs() throws GeneralSecurityException {
       return keyIdToPrfMap;
     }
+
+    @Override
+    Prf getPrimaryPrf() {
+      return primaryPrf;
+    }
   }
 
   @Override
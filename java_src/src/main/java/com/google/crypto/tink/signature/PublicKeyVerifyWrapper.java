@@ -38,7 +38,7 @@ import java.util.logging.Logger;
  *
  * @since 1.0.0
  */
-class PublicKeyVerifyWrapper implements PrimitiveWrapper<PublicKeyVerify, PublicKeyVerify> {
+public class PublicKeyVerifyWrapper implements PrimitiveWrapper<PublicKeyVerify, PublicKeyVerify> {
   private static final Logger logger = Logger.getLogger(PublicKeyVerifyWrapper.class.getName());
 
   private static class WrappedPublicKeyVerify implements PublicKeyVerify {
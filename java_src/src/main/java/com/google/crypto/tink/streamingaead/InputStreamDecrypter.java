@@ -23,17 +23,20 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.security.GeneralSecurityException;
 import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
 import javax.annotation.concurrent.GuardedBy;
 
 /**
  * A decrypter for ciphertext given in a {@link InputStream}.
  */
 final class InputStreamDecrypter extends InputStream {
-  @GuardedBy("this")
+  private final ReentrantLock lock = new ReentrantLock();
+
+  @GuardedBy("lock")
   boolean attemptedMatching;
-  @GuardedBy("this")
+  @GuardedBy("lock")
   InputStream matchingStream;
-  @GuardedBy("this")
+  @GuardedBy("lock")
   InputStream ciphertextStream;
 
   PrimitiveSet<StreamingAead> primitives;
@@ -78,7 +81,7 @@ final class InputStreamDecrypter extends InputStream {
   /**
    * Rewinds the ciphetext stream to the beginning of the ciphertext.
    */
-  @GuardedBy("this")
+  @GuardedBy("lock")
   private void rewind() throws IOException {
     ciphertextStream.reset();
   }
@@ -89,7 +92,7 @@ final class InputStreamDecrypter extends InputStream {
    * TODO(bleichen): While BufferedInputStream stops buffering new bytes,
    *   it does not shrink the intenal buffer.
    */
-  @GuardedBy("this")
+  @GuardedBy("lock")
   private void disableRewinding() throws IOException {
     ciphertextStream.mark(0);
   }
@@ -105,81 +108,101 @@ final class InputStreamDecrypter extends InputStream {
   }
 
   @Override
-  @GuardedBy("this")
-  public synchronized int available() throws IOException {
-    if (matchingStream == null) {
-      return 0;
-    } else {
-      return matchingStream.available();
+  public int available() throws IOException {
+    lock.lock();
+    try {
+      if (matchingStream == null) {
+        return 0;
+      } else {
+        return matchingStream.available();
+      }
+    } finally {
+      lock.unlock();
     }
   }
 
   @Override
-  @GuardedBy("this")
-  public synchronized int read() throws IOException {
-    byte[] oneByte = new byte[1];
-    if (read(oneByte) == 1) {
-      return oneByte[0];
+  public int read() throws IOException {
+    lock.lock();
+    try {
+      byte[] oneByte = new byte[1];
+      if (read(oneByte) == 1) {
+        return oneByte[0];
+      }
+      return -1;
+    } finally {
+      lock.unlock();
     }
-    return -1;
   }
 
   @Override
-  @GuardedBy("this")
-  public synchronized int read(byte[] b) throws IOException {
-    return read(b, 0, b.length);
+  public int read(byte[] b) throws IOException {
+    lock.lock();
+    try {
+      return read(b, 0, b.length);
+    } finally {
+      lock.unlock();
+    }
   }
 
   @Override
-  @GuardedBy("this")
-  public synchronized int read(byte[] b, int offset, int len) throws IOException {
-    if (len == 0) {
-      return 0;
-    }
-    if (matchingStream != null) {
-      return matchingStream.read(b, offset, len);
-    } else {
-      if (attemptedMatching) {
-        throw new IOException("No matching key found for the ciphertext in the stream.");
+  public int read(byte[] b, int offset, int len) throws IOException {
+    lock.lock();
+    try {
+      if (len == 0) {
+        return 0;
       }
-      attemptedMatching = true;
-      List<PrimitiveSet.Entry<StreamingAead>> entries = primitives.getRawPrimitives();
-      for (PrimitiveSet.Entry<StreamingAead> entry : entries) {
-        try {
-          InputStream attemptedStream =
-              entry.getPrimitive().newDecryptingStream(ciphertextStream, associatedData);
-          int retValue = attemptedStream.read(b, offset, len);
-          if (retValue == 0) {
-            // Read should never return 0 when len > 0.
-            throw new IOException("Could not read bytes from the ciphertext stream");
+      if (matchingStream != null) {
+        return matchingStream.read(b, offset, len);
+      } else {
+        if (attemptedMatching) {
+          throw new IOException("No matching key found for the ciphertext in the stream.");
+        }
+        attemptedMatching = true;
+        List<PrimitiveSet.Entry<StreamingAead>> entries = primitives.getRawPrimitives();
+        for (PrimitiveSet.Entry<StreamingAead> entry : entries) {
+          try {
+            InputStream attemptedStream =
+                entry.getPrimitive().newDecryptingStream(ciphertextStream, associatedData);
+            int retValue = attemptedStream.read(b, offset, len);
+            if (retValue == 0) {
+              // Read should never return 0 when len > 0.
+              throw new IOException("Could not read bytes from the ciphertext stream");
+            }
+            // Found a matching stream.
+            // If retValue > 0 then the first ciphertext segment has been decrypted and
+            // authenticated. If retValue == -1 then plaintext is empty and again this has been
+            // authenticated.
+            matchingStream = attemptedStream;
+            disableRewinding();
+            return retValue;
+          } catch (IOException e) {
+            // Try another key.
+            // IOException is thrown e.g. when MAC is incorrect, but also in case
+            // of I/O failures.
+            // TODO(b/66098906): Use a subclass of IOException.
+            rewind();
+            continue;
+          } catch (GeneralSecurityException e) {
+            // Try another key.
+            rewind();
+            continue;
           }
-          // Found a matching stream.
-          // If retValue > 0 then the first ciphertext segment has been decrypted and
-          // authenticated. If retValue == -1 then plaintext is empty and again this has been
-          // authenticated.
-          matchingStream = attemptedStream;
-          disableRewinding();
-          return retValue;
-        } catch (IOException e) {
-          // Try another key.
-          // IOException is thrown e.g. when MAC is incorrect, but also in case
-          // of I/O failures.
-          // TODO(b/66098906): Use a subclass of IOException.
-          rewind();
-          continue;
-        } catch (GeneralSecurityException e) {
-          // Try another key.
-          rewind();
-          continue;
         }
+        throw new IOException("No matching key found for the ciphertext in the stream.");
       }
-      throw new IOException("No matching key found for the ciphertext in the stream.");
+    } finally {
+      lock.unlock();
     }
   }
 
   @Override
-  @GuardedBy("this")
-  public synchronized void close() throws IOException {
-    ciphertextStream.close();
+  public void close() throws IOException {
+    lock.lock();
+    try {
+      ciphertextStream.close();
+    } finally {
+      lock.unlock();
+    }
   }
 }
@@ -25,17 +25,20 @@ import java.nio.channels.ReadableByteChannel;
 import java.security.GeneralSecurityException;
 import java.util.ArrayDeque;
 import java.util.Deque;
+import java.util.concurrent.locks.ReentrantLock;
 import javax.annotation.concurrent.GuardedBy;
 
 /**
  * A decrypter for ciphertext given in a {@link ReadableByteChannel}.
  */
 final class ReadableByteChannelDecrypter implements ReadableByteChannel {
-  @GuardedBy("this")
+  private final ReentrantLock lock = new ReentrantLock();
+
+  @GuardedBy("lock")
   ReadableByteChannel attemptingChannel;
-  @GuardedBy("this")
+  @GuardedBy("lock")
   ReadableByteChannel matchingChannel;
-  @GuardedBy("this")
+  @GuardedBy("lock")
   RewindableReadableByteChannel ciphertextChannel;
 
   // The StreamingAeads that have not yet been tried in nextAttemptingChannel.
@@ -74,8 +77,8 @@ final class ReadableByteChannelDecrypter implements ReadableByteChannel {
     this.associatedData = associatedData.clone();
   }
 
-  @GuardedBy("this")
-  private synchronized ReadableByteChannel nextAttemptingChannel() throws IOException {
+  @GuardedBy("lock")
+  private ReadableByteChannel nextAttemptingChannel() throws IOException {
     while (!remainingPrimitives.isEmpty()) {
       StreamingAead streamingAead = this.remainingPrimitives.removeFirst();
       try {
@@ -91,48 +94,63 @@ final class ReadableByteChannelDecrypter implements ReadableByteChannel {
   }
 
   @Override
-  public synchronized int read(ByteBuffer dst) throws IOException {
-    if (dst.remaining() == 0) {
-      return 0;
-    }
-    if (matchingChannel != null) {
-      return matchingChannel.read(dst);
-    } else {
-      if (attemptingChannel == null) {
-        attemptingChannel = nextAttemptingChannel();
+  public int read(ByteBuffer dst) throws IOException {
+    lock.lock();
+    try {
+      if (dst.remaining() == 0) {
+        return 0;
       }
-      while (true) {
-        try {
-          int retValue = attemptingChannel.read(dst);
-          if (retValue == 0) {
-            // No data at the moment. Not clear if decryption was successful.
-            // Try again with the same stream next time.
-            return 0;
-          }
-          // Found a matching channel.
-          matchingChannel = attemptingChannel;
-          attemptingChannel = null;
-          ciphertextChannel.disableRewinding();
-          return retValue;
-        } catch (IOException e) {
-          // Try another key.
-          // IOException is thrown e.g. when MAC is incorrect, but also in case
-          // of I/O failures.
-          // TODO(b/66098906): Use a subclass of IOException.
-          ciphertextChannel.rewind();
+      if (matchingChannel != null) {
+        return matchingChannel.read(dst);
+      } else {
+        if (attemptingChannel == null) {
           attemptingChannel = nextAttemptingChannel();
         }
+        while (true) {
+          try {
+            int retValue = attemptingChannel.read(dst);
+            if (retValue == 0) {
+              // No data at the moment. Not clear if decryption was successful.
+              // Try again with the same stream next time.
+              return 0;
+            }
+            // Found a matching channel.
+            matchingChannel = attemptingChannel;
+            attemptingChannel = null;
+            ciphertextChannel.disableRewinding();
+            return retValue;
+          } catch (IOException e) {
+            // Try another key.
+            // IOException is thrown e.g. when MAC is incorrect, but also in case
+            // of I/O failures.
+            // TODO(b/66098906): Use a subclass of IOException.
+            ciphertextChannel.rewind();
+            attemptingChannel = nextAttemptingChannel();
+          }
+        }
       }
+    } finally {
+      lock.unlock();
     }
   }
 
   @Override
-  public synchronized void close() throws IOException {
-    ciphertextChannel.close();
+  public void close() throws IOException {
+    lock.lock();
+    try {
+      ciphertextChannel.close();
+    } finally {
+      lock.unlock();
+    }
   }
 
   @Override
-  public synchronized boolean isOpen() {
-    return ciphertextChannel.isOpen();
+  public boolean isOpen() {
+    lock.lock();
+    try {
+      return ciphertextChannel.isOpen();
+    } finally {
+      lock.unlock();
+    }
   }
 }
@@ -25,21 +25,24 @@ import java.nio.channels.SeekableByteChannel;
 import java.security.GeneralSecurityException;
 import java.util.ArrayDeque;
 import java.util.Deque;
+import java.util.concurrent.locks.ReentrantLock;
 import javax.annotation.concurrent.GuardedBy;
 
 /**
  * A decrypter for ciphertext given in a {@link SeekableByteChannel}.
  */
 final class SeekableByteChannelDecrypter implements SeekableByteChannel {
-  @GuardedBy("this")
+  private final ReentrantLock lock = new ReentrantLock();
+
+  @GuardedBy("lock")
   SeekableByteChannel attemptingChannel;
-  @GuardedBy("this")
+  @GuardedBy("lock")
   SeekableByteChannel matchingChannel;
-  @GuardedBy("this")
+  @GuardedBy("lock")
   SeekableByteChannel ciphertextChannel;
-  @GuardedBy("this")
+  @GuardedBy("lock")
   long cachedPosition;    // Position to which attemptingChannel should be set before 1st read();
-  @GuardedBy("this")
+  @GuardedBy("lock")
   long startingPosition;  // Position at which the ciphertext should begin.
 
   // The StreamingAeads that have not yet been tried in nextAttemptingChannel.
@@ -78,8 +81,8 @@ final class SeekableByteChannelDecrypter implements SeekableByteChannel {
     this.associatedData = associatedData.clone();
   }
 
-  @GuardedBy("this")
-  private synchronized SeekableByteChannel nextAttemptingChannel() throws IOException {
+  @GuardedBy("lock")
+  private SeekableByteChannel nextAttemptingChannel() throws IOException {
     while (!remainingPrimitives.isEmpty()) {
       ciphertextChannel.position(startingPosition);
       StreamingAead streamingAead = this.remainingPrimitives.removeFirst();
@@ -98,74 +101,90 @@ final class SeekableByteChannelDecrypter implements SeekableByteChannel {
   }
 
   @Override
-  @GuardedBy("this")
-  public synchronized int read(ByteBuffer dst) throws IOException {
-    if (dst.remaining() == 0) {
-      return 0;
-    }
-    if (matchingChannel != null) {
-      return matchingChannel.read(dst);
-    } else {
-      if (attemptingChannel == null) {
-        attemptingChannel = nextAttemptingChannel();
+  public int read(ByteBuffer dst) throws IOException {
+    lock.lock();
+    try {
+      if (dst.remaining() == 0) {
+        return 0;
       }
-      while (true) {
-        try {
-          int retValue = attemptingChannel.read(dst);
-          if (retValue == 0) {
-            // No data at the moment. Not clear if decryption was successful.
-            // Try again with the same stream next time.
-            return 0;
-          }
-          // Found a matching channel.
-          matchingChannel = attemptingChannel;
-          attemptingChannel = null;
-          return retValue;
-        } catch (IOException e) {
-          // Try another key.
-          // IOException is thrown e.g. when MAC is incorrect, but also in case
-          // of I/O failures.
-          // TODO(b/66098906): Use a subclass of IOException.
+      if (matchingChannel != null) {
+        return matchingChannel.read(dst);
+      } else {
+        if (attemptingChannel == null) {
           attemptingChannel = nextAttemptingChannel();
         }
+        while (true) {
+          try {
+            int retValue = attemptingChannel.read(dst);
+            if (retValue == 0) {
+              // No data at the moment. Not clear if decryption was successful.
+              // Try again with the same stream next time.
+              return 0;
+            }
+            // Found a matching channel.
+            matchingChannel = attemptingChannel;
+            attemptingChannel = null;
+            return retValue;
+          } catch (IOException e) {
+            // Try another key.
+            // IOException is thrown e.g. when MAC is incorrect, but also in case
+            // of I/O failures.
+            // TODO(b/66098906): Use a subclass of IOException.
+            attemptingChannel = nextAttemptingChannel();
+          }
+        }
       }
+    } finally {
+      lock.unlock();
     }
   }
 
   @Override
-  @GuardedBy("this")
-  public synchronized SeekableByteChannel position(long newPosition) throws IOException {
-    if (matchingChannel != null) {
-      matchingChannel.position(newPosition);
-    } else {
-      if (newPosition < 0) {
-        throw new IllegalArgumentException("Position must be non-negative");
-      }
-      cachedPosition = newPosition;
-      if (attemptingChannel != null) {
-        attemptingChannel.position(cachedPosition);
+  public SeekableByteChannel position(long newPosition) throws IOException {
+    lock.lock();
+    try {
+      if (matchingChannel != null) {
+        matchingChannel.position(newPosition);
+      } else {
+        if (newPosition < 0) {
+          throw new IllegalArgumentException("Position must be non-negative");
+        }
+        cachedPosition = newPosition;
+        if (attemptingChannel != null) {
+          attemptingChannel.position(cachedPosition);
+        }
       }
+      return this;
+    } finally {
+      lock.unlock();
     }
-    return this;
   }
 
   @Override
-  @GuardedBy("this")
-  public synchronized long position() throws IOException {
-    if (matchingChannel != null) {
-      return matchingChannel.position();
-    } else {
-      return cachedPosition;
+  public long position() throws IOException {
+    lock.lock();
+    try {
+      if (matchingChannel != null) {
+        return matchingChannel.position();
+      } else {
+        return cachedPosition;
+      }
+    } finally {
+      lock.unlock();
     }
   }
 
   @Override
-  @GuardedBy("this")
-  public synchronized long size() throws IOException {
-    if (matchingChannel != null) {
-      return matchingChannel.size();
-    } else {
-      throw new IOException("Cannot determine size before first read()-call.");
+  public long size() throws IOException {
+    lock.lock();
+    try {
+      if (matchingChannel != null) {
+        return matchingChannel.size();
+      } else {
+        throw new IOException("Cannot determine size before first read()-call.");
+      }
+    } finally {
+      lock.unlock();
     }
   }
 
@@ -180,15 +199,23 @@ final class SeekableByteChannelDecrypter implements SeekableByteChannel {
   }
 
   @Override
-  @GuardedBy("this")
-  public synchronized void close() throws IOException {
-    ciphertextChannel.close();
+  public void close() throws IOException {
+    lock.lock();
+    try {
+      ciphertextChannel.close();
+    } finally {
+      lock.unlock();
+    }
   }
 
 
   @Override
-  @GuardedBy("this")
-  public synchronized boolean isOpen() {
-    return ciphertextChannel.isOpen();
+  public boolean isOpen() {
+    lock.lock();
+    try {
+      return ciphertextChannel.isOpen();
+    } finally {
+      lock.unlock();
+    }
   }
 }
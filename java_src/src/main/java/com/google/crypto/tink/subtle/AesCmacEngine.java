@@ -0,0 +1,158 @@
+// Copyright 2022 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+
+package com.google.crypto.tink.subtle;
+
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * CMAC (<a href="https://tools.ietf.org/html/rfc4493">RFC 4493</a>), also known as OMAC1, shared
+ * by {@link PrfAesCmac}, {@link AesSiv} and {@link AesEaxJce}.
+ *
+ * <p>All blocks but the last one are exactly a CBC encryption with a zero IV, so they are run
+ * through a pre-keyed AES/CBC/NoPadding cipher in as few calls as possible, which lets the
+ * provider chain the blocks internally (using the AES instructions of the CPU where it can). Only
+ * the last block is masked with a sub key in Java. The ciphers are kept by the engine in {@link
+ * PreKeyedCiphers}: after doFinal a cipher is back at the zero IV, so it is reused without calling
+ * init again. The buffer for direct data is kept per thread and shared by all keys.
+ */
+final class AesCmacEngine {
+  private static final int BLOCK_SIZE = AesUtil.BLOCK_SIZE;
+  // Data that is not backed by an array is copied into a thread local buffer of this size.
+  private static final int CHUNK_SIZE = 4096;
+  private static final String CBC_ALGORITHM = "AES/CBC/NoPadding";
+  private static final IvParameterSpec ZERO_IV = new IvParameterSpec(new byte[BLOCK_SIZE]);
+
+  @SuppressWarnings("ThreadLocalUsage")
+  private static final ThreadLocal<byte[]> localChunk =
+      new ThreadLocal<byte[]>() {
+        @Override
+        protected byte[] initialValue() {
+          return new byte[CHUNK_SIZE];
+        }
+      };
+
+  private final PreKeyedCiphers cbcs;
+  private final byte[] subKey1;
+  private final byte[] subKey2;
+
+  AesCmacEngine(final byte[] key) throws GeneralSecurityException {
+    Validators.validateAesKeySize(key.length);
+    SecretKey keySpec = new SecretKeySpec(key, "AES");
+    cbcs = new PreKeyedCiphers(CBC_ALGORITHM, Cipher.ENCRYPT_MODE, keySpec, ZERO_IV);
+    // https://tools.ietf.org/html/rfc4493#section-2.3
+    byte[] l = encryptBlock(new byte[BLOCK_SIZE]);
+    subKey1 = AesUtil.dbl(l);
+    subKey2 = AesUtil.dbl(subKey1);
+  }
+
+  /** Computes the CMAC of the remaining bytes of {@code data} into {@code output}. */
+  void compute(ByteBuffer data, byte[] output) throws GeneralSecurityException {
+    compute(null, data, output);
+  }
+
+  /**
+   * Encrypts a single block with the key of this engine, e.g. to compute a chaining value for
+   * {@link #compute(byte[], ByteBuffer, byte[])}.
+   */
+  byte[] encryptBlock(final byte[] block) throws GeneralSecurityException {
+    // CBC with a zero IV encrypts the first block like ECB.
+    Cipher cbc = cbcs.take();
+    byte[] encrypted = cbc.doFinal(block, 0, BLOCK_SIZE);
+    cbcs.release(cbc);
+    return encrypted;
+  }
+
+  /**
+   * Continues a CMAC computation: computes the CMAC of a message whose leading complete blocks
+   * were already encrypted, leaving the CBC chaining value {@code chainingValue}, and whose
+   * remaining bytes are {@code data}. EAX uses this to skip the OMAC tweak block.
+   *
+   * <p>If {@code chainingValue} is null, this is the CMAC of {@code data}. Otherwise {@code data}
+   * must not be empty, since the CMAC of the leading blocks alone depends on their last block,
+   * not only on the chaining value. {@code data} is consumed, and {@code output} must have at
+   * least 16 bytes.
+   */
+  void compute(final byte[] chainingValue, ByteBuffer data, byte[] output)
+      throws GeneralSecurityException {
+    int remaining = data.remaining();
+    if (chainingValue != null && remaining == 0) {
+      throw new IllegalArgumentException("data must not be empty");
+    }
+    // Empty data is divided into 1 empty block, so the last block holds between 1 and 16 bytes
+    // of non-empty data.
+    int lastLength = remaining == 0 ? 0 : (remaining - 1) % BLOCK_SIZE + 1;
+    int bodyLength = remaining - lastLength;
+    // If anything below throws, the cipher may be left in the middle of a chain, so it is not
+    // released.
+    Cipher cbc = cbcs.take();
+    byte[] chunk = localChunk.get();
+    byte[] lastMask = chainingValue;
+    if (chainingValue != null && bodyLength > 0) {
+      // The chaining value is xored into the first block, which is not the last one.
+      for (int i = 0; i < BLOCK_SIZE; i++) {
+        chunk[i] = (byte) (data.get() ^ chainingValue[i]);
+      }
+      cbc.update(chunk, 0, BLOCK_SIZE, chunk, 0);
+      bodyLength -= BLOCK_SIZE;
+      lastMask = null;
+    }
+    // Only the chaining value that the cipher keeps is needed, not the CBC output.
+    if (data.hasArray()) {
+      byte[] array = data.array();
+      int offset = data.arrayOffset() + data.position();
+      for (int done = 0; done < bodyLength; done += CHUNK_SIZE) {
+        cbc.update(array, offset + done, Math.min(CHUNK_SIZE, bodyLength - done), chunk, 0);
+      }
+      data.position(data.position() + bodyLength);
+    } else {
+      for (int done = 0; done < bodyLength; done += CHUNK_SIZE) {
+        int length = Math.min(CHUNK_SIZE, bodyLength - done);
+        data.get(chunk, 0, length);
+        cbc.update(chunk, 0, length, chunk, 0);
+      }
+    }
+    finish(cbc, data, lastLength, lastMask, output);
+    cbcs.release(cbc);
+  }
+
+  // https://tools.ietf.org/html/rfc4493#section-2.4, steps 3, 4, 6 and 7 for the last block. The
+  // cipher xors the block with the chaining value of the previous blocks, unless the last block is
+  // also the first one; then mask (if not null) is the chaining value to xor.
+  private void finish(Cipher cbc, ByteBuffer data, int lastLength, byte[] mask, byte[] output)
+      throws GeneralSecurityException {
+    byte[] subKey = lastLength == BLOCK_SIZE ? subKey1 : subKey2;
+    for (int i = 0; i < BLOCK_SIZE; i++) {
+      byte b = 0;
+      if (i < lastLength) {
+        b = data.get();
+      } else if (i == lastLength) {
+        b = (byte) 0x80;
+      }
+      output[i] = (byte) (b ^ subKey[i]);
+      if (mask != null) {
+        output[i] ^= mask[i];
+      }
+    }
+    cbc.doFinal(output, 0, BLOCK_SIZE, output, 0);
+  }
+}
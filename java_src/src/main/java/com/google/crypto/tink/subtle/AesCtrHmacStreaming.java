@@ -17,6 +17,7 @@
 package com.google.crypto.tink.subtle;
 
 import com.google.crypto.tink.config.internal.TinkFipsUtil;
+import com.google.crypto.tink.internal.TinkEvents;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.security.GeneralSecurityException;
@@ -62,6 +63,10 @@ public final class AesCtrHmacStreaming extends NonceBasedStreamingAead {
   public static final TinkFipsUtil.AlgorithmFipsCompatibility FIPS =
       TinkFipsUtil.AlgorithmFipsCompatibility.ALGORITHM_NOT_FIPS;
 
+  // Reported in the diagnostic events of this class.
+  private static final String KEY_TYPE_URL =
+      "type.googleapis.com/google.crypto.tink.AesCtrHmacStreamingKey";
+
   // The size of the nonce for AES-CTR
   private static final int NONCE_SIZE_IN_BYTES = 16;
 
@@ -299,19 +304,27 @@ public final class AesCtrHmacStreaming extends NonceBasedStreamingAead {
     public synchronized void encryptSegment(
         ByteBuffer plaintext, boolean isLastSegment, ByteBuffer ciphertext)
         throws GeneralSecurityException {
-      int position = ciphertext.position();
-      byte[] nonce = nonceForSegment(noncePrefix, encryptedSegments, isLastSegment);
-      cipher.init(Cipher.ENCRYPT_MODE, keySpec, new IvParameterSpec(nonce));
-      encryptedSegments++;
-      cipher.doFinal(plaintext, ciphertext);
-      ByteBuffer ctCopy = ciphertext.duplicate();
-      ctCopy.flip();
-      ctCopy.position(position);
-      mac.init(hmacKeySpec);
-      mac.update(nonce);
-      mac.update(ctCopy);
-      byte[] tag = mac.doFinal();
-      ciphertext.put(tag, 0, tagSizeInBytes);
+      Object event = TinkEvents.begin(TinkEvents.Type.STREAMING_SEGMENT);
+      int size = plaintext.remaining();
+      boolean succeeded = false;
+      try {
+        int position = ciphertext.position();
+        byte[] nonce = nonceForSegment(noncePrefix, encryptedSegments, isLastSegment);
+        cipher.init(Cipher.ENCRYPT_MODE, keySpec, new IvParameterSpec(nonce));
+        encryptedSegments++;
+        cipher.doFinal(plaintext, ciphertext);
+        ByteBuffer ctCopy = ciphertext.duplicate();
+        ctCopy.flip();
+        ctCopy.position(position);
+        mac.init(hmacKeySpec);
+        mac.update(nonce);
+        mac.update(ctCopy);
+        byte[] tag = mac.doFinal();
+        ciphertext.put(tag, 0, tagSizeInBytes);
+        succeeded = true;
+      } finally {
+        TinkEvents.commit(event, "encryptSegment", KEY_TYPE_URL, 0, size, succeeded);
+      }
     }
 
     /**
@@ -322,20 +335,28 @@ public final class AesCtrHmacStreaming extends NonceBasedStreamingAead {
     public synchronized void encryptSegment(
         ByteBuffer part1, ByteBuffer part2, boolean isLastSegment, ByteBuffer ciphertext)
         throws GeneralSecurityException {
-      int position = ciphertext.position();
-      byte[] nonce = nonceForSegment(noncePrefix, encryptedSegments, isLastSegment);
-      cipher.init(Cipher.ENCRYPT_MODE, keySpec, new IvParameterSpec(nonce));
-      encryptedSegments++;
-      cipher.update(part1, ciphertext);
-      cipher.doFinal(part2, ciphertext);
-      ByteBuffer ctCopy = ciphertext.duplicate();
-      ctCopy.flip();
-      ctCopy.position(position);
-      mac.init(hmacKeySpec);
-      mac.update(nonce);
-      mac.update(ctCopy);
-      byte[] tag = mac.doFinal();
-      ciphertext.put(tag, 0, tagSizeInBytes);
+      Object event = TinkEvents.begin(TinkEvents.Type.STREAMING_SEGMENT);
+      int size = part1.remaining() + part2.remaining();
+      boolean succeeded = false;
+      try {
+        int position = ciphertext.position();
+        byte[] nonce = nonceForSegment(noncePrefix, encryptedSegments, isLastSegment);
+        cipher.init(Cipher.ENCRYPT_MODE, keySpec, new IvParameterSpec(nonce));
+        encryptedSegments++;
+        cipher.update(part1, ciphertext);
+        cipher.doFinal(part2, ciphertext);
+        ByteBuffer ctCopy = ciphertext.duplicate();
+        ctCopy.flip();
+        ctCopy.position(position);
+        mac.init(hmacKeySpec);
+        mac.update(nonce);
+        mac.update(ctCopy);
+        byte[] tag = mac.doFinal();
+        ciphertext.put(tag, 0, tagSizeInBytes);
+        succeeded = true;
+      } finally {
+        TinkEvents.commit(event, "encryptSegment", KEY_TYPE_URL, 0, size, succeeded);
+      }
     }
   }
 
@@ -376,37 +397,45 @@ public final class AesCtrHmacStreaming extends NonceBasedStreamingAead {
     public synchronized void decryptSegment(
         ByteBuffer ciphertext, int segmentNr, boolean isLastSegment, ByteBuffer plaintext)
         throws GeneralSecurityException {
-      int position = ciphertext.position();
-      byte[] nonce = nonceForSegment(noncePrefix, segmentNr, isLastSegment);
-      int ctLength = ciphertext.remaining();
-      if (ctLength < tagSizeInBytes) {
-        throw new GeneralSecurityException("Ciphertext too short");
+      Object event = TinkEvents.begin(TinkEvents.Type.STREAMING_SEGMENT);
+      int size = ciphertext.remaining();
+      boolean succeeded = false;
+      try {
+        int position = ciphertext.position();
+        byte[] nonce = nonceForSegment(noncePrefix, segmentNr, isLastSegment);
+        int ctLength = ciphertext.remaining();
+        if (ctLength < tagSizeInBytes) {
+          throw new GeneralSecurityException("Ciphertext too short");
+        }
+        int ptLength = ctLength - tagSizeInBytes;
+        int startOfTag = position + ptLength;
+        ByteBuffer ct = ciphertext.duplicate();
+        ct.limit(startOfTag);
+        ByteBuffer tagBuffer = ciphertext.duplicate();
+        tagBuffer.position(startOfTag);
+
+        assert mac != null;
+        assert hmacKeySpec != null;
+        mac.init(hmacKeySpec);
+        mac.update(nonce);
+        mac.update(ct);
+        byte[] tag = mac.doFinal();
+        tag = Arrays.copyOf(tag, tagSizeInBytes);
+        byte[] expectedTag = new byte[tagSizeInBytes];
+        assert tagBuffer.remaining() == tagSizeInBytes;
+        tagBuffer.get(expectedTag);
+        assert expectedTag.length == tag.length;
+        if (!Bytes.equal(expectedTag, tag)) {
+          throw new GeneralSecurityException("Tag mismatch");
+        }
+
+        ciphertext.limit(startOfTag);
+        cipher.init(Cipher.ENCRYPT_MODE, keySpec, new IvParameterSpec(nonce));
+        cipher.doFinal(ciphertext, plaintext);
+        succeeded = true;
+      } finally {
+        TinkEvents.commit(event, "decryptSegment", KEY_TYPE_URL, 0, size, succeeded);
       }
-      int ptLength = ctLength - tagSizeInBytes;
-      int startOfTag = position + ptLength;
-      ByteBuffer ct = ciphertext.duplicate();
-      ct.limit(startOfTag);
-      ByteBuffer tagBuffer = ciphertext.duplicate();
-      tagBuffer.position(startOfTag);
-
-      assert mac != null;
-      assert hmacKeySpec != null;
-      mac.init(hmacKeySpec);
-      mac.update(nonce);
-      mac.update(ct);
-      byte[] tag = mac.doFinal();
-      tag = Arrays.copyOf(tag, tagSizeInBytes);
-      byte[] expectedTag = new byte[tagSizeInBytes];
-      assert tagBuffer.remaining() == tagSizeInBytes;
-      tagBuffer.get(expectedTag);
-      assert expectedTag.length == tag.length;
-      if (!Bytes.equal(expectedTag, tag)) {
-        throw new GeneralSecurityException("Tag mismatch");
-      }
-
-      ciphertext.limit(startOfTag);
-      cipher.init(Cipher.ENCRYPT_MODE, keySpec, new IvParameterSpec(nonce));
-      cipher.doFinal(ciphertext, plaintext);
     }
   }
 }
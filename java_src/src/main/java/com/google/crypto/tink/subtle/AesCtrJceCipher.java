@@ -36,18 +36,6 @@ public final class AesCtrJceCipher implements IndCpaCipher {
   public static final TinkFipsUtil.AlgorithmFipsCompatibility FIPS =
       TinkFipsUtil.AlgorithmFipsCompatibility.ALGORITHM_REQUIRES_BORINGCRYPTO;
 
-  private static final ThreadLocal<Cipher> localCipher =
-      new ThreadLocal<Cipher>() {
-        @Override
-        protected Cipher initialValue() {
-          try {
-            return EngineFactory.CIPHER.getInstance(CIPHER_ALGORITHM);
-          } catch (GeneralSecurityException ex) {
-            throw new IllegalStateException(ex);
-          }
-        }
-      };
-
   private static final String KEY_ALGORITHM = "AES";
   private static final String CIPHER_ALGORITHM = "AES/CTR/NoPadding";
 
@@ -72,7 +60,7 @@ public final class AesCtrJceCipher implements IndCpaCipher {
 
     Validators.validateAesKeySize(key.length);
     this.keySpec = new SecretKeySpec(key, KEY_ALGORITHM);
-    this.blockSize = localCipher.get().getBlockSize();
+    this.blockSize = EngineFactory.CIPHER.getThreadLocalInstance(CIPHER_ALGORITHM).getBlockSize();
     if (ivSize < MIN_IV_SIZE_IN_BYTES || ivSize > blockSize) {
       throw new GeneralSecurityException("invalid IV size");
     }
@@ -93,12 +81,23 @@ public final class AesCtrJceCipher implements IndCpaCipher {
           "plaintext length can not exceed " + (Integer.MAX_VALUE - ivSize));
     }
     byte[] ciphertext = new byte[ivSize + plaintext.length];
-    byte[] iv = Random.randBytes(ivSize);
-    System.arraycopy(iv, 0, ciphertext, 0, ivSize);
-    doCtr(plaintext, 0, plaintext.length, ciphertext, ivSize, iv, true);
+    encrypt(plaintext, ciphertext, 0);
     return ciphertext;
   }
 
+  /**
+   * Encrypts {@code plaintext} like {@link #encrypt(byte[])}, but writes iv || raw ciphertext to
+   * {@code output}, starting at {@code outputOffset}. {@code output} must have room for {@code
+   * getIvSize() + plaintext.length} bytes.
+   */
+  void encrypt(final byte[] plaintext, byte[] output, int outputOffset)
+      throws GeneralSecurityException {
+    byte[] iv = Random.randBytes(ivSize);
+    System.arraycopy(iv, 0, output, outputOffset, ivSize);
+    doCtr(
+        plaintext, 0, plaintext.length, output, outputOffset + ivSize, output, outputOffset, true);
+  }
+
   /**
    * Decrypts the ciphertext with counter mode decryption. The ciphertext format is iv || raw
    * ciphertext.
@@ -108,16 +107,28 @@ public final class AesCtrJceCipher implements IndCpaCipher {
    */
   @Override
   public byte[] decrypt(final byte[] ciphertext) throws GeneralSecurityException {
-    if (ciphertext.length < ivSize) {
+    return decrypt(ciphertext, 0, ciphertext.length);
+  }
+
+  /**
+   * Decrypts the {@code length} bytes of {@code ciphertext} starting at {@code offset}, like {@link
+   * #decrypt(byte[])}, but without copying them first.
+   */
+  byte[] decrypt(final byte[] ciphertext, int offset, int length) throws GeneralSecurityException {
+    if (length < ivSize) {
       throw new GeneralSecurityException("ciphertext too short");
     }
-    byte[] iv = new byte[ivSize];
-    System.arraycopy(ciphertext, 0, iv, 0, ivSize);
-    byte[] plaintext = new byte[ciphertext.length - ivSize];
-    doCtr(ciphertext, ivSize, ciphertext.length - ivSize, plaintext, 0, iv, false);
+    byte[] plaintext = new byte[length - ivSize];
+    doCtr(
+        ciphertext, offset + ivSize, length - ivSize, plaintext, 0, ciphertext, offset, false);
     return plaintext;
   }
 
+  /** Returns the size of the iv at the start of each ciphertext. */
+  int getIvSize() {
+    return ivSize;
+  }
+
   private void doCtr(
       final byte[] input,
       int inputOffset,
@@ -125,12 +136,13 @@ public final class AesCtrJceCipher implements IndCpaCipher {
       byte[] output,
       int outputOffset,
       final byte[] iv,
+      int ivOffset,
       boolean encrypt)
       throws GeneralSecurityException {
-    Cipher cipher = localCipher.get();
+    Cipher cipher = EngineFactory.CIPHER.getThreadLocalInstance(CIPHER_ALGORITHM);
     // The counter is big-endian. The counter is composed of iv and (blockSize - ivSize) of zeros.
     byte[] counter = new byte[blockSize];
-    System.arraycopy(iv, 0, counter, 0, ivSize);
+    System.arraycopy(iv, ivOffset, counter, 0, ivSize);
 
     IvParameterSpec paramSpec = new IvParameterSpec(counter);
     if (encrypt) {
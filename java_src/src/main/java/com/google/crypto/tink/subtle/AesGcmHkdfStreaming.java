@@ -16,6 +16,7 @@
 
 package com.google.crypto.tink.subtle;
 
+import com.google.crypto.tink.internal.TinkEvents;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.security.GeneralSecurityException;
@@ -60,6 +61,10 @@ public final class AesGcmHkdfStreaming extends NonceBasedStreamingAead {
   //     the position of plaintext in the file. While these parameters are currently
   //     specified by the key it is unclear whether this will remain so in the future.
   //
+  // Reported in the diagnostic events of this class.
+  private static final String KEY_TYPE_URL =
+      "type.googleapis.com/google.crypto.tink.AesGcmHkdfStreamingKey";
+
   // The size of the IVs for GCM
   private static final int NONCE_SIZE_IN_BYTES = 12;
 
@@ -231,12 +236,20 @@ public final class AesGcmHkdfStreaming extends NonceBasedStreamingAead {
     public synchronized void encryptSegment(
         ByteBuffer plaintext, boolean isLastSegment, ByteBuffer ciphertext)
         throws GeneralSecurityException {
-      cipher.init(
-          Cipher.ENCRYPT_MODE,
-          keySpec,
-          paramsForSegment(noncePrefix, encryptedSegments, isLastSegment));
-      encryptedSegments++;
-      cipher.doFinal(plaintext, ciphertext);
+      Object event = TinkEvents.begin(TinkEvents.Type.STREAMING_SEGMENT);
+      int size = plaintext.remaining();
+      boolean succeeded = false;
+      try {
+        cipher.init(
+            Cipher.ENCRYPT_MODE,
+            keySpec,
+            paramsForSegment(noncePrefix, encryptedSegments, isLastSegment));
+        encryptedSegments++;
+        cipher.doFinal(plaintext, ciphertext);
+        succeeded = true;
+      } finally {
+        TinkEvents.commit(event, "encryptSegment", KEY_TYPE_URL, 0, size, succeeded);
+      }
     }
 
     /**
@@ -247,18 +260,26 @@ public final class AesGcmHkdfStreaming extends NonceBasedStreamingAead {
     public synchronized void encryptSegment(
         ByteBuffer part1, ByteBuffer part2, boolean isLastSegment, ByteBuffer ciphertext)
         throws GeneralSecurityException {
-      cipher.init(
-          Cipher.ENCRYPT_MODE,
-          keySpec,
-          paramsForSegment(noncePrefix, encryptedSegments, isLastSegment));
-      encryptedSegments++;
-      // `update(nonEmpty)`, `doFinal(empty)` is known to cause problems on Android 23.
-      // See https://github.com/google/tink/issues/229
-      if (part2.hasRemaining()) {
-        cipher.update(part1, ciphertext);
-        cipher.doFinal(part2, ciphertext);
-      } else {
-        cipher.doFinal(part1, ciphertext);
+      Object event = TinkEvents.begin(TinkEvents.Type.STREAMING_SEGMENT);
+      int size = part1.remaining() + part2.remaining();
+      boolean succeeded = false;
+      try {
+        cipher.init(
+            Cipher.ENCRYPT_MODE,
+            keySpec,
+            paramsForSegment(noncePrefix, encryptedSegments, isLastSegment));
+        encryptedSegments++;
+        // `update(nonEmpty)`, `doFinal(empty)` is known to cause problems on Android 23.
+        // See https://github.com/google/tink/issues/229
+        if (part2.hasRemaining()) {
+          cipher.update(part1, ciphertext);
+          cipher.doFinal(part2, ciphertext);
+        } else {
+          cipher.doFinal(part1, ciphertext);
+        }
+        succeeded = true;
+      } finally {
+        TinkEvents.commit(event, "encryptSegment", KEY_TYPE_URL, 0, size, succeeded);
       }
     }
   }
@@ -295,9 +316,17 @@ public final class AesGcmHkdfStreaming extends NonceBasedStreamingAead {
     public synchronized void decryptSegment(
         ByteBuffer ciphertext, int segmentNr, boolean isLastSegment, ByteBuffer plaintext)
         throws GeneralSecurityException {
-      GCMParameterSpec params = paramsForSegment(noncePrefix, segmentNr, isLastSegment);
-      cipher.init(Cipher.DECRYPT_MODE, keySpec, params);
-      cipher.doFinal(ciphertext, plaintext);
+      Object event = TinkEvents.begin(TinkEvents.Type.STREAMING_SEGMENT);
+      int size = ciphertext.remaining();
+      boolean succeeded = false;
+      try {
+        GCMParameterSpec params = paramsForSegment(noncePrefix, segmentNr, isLastSegment);
+        cipher.init(Cipher.DECRYPT_MODE, keySpec, params);
+        cipher.doFinal(ciphertext, plaintext);
+        succeeded = true;
+      } finally {
+        TinkEvents.commit(event, "decryptSegment", KEY_TYPE_URL, 0, size, succeeded);
+      }
     }
   }
 }
@@ -44,13 +44,13 @@ public final class AesSiv implements DeterministicAead {
   // multi-user setting.
   private static final Collection<Integer> KEY_SIZES = Arrays.asList(64);
   private static final byte[] BLOCK_ZERO = new byte[AesUtil.BLOCK_SIZE];
-  private static final byte[] BLOCK_ONE = {
-    0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, (byte) 0x01
-  };
 
   /** The internal AesCmac object for S2V */
   private final PrfAesCmac cmacForS2V;
 
+  /** dbl(CMAC(BLOCK_ZERO)), the first step of S2V, which only depends on the key. */
+  private final byte[] s2vInitialState;
+
   /** The key used for the CTR encryption */
   private final byte[] aesCtrKey;
 
@@ -68,36 +68,74 @@ public final class AesSiv implements DeterministicAead {
     byte[] k1 = Arrays.copyOfRange(key, 0, key.length / 2);
     this.aesCtrKey = Arrays.copyOfRange(key, key.length / 2, key.length);
     this.cmacForS2V = new PrfAesCmac(k1);
+    this.s2vInitialState = AesUtil.dbl(cmacForS2V.compute(BLOCK_ZERO, AesUtil.BLOCK_SIZE));
   }
 
   /**
-   * s2v per https://tools.ietf.org/html/rfc5297
+   * Returns a {@link DeterministicAead} that encrypts and decrypts exactly like this one, but that
+   * precomputes the part of S2V that only depends on {@code associatedData}.
    *
-   * @param s
-   * @return s2v(si)
-   * @throws GeneralSecurityException
+   * <p>Calls to the returned primitive with the bound associated data only pay for the CMAC of the
+   * plaintext and the CTR encryption. This helps when many values share the same associated data,
+   * e.g. when deterministically encrypting all values of a column with the column name as
+   * associated data. Calls with any other associated data are computed in full.
    */
-  private byte[] s2v(final byte[]... s) throws GeneralSecurityException {
-    if (s.length == 0) {
-      // Should never happen with AES-SIV, but we include this for completeness.
-      return cmacForS2V.compute(BLOCK_ONE, AesUtil.BLOCK_SIZE);
+  public DeterministicAead withAssociatedData(final byte[] associatedData)
+      throws GeneralSecurityException {
+    return new BoundAssociatedData(associatedData);
+  }
+
+  private final class BoundAssociatedData implements DeterministicAead {
+    private final byte[] associatedData;
+    private final byte[] s2vState;
+
+    BoundAssociatedData(final byte[] associatedData) throws GeneralSecurityException {
+      this.associatedData = nullToEmpty(associatedData).clone();
+      this.s2vState = s2vState(this.associatedData);
     }
 
-    byte[] result = cmacForS2V.compute(BLOCK_ZERO, AesUtil.BLOCK_SIZE);
-    for (int i = 0; i < s.length - 1; i++) {
-      final byte[] currBlock;
-      if (s[i] == null) {
-        currBlock = new byte[0];
-      } else {
-        currBlock = s[i];
+    private byte[] s2vStateFor(final byte[] associatedData) throws GeneralSecurityException {
+      // The associated data is not secret, so it does not need to be compared in constant time.
+      if (Arrays.equals(this.associatedData, nullToEmpty(associatedData))) {
+        return s2vState;
       }
-      result = Bytes.xor(AesUtil.dbl(result), cmacForS2V.compute(currBlock, AesUtil.BLOCK_SIZE));
+      return s2vState(associatedData);
+    }
+
+    @Override
+    public byte[] encryptDeterministically(final byte[] plaintext, final byte[] associatedData)
+        throws GeneralSecurityException {
+      return encrypt(s2vStateFor(associatedData), plaintext);
     }
-    byte[] lastBlock = s[s.length - 1];
+
+    @Override
+    public byte[] decryptDeterministically(final byte[] ciphertext, final byte[] associatedData)
+        throws GeneralSecurityException {
+      return decrypt(s2vStateFor(associatedData), ciphertext);
+    }
+  }
+
+  private static byte[] nullToEmpty(final byte[] value) {
+    return value == null ? new byte[0] : value;
+  }
+
+  /**
+   * Returns the S2V state (https://tools.ietf.org/html/rfc5297#section-2.4) after processing
+   * {@code associatedData}, i.e. the value of D before the last string is processed.
+   */
+  private byte[] s2vState(final byte[] associatedData) throws GeneralSecurityException {
+    return Bytes.xor(
+        s2vInitialState, cmacForS2V.compute(nullToEmpty(associatedData), AesUtil.BLOCK_SIZE));
+  }
+
+  /** Finishes S2V with the last string, given the state returned by {@link #s2vState}. */
+  private byte[] s2vFinish(final byte[] state, final byte[] lastBlock)
+      throws GeneralSecurityException {
+    byte[] result;
     if (lastBlock.length >= 16) {
-      result = Bytes.xorEnd(lastBlock, result);
+      result = Bytes.xorEnd(lastBlock, state);
     } else {
-      result = Bytes.xor(AesUtil.cmacPad(lastBlock), AesUtil.dbl(result));
+      result = Bytes.xor(AesUtil.cmacPad(lastBlock), AesUtil.dbl(state));
     }
     return cmacForS2V.compute(result, AesUtil.BLOCK_SIZE);
   }
@@ -105,12 +143,23 @@ public final class AesSiv implements DeterministicAead {
   @Override
   public byte[] encryptDeterministically(final byte[] plaintext, final byte[] associatedData)
       throws GeneralSecurityException {
+    return encrypt(s2vState(associatedData), plaintext);
+  }
+
+  @Override
+  public byte[] decryptDeterministically(final byte[] ciphertext, final byte[] associatedData)
+      throws GeneralSecurityException {
+    return decrypt(s2vState(associatedData), ciphertext);
+  }
+
+  private byte[] encrypt(final byte[] s2vState, final byte[] plaintext)
+      throws GeneralSecurityException {
     if (plaintext.length > Integer.MAX_VALUE - AesUtil.BLOCK_SIZE) {
       throw new GeneralSecurityException("plaintext too long");
     }
 
-    Cipher aesCtr = EngineFactory.CIPHER.getInstance("AES/CTR/NoPadding");
-    byte[] computedIv = s2v(associatedData, plaintext);
+    Cipher aesCtr = EngineFactory.CIPHER.getThreadLocalInstance("AES/CTR/NoPadding");
+    byte[] computedIv = s2vFinish(s2vState, plaintext);
     byte[] ivForJavaCrypto = computedIv.clone();
     ivForJavaCrypto[8] &= (byte) 0x7F; // 63th bit from the right
     ivForJavaCrypto[12] &= (byte) 0x7F; // 31st bit from the right
@@ -124,14 +173,13 @@ public final class AesSiv implements DeterministicAead {
     return Bytes.concat(computedIv, ctrCiphertext);
   }
 
-  @Override
-  public byte[] decryptDeterministically(final byte[] ciphertext, final byte[] associatedData)
+  private byte[] decrypt(final byte[] s2vState, final byte[] ciphertext)
       throws GeneralSecurityException {
     if (ciphertext.length < AesUtil.BLOCK_SIZE) {
       throw new GeneralSecurityException("Ciphertext too short.");
     }
 
-    Cipher aesCtr = EngineFactory.CIPHER.getInstance("AES/CTR/NoPadding");
+    Cipher aesCtr = EngineFactory.CIPHER.getThreadLocalInstance("AES/CTR/NoPadding");
 
     byte[] expectedIv = Arrays.copyOfRange(ciphertext, 0, AesUtil.BLOCK_SIZE);
 
@@ -152,7 +200,7 @@ public final class AesSiv implements DeterministicAead {
       // is safe because if the plaintext is not empty, the next integrity check would reject it.
       decryptedPt = new byte[0];
     }
-    byte[] computedIv = s2v(associatedData, decryptedPt);
+    byte[] computedIv = s2vFinish(s2vState, decryptedPt);
 
     if (Bytes.equal(expectedIv, computedIv)) {
       return decryptedPt;
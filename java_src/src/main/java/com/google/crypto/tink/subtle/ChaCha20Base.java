@@ -98,7 +98,7 @@ abstract class ChaCha20Base implements IndCpaCipher {
     return plaintext.array();
   }
 
-  private void process(final byte[] nonce, ByteBuffer output, ByteBuffer input)
+  void process(final byte[] nonce, ByteBuffer output, ByteBuffer input)
       throws GeneralSecurityException {
     int length = input.remaining();
     int numBlocks = (length / BLOCK_SIZE_IN_BYTES) + 1;
@@ -165,7 +165,7 @@ abstract class ChaCha20Poly1305Base implements Aead {
   }
 
   /** Prepares the input to MAC, following RFC 8439, section 2.8. */
-  private static byte[] macDataRfc8439(final byte[] aad, ByteBuffer ciphertext) {
+  static byte[] macDataRfc8439(final byte[] aad, ByteBuffer ciphertext) {
     int aadPaddedLen = (aad.length % 16 == 0) ? aad.length : (aad.length + 16 - aad.length % 16);
     int ciphertextLen = ciphertext.remaining();
     int ciphertextPaddedLen =
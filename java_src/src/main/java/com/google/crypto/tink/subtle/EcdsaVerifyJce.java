@@ -68,7 +68,7 @@ public final class EcdsaVerifyJce implements PublicKeyVerify {
     if (!EllipticCurves.isValidDerEncoding(derSignature)) {
       throw new GeneralSecurityException("Invalid signature");
     }
-    Signature verifier = EngineFactory.SIGNATURE.getInstance(signatureAlgorithm);
+    Signature verifier = EngineFactory.SIGNATURE.getThreadLocalInstance(signatureAlgorithm);
     verifier.initVerify(publicKey);
     verifier.update(data);
     boolean verified = false;
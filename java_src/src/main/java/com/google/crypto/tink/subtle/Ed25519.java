@@ -1505,7 +1505,8 @@ final class Ed25519 {
 
   static byte[] getHashedScalar(final byte[] privateKey)
       throws GeneralSecurityException {
-    MessageDigest digest = EngineFactory.MESSAGE_DIGEST.getInstance("SHA-512");
+    MessageDigest digest = EngineFactory.MESSAGE_DIGEST.getThreadLocalInstance("SHA-512");
+    digest.reset();
     digest.update(privateKey, 0, FIELD_LEN);
     byte[] h = digest.digest();
     // https://tools.ietf.org/html/rfc8032#section-5.1.2.
@@ -1533,7 +1534,8 @@ final class Ed25519 {
     // Copying the message to make it thread-safe. Otherwise, if the caller modifies the message
     // between the first and the second hash then it might leak the private key.
     byte[] messageCopy = Arrays.copyOfRange(message, 0, message.length);
-    MessageDigest digest = EngineFactory.MESSAGE_DIGEST.getInstance("SHA-512");
+    MessageDigest digest = EngineFactory.MESSAGE_DIGEST.getThreadLocalInstance("SHA-512");
+    digest.reset();
     digest.update(hashedPrivateKey, FIELD_LEN, FIELD_LEN);
     digest.update(messageCopy);
     byte[] r = digest.digest();
@@ -1596,7 +1598,8 @@ final class Ed25519 {
     if (!isSmallerThanGroupOrder(s)) {
       return false;
     }
-    MessageDigest digest = EngineFactory.MESSAGE_DIGEST.getInstance("SHA-512");
+    MessageDigest digest = EngineFactory.MESSAGE_DIGEST.getThreadLocalInstance("SHA-512");
+    digest.reset();
     digest.update(signature, 0, FIELD_LEN);
     digest.update(publicKey);
     digest.update(message);
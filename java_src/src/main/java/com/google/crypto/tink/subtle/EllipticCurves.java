@@ -948,7 +948,7 @@ public final class EllipticCurves {
     // Explicitly reconstruct the peer public key using private key's spec.
     ECParameterSpec privSpec = myPrivateKey.getParams();
     ECPublicKeySpec publicKeySpec = new ECPublicKeySpec(publicPoint, privSpec);
-    KeyFactory kf = EngineFactory.KEY_FACTORY.getInstance("EC");
+    KeyFactory kf = EngineFactory.KEY_FACTORY.getThreadLocalInstance("EC");
     PublicKey publicKey = kf.generatePublic(publicKeySpec);
     KeyAgreement ka = EngineFactory.KEY_AGREEMENT.getInstance("ECDH");
     ka.init(myPrivateKey);
@@ -40,20 +40,39 @@ public final class EncryptThenAuthenticate implements Aead {
   private final Mac mac;
   private final int macLength;
 
+  // Only set for AES-CTR-HMAC, see newAesCtrHmac. The HMAC is then fed incrementally with the
+  // associated data, the ciphertext and the length of the associated data, and the ciphertext is
+  // written directly into the final output, instead of concatenating these first.
+  private final AesCtrJceCipher aesCtrCipher;
+  private final PrfHmacJce hmac;
+
   public EncryptThenAuthenticate(final IndCpaCipher cipher, final Mac mac, int macLength) {
+    this(cipher, mac, macLength, null, null);
+  }
+
+  private EncryptThenAuthenticate(
+      final IndCpaCipher cipher,
+      final Mac mac,
+      int macLength,
+      AesCtrJceCipher aesCtrCipher,
+      PrfHmacJce hmac) {
     this.cipher = cipher;
     this.mac = mac;
     this.macLength = macLength;
+    this.aesCtrCipher = aesCtrCipher;
+    this.hmac = hmac;
   }
 
   /** Returns a new EncryptThenAuthenticate instance using AES-CTR and HMAC. */
   public static Aead newAesCtrHmac(
       final byte[] aesCtrKey, int ivSize, String hmacAlgorithm, final byte[] hmacKey, int tagSize)
       throws GeneralSecurityException {
-    IndCpaCipher cipher = new AesCtrJceCipher(aesCtrKey, ivSize);
+    AesCtrJceCipher cipher = new AesCtrJceCipher(aesCtrKey, ivSize);
     SecretKeySpec hmacKeySpec = new SecretKeySpec(hmacKey, "HMAC");
-    Mac hmac = new PrfMac(new PrfHmacJce(hmacAlgorithm, hmacKeySpec), tagSize);
-    return new EncryptThenAuthenticate(cipher, hmac, tagSize);
+    PrfHmacJce prf = new PrfHmacJce(hmacAlgorithm, hmacKeySpec);
+    // PrfMac validates the tag size.
+    Mac hmac = new PrfMac(prf, tagSize);
+    return new EncryptThenAuthenticate(cipher, hmac, tagSize, cipher, prf);
   }
 
   /**
@@ -70,6 +89,9 @@ public final class EncryptThenAuthenticate implements Aead {
   @Override
   public byte[] encrypt(final byte[] plaintext, final byte[] associatedData)
       throws GeneralSecurityException {
+    if (hmac != null) {
+      return encryptAesCtrHmac(plaintext, associatedData);
+    }
     byte[] ciphertext = cipher.encrypt(plaintext);
     byte[] aad = associatedData;
     if (aad == null) {
@@ -97,6 +119,9 @@ public final class EncryptThenAuthenticate implements Aead {
     if (ciphertext.length < macLength) {
       throw new GeneralSecurityException("ciphertext too short");
     }
+    if (hmac != null) {
+      return decryptAesCtrHmac(ciphertext, associatedData);
+    }
     byte[] rawCiphertext = Arrays.copyOfRange(ciphertext, 0, ciphertext.length - macLength);
     byte[] macValue =
         Arrays.copyOfRange(ciphertext, ciphertext.length - macLength, ciphertext.length);
@@ -109,4 +134,50 @@ public final class EncryptThenAuthenticate implements Aead {
     mac.verifyMac(macValue, Bytes.concat(aad, rawCiphertext, aadLengthInBits));
     return cipher.decrypt(rawCiphertext);
   }
+
+  private byte[] encryptAesCtrHmac(final byte[] plaintext, final byte[] associatedData)
+      throws GeneralSecurityException {
+    int ivSize = aesCtrCipher.getIvSize();
+    if (plaintext.length > Integer.MAX_VALUE - ivSize - macLength) {
+      throw new GeneralSecurityException("plaintext too long");
+    }
+    int ciphertextLength = ivSize + plaintext.length;
+    byte[] output = new byte[ciphertextLength + macLength];
+    aesCtrCipher.encrypt(plaintext, output, 0);
+    byte[] tag = computeHmac(associatedData, output, ciphertextLength);
+    System.arraycopy(tag, 0, output, ciphertextLength, macLength);
+    return output;
+  }
+
+  private byte[] decryptAesCtrHmac(final byte[] ciphertext, final byte[] associatedData)
+      throws GeneralSecurityException {
+    int ciphertextLength = ciphertext.length - macLength;
+    byte[] tag = computeHmac(associatedData, ciphertext, ciphertextLength);
+    int diff = 0;
+    for (int i = 0; i < macLength; i++) {
+      diff |= tag[i] ^ ciphertext[ciphertextLength + i];
+    }
+    if (diff != 0) {
+      throw new GeneralSecurityException("invalid MAC");
+    }
+    return aesCtrCipher.decrypt(ciphertext, 0, ciphertextLength);
+  }
+
+  /**
+   * Returns the untruncated HMAC over (aad || the first {@code length} bytes of {@code ciphertext}
+   * || t), where t is aad's length in bits represented as 64-bit bigendian unsigned integer.
+   */
+  private byte[] computeHmac(final byte[] associatedData, final byte[] ciphertext, int length) {
+    javax.crypto.Mac jceMac = hmac.getThreadLocalMac();
+    long aadLengthInBits = 0;
+    if (associatedData != null) {
+      jceMac.update(associatedData);
+      aadLengthInBits = 8L * associatedData.length;
+    }
+    jceMac.update(ciphertext, 0, length);
+    for (int shift = 56; shift >= 0; shift -= 8) {
+      jceMac.update((byte) (aadLengthInBits >>> shift));
+    }
+    return jceMac.doFinal();
+  }
 }
@@ -25,7 +25,11 @@ import java.security.Provider;
 import java.security.Security;
 import java.security.Signature;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Logger;
 import javax.crypto.Cipher;
 import javax.crypto.KeyAgreement;
@@ -39,6 +43,15 @@ import javax.crypto.Mac;
  * and replace your <code>Cipher.getInstance(...)</code> with <code>
  * EngineFactory.CIPHER.getInstance(...)</code>.
  *
+ * <p>Primitives that need a fresh engine for every operation should use {@link
+ * #getThreadLocalInstance} instead, which avoids going through the provider lookup each time.
+ *
+ * <p>The provider used for an algorithm can be pinned with {@link #setPreferredProvider}. Servers
+ * that have several providers installed can also call {@link #enableAdaptiveProviderSelection}:
+ * each installed provider is then benchmarked briefly in the background for AES/GCM, AES/CTR,
+ * HmacSHA256, SHA256withECDSA and ECDH, and the fastest one is used from then on. In FIPS-mode only
+ * the providers of the FIPS policy are considered.
+ *
  * @since 1.0.0
  */
 public final class EngineFactory<T_WRAPPER extends EngineWrapper<T_ENGINE>, T_ENGINE> {
@@ -46,6 +59,14 @@ public final class EngineFactory<T_WRAPPER extends EngineWrapper<T_ENGINE>, T_EN
   private static final List<Provider> policy;
   private static final boolean LET_FALLBACK;
 
+  // Providers chosen by setPreferredProvider or by benchmarking, keyed by the normalized algorithm.
+  private static final Map<String, Provider> preferredProviders = new ConcurrentHashMap<>();
+  // Algorithms that have been benchmarked, including the ones no provider could run, or whose
+  // provider was set with setPreferredProvider.
+  private static final Map<String, Boolean> benchmarkedAlgorithms = new ConcurrentHashMap<>();
+  // Runs the benchmarks of adaptive provider selection; null until it is enabled.
+  private static Thread benchmarkThread = null;
+
   // Warning: keep this above the initialization of static providers below. or you'll get null
   // pointer errors (due to this policy not being initialized).
   static {
@@ -106,7 +127,127 @@ public final class EngineFactory<T_WRAPPER extends EngineWrapper<T_ENGINE>, T_EN
     this.instanceBuilder = instanceBuilder;
   }
 
+  /**
+   * Makes every factory return engines of {@code provider} for {@code algorithm}, ahead of the
+   * default policy and of adaptive provider selection. If {@code provider} cannot create an engine
+   * for {@code algorithm}, the default policy applies.
+   *
+   * @throws GeneralSecurityException if Tink is in FIPS-mode and {@code provider} is not one of the
+   *     providers accepted in FIPS-mode
+   */
+  public static void setPreferredProvider(String algorithm, Provider provider)
+      throws GeneralSecurityException {
+    if (!LET_FALLBACK && !policy.contains(provider)) {
+      throw new GeneralSecurityException(
+          "Provider " + provider.getName() + " can not be used in FIPS-mode.");
+    }
+    preferredProviders.put(ProviderBenchmark.normalize(algorithm), provider);
+    benchmarkedAlgorithms.put(ProviderBenchmark.normalize(algorithm), true);
+  }
+
+  /**
+   * Enables adaptive provider selection: a background thread benchmarks every installed provider
+   * (in FIPS-mode: every provider of the FIPS policy) for a few tens of milliseconds on each of
+   * AES/GCM/NoPadding, AES/CTR/NoPadding, HmacSHA256, SHA256withECDSA and ECDH, and the fastest one
+   * is used for that algorithm from then on. The choice is logged and can be queried with {@link
+   * #getSelectedProvider}.
+   *
+   * <p>This method returns right away. Until an algorithm has been benchmarked, engines for it are
+   * created with the default policy. Engines that were created before the benchmark finished are
+   * not affected. Algorithms whose provider was set with {@link #setPreferredProvider} are not
+   * benchmarked.
+   */
+  public static synchronized void enableAdaptiveProviderSelection() {
+    if (benchmarkThread != null) {
+      return;
+    }
+    benchmarkThread =
+        new Thread(
+            new Runnable() {
+              @Override
+              public void run() {
+                for (String algorithm : ProviderBenchmark.ALGORITHMS) {
+                  if (Thread.currentThread().isInterrupted()) {
+                    return;
+                  }
+                  benchmark(algorithm);
+                }
+              }
+            },
+            "TinkProviderBenchmark");
+    benchmarkThread.setDaemon(true);
+    benchmarkThread.start();
+  }
+
+  /**
+   * Returns the provider that was set with {@link #setPreferredProvider} or chosen by adaptive
+   * provider selection for {@code algorithm}, or null if the default policy applies.
+   */
+  public static Provider getSelectedProvider(String algorithm) {
+    return preferredProviders.get(ProviderBenchmark.normalize(algorithm));
+  }
+
+  /** Waits until the benchmarks started by {@link #enableAdaptiveProviderSelection} are done. */
+  static void awaitProviderSelection() throws InterruptedException {
+    Thread thread;
+    synchronized (EngineFactory.class) {
+      thread = benchmarkThread;
+    }
+    if (thread != null) {
+      thread.join();
+    }
+  }
+
+  /** Clears all preferred providers and disables adaptive provider selection. */
+  static void resetProviderSelection() throws InterruptedException {
+    Thread thread;
+    synchronized (EngineFactory.class) {
+      thread = benchmarkThread;
+      benchmarkThread = null;
+    }
+    if (thread != null) {
+      thread.interrupt();
+      thread.join();
+    }
+    preferredProviders.clear();
+    benchmarkedAlgorithms.clear();
+  }
+
+  private static Provider selectProvider(String algorithm) {
+    if (preferredProviders.isEmpty()) {
+      return null;
+    }
+    return preferredProviders.get(ProviderBenchmark.normalize(algorithm));
+  }
+
+  /** Runs on the benchmark thread only. */
+  private static void benchmark(String algorithm) {
+    if (benchmarkedAlgorithms.containsKey(algorithm)) {
+      return;
+    }
+    List<Provider> candidates = LET_FALLBACK ? Arrays.asList(Security.getProviders()) : policy;
+    ProviderBenchmark.Result result = ProviderBenchmark.findFastest(algorithm, candidates);
+    if (result == null) {
+      logger.info(String.format("No provider could be benchmarked for %s", algorithm));
+    } else if (preferredProviders.putIfAbsent(algorithm, result.provider) == null) {
+      // Otherwise setPreferredProvider was called while the benchmark ran, and takes precedence.
+      logger.info(
+          String.format(
+              "Selected provider %s for %s (%d operations per second)",
+              result.provider.getName(), algorithm, result.operationsPerSecond));
+    }
+    benchmarkedAlgorithms.put(algorithm, true);
+  }
+
   public T_ENGINE getInstance(String algorithm) throws GeneralSecurityException {
+    Provider preferred = selectProvider(algorithm);
+    if (preferred != null) {
+      try {
+        return this.instanceBuilder.getInstance(algorithm, preferred);
+      } catch (Exception e) {
+        // Use the default policy below.
+      }
+    }
     Exception cause = null;
     for (Provider provider : policy) {
       try {
@@ -123,5 +264,54 @@ public final class EngineFactory<T_WRAPPER extends EngineWrapper<T_ENGINE>, T_EN
     throw new GeneralSecurityException("No good Provider found.", cause);
   }
 
+  /**
+   * Returns an engine for {@code algorithm} that is cached for the calling thread.
+   *
+   * <p>The first call on a thread creates the engine with {@link #getInstance}; later calls with
+   * the same {@code algorithm} on the same thread return the same object. Since the engine is
+   * shared with every other caller on the thread, it must be used as follows:
+   *
+   * <ul>
+   *   <li>It must be fully initialized before each use, i.e. with {@code Cipher.init}, {@code
+   *       Mac.init}, {@code Signature.initSign}/{@code initVerify}, {@code KeyAgreement.init}, or
+   *       {@code MessageDigest.reset}. Whatever state a previous caller left must not matter.
+   *   <li>It must not be kept once the current operation returns, nor be used across a call that
+   *       may itself request an engine for the same {@code algorithm}.
+   *   <li>It must not be handed to another thread.
+   *   <li>It must not be initialized with a private key (see below).
+   * </ul>
+   *
+   * <p>An engine keeps the secret key it was last initialized with until the next caller on the
+   * thread initializes it again, which may be never, and the JCE offers no way to clear it. This
+   * is accepted for symmetric keys that an operation initializes the engine with, e.g. the AES-GCM,
+   * AES-CTR, AES-EAX, AES-SIV and HMAC keys of a primitive, or the keys HKDF and HPKE derive per
+   * message: Tink has always kept such keys in per-thread ciphers (AesGcmJce, AesCtrJceCipher,
+   * AesEaxJce, PrfHmacJce), and the primitive holds the same key for its own lifetime anyway. It is
+   * not accepted for private keys, which must be used with {@link #getInstance}. Objects that would
+   * rather keep a cipher initialized with their key across calls (such as {@link Kwp} and the CMAC
+   * of {@link AesSiv}) keep their own ciphers, which are released with the object.
+   *
+   * <p>Objects that keep an engine across calls (such as streaming segment encrypters) should use
+   * {@link #getInstance} instead.
+   */
+  public T_ENGINE getThreadLocalInstance(String algorithm) throws GeneralSecurityException {
+    Map<String, T_ENGINE> engines = threadLocalEngines.get();
+    T_ENGINE engine = engines.get(algorithm);
+    if (engine == null) {
+      engine = getInstance(algorithm);
+      engines.put(algorithm, engine);
+    }
+    return engine;
+  }
+
   private final T_WRAPPER instanceBuilder;
+
+  @SuppressWarnings("ThreadLocalUsage") // Each factory is a singleton per engine type.
+  private final ThreadLocal<Map<String, T_ENGINE>> threadLocalEngines =
+      new ThreadLocal<Map<String, T_ENGINE>>() {
+        @Override
+        protected Map<String, T_ENGINE> initialValue() {
+          return new HashMap<>();
+        }
+      };
 }
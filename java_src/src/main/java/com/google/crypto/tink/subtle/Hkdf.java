@@ -47,7 +47,7 @@ public final class Hkdf {
   public static byte[] computeHkdf(
       String macAlgorithm, final byte[] ikm, final byte[] salt, final byte[] info, int size)
       throws GeneralSecurityException {
-    Mac mac = EngineFactory.MAC.getInstance(macAlgorithm);
+    Mac mac = EngineFactory.MAC.getThreadLocalInstance(macAlgorithm);
     if (size > 255 * mac.getMacLength()) {
       throw new GeneralSecurityException("size too large");
     }
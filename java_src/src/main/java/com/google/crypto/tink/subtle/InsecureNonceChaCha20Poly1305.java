@@ -0,0 +1,124 @@
+// Copyright 2022 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink.subtle;
+
+import static com.google.crypto.tink.subtle.Poly1305.MAC_KEY_SIZE_IN_BYTES;
+import static com.google.crypto.tink.subtle.Poly1305.MAC_TAG_SIZE_IN_BYTES;
+
+import com.google.crypto.tink.config.internal.TinkFipsUtil;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import javax.crypto.AEADBadTagException;
+
+/**
+ * ChaCha20Poly1305 AEAD construction, as described in RFC 8439, where the caller chooses the nonce.
+ *
+ * <p>Unlike {@link ChaCha20Poly1305}, the nonce is neither generated nor part of the ciphertext.
+ * This is meant for protocols such as HPKE that derive nonces deterministically. Using the same key
+ * and nonce twice breaks both confidentiality and integrity, so callers must guarantee that every
+ * nonce is used at most once per key.
+ */
+public final class InsecureNonceChaCha20Poly1305 {
+  public static final TinkFipsUtil.AlgorithmFipsCompatibility FIPS =
+      TinkFipsUtil.AlgorithmFipsCompatibility.ALGORITHM_NOT_FIPS;
+
+  /** The size of the nonce in bytes. */
+  public static final int NONCE_SIZE_IN_BYTES = 12;
+
+  private final ChaCha20 chacha20;
+  private final ChaCha20 macKeyChaCha20;
+
+  public InsecureNonceChaCha20Poly1305(final byte[] key) throws GeneralSecurityException {
+    if (!FIPS.isCompatible()) {
+      throw new GeneralSecurityException("Can not use ChaCha20Poly1305 in FIPS-mode.");
+    }
+    this.chacha20 = new ChaCha20(key, 1);
+    this.macKeyChaCha20 = new ChaCha20(key, 0);
+  }
+
+  /**
+   * Encrypts {@code plaintext} with {@code nonce} and authenticates it together with {@code
+   * associatedData}.
+   *
+   * @return ciphertext with the format {@code actual_ciphertext || tag}
+   */
+  public byte[] encrypt(final byte[] nonce, final byte[] plaintext, final byte[] associatedData)
+      throws GeneralSecurityException {
+    validateNonce(nonce);
+    if (plaintext.length > Integer.MAX_VALUE - MAC_TAG_SIZE_IN_BYTES) {
+      throw new GeneralSecurityException("plaintext too long");
+    }
+    ByteBuffer ciphertext = ByteBuffer.allocate(plaintext.length + MAC_TAG_SIZE_IN_BYTES);
+    chacha20.process(nonce, ciphertext, ByteBuffer.wrap(plaintext));
+    ciphertext.position(0);
+    ciphertext.limit(plaintext.length);
+    byte[] tag =
+        Poly1305.computeMac(
+            getMacKey(nonce), ChaCha20Poly1305Base.macDataRfc8439(aad(associatedData), ciphertext));
+    ciphertext.limit(ciphertext.capacity());
+    ciphertext.position(plaintext.length);
+    ciphertext.put(tag);
+    return ciphertext.array();
+  }
+
+  /**
+   * Decrypts {@code ciphertext} with the format {@code actual_ciphertext || tag}, which was
+   * encrypted with {@code nonce} and {@code associatedData}.
+   *
+   * @throws AEADBadTagException when the tag is invalid
+   */
+  public byte[] decrypt(final byte[] nonce, final byte[] ciphertext, final byte[] associatedData)
+      throws GeneralSecurityException {
+    validateNonce(nonce);
+    if (ciphertext.length < MAC_TAG_SIZE_IN_BYTES) {
+      throw new GeneralSecurityException("ciphertext too short");
+    }
+    int ciphertextLength = ciphertext.length - MAC_TAG_SIZE_IN_BYTES;
+    byte[] tag = new byte[MAC_TAG_SIZE_IN_BYTES];
+    System.arraycopy(ciphertext, ciphertextLength, tag, 0, MAC_TAG_SIZE_IN_BYTES);
+    try {
+      Poly1305.verifyMac(
+          getMacKey(nonce),
+          ChaCha20Poly1305Base.macDataRfc8439(
+              aad(associatedData), ByteBuffer.wrap(ciphertext, 0, ciphertextLength)),
+          tag);
+    } catch (GeneralSecurityException ex) {
+      throw new AEADBadTagException(ex.toString());
+    }
+    ByteBuffer plaintext = ByteBuffer.allocate(ciphertextLength);
+    chacha20.process(nonce, plaintext, ByteBuffer.wrap(ciphertext, 0, ciphertextLength));
+    return plaintext.array();
+  }
+
+  private static void validateNonce(final byte[] nonce) throws GeneralSecurityException {
+    if (nonce.length != NONCE_SIZE_IN_BYTES) {
+      throw new GeneralSecurityException("nonce must be 12 bytes");
+    }
+  }
+
+  private static byte[] aad(final byte[] associatedData) {
+    return associatedData == null ? new byte[0] : associatedData;
+  }
+
+  /** The MAC key is the first 32 bytes of the first key stream block */
+  private byte[] getMacKey(final byte[] nonce) {
+    ByteBuffer firstBlock = macKeyChaCha20.chacha20Block(nonce, 0 /* counter */);
+    byte[] result = new byte[MAC_KEY_SIZE_IN_BYTES];
+    firstBlock.get(result);
+    return result;
+  }
+}
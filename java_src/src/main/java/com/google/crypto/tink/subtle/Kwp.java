@@ -18,7 +18,13 @@ package com.google.crypto.tink.subtle;
 
 import com.google.crypto.tink.KeyWrap;
 import java.security.GeneralSecurityException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
 import javax.crypto.BadPaddingException;
 import javax.crypto.Cipher;
 import javax.crypto.SecretKey;
@@ -46,12 +52,17 @@ import javax.crypto.spec.SecretKeySpec;
  * @since 1.?.?
  */
 public class Kwp implements KeyWrap {
-  private final SecretKey aesKey;
+  // ECB ciphers initialized with the wrapping key once. With ECB and no padding, doFinal leaves a
+  // cipher ready for the next block, so they are never initialized again.
+  private final PreKeyedCiphers encryptCiphers;
+  private final PreKeyedCiphers decryptCiphers;
 
   static final int MIN_WRAP_KEY_SIZE = 16;
   static final int MAX_WRAP_KEY_SIZE = 4096;
   static final int ROUNDS = 6;
   static final byte[] PREFIX = new byte[]{(byte) 0xa6, (byte) 0x59, (byte) 0x59, (byte) 0xa6};
+  // Number of keys that wrapAll and unwrapAll process in one task of the executor.
+  static final int KEYS_PER_TASK = 256;
 
   /**
    * Construct a new Instance for KWP.
@@ -62,7 +73,11 @@ public class Kwp implements KeyWrap {
     if (key.length != 16 && key.length != 32) {
       throw new GeneralSecurityException("Unsupported key length");
     }
-    aesKey = new SecretKeySpec(key, "AES");
+    SecretKey aesKey = new SecretKeySpec(key, "AES");
+    encryptCiphers = new PreKeyedCiphers("AES/ECB/NoPadding", Cipher.ENCRYPT_MODE, aesKey, null);
+    decryptCiphers = new PreKeyedCiphers("AES/ECB/NoPadding", Cipher.DECRYPT_MODE, aesKey, null);
+    // Initialize a cipher, mostly to fail fast if anything is wrong.
+    encryptCiphers.release(encryptCiphers.take());
   }
 
   /**
@@ -95,8 +110,7 @@ public class Kwp implements KeyWrap {
     System.arraycopy(iv, 0, data, 0, iv.length);
     System.arraycopy(key, 0, data, 8, key.length); 
     int blocks = data.length / 8 - 1;
-    Cipher aes = EngineFactory.CIPHER.getInstance("AES/ECB/NoPadding");
-    aes.init(Cipher.ENCRYPT_MODE, aesKey);
+    Cipher aes = encryptCiphers.take();
     byte[] block = new byte[16];
     System.arraycopy(data, 0, block, 0, 8);
     for (int i = 0; i < ROUNDS; i++) {
@@ -113,6 +127,7 @@ public class Kwp implements KeyWrap {
         System.arraycopy(block, 8, data, 8 * (j + 1), 8);
       }
     }
+    encryptCiphers.release(aes);
     System.arraycopy(block, 0, data, 0, 8);
     return data;
   }
@@ -132,8 +147,7 @@ public class Kwp implements KeyWrap {
     }
     byte[] data = Arrays.copyOf(wrapped, wrapped.length);
     int blocks = data.length / 8 - 1;
-    Cipher aes = EngineFactory.CIPHER.getInstance("AES/ECB/NoPadding");
-    aes.init(Cipher.DECRYPT_MODE, aesKey);
+    Cipher aes = decryptCiphers.take();
     byte[] block = new byte[16];
     System.arraycopy(data, 0, block, 0, 8);
     for (int i = ROUNDS - 1; i >= 0; i--) {
@@ -151,6 +165,7 @@ public class Kwp implements KeyWrap {
         System.arraycopy(block, 8, data, 8 * (j + 1), 8);
       }
     }
+    decryptCiphers.release(aes);
     System.arraycopy(block, 0, data, 0, 8);
     return data;
   }
@@ -225,4 +240,100 @@ public class Kwp implements KeyWrap {
       throw new BadPaddingException("Invalid padding");
     }
   }
+
+  /**
+   * Wraps every key in {@code keys}, like {@link #wrap}.
+   *
+   * @return the wrapped keys, in the same order as {@code keys}
+   * @throws GeneralSecurityException if any of the keys cannot be wrapped
+   */
+  public List<byte[]> wrapAll(List<byte[]> keys) throws GeneralSecurityException {
+    return processAll(keys, true, 0, keys.size());
+  }
+
+  /**
+   * Wraps every key in {@code keys}, like {@link #wrap}, splitting the work into tasks of {@link
+   * #KEYS_PER_TASK} keys that run on {@code executor}. This method blocks until all tasks are done.
+   *
+   * @return the wrapped keys, in the same order as {@code keys}
+   * @throws GeneralSecurityException if any of the keys cannot be wrapped
+   */
+  public List<byte[]> wrapAll(List<byte[]> keys, Executor executor)
+      throws GeneralSecurityException {
+    return processAll(keys, true, executor);
+  }
+
+  /**
+   * Unwraps every key in {@code wrappedKeys}, like {@link #unwrap}.
+   *
+   * @return the unwrapped keys, in the same order as {@code wrappedKeys}
+   * @throws GeneralSecurityException if any of the keys fails the integrity check
+   */
+  public List<byte[]> unwrapAll(List<byte[]> wrappedKeys) throws GeneralSecurityException {
+    return processAll(wrappedKeys, false, 0, wrappedKeys.size());
+  }
+
+  /**
+   * Unwraps every key in {@code wrappedKeys}, like {@link #unwrap}, splitting the work into tasks
+   * of {@link #KEYS_PER_TASK} keys that run on {@code executor}. This method blocks until all tasks
+   * are done.
+   *
+   * @return the unwrapped keys, in the same order as {@code wrappedKeys}
+   * @throws GeneralSecurityException if any of the keys fails the integrity check
+   */
+  public List<byte[]> unwrapAll(List<byte[]> wrappedKeys, Executor executor)
+      throws GeneralSecurityException {
+    return processAll(wrappedKeys, false, executor);
+  }
+
+  private List<byte[]> processAll(List<byte[]> inputs, boolean wrap, int from, int to)
+      throws GeneralSecurityException {
+    List<byte[]> outputs = new ArrayList<>(to - from);
+    for (int i = from; i < to; i++) {
+      outputs.add(wrap ? wrap(inputs.get(i)) : unwrap(inputs.get(i)));
+    }
+    return outputs;
+  }
+
+  private List<byte[]> processAll(
+      final List<byte[]> inputs, final boolean wrap, Executor executor)
+      throws GeneralSecurityException {
+    List<FutureTask<List<byte[]>>> tasks = new ArrayList<>();
+    for (int start = 0; start < inputs.size(); start += KEYS_PER_TASK) {
+      final int from = start;
+      final int to = Math.min(inputs.size(), start + KEYS_PER_TASK);
+      FutureTask<List<byte[]>> task =
+          new FutureTask<>(
+              new Callable<List<byte[]>>() {
+                @Override
+                public List<byte[]> call() throws GeneralSecurityException {
+                  return processAll(inputs, wrap, from, to);
+                }
+              });
+      tasks.add(task);
+      executor.execute(task);
+    }
+    List<byte[]> outputs = new ArrayList<>(inputs.size());
+    try {
+      for (FutureTask<List<byte[]>> task : tasks) {
+        outputs.addAll(task.get());
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new GeneralSecurityException("interrupted", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof GeneralSecurityException) {
+        throw (GeneralSecurityException) e.getCause();
+      }
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new GeneralSecurityException(e.getCause());
+    } finally {
+      for (FutureTask<List<byte[]>> task : tasks) {
+        task.cancel(false);
+      }
+    }
+    return outputs;
+  }
 }
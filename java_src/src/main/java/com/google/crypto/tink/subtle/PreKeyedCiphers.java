@@ -0,0 +1,83 @@
+// Copyright 2022 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink.subtle;
+
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.spec.AlgorithmParameterSpec;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import javax.crypto.Cipher;
+
+/**
+ * Ciphers initialized with one key, kept by the object that owns the key so that it does not have
+ * to initialize a cipher on every call.
+ *
+ * <p>A caller takes a cipher with {@link #take} and gives it back with {@link #release} once the
+ * cipher is back in the state that {@code init} left it in, e.g. after {@code doFinal}. A cipher
+ * that isn't given back, e.g. because an exception left it in the middle of an operation, is
+ * dropped. Callers are spread over a few slots by thread, so threads that use the same key at the
+ * same time seldom have to initialize a new cipher.
+ *
+ * <p>Unlike {@link EngineFactory#getThreadLocalInstance} engines, these ciphers belong to the
+ * owner, so at most a few of them exist per key, and the key is released with the owner instead of
+ * staying in the thread locals of every thread that used it.
+ */
+final class PreKeyedCiphers {
+  private static final int SLOTS = Math.min(8, Runtime.getRuntime().availableProcessors());
+
+  private final String algorithm;
+  private final int mode;
+  private final Key key;
+  private final AlgorithmParameterSpec params;
+  private final AtomicReferenceArray<Cipher> idle = new AtomicReferenceArray<>(SLOTS);
+
+  /**
+   * Creates ciphers for {@code algorithm}, initialized with {@code mode}, {@code key} and {@code
+   * params}; {@code params} may be null.
+   */
+  PreKeyedCiphers(String algorithm, int mode, Key key, AlgorithmParameterSpec params) {
+    this.algorithm = algorithm;
+    this.mode = mode;
+    this.key = key;
+    this.params = params;
+  }
+
+  /** Returns an initialized cipher that no other caller uses until it is released. */
+  Cipher take() throws GeneralSecurityException {
+    Cipher cipher = idle.getAndSet(slot(), null);
+    if (cipher == null) {
+      cipher = EngineFactory.CIPHER.getInstance(algorithm);
+      if (params == null) {
+        cipher.init(mode, key);
+      } else {
+        cipher.init(mode, key, params);
+      }
+    }
+    return cipher;
+  }
+
+  /**
+   * Gives back a cipher from {@link #take}. It must be in the state that {@code init} left it in.
+   */
+  void release(Cipher cipher) {
+    idle.set(slot(), cipher);
+  }
+
+  private static int slot() {
+    return (int) (Thread.currentThread().getId() % SLOTS);
+  }
+}
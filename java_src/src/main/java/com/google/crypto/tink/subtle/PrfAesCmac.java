@@ -17,99 +17,103 @@
 package com.google.crypto.tink.subtle;
 
 import com.google.crypto.tink.config.internal.TinkFipsUtil;
-import com.google.crypto.tink.prf.Prf;
+import com.google.crypto.tink.prf.BufferedPrf;
 import com.google.errorprone.annotations.Immutable;
+import java.nio.ByteBuffer;
 import java.security.GeneralSecurityException;
 import java.security.InvalidAlgorithmParameterException;
 import java.util.Arrays;
-import javax.crypto.Cipher;
-import javax.crypto.SecretKey;
-import javax.crypto.spec.SecretKeySpec;
 
 /**
  * An implementation of CMAC following <a href="https://tools.ietf.org/html/rfc4493">RFC 4493</a>.
  */
 @Immutable
-public final class PrfAesCmac implements Prf {
+public final class PrfAesCmac implements BufferedPrf {
   public static final TinkFipsUtil.AlgorithmFipsCompatibility FIPS =
       TinkFipsUtil.AlgorithmFipsCompatibility.ALGORITHM_NOT_FIPS;
 
-  @SuppressWarnings("Immutable")
-  private final SecretKey keySpec;
+  // Holds the resulting CMAC, before it is copied or truncated.
+  @SuppressWarnings("ThreadLocalUsage")
+  private static final ThreadLocal<byte[]> localBlock =
+      new ThreadLocal<byte[]>() {
+        @Override
+        protected byte[] initialValue() {
+          return new byte[AesUtil.BLOCK_SIZE];
+        }
+      };
 
-  @SuppressWarnings("Immutable")
-  private byte[] subKey1;
+  @SuppressWarnings("Immutable") // The engine only holds the key and per-thread state.
+  private final AesCmacEngine engine;
 
-  @SuppressWarnings("Immutable")
-  private byte[] subKey2;
-
-  private static Cipher instance() throws GeneralSecurityException {
+  public PrfAesCmac(final byte[] key) throws GeneralSecurityException {
     if (!FIPS.isCompatible()) {
       throw new GeneralSecurityException("Can not use AES-CMAC in FIPS-mode.");
     }
-    return EngineFactory.CIPHER.getInstance("AES/ECB/NoPadding");
+    engine = new AesCmacEngine(key);
   }
 
-  public PrfAesCmac(final byte[] key) throws GeneralSecurityException {
-    Validators.validateAesKeySize(key.length);
+  @Override
+  public byte[] compute(final byte[] data, int outputLength) throws GeneralSecurityException {
+    checkOutputLength(outputLength);
+    byte[] block = localBlock.get();
+    cmac(ByteBuffer.wrap(data), block);
+    return Arrays.copyOf(block, outputLength);
+  }
 
-    keySpec = new SecretKeySpec(key, "AES");
-    generateSubKeys();
+  @Override
+  public void compute(byte[] input, byte[] output, int offset, int outputLength)
+      throws GeneralSecurityException {
+    compute(ByteBuffer.wrap(input), output, offset, outputLength);
   }
 
-  // https://tools.ietf.org/html/rfc4493#section-2.4
   @Override
-  public byte[] compute(final byte[] data, int outputLength) throws GeneralSecurityException {
-    if (outputLength > AesUtil.BLOCK_SIZE) {
-      throw new InvalidAlgorithmParameterException(
-          "outputLength too large, max is " + AesUtil.BLOCK_SIZE + " bytes");
+  public void compute(ByteBuffer input, byte[] output, int offset, int outputLength)
+      throws GeneralSecurityException {
+    checkOutputLength(outputLength);
+    if (offset < 0 || outputLength < 0 || offset > output.length - outputLength) {
+      throw new IndexOutOfBoundsException("output range out of bounds");
     }
-    Cipher aes = instance();
-    aes.init(Cipher.ENCRYPT_MODE, keySpec);
-
-    // n is the number of blocks (including partial blocks) into which the data
-    // is divided. Empty data is divided into 1 empty block.
-    // Step 2: n = ceil(length / blocksize)
-    // TODO(b/68969256): Adding a test that computes a CMAC of length 2**31-1.
-    int n = Math.max(1, (int) Math.ceil((double) data.length / AesUtil.BLOCK_SIZE));
+    byte[] block = localBlock.get();
+    cmac(input, block);
+    System.arraycopy(block, 0, output, offset, outputLength);
+  }
 
-    // Step 3
-    boolean flag = (n * AesUtil.BLOCK_SIZE == data.length);
+  @Override
+  public long computeLong(byte[] input) throws GeneralSecurityException {
+    byte[] block = localBlock.get();
+    cmac(ByteBuffer.wrap(input), block);
+    return toLong(block);
+  }
 
-    // Step 4
-    byte[] mLast;
-    if (flag) {
-      mLast = Bytes.xor(data, (n - 1) * AesUtil.BLOCK_SIZE, subKey1, 0, AesUtil.BLOCK_SIZE);
-    } else {
-      mLast =
-          Bytes.xor(
-              AesUtil.cmacPad(Arrays.copyOfRange(data, (n - 1) * AesUtil.BLOCK_SIZE, data.length)),
-              subKey2);
+  @Override
+  public void computeLongs(byte[][] inputs, long[] output) throws GeneralSecurityException {
+    if (output.length < inputs.length) {
+      throw new IllegalArgumentException("output is shorter than inputs");
     }
+    byte[] block = localBlock.get();
+    for (int i = 0; i < inputs.length; i++) {
+      cmac(ByteBuffer.wrap(inputs[i]), block);
+      output[i] = toLong(block);
+    }
+  }
 
-    // Step 5
-    byte[] x = new byte[AesUtil.BLOCK_SIZE];
-
-    // Step 6
-    byte[] y;
-    for (int i = 0; i < n - 1; i++) {
-      y = Bytes.xor(x, 0, data, i * AesUtil.BLOCK_SIZE, AesUtil.BLOCK_SIZE);
-      x = aes.doFinal(y);
+  private static void checkOutputLength(int outputLength)
+      throws InvalidAlgorithmParameterException {
+    if (outputLength > AesUtil.BLOCK_SIZE) {
+      throw new InvalidAlgorithmParameterException(
+          "outputLength too large, max is " + AesUtil.BLOCK_SIZE + " bytes");
     }
-    y = Bytes.xor(mLast, x);
+  }
 
-    // Step 7
-    byte[] output = Arrays.copyOf(aes.doFinal(y), outputLength);
-    return output;
+  private void cmac(ByteBuffer data, byte[] block) throws GeneralSecurityException {
+    engine.compute(data, block);
   }
 
-  // https://tools.ietf.org/html/rfc4493#section-2.3
-  private void generateSubKeys() throws GeneralSecurityException {
-    Cipher aes = instance();
-    aes.init(Cipher.ENCRYPT_MODE, keySpec);
-    byte[] zeroes = new byte[AesUtil.BLOCK_SIZE];
-    byte[] l = aes.doFinal(zeroes);
-    subKey1 = AesUtil.dbl(l);
-    subKey2 = AesUtil.dbl(subKey1);
+  private static long toLong(byte[] block) {
+    long result = 0;
+    for (int i = 0; i < 8; i++) {
+      result = (result << 8) | (block[i] & 0xff);
+    }
+    return result;
   }
 }
@@ -17,8 +17,10 @@
 package com.google.crypto.tink.subtle;
 
 import com.google.crypto.tink.config.internal.TinkFipsUtil;
+import com.google.crypto.tink.prf.BufferedPrf;
 import com.google.crypto.tink.prf.Prf;
 import com.google.errorprone.annotations.Immutable;
+import java.nio.ByteBuffer;
 import java.security.GeneralSecurityException;
 import java.security.InvalidAlgorithmParameterException;
 import java.security.NoSuchAlgorithmException;
@@ -27,7 +29,7 @@ import javax.crypto.Mac;
 
 /** {@link Prf} implementation using JCE. */
 @Immutable
-public final class PrfHmacJce implements Prf {
+public final class PrfHmacJce implements BufferedPrf {
   public static final TinkFipsUtil.AlgorithmFipsCompatibility FIPS =
       TinkFipsUtil.AlgorithmFipsCompatibility.ALGORITHM_REQUIRES_BORINGCRYPTO;
 
@@ -49,6 +51,17 @@ public final class PrfHmacJce implements Prf {
         }
       };
 
+  // Receives the full HMAC before it is truncated into the caller's buffer. 64 bytes is the output
+  // size of the largest supported algorithm, HMACSHA512.
+  @SuppressWarnings("ThreadLocalUsage")
+  private static final ThreadLocal<byte[]> localOutput =
+      new ThreadLocal<byte[]>() {
+        @Override
+        protected byte[] initialValue() {
+          return new byte[64];
+        }
+      };
+
   private final String algorithm;
   @SuppressWarnings("Immutable")  // We do not mutate the key.
   private final java.security.Key key;
@@ -102,8 +115,87 @@ public final class PrfHmacJce implements Prf {
     return Arrays.copyOf(localMac.get().doFinal(), outputLength);
   }
 
+  @Override
+  public void compute(byte[] input, byte[] output, int offset, int outputLength)
+      throws GeneralSecurityException {
+    checkOutputLength(outputLength);
+    checkRange(output, offset, outputLength);
+    Mac mac = localMac.get();
+    mac.update(input);
+    finish(mac, output, offset, outputLength);
+  }
+
+  @Override
+  public void compute(ByteBuffer input, byte[] output, int offset, int outputLength)
+      throws GeneralSecurityException {
+    checkOutputLength(outputLength);
+    checkRange(output, offset, outputLength);
+    Mac mac = localMac.get();
+    mac.update(input);
+    finish(mac, output, offset, outputLength);
+  }
+
+  @Override
+  public long computeLong(byte[] input) throws GeneralSecurityException {
+    Mac mac = localMac.get();
+    mac.update(input);
+    byte[] buffer = localOutput.get();
+    mac.doFinal(buffer, 0);
+    return toLong(buffer);
+  }
+
+  @Override
+  public void computeLongs(byte[][] inputs, long[] output) throws GeneralSecurityException {
+    if (output.length < inputs.length) {
+      throw new IllegalArgumentException("output is shorter than inputs");
+    }
+    Mac mac = localMac.get();
+    byte[] buffer = localOutput.get();
+    for (int i = 0; i < inputs.length; i++) {
+      mac.update(inputs[i]);
+      mac.doFinal(buffer, 0);
+      output[i] = toLong(buffer);
+    }
+  }
+
+  /**
+   * Returns the current thread's Mac, initialized with the key, for callers in this package that
+   * feed their input in several parts. Every computation must be completed with {@code doFinal},
+   * so that no input is left over for the next caller on this thread.
+   */
+  Mac getThreadLocalMac() {
+    return localMac.get();
+  }
+
   /** Returns the maximum supported tag length. */
   public int getMaxOutputLength() {
     return maxOutputLength;
   }
+
+  private void checkOutputLength(int outputLength) throws InvalidAlgorithmParameterException {
+    if (outputLength > maxOutputLength) {
+      throw new InvalidAlgorithmParameterException("tag size too big");
+    }
+  }
+
+  private static void checkRange(byte[] output, int offset, int length) {
+    if (offset < 0 || length < 0 || offset > output.length - length) {
+      throw new IndexOutOfBoundsException("output range out of bounds");
+    }
+  }
+
+  private static void finish(Mac mac, byte[] output, int offset, int outputLength)
+      throws GeneralSecurityException {
+    byte[] buffer = localOutput.get();
+    mac.doFinal(buffer, 0);
+    System.arraycopy(buffer, 0, output, offset, outputLength);
+  }
+
+  private static long toLong(byte[] buffer) {
+    long result = 0;
+    for (int i = 0; i < 8; i++) {
+      result = (result << 8) | (buffer[i] & 0xff);
+    }
+    return result;
+  }
 }
@@ -0,0 +1,215 @@
+// Copyright 2022 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink.subtle;
+
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.Provider;
+import java.security.Signature;
+import java.security.spec.ECGenParameterSpec;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import javax.crypto.Cipher;
+import javax.crypto.KeyAgreement;
+import javax.crypto.Mac;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Measures how fast the installed {@link Provider}s run a small set of algorithms.
+ *
+ * <p>Used by {@link EngineFactory} when adaptive provider selection is enabled. Only the
+ * algorithms Tink spends most of its time in, {@link #ALGORITHMS}, are measured; for every other
+ * algorithm the regular provider policy applies.
+ */
+final class ProviderBenchmark {
+  private static final long WARMUP_NANOS = 20_000_000L;
+  private static final long MEASUREMENT_NANOS = 20_000_000L;
+  private static final int PAYLOAD_SIZE = 4096;
+
+  private static final String AES_GCM = "AES/GCM/NOPADDING";
+  private static final String AES_CTR = "AES/CTR/NOPADDING";
+  private static final String HMAC_SHA256 = "HMACSHA256";
+  private static final String SHA256_WITH_ECDSA = "SHA256WITHECDSA";
+  private static final String ECDH = "ECDH";
+
+  /** The benchmarked algorithms, normalized. */
+  static final List<String> ALGORITHMS =
+      Collections.unmodifiableList(
+          Arrays.asList(AES_GCM, AES_CTR, HMAC_SHA256, SHA256_WITH_ECDSA, ECDH));
+
+  /** Result of a benchmark: the fastest provider and how many operations per second it ran. */
+  static final class Result {
+    final Provider provider;
+    final long operationsPerSecond;
+
+    Result(Provider provider, long operationsPerSecond) {
+      this.provider = provider;
+      this.operationsPerSecond = operationsPerSecond;
+    }
+  }
+
+  /** A single operation of the benchmarked algorithm, bound to one provider. */
+  private interface Operation {
+    void run() throws GeneralSecurityException;
+  }
+
+  /** Returns the name under which {@code algorithm} is benchmarked and cached. */
+  static String normalize(String algorithm) {
+    return algorithm.toUpperCase(Locale.ROOT);
+  }
+
+  /**
+   * Runs {@code algorithm} on each of {@code candidates} and returns the fastest one, or null if
+   * none of them implements it.
+   */
+  static Result findFastest(String algorithm, List<Provider> candidates) {
+    Result best = null;
+    for (Provider provider : candidates) {
+      Operation operation;
+      try {
+        operation = newOperation(normalize(algorithm), provider);
+        operation.run();
+      } catch (GeneralSecurityException | RuntimeException e) {
+        // The provider does not implement the algorithm, or does not accept keys of this form.
+        continue;
+      }
+      long operationsPerSecond;
+      try {
+        operationsPerSecond = measure(operation);
+      } catch (GeneralSecurityException | RuntimeException e) {
+        continue;
+      }
+      if (best == null || operationsPerSecond > best.operationsPerSecond) {
+        best = new Result(provider, operationsPerSecond);
+      }
+    }
+    return best;
+  }
+
+  private static long measure(Operation operation) throws GeneralSecurityException {
+    long deadline = System.nanoTime() + WARMUP_NANOS;
+    while (System.nanoTime() < deadline) {
+      operation.run();
+    }
+    long count = 0;
+    long start = System.nanoTime();
+    long elapsed;
+    do {
+      operation.run();
+      count++;
+      elapsed = System.nanoTime() - start;
+    } while (elapsed < MEASUREMENT_NANOS);
+    return count * 1_000_000_000L / elapsed;
+  }
+
+  @SuppressWarnings("InsecureCryptoUsage")
+  private static Operation newOperation(String algorithm, final Provider provider)
+      throws GeneralSecurityException {
+    final byte[] payload = new byte[PAYLOAD_SIZE];
+    final SecretKeySpec aesKey = new SecretKeySpec(new byte[16], "AES");
+    switch (algorithm) {
+      case AES_GCM:
+        {
+          final Cipher cipher = Cipher.getInstance(AES_GCM, provider);
+          final byte[] iv = new byte[12];
+          return new Operation() {
+            @Override
+            public void run() throws GeneralSecurityException {
+              // Providers refuse to encrypt twice with the same key and IV.
+              incrementCounter(iv);
+              cipher.init(Cipher.ENCRYPT_MODE, aesKey, new GCMParameterSpec(128, iv));
+              cipher.doFinal(payload);
+            }
+          };
+        }
+      case AES_CTR:
+        {
+          final Cipher cipher = Cipher.getInstance(AES_CTR, provider);
+          final IvParameterSpec iv = new IvParameterSpec(new byte[16]);
+          return new Operation() {
+            @Override
+            public void run() throws GeneralSecurityException {
+              cipher.init(Cipher.ENCRYPT_MODE, aesKey, iv);
+              cipher.doFinal(payload);
+            }
+          };
+        }
+      case HMAC_SHA256:
+        {
+          final Mac mac = Mac.getInstance(HMAC_SHA256, provider);
+          final SecretKeySpec macKey = new SecretKeySpec(new byte[32], "HMAC");
+          return new Operation() {
+            @Override
+            public void run() throws GeneralSecurityException {
+              mac.init(macKey);
+              mac.doFinal(payload);
+            }
+          };
+        }
+      case SHA256_WITH_ECDSA:
+        {
+          final Signature signer = Signature.getInstance(SHA256_WITH_ECDSA, provider);
+          final KeyPair keyPair = newP256KeyPair();
+          return new Operation() {
+            @Override
+            public void run() throws GeneralSecurityException {
+              signer.initSign(keyPair.getPrivate());
+              signer.update(payload, 0, 64);
+              signer.sign();
+            }
+          };
+        }
+      case ECDH:
+        {
+          final KeyAgreement keyAgreement = KeyAgreement.getInstance(ECDH, provider);
+          final KeyPair ours = newP256KeyPair();
+          final KeyPair theirs = newP256KeyPair();
+          return new Operation() {
+            @Override
+            public void run() throws GeneralSecurityException {
+              keyAgreement.init(ours.getPrivate());
+              keyAgreement.doPhase(theirs.getPublic(), true);
+              keyAgreement.generateSecret();
+            }
+          };
+        }
+      default:
+        throw new GeneralSecurityException("unsupported algorithm: " + algorithm);
+    }
+  }
+
+  private static KeyPair newP256KeyPair() throws GeneralSecurityException {
+    KeyPairGenerator keyGen = KeyPairGenerator.getInstance("EC");
+    keyGen.initialize(new ECGenParameterSpec("secp256r1"));
+    return keyGen.generateKeyPair();
+  }
+
+  private static void incrementCounter(byte[] counter) {
+    for (int i = counter.length - 1; i >= 0; i--) {
+      if (++counter[i] != 0) {
+        return;
+      }
+    }
+  }
+
+  private ProviderBenchmark() {}
+}
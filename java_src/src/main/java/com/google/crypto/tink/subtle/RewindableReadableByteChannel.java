@@ -21,6 +21,7 @@ import static java.lang.Math.max;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.ReadableByteChannel;
+import java.util.concurrent.locks.ReentrantLock;
 import javax.annotation.concurrent.GuardedBy;
 
 /**
@@ -33,15 +34,17 @@ import javax.annotation.concurrent.GuardedBy;
  * @since 1.1.0
  */
 public final class RewindableReadableByteChannel implements ReadableByteChannel {
-  @GuardedBy("this")
+  private final ReentrantLock lock = new ReentrantLock();
+
+  @GuardedBy("lock")
   final ReadableByteChannel baseChannel;
   // Buffer for caching initial portion of baseChannel, to enable rewinding.
   // A non-null buffer is always in "draining" mode at the beginning and end of a read call.
-  @GuardedBy("this")
+  @GuardedBy("lock")
   ByteBuffer buffer;
-  @GuardedBy("this")
+  @GuardedBy("lock")
   boolean canRewind;  // True iff this channel still has rewinding enabled.
-  @GuardedBy("this")
+  @GuardedBy("lock")
   boolean directRead;  // True iff the read-operations should go directly to baseChannel.
 
   /**
@@ -61,19 +64,29 @@ public final class RewindableReadableByteChannel implements ReadableByteChannel
    * read()-calls will be forwarded directly to the wrapped
    * channel (after the currently buffered bytes are read).
    */
-  public synchronized void disableRewinding() {
-    this.canRewind = false;
+  public void disableRewinding() {
+    lock.lock();
+    try {
+      this.canRewind = false;
+    } finally {
+      lock.unlock();
+    }
   }
 
   /**
    * Rewinds this buffer to the beginning (if rewinding is still enabled).
    */
-  public synchronized void rewind() throws IOException {
-    if (!canRewind) {
-      throw new IOException("Cannot rewind anymore.");
-    }
-    if (buffer != null) {
-      buffer.position(0);
+  public void rewind() throws IOException {
+    lock.lock();
+    try {
+      if (!canRewind) {
+        throw new IOException("Cannot rewind anymore.");
+      }
+      if (buffer != null) {
+        buffer.position(0);
+      }
+    } finally {
+      lock.unlock();
     }
   }
 
@@ -82,7 +95,8 @@ public final class RewindableReadableByteChannel implements ReadableByteChannel
    * buffer with at least twice the capacity, and copies data and position of the old buffer.
    * buffer is expected to be in draining mode before this call.
    */
-  private synchronized void setBufferLimit(int newLimit) {
+  @GuardedBy("lock")
+  private void setBufferLimit(int newLimit) {
     if (buffer.capacity() < newLimit) {
       int pos = buffer.position();
       int newBufferCapacity = max(2 * buffer.capacity(), newLimit);
@@ -96,80 +110,95 @@ public final class RewindableReadableByteChannel implements ReadableByteChannel
   }
 
   @Override
-  public synchronized int read(ByteBuffer dst) throws IOException {
-    if (directRead) {
-      return baseChannel.read(dst);
-    }
-    int bytesToReadCount = dst.remaining();
-    if (bytesToReadCount == 0) {
-      return 0;
-    }
-    if (buffer == null) {  // The first read, no cached data yet.
-      if (!canRewind) {
-        directRead = true;
+  public int read(ByteBuffer dst) throws IOException {
+    lock.lock();
+    try {
+      if (directRead) {
         return baseChannel.read(dst);
       }
-      buffer = ByteBuffer.allocate(bytesToReadCount);
-      int baseReadResult = baseChannel.read(buffer);
-      // put buffer in draining mode
-      buffer.flip();
-      if (baseReadResult > 0) {
+      int bytesToReadCount = dst.remaining();
+      if (bytesToReadCount == 0) {
+        return 0;
+      }
+      if (buffer == null) {  // The first read, no cached data yet.
+        if (!canRewind) {
+          directRead = true;
+          return baseChannel.read(dst);
+        }
+        buffer = ByteBuffer.allocate(bytesToReadCount);
+        int baseReadResult = baseChannel.read(buffer);
+        // put buffer in draining mode
+        buffer.flip();
+        if (baseReadResult > 0) {
+          dst.put(buffer);
+        }
+        return baseReadResult;
+      }
+      // Subsequent read
+      if (buffer.remaining() >= bytesToReadCount) {
+        // buffer has all data needed.
+        // dst.put expects buffer.remaining() <= dst.remaining(). So we have to temporarily lower
+        // buffer.limit. Note that
+        // buffer.position() + bytesToReadCount <= buffer.position() + buffer.remaining()
+        // = buffer.position() + buffer.limit() - buffer.position() = buffer.limit().
+        int limit = buffer.limit();
+        buffer.limit(buffer.position() + bytesToReadCount);
         dst.put(buffer);
+        buffer.limit(limit);
+        if (!canRewind && !buffer.hasRemaining()) {
+          buffer = null;
+          directRead = true;
+        }
+        return bytesToReadCount;
       }
-      return baseReadResult;
-    }
-    // Subsequent read
-    if (buffer.remaining() >= bytesToReadCount) {
-      // buffer has all data needed.
-      // dst.put expects buffer.remaining() <= dst.remaining(). So we have to temporarily lower
-      // buffer.limit. Note that
-      // buffer.position() + bytesToReadCount <= buffer.position() + buffer.remaining()
-      // = buffer.position() + buffer.limit() - buffer.position() = buffer.limit().
-      int limit = buffer.limit();
-      buffer.limit(buffer.position() + bytesToReadCount);
+      int bytesFromBufferCount = buffer.remaining();
+      int stillToReadCount = bytesToReadCount - bytesFromBufferCount;
+
+      // buffer is in draining mode.
+      int currentReadPos = buffer.position();
+      int contentLimit = buffer.limit();
+      // Put the buffer into into filling mode by hand. The filling should start right after the
+      // current limit, and at most stillToReadCount bytes should be written.
+      setBufferLimit(contentLimit + stillToReadCount);
+      buffer.position(contentLimit);
+      int baseReadResult = baseChannel.read(buffer);
+      // Put buffer in draining mode.
+      buffer.flip();
+      buffer.position(currentReadPos); // restore reading position.
       dst.put(buffer);
-      buffer.limit(limit);
+      if (bytesFromBufferCount == 0 && baseReadResult < 0) {
+        return -1;  // EOF
+      }
+      int bytesCount = buffer.position() - currentReadPos;
       if (!canRewind && !buffer.hasRemaining()) {
         buffer = null;
         directRead = true;
       }
-      return bytesToReadCount;
+      return bytesCount;
+    } finally {
+      lock.unlock();
     }
-    int bytesFromBufferCount = buffer.remaining();
-    int stillToReadCount = bytesToReadCount - bytesFromBufferCount;
-
-    // buffer is in draining mode.
-    int currentReadPos = buffer.position();
-    int contentLimit = buffer.limit();
-    // Put the buffer into into filling mode by hand. The filling should start right after the
-    // current limit, and at most stillToReadCount bytes should be written.
-    setBufferLimit(contentLimit + stillToReadCount);
-    buffer.position(contentLimit);
-    int baseReadResult = baseChannel.read(buffer);
-    // Put buffer in draining mode.
-    buffer.flip();
-    buffer.position(currentReadPos); // restore reading position.
-    dst.put(buffer);
-    if (bytesFromBufferCount == 0 && baseReadResult < 0) {
-      return -1;  // EOF
-    }
-    int bytesCount = buffer.position() - currentReadPos;
-    if (!canRewind && !buffer.hasRemaining()) {
-      buffer = null;
-      directRead = true;
-    }
-    return bytesCount;
   }
 
   @Override
-  public synchronized void close() throws IOException {
-    canRewind = false;
-    directRead = true;
-    baseChannel.close();
+  public void close() throws IOException {
+    lock.lock();
+    try {
+      canRewind = false;
+      directRead = true;
+      baseChannel.close();
+    } finally {
+      lock.unlock();
+    }
   }
 
   @Override
-  public synchronized boolean isOpen() {
-    return baseChannel.isOpen();
+  public boolean isOpen() {
+    lock.lock();
+    try {
+      return baseChannel.isOpen();
+    } finally {
+      lock.unlock();
+    }
   }
 }
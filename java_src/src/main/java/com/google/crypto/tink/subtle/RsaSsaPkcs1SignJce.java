@@ -69,7 +69,7 @@ public final class RsaSsaPkcs1SignJce implements PublicKeySign {
     signer.update(data);
     byte[] signature = signer.sign();
     // Verify the signature to prevent against faulty signature computation.
-    Signature verifier = EngineFactory.SIGNATURE.getInstance(signatureAlgorithm);
+    Signature verifier = EngineFactory.SIGNATURE.getThreadLocalInstance(signatureAlgorithm);
     verifier.initVerify(publicKey);
     verifier.update(data);
     if (!verifier.verify(signature)) {
@@ -93,7 +93,8 @@ public final class RsaSsaPkcs1VerifyJce implements PublicKeyVerify {
   private byte[] emsaPkcs1(byte[] m, int emLen, HashType hash) throws GeneralSecurityException {
     Validators.validateSignatureHash(hash);
     MessageDigest digest =
-        EngineFactory.MESSAGE_DIGEST.getInstance(SubtleUtil.toDigestAlgo(this.hash));
+        EngineFactory.MESSAGE_DIGEST.getThreadLocalInstance(SubtleUtil.toDigestAlgo(this.hash));
+    digest.reset();
     digest.update(m);
     byte[] h = digest.digest();
     byte[] asnPrefix = toAsnPrefix(hash);
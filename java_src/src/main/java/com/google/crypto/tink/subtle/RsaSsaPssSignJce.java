@@ -84,7 +84,7 @@ public final class RsaSsaPssSignJce implements PublicKeySign {
     byte[] c = decryptCipher.doFinal(m);
     // To make sure the private key operation is correct, we check the result with public key
     // operation.
-    Cipher encryptCipher = EngineFactory.CIPHER.getInstance(RAW_RSA_ALGORITHM);
+    Cipher encryptCipher = EngineFactory.CIPHER.getThreadLocalInstance(RAW_RSA_ALGORITHM);
     encryptCipher.init(Cipher.ENCRYPT_MODE, this.publicKey);
     byte[] m0 = encryptCipher.doFinal(c);
     if (!new BigInteger(1, m).equals(new BigInteger(1, m0))) {
@@ -102,7 +102,8 @@ public final class RsaSsaPssSignJce implements PublicKeySign {
     // Step 2. Compute hash.
     Validators.validateSignatureHash(sigHash);
     MessageDigest digest =
-        EngineFactory.MESSAGE_DIGEST.getInstance(SubtleUtil.toDigestAlgo(this.sigHash));
+        EngineFactory.MESSAGE_DIGEST.getThreadLocalInstance(SubtleUtil.toDigestAlgo(this.sigHash));
+    digest.reset();
     byte[] mHash = digest.digest(m);
 
     // Step 3. Check emLen.
@@ -120,7 +121,8 @@ public final class RsaSsaPssSignJce implements PublicKeySign {
     System.arraycopy(mHash, 0, mPrime, 8, hLen);
     System.arraycopy(salt, 0, mPrime, 8 + hLen, salt.length);
 
-    // Step 6. Compute H.
+    // Step 6. Compute H. This is the last use of digest: mgf1 below may use the same thread-local
+    // engine.
     byte[] h = digest.digest(mPrime);
 
     // Step 7, 8. Generate DB.
@@ -94,7 +94,8 @@ public final class RsaSsaPssVerifyJce implements PublicKeyVerify {
     // Step 2. Compute hash.
     Validators.validateSignatureHash(sigHash);
     MessageDigest digest =
-        EngineFactory.MESSAGE_DIGEST.getInstance(SubtleUtil.toDigestAlgo(this.sigHash));
+        EngineFactory.MESSAGE_DIGEST.getThreadLocalInstance(SubtleUtil.toDigestAlgo(this.sigHash));
+    digest.reset();
     byte[] mHash = digest.digest(m);
     int hLen = digest.getDigestLength();
 
@@ -158,7 +159,10 @@ public final class RsaSsaPssVerifyJce implements PublicKeyVerify {
     System.arraycopy(mHash, 0, mPrime, 8, mHash.length);
     System.arraycopy(salt, 0, mPrime, 8 + hLen, salt.length);
 
-    // Step 13. Compute H'
+    // Step 13. Compute H'. mgf1 may have used the same thread-local engine, so fetch it again.
+    digest =
+        EngineFactory.MESSAGE_DIGEST.getThreadLocalInstance(SubtleUtil.toDigestAlgo(this.sigHash));
+    digest.reset();
     byte[] hPrime = digest.digest(mPrime);
     if (!Bytes.equal(hPrime, h)) {
       throw new GeneralSecurityException("inconsistent");
@@ -21,9 +21,12 @@ import java.nio.ByteBuffer;
 import java.nio.channels.ReadableByteChannel;
 import java.security.GeneralSecurityException;
 import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantLock;
 
 /** An instance of {@link ReadableByteChannel} that returns the plaintext for some ciphertext. */
 class StreamingAeadDecryptingChannel implements ReadableByteChannel {
+  private final ReentrantLock lock = new ReentrantLock();
+
   // Each plaintext segment has 16 bytes more of memory than the actual plaintext that it contains.
   // This is a workaround for an incompatibility between Conscrypt and OpenJDK in their
   // AES-GCM implementations, see b/67416642, b/31574439, and cr/170969008 for more information.
@@ -202,82 +205,102 @@ class StreamingAeadDecryptingChannel implements ReadableByteChannel {
   }
 
   @Override
-  public synchronized int read(ByteBuffer dst) throws IOException {
-    if (!definedState) {
-      throw new IOException("This StreamingAeadDecryptingChannel is in an undefined state");
-    }
-    if (!headerRead) {
-      if (!tryReadHeader()) {
-        return 0;
+  public int read(ByteBuffer dst) throws IOException {
+    lock.lock();
+    try {
+      if (!definedState) {
+        throw new IOException("This StreamingAeadDecryptingChannel is in an undefined state");
       }
-      ciphertextSegment.clear();
-      ciphertextSegment.limit(firstCiphertextSegmentSize + 1);
-    }
-    if (endOfPlaintext) {
-      return -1;
-    }
-    int startPosition = dst.position();
-    while (dst.remaining() > 0) {
-      if (plaintextSegment.remaining() == 0) {
-        if (endOfCiphertext) {
-          endOfPlaintext = true;
-          break;
+      if (!headerRead) {
+        if (!tryReadHeader()) {
+          return 0;
+        }
+        ciphertextSegment.clear();
+        ciphertextSegment.limit(firstCiphertextSegmentSize + 1);
+      }
+      if (endOfPlaintext) {
+        return -1;
+      }
+      int startPosition = dst.position();
+      while (dst.remaining() > 0) {
+        if (plaintextSegment.remaining() == 0) {
+          if (endOfCiphertext) {
+            endOfPlaintext = true;
+            break;
+          }
+          if (!tryLoadSegment()) {
+            break;
+          }
         }
-        if (!tryLoadSegment()) {
-          break;
+        if (plaintextSegment.remaining() <= dst.remaining()) {
+          int sliceSize = plaintextSegment.remaining();
+          dst.put(plaintextSegment);
+        } else {
+          int sliceSize = dst.remaining();
+          ByteBuffer slice = plaintextSegment.duplicate();
+          slice.limit(slice.position() + sliceSize);
+          dst.put(slice);
+          plaintextSegment.position(plaintextSegment.position() + sliceSize);
         }
       }
-      if (plaintextSegment.remaining() <= dst.remaining()) {
-        int sliceSize = plaintextSegment.remaining();
-        dst.put(plaintextSegment);
+      int bytesRead = dst.position() - startPosition;
+      if (bytesRead == 0 && endOfPlaintext) {
+        return -1;
       } else {
-        int sliceSize = dst.remaining();
-        ByteBuffer slice = plaintextSegment.duplicate();
-        slice.limit(slice.position() + sliceSize);
-        dst.put(slice);
-        plaintextSegment.position(plaintextSegment.position() + sliceSize);
+        return bytesRead;
       }
-    }
-    int bytesRead = dst.position() - startPosition;
-    if (bytesRead == 0 && endOfPlaintext) {
-      return -1;
-    } else {
-      return bytesRead;
+    } finally {
+      lock.unlock();
     }
   }
 
   @Override
-  public synchronized void close() throws IOException {
-    ciphertextChannel.close();
+  public void close() throws IOException {
+    lock.lock();
+    try {
+      ciphertextChannel.close();
+    } finally {
+      lock.unlock();
+    }
   }
 
   @Override
-  public synchronized boolean isOpen() {
-    return ciphertextChannel.isOpen();
+  public boolean isOpen() {
+    lock.lock();
+    try {
+      return ciphertextChannel.isOpen();
+    } finally {
+      lock.unlock();
+    }
   }
 
 
   /* Returns the state of the channel. */
   @Override
-  public synchronized String toString() {
-    StringBuilder res =
-      new StringBuilder();
-    res.append("StreamingAeadDecryptingChannel")
-       .append("\nsegmentNr:").append(segmentNr)
-       .append("\nciphertextSegmentSize:").append(ciphertextSegmentSize)
-       .append("\nheaderRead:").append(headerRead)
-       .append("\nendOfCiphertext:").append(endOfCiphertext)
-       .append("\nendOfPlaintext:").append(endOfPlaintext)
-       .append("\ndefinedState:").append(definedState)
-       .append("\nHeader")
-       .append(" position:").append(header.position())
-       .append(" limit:").append(header.position())
-       .append("\nciphertextSgement")
-       .append(" position:").append(ciphertextSegment.position())
-       .append(" limit:").append(ciphertextSegment.limit())
-       .append("\nplaintextSegment")
-       .append(" position:").append(plaintextSegment.position())
-       .append(" limit:").append(plaintextSegment.limit());
-    return res.toString();
+  public String toString() {
+    lock.lock();
+    try {
+      StringBuilder res =
+        new StringBuilder();
+      res.append("StreamingAeadDecryptingChannel")
+         .append("\nsegmentNr:").append(segmentNr)
+         .append("\nciphertextSegmentSize:").append(ciphertextSegmentSize)
+         .append("\nheaderRead:").append(headerRead)
+         .append("\nendOfCiphertext:").append(endOfCiphertext)
+         .append("\nendOfPlaintext:").append(endOfPlaintext)
+         .append("\ndefinedState:").append(definedState)
+         .append("\nHeader")
+         .append(" position:").append(header.position())
+         .append(" limit:").append(header.position())
+         .append("\nciphertextSgement")
+         .append(" position:").append(ciphertextSegment.position())
+         .append(" limit:").append(ciphertextSegment.limit())
+         .append("\nplaintextSegment")
+         .append(" position:").append(plaintextSegment.position())
+         .append(" limit:").append(plaintextSegment.limit());
+      return res.toString();
+    } finally {
+      lock.unlock();
+    }
   }
 }
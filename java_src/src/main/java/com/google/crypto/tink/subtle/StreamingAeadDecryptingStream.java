@@ -24,6 +24,7 @@ import java.io.InputStream;
 import java.nio.ByteBuffer;
 import java.security.GeneralSecurityException;
 import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * An instance of a InputStream that returns the plaintext for some ciphertext.
@@ -31,6 +32,8 @@ import java.util.Arrays;
  * <p>TODO(bleichen): define what the state is after an IOException.
  */
 class StreamingAeadDecryptingStream extends FilterInputStream {
+  private final ReentrantLock lock = new ReentrantLock();
+
   // Each plaintext segment has 16 bytes more of memory than the actual plaintext that it contains.
   // This is a workaround for an incompatibility between Conscrypt and OpenJDK in their
   // AES-GCM implementations, see b/67416642, b/31574439, and cr/170969008 for more information.
@@ -209,50 +212,65 @@ class StreamingAeadDecryptingStream extends FilterInputStream {
   }
 
   @Override
-  public synchronized int read(byte[] dst, int offset, int length) throws IOException {
-    if (decryptionErrorOccured) {
-      throw new IOException("Decryption failed.");
-    }
-    if (!headerRead) {
-      readHeader();
-      ciphertextSegment.clear();
-      ciphertextSegment.limit(firstCiphertextSegmentSize + 1);
-    }
-    if (endOfPlaintext) {
-      return -1;
-    }
-    int bytesRead = 0;
-    while (bytesRead < length) {
-      if (plaintextSegment.remaining() == 0) {
-        if (endOfCiphertext) {
-          endOfPlaintext = true;
-          break;
+  public int read(byte[] dst, int offset, int length) throws IOException {
+    lock.lock();
+    try {
+      if (decryptionErrorOccured) {
+        throw new IOException("Decryption failed.");
+      }
+      if (!headerRead) {
+        readHeader();
+        ciphertextSegment.clear();
+        ciphertextSegment.limit(firstCiphertextSegmentSize + 1);
+      }
+      if (endOfPlaintext) {
+        return -1;
+      }
+      int bytesRead = 0;
+      while (bytesRead < length) {
+        if (plaintextSegment.remaining() == 0) {
+          if (endOfCiphertext) {
+            endOfPlaintext = true;
+            break;
+          }
+          loadSegment();
         }
-        loadSegment();
+        int sliceSize = min(plaintextSegment.remaining(), length - bytesRead);
+        plaintextSegment.get(dst, bytesRead + offset, sliceSize);
+        bytesRead += sliceSize;
       }
-      int sliceSize = min(plaintextSegment.remaining(), length - bytesRead);
-      plaintextSegment.get(dst, bytesRead + offset, sliceSize);
-      bytesRead += sliceSize;
-    }
-    if (bytesRead == 0 && endOfPlaintext) {
-      return -1;
-    } else {
-      return bytesRead;
+      if (bytesRead == 0 && endOfPlaintext) {
+        return -1;
+      } else {
+        return bytesRead;
+      }
+    } finally {
+      lock.unlock();
     }
   }
 
   @Override
-  public synchronized void close() throws IOException {
-    super.close();
+  public void close() throws IOException {
+    lock.lock();
+    try {
+      super.close();
+    } finally {
+      lock.unlock();
+    }
   }
 
   @Override
-  public synchronized int available() {
-    return plaintextSegment.remaining();
+  public int available() {
+    lock.lock();
+    try {
+      return plaintextSegment.remaining();
+    } finally {
+      lock.unlock();
+    }
   }
 
   @Override
-  public synchronized void mark(int readlimit) {
+  public void mark(int readlimit) {
     // Mark is not supported.
   }
 
@@ -296,31 +314,36 @@ class StreamingAeadDecryptingStream extends FilterInputStream {
 
   /* Returns the state of the channel. */
   @Override
-  public synchronized String toString() {
-    StringBuilder res = new StringBuilder();
-    res.append("StreamingAeadDecryptingStream")
-        .append("\nsegmentNr:")
-        .append(segmentNr)
-        .append("\nciphertextSegmentSize:")
-        .append(ciphertextSegmentSize)
-        .append("\nheaderRead:")
-        .append(headerRead)
-        .append("\nendOfCiphertext:")
-        .append(endOfCiphertext)
-        .append("\nendOfPlaintext:")
-        .append(endOfPlaintext)
-        .append("\ndecryptionErrorOccured:")
-        .append(decryptionErrorOccured)
-        .append("\nciphertextSgement")
-        .append(" position:")
-        .append(ciphertextSegment.position())
-        .append(" limit:")
-        .append(ciphertextSegment.limit())
-        .append("\nplaintextSegment")
-        .append(" position:")
-        .append(plaintextSegment.position())
-        .append(" limit:")
-        .append(plaintextSegment.limit());
-    return res.toString();
+  public String toString() {
+    lock.lock();
+    try {
+      StringBuilder res = new StringBuilder();
+      res.append("StreamingAeadDecryptingStream")
+          .append("\nsegmentNr:")
+          .append(segmentNr)
+          .append("\nciphertextSegmentSize:")
+          .append(ciphertextSegmentSize)
+          .append("\nheaderRead:")
+          .append(headerRead)
+          .append("\nendOfCiphertext:")
+          .append(endOfCiphertext)
+          .append("\nendOfPlaintext:")
+          .append(endOfPlaintext)
+          .append("\ndecryptionErrorOccured:")
+          .append(decryptionErrorOccured)
+          .append("\nciphertextSgement")
+          .append(" position:")
+          .append(ciphertextSegment.position())
+          .append(" limit:")
+          .append(ciphertextSegment.limit())
+          .append("\nplaintextSegment")
+          .append(" position:")
+          .append(plaintextSegment.position())
+          .append(" limit:")
+          .append(plaintextSegment.limit());
+      return res.toString();
+    } finally {
+      lock.unlock();
+    }
   }
 }
@@ -21,12 +21,15 @@ import java.nio.ByteBuffer;
 import java.nio.channels.ClosedChannelException;
 import java.nio.channels.WritableByteChannel;
 import java.security.GeneralSecurityException;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * An instance of {@link WritableByteChannel} that encrypts the input using a nonce based online
  * authentication scheme.
  */
 class StreamingAeadEncryptingChannel implements WritableByteChannel {
+  private final ReentrantLock lock = new ReentrantLock();
+
   private WritableByteChannel ciphertextChannel;
   private StreamSegmentEncrypter encrypter;
   ByteBuffer ptBuffer; // contains plaintext that has not yet been encrypted.
@@ -53,73 +56,83 @@ class StreamingAeadEncryptingChannel implements WritableByteChannel {
   }
 
   @Override
-  public synchronized int write(ByteBuffer pt) throws IOException {
-    if (!open) {
-      throw new ClosedChannelException();
-    }
-    if (ctBuffer.remaining() > 0) {
-      ciphertextChannel.write(ctBuffer);
-    }
-    int startPosition = pt.position();
-    while (pt.remaining() > ptBuffer.remaining()) {
+  public int write(ByteBuffer pt) throws IOException {
+    lock.lock();
+    try {
+      if (!open) {
+        throw new ClosedChannelException();
+      }
       if (ctBuffer.remaining() > 0) {
-        return pt.position() - startPosition;
+        ciphertextChannel.write(ctBuffer);
       }
-      int sliceSize = ptBuffer.remaining();
-      ByteBuffer slice = pt.slice();
-      slice.limit(sliceSize);
-      pt.position(pt.position() + sliceSize);
-      try {
-        ptBuffer.flip();
-        ctBuffer.clear();
-        if (slice.remaining() != 0) {
-          encrypter.encryptSegment(ptBuffer, slice, false, ctBuffer);
-        } else {
-          encrypter.encryptSegment(ptBuffer, false, ctBuffer);
+      int startPosition = pt.position();
+      while (pt.remaining() > ptBuffer.remaining()) {
+        if (ctBuffer.remaining() > 0) {
+          return pt.position() - startPosition;
         }
-      } catch (GeneralSecurityException ex) {
-        throw new IOException(ex);
+        int sliceSize = ptBuffer.remaining();
+        ByteBuffer slice = pt.slice();
+        slice.limit(sliceSize);
+        pt.position(pt.position() + sliceSize);
+        try {
+          ptBuffer.flip();
+          ctBuffer.clear();
+          if (slice.remaining() != 0) {
+            encrypter.encryptSegment(ptBuffer, slice, false, ctBuffer);
+          } else {
+            encrypter.encryptSegment(ptBuffer, false, ctBuffer);
+          }
+        } catch (GeneralSecurityException ex) {
+          throw new IOException(ex);
+        }
+        ctBuffer.flip();
+        ciphertextChannel.write(ctBuffer);
+        ptBuffer.clear();
+        ptBuffer.limit(plaintextSegmentSize);
       }
-      ctBuffer.flip();
-      ciphertextChannel.write(ctBuffer);
-      ptBuffer.clear();
-      ptBuffer.limit(plaintextSegmentSize);
+      ptBuffer.put(pt);
+      return pt.position() - startPosition;
+    } finally {
+      lock.unlock();
     }
-    ptBuffer.put(pt);
-    return pt.position() - startPosition;
   }
 
   @Override
-  public synchronized void close() throws IOException {
-    if (!open) {
-      return;
-    }
-    // TODO(bleichen): Is there a way to fully write the remaining ciphertext?
-    //   The following is the strategy from java.nio.channels.Channels.writeFullyImpl
-    //   I.e. try writing as long as at least one byte is written.
-    while (ctBuffer.remaining() > 0) {
-      int n = ciphertextChannel.write(ctBuffer);
-      if (n <= 0) {
-        throw new IOException("Failed to write ciphertext before closing");
-      }
-    }
+  public void close() throws IOException {
+    lock.lock();
     try {
-      ctBuffer.clear();
-      ptBuffer.flip();
-      encrypter.encryptSegment(ptBuffer, true, ctBuffer);
-    } catch (GeneralSecurityException ex) {
-      // TODO(bleichen): define the state of this. E.g. open = false;
-      throw new IOException(ex);
-    }
-    ctBuffer.flip();
-    while (ctBuffer.remaining() > 0) {
-      int n = ciphertextChannel.write(ctBuffer);
-      if (n <= 0) {
-        throw new IOException("Failed to write ciphertext before closing");
+      if (!open) {
+        return;
+      }
+      // TODO(bleichen): Is there a way to fully write the remaining ciphertext?
+      //   The following is the strategy from java.nio.channels.Channels.writeFullyImpl
+      //   I.e. try writing as long as at least one byte is written.
+      while (ctBuffer.remaining() > 0) {
+        int n = ciphertextChannel.write(ctBuffer);
+        if (n <= 0) {
+          throw new IOException("Failed to write ciphertext before closing");
+        }
+      }
+      try {
+        ctBuffer.clear();
+        ptBuffer.flip();
+        encrypter.encryptSegment(ptBuffer, true, ctBuffer);
+      } catch (GeneralSecurityException ex) {
+        // TODO(bleichen): define the state of this. E.g. open = false;
+        throw new IOException(ex);
+      }
+      ctBuffer.flip();
+      while (ctBuffer.remaining() > 0) {
+        int n = ciphertextChannel.write(ctBuffer);
+        if (n <= 0) {
+          throw new IOException("Failed to write ciphertext before closing");
+        }
       }
+      ciphertextChannel.close();
+      open = false;
+    } finally {
+      lock.unlock();
     }
-    ciphertextChannel.close();
-    open = false;
   }
 
   @Override
@@ -21,12 +21,15 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.ByteBuffer;
 import java.security.GeneralSecurityException;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * An instance of {@link FilterOutputStream} that encrypts the input using a nonce based online
  * authentication scheme.
  */
 class StreamingAeadEncryptingStream extends FilterOutputStream {
+  private final ReentrantLock lock = new ReentrantLock();
+
   private StreamSegmentEncrypter encrypter;
   private int plaintextSegmentSize;
   ByteBuffer ptBuffer; // contains plaintext that has not yet been encrypted.
@@ -63,53 +66,63 @@ class StreamingAeadEncryptingStream extends FilterOutputStream {
   //   there are no surprises if the underlying class is extended.
 
   @Override
-  public synchronized void write(byte[] pt, int offset, int length) throws IOException {
-    if (!open) {
-      throw new IOException("Trying to write to closed stream");
+  public void write(byte[] pt, int offset, int length) throws IOException {
+    lock.lock();
+    try {
+      if (!open) {
+        throw new IOException("Trying to write to closed stream");
+      }
+      int startPosition = offset;
+      int remaining = length;
+      while (remaining > ptBuffer.remaining()) {
+        int sliceSize = ptBuffer.remaining();
+        ByteBuffer slice = ByteBuffer.wrap(pt, startPosition, sliceSize);
+        startPosition += sliceSize;
+        remaining -= sliceSize;
+        try {
+          ptBuffer.flip();
+          ctBuffer.clear();
+          encrypter.encryptSegment(ptBuffer, slice, false, ctBuffer);
+        } catch (GeneralSecurityException ex) {
+          throw new IOException(ex);
+        }
+        ctBuffer.flip();
+        out.write(ctBuffer.array(), ctBuffer.position(), ctBuffer.remaining());
+        ptBuffer.clear();
+        ptBuffer.limit(plaintextSegmentSize);
+      }
+      ptBuffer.put(pt, startPosition, remaining);
+    } finally {
+      lock.unlock();
     }
-    int startPosition = offset;
-    int remaining = length;
-    while (remaining > ptBuffer.remaining()) {
-      int sliceSize = ptBuffer.remaining();
-      ByteBuffer slice = ByteBuffer.wrap(pt, startPosition, sliceSize);
-      startPosition += sliceSize;
-      remaining -= sliceSize;
+  }
+
+  @Override
+  public void close() throws IOException {
+    lock.lock();
+    try {
+      if (!open) {
+        return;
+      }
       try {
         ptBuffer.flip();
         ctBuffer.clear();
-        encrypter.encryptSegment(ptBuffer, slice, false, ctBuffer);
+        encrypter.encryptSegment(ptBuffer, true, ctBuffer);
       } catch (GeneralSecurityException ex) {
-        throw new IOException(ex);
+        // TODO(bleichen): define the state of this. E.g. open = false;
+        throw new IOException(
+            "ptBuffer.remaining():"
+                + ptBuffer.remaining()
+                + " ctBuffer.remaining():"
+                + ctBuffer.remaining(),
+            ex);
       }
       ctBuffer.flip();
       out.write(ctBuffer.array(), ctBuffer.position(), ctBuffer.remaining());
-      ptBuffer.clear();
-      ptBuffer.limit(plaintextSegmentSize);
-    }
-    ptBuffer.put(pt, startPosition, remaining);
-  }
-
-  @Override
-  public synchronized void close() throws IOException {
-    if (!open) {
-      return;
-    }
-    try {
-      ptBuffer.flip();
-      ctBuffer.clear();
-      encrypter.encryptSegment(ptBuffer, true, ctBuffer);
-    } catch (GeneralSecurityException ex) {
-      // TODO(bleichen): define the state of this. E.g. open = false;
-      throw new IOException(
-          "ptBuffer.remaining():"
-              + ptBuffer.remaining()
-              + " ctBuffer.remaining():"
-              + ctBuffer.remaining(),
-          ex);
+      open = false;
+      super.close();
+    } finally {
+      lock.unlock();
     }
-    ctBuffer.flip();
-    out.write(ctBuffer.array(), ctBuffer.position(), ctBuffer.remaining());
-    open = false;
-    super.close();
   }
 }
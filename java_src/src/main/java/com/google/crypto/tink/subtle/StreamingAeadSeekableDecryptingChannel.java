@@ -23,12 +23,15 @@ import java.nio.channels.NonWritableChannelException;
 import java.nio.channels.SeekableByteChannel;
 import java.security.GeneralSecurityException;
 import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * An instance of {@link SeekableByteChannel} that allows random access to the plaintext of some
  * ciphertext.
  */
 class StreamingAeadSeekableDecryptingChannel implements SeekableByteChannel {
+  private final ReentrantLock lock = new ReentrantLock();
+
   // Each plaintext segment has 16 bytes more of memory than the actual plaintext that it contains.
   // This is a workaround for an incompatibility between Conscrypt and OpenJDK in their
   // AES-GCM implementations, see b/67416642, b/31574439, and cr/170969008 for more information.
@@ -107,35 +110,40 @@ class StreamingAeadSeekableDecryptingChannel implements SeekableByteChannel {
    * it contains length information that might be confidential.
    */
   @Override
-  public synchronized String toString() {
-    StringBuilder res =
-      new StringBuilder();
-    String ctChannel;
+  public String toString() {
+    lock.lock();
     try {
-      ctChannel = "position:" + ciphertextChannel.position();
-    } catch (IOException ex) {
-      ctChannel = "position: n/a";
+      StringBuilder res =
+        new StringBuilder();
+      String ctChannel;
+      try {
+        ctChannel = "position:" + ciphertextChannel.position();
+      } catch (IOException ex) {
+        ctChannel = "position: n/a";
+      }
+      res.append("StreamingAeadSeekableDecryptingChannel")
+         .append("\nciphertextChannel").append(ctChannel)
+         .append("\nciphertextChannelSize:").append(ciphertextChannelSize)
+         .append("\nplaintextSize:").append(plaintextSize)
+         .append("\nciphertextSegmentSize:").append(ciphertextSegmentSize)
+         .append("\nnumberOfSegments:").append(numberOfSegments)
+         .append("\nheaderRead:").append(headerRead)
+         .append("\nplaintextPosition:").append(plaintextPosition)
+         .append("\nHeader")
+         .append(" position:").append(header.position())
+         .append(" limit:").append(header.position())
+         .append("\ncurrentSegmentNr:").append(currentSegmentNr)
+         .append("\nciphertextSgement")
+         .append(" position:").append(ciphertextSegment.position())
+         .append(" limit:").append(ciphertextSegment.limit())
+         .append("\nisCurrentSegmentDecrypted:").append(isCurrentSegmentDecrypted)
+         .append("\nplaintextSegment")
+         .append(" position:").append(plaintextSegment.position())
+         .append(" limit:").append(plaintextSegment.limit());
+      return res.toString();
+    } finally {
+      lock.unlock();
     }
-    res.append("StreamingAeadSeekableDecryptingChannel")
-       .append("\nciphertextChannel").append(ctChannel)
-       .append("\nciphertextChannelSize:").append(ciphertextChannelSize)
-       .append("\nplaintextSize:").append(plaintextSize)
-       .append("\nciphertextSegmentSize:").append(ciphertextSegmentSize)
-       .append("\nnumberOfSegments:").append(numberOfSegments)
-       .append("\nheaderRead:").append(headerRead)
-       .append("\nplaintextPosition:").append(plaintextPosition)
-       .append("\nHeader")
-       .append(" position:").append(header.position())
-       .append(" limit:").append(header.position())
-       .append("\ncurrentSegmentNr:").append(currentSegmentNr)
-       .append("\nciphertextSgement")
-       .append(" position:").append(ciphertextSegment.position())
-       .append(" limit:").append(ciphertextSegment.limit())
-       .append("\nisCurrentSegmentDecrypted:").append(isCurrentSegmentDecrypted)
-       .append("\nplaintextSegment")
-       .append(" position:").append(plaintextSegment.position())
-       .append(" limit:").append(plaintextSegment.limit());
-    return res.toString();
   }
 
   /**
@@ -143,8 +151,13 @@ class StreamingAeadSeekableDecryptingChannel implements SeekableByteChannel {
    * The position is relative to the plaintext.
    */
   @Override
-  public synchronized long position() {
-    return plaintextPosition;
+  public long position() {
+    lock.lock();
+    try {
+      return plaintextPosition;
+    } finally {
+      lock.unlock();
+    }
   }
 
   /**
@@ -153,9 +166,14 @@ class StreamingAeadSeekableDecryptingChannel implements SeekableByteChannel {
    * A later attempt to read byte will throw an IOException.
    */
   @Override
-  public synchronized SeekableByteChannel position(long newPosition) {
-    plaintextPosition = newPosition;
-    return this;
+  public SeekableByteChannel position(long newPosition) {
+    lock.lock();
+    try {
+      plaintextPosition = newPosition;
+      return this;
+    } finally {
+      lock.unlock();
+    }
   }
 
   /**
@@ -261,60 +279,70 @@ class StreamingAeadSeekableDecryptingChannel implements SeekableByteChannel {
    * This method works in the same way as read(ByteBuffer), except that it starts at the given
    * position and does not modify the channel's position.
    */
-  public synchronized int read(ByteBuffer dst, long start) throws IOException {
-    long oldPosition = position();
+  public int read(ByteBuffer dst, long start) throws IOException {
+    lock.lock();
     try {
-      position(start);
-      return read(dst);
+      long oldPosition = position();
+      try {
+        position(start);
+        return read(dst);
+      } finally {
+        position(oldPosition);
+      }
     } finally {
-      position(oldPosition);
+      lock.unlock();
     }
   }
 
   @Override
-  public synchronized int read(ByteBuffer dst) throws IOException {
-    if (!isopen) {
-      throw new ClosedChannelException();
-    }
-    if (!headerRead) {
-      if (!tryReadHeader()) {
-        return 0;
+  public int read(ByteBuffer dst) throws IOException {
+    lock.lock();
+    try {
+      if (!isopen) {
+        throw new ClosedChannelException();
       }
-    }
-    int startPos = dst.position();
-    while (dst.remaining() > 0 && plaintextPosition < plaintextSize) {
-      // Determine segmentNr for the plaintext to read and the offset in
-      // the plaintext, where reading should start.
-      int segmentNr = getSegmentNr(plaintextPosition);
-      int segmentOffset;
-      if (segmentNr == 0) {
-         segmentOffset = (int) plaintextPosition;
-      } else {
-         segmentOffset = (int) ((plaintextPosition +  ciphertextOffset) % plaintextSegmentSize);
+      if (!headerRead) {
+        if (!tryReadHeader()) {
+          return 0;
+        }
       }
+      int startPos = dst.position();
+      while (dst.remaining() > 0 && plaintextPosition < plaintextSize) {
+        // Determine segmentNr for the plaintext to read and the offset in
+        // the plaintext, where reading should start.
+        int segmentNr = getSegmentNr(plaintextPosition);
+        int segmentOffset;
+        if (segmentNr == 0) {
+           segmentOffset = (int) plaintextPosition;
+        } else {
+           segmentOffset = (int) ((plaintextPosition +  ciphertextOffset) % plaintextSegmentSize);
+        }
 
-      if (tryLoadSegment(segmentNr)) {
-        plaintextSegment.position(segmentOffset);
-        if (plaintextSegment.remaining() <= dst.remaining()) {
-          plaintextPosition += plaintextSegment.remaining();
-          dst.put(plaintextSegment);
+        if (tryLoadSegment(segmentNr)) {
+          plaintextSegment.position(segmentOffset);
+          if (plaintextSegment.remaining() <= dst.remaining()) {
+            plaintextPosition += plaintextSegment.remaining();
+            dst.put(plaintextSegment);
+          } else {
+            int sliceSize = dst.remaining();
+            ByteBuffer slice = plaintextSegment.duplicate();
+            slice.limit(slice.position() + sliceSize);
+            dst.put(slice);
+            plaintextPosition += sliceSize;
+            plaintextSegment.position(plaintextSegment.position() + sliceSize);
+          }
         } else {
-          int sliceSize = dst.remaining();
-          ByteBuffer slice = plaintextSegment.duplicate();
-          slice.limit(slice.position() + sliceSize);
-          dst.put(slice);
-          plaintextPosition += sliceSize;
-          plaintextSegment.position(plaintextSegment.position() + sliceSize);
+          break;
         }
-      } else {
-        break;
       }
+      int read = dst.position() - startPos;
+      if (read == 0 && reachedEnd()) {
+        return -1;
+      }
+      return read;
+    } finally {
+      lock.unlock();
     }
-    int read = dst.position() - startPos;
-    if (read == 0 && reachedEnd()) {
-      return -1;
-    }
-    return read;
   }
 
   /**
@@ -329,11 +357,16 @@ class StreamingAeadSeekableDecryptingChannel implements SeekableByteChannel {
     return plaintextSize;
   }
 
-  public synchronized long verifiedSize() throws IOException {
-    if (tryLoadSegment(numberOfSegments - 1)) {
-      return plaintextSize;
-    } else {
-      throw new IOException("could not verify the size");
+  public long verifiedSize() throws IOException {
+    lock.lock();
+    try {
+      if (tryLoadSegment(numberOfSegments - 1)) {
+        return plaintextSize;
+      } else {
+        throw new IOException("could not verify the size");
+      }
+    } finally {
+      lock.unlock();
     }
   }
 
@@ -348,13 +381,23 @@ class StreamingAeadSeekableDecryptingChannel implements SeekableByteChannel {
   }
 
   @Override
-  public synchronized void close() throws IOException {
-    ciphertextChannel.close();
-    isopen = false;
+  public void close() throws IOException {
+    lock.lock();
+    try {
+      ciphertextChannel.close();
+      isopen = false;
+    } finally {
+      lock.unlock();
+    }
   }
 
   @Override
-  public synchronized boolean isOpen() {
-    return isopen;
+  public boolean isOpen() {
+    lock.lock();
+    try {
+      return isopen;
+    } finally {
+      lock.unlock();
+    }
   }
 }
@@ -141,7 +141,7 @@ public class SubtleUtil {
   public static byte[] mgf1(byte[] mgfSeed, int maskLen, HashType mgfHash)
       throws GeneralSecurityException {
     MessageDigest digest =
-        EngineFactory.MESSAGE_DIGEST.getInstance(SubtleUtil.toDigestAlgo(mgfHash));
+        EngineFactory.MESSAGE_DIGEST.getThreadLocalInstance(SubtleUtil.toDigestAlgo(mgfHash));
     int hLen = digest.getDigestLength();
     // Step 1. Check maskLen.
     // As max integer is only 2^31 - 1 which is smaller than the limit 2^32, this step is skipped.
@@ -0,0 +1,164 @@
+// Copyright 2022 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+
+package com.google.crypto.tink.testing;
+
+import com.google.crypto.tink.Aead;
+import com.google.crypto.tink.DeterministicAead;
+import com.google.crypto.tink.aead.subtle.AesGcmSiv;
+import com.google.crypto.tink.aead.subtle.PortableAesGcmSiv;
+import com.google.crypto.tink.subtle.AesSiv;
+import com.google.crypto.tink.subtle.Random;
+import java.security.GeneralSecurityException;
+import java.security.Security;
+import java.util.concurrent.TimeUnit;
+import javax.crypto.Cipher;
+import org.conscrypt.Conscrypt;
+
+/**
+ * Measures how many encryptions and decryptions per second AES-GCM-SIV and AES-SIV, the two
+ * nonce-misuse resistant modes of Tink, do.
+ *
+ * <p>AES-GCM-SIV is measured with {@link PortableAesGcmSiv}, which is used when no JCE provider
+ * supports it, and with {@link AesGcmSiv} if a provider does (with {@code --conscrypt}, Conscrypt
+ * is installed first). AES-SIV is measured with {@link AesSiv}. All use 256-bit keys, i.e. a
+ * 512-bit key for AES-SIV.
+ *
+ * <p>Usage: {@code AesGcmSivBenchmark [--conscrypt] [seconds per case]}.
+ */
+public final class AesGcmSivBenchmark {
+  /** Keeps the JIT from optimizing the measured calls away. */
+  private static volatile int sink;
+
+  private static final int[] INPUT_SIZES = {16, 1024, 16 * 1024, 1024 * 1024};
+
+  /** One encryption or decryption. */
+  private interface Operation {
+    void run() throws GeneralSecurityException;
+  }
+
+  /** Runs {@code operation} for {@code nanos} and returns the operations per second. */
+  private static double operationsPerSecond(Operation operation, long nanos)
+      throws GeneralSecurityException {
+    long operations = 0;
+    long start = System.nanoTime();
+    long elapsed;
+    do {
+      operation.run();
+      operations++;
+      elapsed = System.nanoTime() - start;
+    } while (elapsed < nanos);
+    return (double) operations * TimeUnit.SECONDS.toNanos(1) / elapsed;
+  }
+
+  private static void report(
+      String name, int inputSize, Operation encrypt, Operation decrypt, long nanos)
+      throws GeneralSecurityException {
+    operationsPerSecond(encrypt, nanos / 4);
+    operationsPerSecond(decrypt, nanos / 4);
+    double encryptions = operationsPerSecond(encrypt, nanos);
+    double decryptions = operationsPerSecond(decrypt, nanos);
+    System.out.printf(
+        "%-18s %9d %14.0f %14.0f %10.1f %10.1f%n",
+        name,
+        inputSize,
+        encryptions,
+        decryptions,
+        encryptions * inputSize / (1024 * 1024),
+        decryptions * inputSize / (1024 * 1024));
+  }
+
+  private static void reportAead(String name, final Aead aead, int inputSize, long nanos)
+      throws GeneralSecurityException {
+    final byte[] plaintext = Random.randBytes(inputSize);
+    final byte[] associatedData = new byte[0];
+    final byte[] ciphertext = aead.encrypt(plaintext, associatedData);
+    report(
+        name,
+        inputSize,
+        new Operation() {
+          @Override
+          public void run() throws GeneralSecurityException {
+            sink += aead.encrypt(plaintext, associatedData).length;
+          }
+        },
+        new Operation() {
+          @Override
+          public void run() throws GeneralSecurityException {
+            sink += aead.decrypt(ciphertext, associatedData).length;
+          }
+        },
+        nanos);
+  }
+
+  private static void reportDeterministicAead(
+      String name, final DeterministicAead daead, int inputSize, long nanos)
+      throws GeneralSecurityException {
+    final byte[] plaintext = Random.randBytes(inputSize);
+    final byte[] associatedData = new byte[0];
+    final byte[] ciphertext = daead.encryptDeterministically(plaintext, associatedData);
+    report(
+        name,
+        inputSize,
+        new Operation() {
+          @Override
+          public void run() throws GeneralSecurityException {
+            sink += daead.encryptDeterministically(plaintext, associatedData).length;
+          }
+        },
+        new Operation() {
+          @Override
+          public void run() throws GeneralSecurityException {
+            sink += daead.decryptDeterministically(ciphertext, associatedData).length;
+          }
+        },
+        nanos);
+  }
+
+  public static void main(String[] args) throws Exception {
+    int argIndex = 0;
+    if (args.length > 0 && args[0].equals("--conscrypt")) {
+      Security.addProvider(Conscrypt.newProvider());
+      argIndex++;
+    }
+    long nanos =
+        TimeUnit.SECONDS.toNanos(args.length > argIndex ? Long.parseLong(args[argIndex]) : 1);
+
+    Aead portable = new PortableAesGcmSiv(Random.randBytes(32));
+    Aead provider = null;
+    try {
+      Cipher.getInstance("AES/GCM-SIV/NoPadding");
+      provider = new AesGcmSiv(Random.randBytes(32));
+    } catch (GeneralSecurityException e) {
+      System.out.println("No provider supports AES/GCM-SIV/NoPadding, skipping AesGcmSiv.");
+    }
+    DeterministicAead aesSiv = new AesSiv(Random.randBytes(64));
+
+    System.out.printf(
+        "%-18s %9s %14s %14s %10s %10s%n",
+        "primitive", "bytes", "encrypt/s", "decrypt/s", "enc MiB/s", "dec MiB/s");
+    for (int inputSize : INPUT_SIZES) {
+      reportAead("PortableAesGcmSiv", portable, inputSize, nanos);
+      if (provider != null) {
+        reportAead("AesGcmSiv", provider, inputSize, nanos);
+      }
+      reportDeterministicAead("AesSiv", aesSiv, inputSize, nanos);
+    }
+  }
+
+  private AesGcmSivBenchmark() {}
+}
@@ -0,0 +1,163 @@
+// Copyright 2022 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+
+package com.google.crypto.tink.testing;
+
+import com.google.crypto.tink.Aead;
+import com.google.crypto.tink.CleartextKeysetHandle;
+import com.google.crypto.tink.JsonKeysetReader;
+import com.google.crypto.tink.KeysetHandle;
+import com.google.crypto.tink.config.LazyTinkConfig;
+import com.google.crypto.tink.config.TinkConfig;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+
+/**
+ * Measures the time from the start of a JVM to its first encryption, with {@link
+ * TinkConfig#register} and with {@link LazyTinkConfig#register}.
+ *
+ * <p>Start-up cost is mostly class loading and initialization, which a JVM pays only once, so
+ * every measurement runs in a new JVM with the class path of this one. Each child JVM registers
+ * Tink, reads an AES128_GCM keyset, creates its {@link Aead} and encrypts once; it reports the time
+ * this took and how many classes it had loaded by then. The parent runs the two modes alternately
+ * and prints the medians, together with the wall-clock time of the whole child process.
+ *
+ * <p>Usage: {@code ConfigStartupBenchmark [runs per mode]}.
+ */
+public final class ConfigStartupBenchmark {
+  private static final String CHILD = "--child";
+  private static final String EAGER = "eager";
+  private static final String LAZY = "lazy";
+
+  // A fixed key: this is only a benchmark input and must never be used to protect data.
+  private static final String KEYSET =
+      "{\"primaryKeyId\":42,\"key\":[{\"keyData\":{"
+          + "\"typeUrl\":\"type.googleapis.com/google.crypto.tink.AesGcmKey\","
+          + "\"value\":\"GhAAAQIDBAUGBwgJCgsMDQ4P\",\"keyMaterialType\":\"SYMMETRIC\"},"
+          + "\"status\":\"ENABLED\",\"keyId\":42,\"outputPrefixType\":\"TINK\"}]}";
+
+  /**
+   * Registers Tink in {@code mode}, creates an {@link Aead} from {@link #KEYSET} and encrypts once.
+   * Returns the elapsed time in nanoseconds.
+   */
+  @SuppressWarnings("deprecation") // TinkConfig is what the lazy mode is compared against.
+  static long timeToFirstEncrypt(String mode) throws GeneralSecurityException, IOException {
+    long start = System.nanoTime();
+    if (mode.equals(LAZY)) {
+      LazyTinkConfig.register();
+    } else {
+      TinkConfig.register();
+    }
+    KeysetHandle handle = CleartextKeysetHandle.read(JsonKeysetReader.withString(KEYSET));
+    Aead aead = handle.getPrimitive(Aead.class);
+    aead.encrypt(new byte[16], new byte[0]);
+    return System.nanoTime() - start;
+  }
+
+  /** The result of one child JVM. */
+  private static final class Run {
+    final long firstEncryptNanos;
+    final long loadedClasses;
+    final long processNanos;
+
+    Run(long firstEncryptNanos, long loadedClasses, long processNanos) {
+      this.firstEncryptNanos = firstEncryptNanos;
+      this.loadedClasses = loadedClasses;
+      this.processNanos = processNanos;
+    }
+  }
+
+  private static Run runChild(String mode) throws IOException, InterruptedException {
+    String java = new File(new File(System.getProperty("java.home"), "bin"), "java").getPath();
+    ProcessBuilder builder =
+        new ProcessBuilder(
+            java,
+            "-cp",
+            System.getProperty("java.class.path"),
+            ConfigStartupBenchmark.class.getName(),
+            CHILD,
+            mode);
+    builder.redirectError(ProcessBuilder.Redirect.INHERIT);
+    long start = System.nanoTime();
+    Process process = builder.start();
+    String line;
+    try (BufferedReader reader =
+        new BufferedReader(
+            new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+      line = reader.readLine();
+    }
+    int exitCode = process.waitFor();
+    long processNanos = System.nanoTime() - start;
+    if (exitCode != 0 || line == null) {
+      throw new IOException("child JVM for mode " + mode + " failed with exit code " + exitCode);
+    }
+    String[] fields = line.trim().split(" ");
+    return new Run(Long.parseLong(fields[0]), Long.parseLong(fields[1]), processNanos);
+  }
+
+  private static long median(long[] values) {
+    long[] sorted = values.clone();
+    Arrays.sort(sorted);
+    return sorted[sorted.length / 2];
+  }
+
+  private static void report(String mode, Run[] runs) {
+    long[] firstEncrypt = new long[runs.length];
+    long[] classes = new long[runs.length];
+    long[] process = new long[runs.length];
+    for (int i = 0; i < runs.length; i++) {
+      firstEncrypt[i] = runs[i].firstEncryptNanos;
+      classes[i] = runs[i].loadedClasses;
+      process[i] = runs[i].processNanos;
+    }
+    System.out.printf(
+        "%-5s first encrypt %7.1f ms, process %7.1f ms, %5d classes loaded (medians of %d)%n",
+        mode,
+        median(firstEncrypt) / 1e6,
+        median(process) / 1e6,
+        median(classes),
+        runs.length);
+  }
+
+  public static void main(String[] args) throws Exception {
+    if (args.length == 2 && args[0].equals(CHILD)) {
+      long nanos = timeToFirstEncrypt(args[1]);
+      long classes = ManagementFactory.getClassLoadingMXBean().getLoadedClassCount();
+      System.out.println(nanos + " " + classes);
+      return;
+    }
+    int runs = args.length > 0 ? Integer.parseInt(args[0]) : 11;
+    Run[] eager = new Run[runs];
+    Run[] lazy = new Run[runs];
+    // Alternate the modes, so that both see the same state of the machine and its file cache.
+    runChild(EAGER);
+    for (int i = 0; i < runs; i++) {
+      eager[i] = runChild(EAGER);
+      lazy[i] = runChild(LAZY);
+    }
+    report(EAGER, eager);
+    report(LAZY, lazy);
+  }
+
+  private ConfigStartupBenchmark() {}
+}
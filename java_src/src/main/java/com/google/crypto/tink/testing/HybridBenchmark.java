@@ -0,0 +1,122 @@
+// Copyright 2022 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+
+package com.google.crypto.tink.testing;
+
+import com.google.crypto.tink.HybridDecrypt;
+import com.google.crypto.tink.HybridEncrypt;
+import com.google.crypto.tink.KeyTemplates;
+import com.google.crypto.tink.KeysetHandle;
+import com.google.crypto.tink.hybrid.HybridConfig;
+import java.security.GeneralSecurityException;
+import java.security.Security;
+import java.util.concurrent.TimeUnit;
+import org.conscrypt.Conscrypt;
+
+/**
+ * Measures how many encryptions and decryptions per second the {@link HybridEncrypt} and {@link
+ * HybridDecrypt} primitives of HPKE with X25519 and of ECIES with P-256 do.
+ *
+ * <p>Each primitive is created from a keyset with one key of the given template, and encrypts a
+ * message of the given size with empty context info. With {@code --conscrypt}, Conscrypt is
+ * installed as the preferred provider first, which is what Android and many servers use for P-256.
+ *
+ * <p>Usage: {@code HybridBenchmark [--conscrypt] [seconds per case] [message size]}.
+ */
+public final class HybridBenchmark {
+  /** Keeps the JIT from optimizing the measured calls away. */
+  private static volatile int sink;
+
+  private static final String[] TEMPLATE_NAMES = {
+    "DHKEM_X25519_HKDF_SHA256_HKDF_SHA256_AES_128_GCM",
+    "DHKEM_X25519_HKDF_SHA256_HKDF_SHA256_CHACHA20_POLY1305",
+    "ECIES_P256_HKDF_HMAC_SHA256_AES128_GCM",
+    "ECIES_P256_COMPRESSED_HKDF_HMAC_SHA256_AES128_GCM",
+  };
+
+  /** One encryption or decryption. */
+  private interface Operation {
+    void run() throws GeneralSecurityException;
+  }
+
+  /** Runs {@code operation} for {@code nanos} and returns the operations per second. */
+  private static long operationsPerSecond(Operation operation, long nanos)
+      throws GeneralSecurityException {
+    long operations = 0;
+    long start = System.nanoTime();
+    long elapsed;
+    do {
+      operation.run();
+      operations++;
+      elapsed = System.nanoTime() - start;
+    } while (elapsed < nanos);
+    return operations * TimeUnit.SECONDS.toNanos(1) / elapsed;
+  }
+
+  private static void report(String templateName, int messageSize, long nanos)
+      throws GeneralSecurityException {
+    KeysetHandle privateHandle = KeysetHandle.generateNew(KeyTemplates.get(templateName));
+    final HybridDecrypt decrypter = privateHandle.getPrimitive(HybridDecrypt.class);
+    final HybridEncrypt encrypter =
+        privateHandle.getPublicKeysetHandle().getPrimitive(HybridEncrypt.class);
+    final byte[] plaintext = new byte[messageSize];
+    final byte[] contextInfo = new byte[0];
+    final byte[] ciphertext = encrypter.encrypt(plaintext, contextInfo);
+    Operation encrypt =
+        new Operation() {
+          @Override
+          public void run() throws GeneralSecurityException {
+            sink += encrypter.encrypt(plaintext, contextInfo).length;
+          }
+        };
+    Operation decrypt =
+        new Operation() {
+          @Override
+          public void run() throws GeneralSecurityException {
+            sink += decrypter.decrypt(ciphertext, contextInfo).length;
+          }
+        };
+    operationsPerSecond(encrypt, nanos / 4);
+    operationsPerSecond(decrypt, nanos / 4);
+    System.out.printf(
+        "%-55s %10d %10d %10d%n",
+        templateName,
+        operationsPerSecond(encrypt, nanos),
+        operationsPerSecond(decrypt, nanos),
+        ciphertext.length - messageSize);
+  }
+
+  public static void main(String[] args) throws Exception {
+    int argIndex = 0;
+    if (args.length > 0 && args[0].equals("--conscrypt")) {
+      Security.insertProviderAt(Conscrypt.newProvider(), 1);
+      argIndex++;
+    }
+    long nanos =
+        TimeUnit.SECONDS.toNanos(args.length > argIndex ? Long.parseLong(args[argIndex]) : 2);
+    int messageSize = args.length > argIndex + 1 ? Integer.parseInt(args[argIndex + 1]) : 64;
+    HybridConfig.register();
+
+    System.out.printf("%d-byte messages, operations per second:%n", messageSize);
+    System.out.printf("%-55s %10s %10s %10s%n", "template", "encrypt", "decrypt", "overhead");
+    for (String templateName : TEMPLATE_NAMES) {
+      report(templateName, messageSize, nanos);
+    }
+  }
+
+  private HybridBenchmark() {}
+}
@@ -0,0 +1,125 @@
+// Copyright 2022 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+
+package com.google.crypto.tink.testing;
+
+import com.google.crypto.tink.Aead;
+import com.google.crypto.tink.CompactKeyset;
+import com.google.crypto.tink.KeyTemplate;
+import com.google.crypto.tink.KeyTemplates;
+import com.google.crypto.tink.KeysetHandle;
+import com.google.crypto.tink.KeysetManager;
+import com.google.crypto.tink.aead.AeadConfig;
+import java.security.GeneralSecurityException;
+
+/**
+ * Measures how many bytes of heap a keyset takes while it stays in memory: as a {@link
+ * KeysetHandle}, as a {@link KeysetHandle} together with its {@link Aead} primitive, and as a
+ * {@link CompactKeyset}.
+ *
+ * <p>For each representation, many keysets with the same key templates are created and kept in an
+ * array. The growth of the used heap after a full garbage collection, divided by the number of
+ * keysets, is reported as the size of one keyset. Run it with a heap that is large enough for all
+ * keysets, e.g. {@code -Xmx4g} for the default of a million keysets, and with no other load on the
+ * JVM.
+ *
+ * <p>Usage: {@code KeysetFootprintBenchmark [keysets] [keys per keyset] [key template]}.
+ */
+public final class KeysetFootprintBenchmark {
+  /** Keeps the measured keysets reachable until the heap was measured. */
+  private static volatile Object[] retained;
+
+  private enum Representation {
+    KEYSET_HANDLE,
+    KEYSET_HANDLE_AND_PRIMITIVE,
+    COMPACT_KEYSET
+  }
+
+  private static KeysetHandle newKeysetHandle(KeyTemplate template, int keysPerKeyset)
+      throws GeneralSecurityException {
+    KeysetManager manager = KeysetManager.withKeysetHandle(KeysetHandle.generateNew(template));
+    for (int i = 1; i < keysPerKeyset; i++) {
+      manager.add(template);
+    }
+    return manager.getKeysetHandle();
+  }
+
+  private static long usedHeapAfterGc() throws InterruptedException {
+    Runtime runtime = Runtime.getRuntime();
+    long used = Long.MAX_VALUE;
+    // A single System.gc() doesn't always collect everything; stop once the heap stops shrinking.
+    for (int i = 0; i < 10; i++) {
+      System.gc();
+      Thread.sleep(50);
+      long current = runtime.totalMemory() - runtime.freeMemory();
+      if (current >= used) {
+        break;
+      }
+      used = current;
+    }
+    return used;
+  }
+
+  /** Returns the heap taken by one keyset in {@code representation}, in bytes. */
+  static long bytesPerKeyset(
+      Representation representation, KeyTemplate template, int keysPerKeyset, int keysets)
+      throws GeneralSecurityException, InterruptedException {
+    retained = null;
+    long before = usedHeapAfterGc();
+    Object[] objects = new Object[keysets];
+    for (int i = 0; i < keysets; i++) {
+      KeysetHandle handle = newKeysetHandle(template, keysPerKeyset);
+      switch (representation) {
+        case KEYSET_HANDLE:
+          objects[i] = handle;
+          break;
+        case KEYSET_HANDLE_AND_PRIMITIVE:
+          objects[i] = new Object[] {handle, handle.getPrimitive(Aead.class)};
+          break;
+        case COMPACT_KEYSET:
+          objects[i] = CompactKeyset.fromKeysetHandle(handle);
+          break;
+      }
+    }
+    retained = objects;
+    long after = usedHeapAfterGc();
+    retained = null;
+    return (after - before) / keysets;
+  }
+
+  public static void main(String[] args) throws Exception {
+    int keysets = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+    int keysPerKeyset = args.length > 1 ? Integer.parseInt(args[1]) : 2;
+    String templateName = args.length > 2 ? args[2] : "AES128_GCM";
+    AeadConfig.register();
+    KeyTemplate template = KeyTemplates.get(templateName);
+    // Warm up, so that class loading and JIT data don't count towards the first representation.
+    for (Representation representation : Representation.values()) {
+      bytesPerKeyset(representation, template, keysPerKeyset, Math.min(keysets, 10_000));
+    }
+    System.out.printf(
+        "%d keysets of %d %s keys each, bytes per keyset:%n", keysets, keysPerKeyset, templateName);
+    for (Representation representation : Representation.values()) {
+      System.out.printf(
+          "  %-28s %6d%n",
+          representation,
+          bytesPerKeyset(representation, template, keysPerKeyset, keysets));
+    }
+  }
+
+  private KeysetFootprintBenchmark() {}
+}
@@ -0,0 +1,434 @@
+// Copyright 2022 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+
+package com.google.crypto.tink.testing;
+
+import com.google.crypto.tink.StreamingAead;
+import com.google.crypto.tink.subtle.AesGcmHkdfStreaming;
+import com.google.crypto.tink.subtle.Random;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+/**
+ * Runs many virtual threads through encrypted streams that read from and write to slow channels.
+ *
+ * <p>Every task encrypts a random plaintext into a channel that sleeps before each write, and
+ * decrypts it again from a stream or channel that sleeps before each read (see {@link
+ * DecryptionMode}). A virtual thread that sleeps while
+ * it holds a monitor pins its carrier thread, so if the streams held a monitor across the I/O, the
+ * tasks would run only as concurrently as there are carrier threads. While the tasks run, the
+ * {@code jdk.VirtualThreadPinned} JFR events are recorded and counted.
+ *
+ * <p>Virtual threads need Java 21; they are created reflectively so that this class compiles with
+ * older JDKs. Use {@link #isSupported} to check whether the workload can run.
+ *
+ * <p>{@link #main} runs the workload as a benchmark. Run it with {@code
+ * -Djdk.tracePinnedThreads=full} to additionally get a stack trace for every pinned thread.
+ */
+public final class VirtualThreadStreamingWorkload {
+  private static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+
+  /** How a task decrypts its ciphertext. */
+  public enum DecryptionMode {
+    /** With {@link StreamingAead#newDecryptingStream}. */
+    STREAM,
+    /** With {@link StreamingAead#newDecryptingChannel}. */
+    CHANNEL,
+    /** With {@link StreamingAead#newSeekableDecryptingChannel}. */
+    SEEKABLE_CHANNEL,
+  }
+
+  /** The outcome of {@link #run}. */
+  public static final class Result {
+    public final int tasks;
+    public final long elapsedNanos;
+    public final long pinnedEvents;
+
+    Result(int tasks, long elapsedNanos, long pinnedEvents) {
+      this.tasks = tasks;
+      this.elapsedNanos = elapsedNanos;
+      this.pinnedEvents = pinnedEvents;
+    }
+  }
+
+  /** Returns true if this JVM supports virtual threads. */
+  public static boolean isSupported() {
+    try {
+      newVirtualThreadPerTaskExecutor().shutdown();
+      return true;
+    } catch (GeneralSecurityException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Runs {@code tasks} virtual threads, each of which encrypts and decrypts {@code plaintextSize}
+   * bytes with {@code streamingAead}, decrypting with {@link DecryptionMode#STREAM}. The channels
+   * sleep {@code ioDelayMillis} before each read and write of at most {@code chunkSize} bytes.
+   *
+   * @throws GeneralSecurityException if virtual threads are not supported, or a decrypted plaintext
+   *     differs from its plaintext
+   */
+  public static Result run(
+      StreamingAead streamingAead,
+      int tasks,
+      int plaintextSize,
+      int chunkSize,
+      long ioDelayMillis)
+      throws GeneralSecurityException, IOException, InterruptedException {
+    return run(
+        streamingAead, DecryptionMode.STREAM, tasks, plaintextSize, chunkSize, ioDelayMillis);
+  }
+
+  /** Like {@link #run(StreamingAead, int, int, int, long)}, but decrypts with {@code mode}. */
+  public static Result run(
+      final StreamingAead streamingAead,
+      final DecryptionMode mode,
+      int tasks,
+      final int plaintextSize,
+      final int chunkSize,
+      final long ioDelayMillis)
+      throws GeneralSecurityException, IOException, InterruptedException {
+    ExecutorService executor = newVirtualThreadPerTaskExecutor();
+    Recording recording = new Recording();
+    recording.enable(PINNED_EVENT).withThreshold(Duration.ZERO).withStackTrace();
+    recording.start();
+    long start = System.nanoTime();
+    long elapsedNanos;
+    try {
+      List<Future<Void>> futures = new ArrayList<>();
+      for (int i = 0; i < tasks; i++) {
+        futures.add(
+            executor.submit(
+                new Callable<Void>() {
+                  @Override
+                  public Void call() throws Exception {
+                    encryptAndDecrypt(
+                        streamingAead, mode, plaintextSize, chunkSize, ioDelayMillis);
+                    return null;
+                  }
+                }));
+      }
+      for (Future<Void> future : futures) {
+        try {
+          future.get();
+        } catch (ExecutionException e) {
+          Throwable cause = e.getCause();
+          if (cause instanceof GeneralSecurityException) {
+            throw (GeneralSecurityException) cause;
+          }
+          if (cause instanceof IOException) {
+            throw (IOException) cause;
+          }
+          throw new IOException(cause);
+        }
+      }
+      elapsedNanos = System.nanoTime() - start;
+    } finally {
+      executor.shutdown();
+      recording.stop();
+    }
+    return new Result(tasks, elapsedNanos, countPinnedEvents(recording));
+  }
+
+  private static void encryptAndDecrypt(
+      StreamingAead streamingAead,
+      DecryptionMode mode,
+      int plaintextSize,
+      int chunkSize,
+      long ioDelayMillis)
+      throws GeneralSecurityException, IOException {
+    byte[] plaintext = Random.randBytes(plaintextSize);
+    byte[] associatedData = Random.randBytes(16);
+
+    ByteArrayOutputStream ciphertext = new ByteArrayOutputStream();
+    WritableByteChannel ciphertextChannel =
+        new SlowWritableChannel(Channels.newChannel(ciphertext), chunkSize, ioDelayMillis);
+    try (WritableByteChannel encryptingChannel =
+        streamingAead.newEncryptingChannel(ciphertextChannel, associatedData)) {
+      for (int offset = 0; offset < plaintext.length; offset += chunkSize) {
+        ByteBuffer chunk =
+            ByteBuffer.wrap(plaintext, offset, Math.min(chunkSize, plaintext.length - offset));
+        while (chunk.hasRemaining()) {
+          encryptingChannel.write(chunk);
+        }
+      }
+    }
+
+    ByteArrayOutputStream decrypted = new ByteArrayOutputStream();
+    if (mode == DecryptionMode.STREAM) {
+      // Not Channels.newInputStream: the stream it returns holds a monitor while it reads.
+      InputStream ciphertextStream =
+          new SlowInputStream(ciphertext.toByteArray(), chunkSize, ioDelayMillis);
+      try (InputStream decryptingStream =
+          streamingAead.newDecryptingStream(ciphertextStream, associatedData)) {
+        byte[] chunk = new byte[chunkSize];
+        int read;
+        while ((read = decryptingStream.read(chunk)) != -1) {
+          decrypted.write(chunk, 0, read);
+        }
+      }
+    } else {
+      SeekableByteChannel ciphertextSource =
+          new SlowSeekableChannel(ciphertext.toByteArray(), chunkSize, ioDelayMillis);
+      try (ReadableByteChannel decryptingChannel =
+          mode == DecryptionMode.CHANNEL
+              ? streamingAead.newDecryptingChannel(ciphertextSource, associatedData)
+              : streamingAead.newSeekableDecryptingChannel(ciphertextSource, associatedData)) {
+        ByteBuffer chunk = ByteBuffer.allocate(chunkSize);
+        while (decryptingChannel.read(chunk) != -1) {
+          decrypted.write(chunk.array(), 0, chunk.position());
+          chunk.clear();
+        }
+      }
+    }
+    if (!Arrays.equals(plaintext, decrypted.toByteArray())) {
+      throw new GeneralSecurityException("decrypted plaintext differs from the plaintext");
+    }
+  }
+
+  private static long countPinnedEvents(Recording recording) throws IOException {
+    Path file = Files.createTempFile("tink-virtual-threads", ".jfr");
+    try {
+      recording.dump(file);
+      long count = 0;
+      for (RecordedEvent event : RecordingFile.readAllEvents(file)) {
+        if (event.getEventType().getName().equals(PINNED_EVENT)) {
+          count++;
+        }
+      }
+      return count;
+    } finally {
+      recording.close();
+      Files.delete(file);
+    }
+  }
+
+  private static ExecutorService newVirtualThreadPerTaskExecutor()
+      throws GeneralSecurityException {
+    try {
+      return (ExecutorService)
+          Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+    } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
+      // Either Java 20 or older, or Java 19 and 20 without --enable-preview.
+      throw new GeneralSecurityException("virtual threads are not supported", e);
+    }
+  }
+
+  /** A channel that sleeps before each write, and writes at most {@code chunkSize} bytes. */
+  private static final class SlowWritableChannel implements WritableByteChannel {
+    private final WritableByteChannel channel;
+    private final int chunkSize;
+    private final long delayMillis;
+
+    SlowWritableChannel(WritableByteChannel channel, int chunkSize, long delayMillis) {
+      this.channel = channel;
+      this.chunkSize = chunkSize;
+      this.delayMillis = delayMillis;
+    }
+
+    @Override
+    public int write(ByteBuffer src) throws IOException {
+      sleep(delayMillis);
+      ByteBuffer chunk = src.duplicate();
+      chunk.limit(chunk.position() + Math.min(chunk.remaining(), chunkSize));
+      int written = channel.write(chunk);
+      src.position(src.position() + written);
+      return written;
+    }
+
+    @Override
+    public boolean isOpen() {
+      return channel.isOpen();
+    }
+
+    @Override
+    public void close() throws IOException {
+      channel.close();
+    }
+  }
+
+  /** A stream over {@code data} that sleeps before each read of at most {@code chunkSize}. */
+  private static final class SlowInputStream extends InputStream {
+    private final byte[] data;
+    private final int chunkSize;
+    private final long delayMillis;
+    private int position = 0;
+
+    SlowInputStream(byte[] data, int chunkSize, long delayMillis) {
+      this.data = data;
+      this.chunkSize = chunkSize;
+      this.delayMillis = delayMillis;
+    }
+
+    @Override
+    public int read() throws IOException {
+      byte[] oneByte = new byte[1];
+      return read(oneByte, 0, 1) == -1 ? -1 : oneByte[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] dst, int offset, int length) throws IOException {
+      if (length == 0) {
+        return 0;
+      }
+      if (position == data.length) {
+        return -1;
+      }
+      sleep(delayMillis);
+      int size = Math.min(Math.min(length, chunkSize), data.length - position);
+      System.arraycopy(data, position, dst, offset, size);
+      position += size;
+      return size;
+    }
+  }
+
+  /**
+   * A read-only channel over {@code data} that sleeps before each read of at most {@code
+   * chunkSize} bytes.
+   */
+  private static final class SlowSeekableChannel implements SeekableByteChannel {
+    private final byte[] data;
+    private final int chunkSize;
+    private final long delayMillis;
+    private long position = 0;
+    private boolean open = true;
+
+    SlowSeekableChannel(byte[] data, int chunkSize, long delayMillis) {
+      this.data = data;
+      this.chunkSize = chunkSize;
+      this.delayMillis = delayMillis;
+    }
+
+    @Override
+    public int read(ByteBuffer dst) throws IOException {
+      if (dst.remaining() == 0) {
+        return 0;
+      }
+      if (position >= data.length) {
+        return -1;
+      }
+      sleep(delayMillis);
+      int size = (int) Math.min(Math.min(dst.remaining(), chunkSize), data.length - position);
+      dst.put(data, (int) position, size);
+      position += size;
+      return size;
+    }
+
+    @Override
+    public int write(ByteBuffer src) {
+      throw new NonWritableChannelException();
+    }
+
+    @Override
+    public long position() {
+      return position;
+    }
+
+    @Override
+    public SeekableByteChannel position(long newPosition) {
+      position = newPosition;
+      return this;
+    }
+
+    @Override
+    public long size() {
+      return data.length;
+    }
+
+    @Override
+    public SeekableByteChannel truncate(long size) {
+      throw new NonWritableChannelException();
+    }
+
+    @Override
+    public boolean isOpen() {
+      return open;
+    }
+
+    @Override
+    public void close() {
+      open = false;
+    }
+  }
+
+  private static void sleep(long millis) throws IOException {
+    try {
+      Thread.sleep(millis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("interrupted while sleeping in a slow channel");
+    }
+  }
+
+  /**
+   * Runs the workload with AES-GCM-HKDF streaming and prints the throughput and the number of
+   * pinned threads.
+   *
+   * <p>Arguments, all optional: number of tasks (default 10000), plaintext size in bytes (default
+   * 65536), chunk size in bytes (default 4096) and I/O delay in milliseconds (default 1).
+   */
+  public static void main(String[] args) throws Exception {
+    int tasks = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+    int plaintextSize = args.length > 1 ? Integer.parseInt(args[1]) : 65536;
+    int chunkSize = args.length > 2 ? Integer.parseInt(args[2]) : 4096;
+    long ioDelayMillis = args.length > 3 ? Long.parseLong(args[3]) : 1;
+    if (!isSupported()) {
+      System.err.println("Virtual threads need Java 21 or newer.");
+      System.exit(1);
+    }
+    StreamingAead streamingAead =
+        new AesGcmHkdfStreaming(Random.randBytes(16), "HmacSha256", 16, 4096, 0);
+    // The first run warms up the JIT.
+    run(streamingAead, Math.min(tasks, 1000), plaintextSize, chunkSize, ioDelayMillis);
+    Result result = run(streamingAead, tasks, plaintextSize, chunkSize, ioDelayMillis);
+    double seconds = result.elapsedNanos / 1e9;
+    System.out.printf(
+        "%d tasks in %.2f s: %.0f tasks/s, %.1f MB/s of plaintext, %d pinned events%n",
+        result.tasks,
+        seconds,
+        result.tasks / seconds,
+        2.0 * result.tasks * plaintextSize / seconds / 1e6,
+        result.pinnedEvents);
+  }
+
+  private VirtualThreadStreamingWorkload() {}
+}
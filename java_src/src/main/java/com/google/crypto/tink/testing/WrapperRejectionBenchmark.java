@@ -0,0 +1,221 @@
+// Copyright 2022 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+
+package com.google.crypto.tink.testing;
+
+import com.google.crypto.tink.Aead;
+import com.google.crypto.tink.CryptoFormat;
+import com.google.crypto.tink.DeterministicAead;
+import com.google.crypto.tink.KeyTemplates;
+import com.google.crypto.tink.KeysetHandle;
+import com.google.crypto.tink.KeysetManager;
+import com.google.crypto.tink.Mac;
+import com.google.crypto.tink.aead.AeadConfig;
+import com.google.crypto.tink.daead.DeterministicAeadConfig;
+import com.google.crypto.tink.mac.MacConfig;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how many invalid inputs per second the keyset {@link Aead}, {@link DeterministicAead}
+ * and {@link Mac} primitives reject.
+ *
+ * <p>Each primitive is created from a keyset with a TINK and a RAW key, the TINK key being primary.
+ * Two kinds of invalid input are derived from a valid one: one whose prefix matches no key, which
+ * only the RAW key is tried on, and one whose prefix matches the primary key but whose tag is
+ * wrong, which both keys are tried on. For comparison, the rate of valid inputs is reported too.
+ * With {@code --no-raw}, the keysets only have the TINK key, so that an unknown prefix is rejected
+ * without trying any key.
+ *
+ * <p>Usage: {@code WrapperRejectionBenchmark [--no-raw] [seconds per case] [input size]}.
+ */
+public final class WrapperRejectionBenchmark {
+  /** Keeps the JIT from optimizing the measured calls away. */
+  private static volatile int sink;
+
+  /** One decryption or verification, which is expected to succeed or fail. */
+  private interface Operation {
+    void run() throws GeneralSecurityException;
+  }
+
+  private static KeysetHandle newKeysetHandle(String templateName, boolean withRawKey)
+      throws GeneralSecurityException {
+    KeysetManager manager =
+        KeysetManager.withKeysetHandle(KeysetHandle.generateNew(KeyTemplates.get(templateName)));
+    if (withRawKey) {
+      manager.add(KeyTemplates.get(templateName + "_RAW"));
+    }
+    return manager.getKeysetHandle();
+  }
+
+  /** Returns a copy of {@code input} with one bit flipped at {@code index}. */
+  private static byte[] corrupt(byte[] input, int index) {
+    byte[] corrupted = Arrays.copyOf(input, input.length);
+    corrupted[index] ^= 1;
+    return corrupted;
+  }
+
+  /**
+   * Runs {@code operation} for {@code nanos} and returns the operations per second. Throws if an
+   * operation does not succeed or fail as {@code expectFailure} says.
+   */
+  private static long operationsPerSecond(Operation operation, boolean expectFailure, long nanos)
+      throws GeneralSecurityException {
+    long operations = 0;
+    long start = System.nanoTime();
+    long elapsed;
+    do {
+      // Check the clock only every few operations.
+      for (int i = 0; i < 64; i++) {
+        boolean failed = false;
+        try {
+          operation.run();
+        } catch (GeneralSecurityException e) {
+          failed = true;
+        }
+        if (failed != expectFailure) {
+          throw new GeneralSecurityException(
+              "unexpected result, expected failure: " + expectFailure);
+        }
+      }
+      operations += 64;
+      elapsed = System.nanoTime() - start;
+    } while (elapsed < nanos);
+    return operations * TimeUnit.SECONDS.toNanos(1) / elapsed;
+  }
+
+  private static void report(
+      String name, Operation valid, Operation unknownPrefix, Operation invalidTag, long nanos)
+      throws GeneralSecurityException {
+    // Warm up all three paths before measuring any of them.
+    operationsPerSecond(valid, false, nanos / 4);
+    operationsPerSecond(unknownPrefix, true, nanos / 4);
+    operationsPerSecond(invalidTag, true, nanos / 4);
+    System.out.printf(
+        "%-18s %12d %15d %12d%n",
+        name,
+        operationsPerSecond(valid, false, nanos),
+        operationsPerSecond(unknownPrefix, true, nanos),
+        operationsPerSecond(invalidTag, true, nanos));
+  }
+
+  public static void main(String[] args) throws Exception {
+    int argIndex = 0;
+    boolean withRawKey = true;
+    if (args.length > 0 && args[0].equals("--no-raw")) {
+      withRawKey = false;
+      argIndex++;
+    }
+    long nanos =
+        TimeUnit.SECONDS.toNanos(args.length > argIndex ? Long.parseLong(args[argIndex]) : 2);
+    int inputSize = args.length > argIndex + 1 ? Integer.parseInt(args[argIndex + 1]) : 64;
+    AeadConfig.register();
+    DeterministicAeadConfig.register();
+    MacConfig.register();
+
+    final byte[] input = new byte[inputSize];
+    final byte[] associatedData = new byte[0];
+    System.out.printf(
+        "%d-byte inputs, keysets %s a RAW key, operations per second:%n",
+        inputSize, withRawKey ? "with" : "without");
+    System.out.printf(
+        "%-18s %12s %15s %12s%n", "primitive", "valid", "unknown prefix", "invalid tag");
+
+    final Aead aead = newKeysetHandle("AES128_GCM", withRawKey).getPrimitive(Aead.class);
+    final byte[] ciphertext = aead.encrypt(input, associatedData);
+    final byte[] aeadUnknownPrefix = corrupt(ciphertext, 1);
+    final byte[] aeadInvalidTag = corrupt(ciphertext, ciphertext.length - 1);
+    report(
+        "Aead",
+        new Operation() {
+          @Override
+          public void run() throws GeneralSecurityException {
+            sink += aead.decrypt(ciphertext, associatedData).length;
+          }
+        },
+        new Operation() {
+          @Override
+          public void run() throws GeneralSecurityException {
+            sink += aead.decrypt(aeadUnknownPrefix, associatedData).length;
+          }
+        },
+        new Operation() {
+          @Override
+          public void run() throws GeneralSecurityException {
+            sink += aead.decrypt(aeadInvalidTag, associatedData).length;
+          }
+        },
+        nanos);
+
+    final DeterministicAead daead =
+        newKeysetHandle("AES256_SIV", withRawKey).getPrimitive(DeterministicAead.class);
+    final byte[] daeadCiphertext = daead.encryptDeterministically(input, associatedData);
+    final byte[] daeadUnknownPrefix = corrupt(daeadCiphertext, 1);
+    // AES-SIV starts with its tag, right after the prefix.
+    final byte[] daeadInvalidTag = corrupt(daeadCiphertext, CryptoFormat.NON_RAW_PREFIX_SIZE);
+    report(
+        "DeterministicAead",
+        new Operation() {
+          @Override
+          public void run() throws GeneralSecurityException {
+            sink += daead.decryptDeterministically(daeadCiphertext, associatedData).length;
+          }
+        },
+        new Operation() {
+          @Override
+          public void run() throws GeneralSecurityException {
+            sink += daead.decryptDeterministically(daeadUnknownPrefix, associatedData).length;
+          }
+        },
+        new Operation() {
+          @Override
+          public void run() throws GeneralSecurityException {
+            sink += daead.decryptDeterministically(daeadInvalidTag, associatedData).length;
+          }
+        },
+        nanos);
+
+    final Mac mac = newKeysetHandle("HMAC_SHA256_128BITTAG", withRawKey).getPrimitive(Mac.class);
+    final byte[] tag = mac.computeMac(input);
+    final byte[] macUnknownPrefix = corrupt(tag, 1);
+    final byte[] macInvalidTag = corrupt(tag, tag.length - 1);
+    report(
+        "Mac",
+        new Operation() {
+          @Override
+          public void run() throws GeneralSecurityException {
+            mac.verifyMac(tag, input);
+          }
+        },
+        new Operation() {
+          @Override
+          public void run() throws GeneralSecurityException {
+            mac.verifyMac(macUnknownPrefix, input);
+          }
+        },
+        new Operation() {
+          @Override
+          public void run() throws GeneralSecurityException {
+            mac.verifyMac(macInvalidTag, input);
+          }
+        },
+        nanos);
+  }
+
+  private WrapperRejectionBenchmark() {}
+}
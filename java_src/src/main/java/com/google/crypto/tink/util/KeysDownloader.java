@@ -33,6 +33,7 @@ import java.net.URL;
 import java.nio.charset.Charset;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import javax.annotation.concurrent.GuardedBy;
@@ -67,8 +68,10 @@ public class KeysDownloader {
 
   private final Executor backgroundExecutor;
   private final HttpTransport httpTransport;
-  private final Object fetchDataLock;
-  private final Object instanceStateLock;
+  // Explicit locks rather than monitors: fetchDataLock is held while the keys are downloaded, and a
+  // virtual thread blocked in I/O inside a synchronized block pins its carrier thread.
+  private final ReentrantLock fetchDataLock;
+  private final ReentrantLock instanceStateLock;
   private final String url;
 
   @GuardedBy("instanceStateLock")
@@ -87,8 +90,8 @@ public class KeysDownloader {
     validate(url);
     this.backgroundExecutor = backgroundExecutor;
     this.httpTransport = httpTransport;
-    this.instanceStateLock = new Object();
-    this.fetchDataLock = new Object();
+    this.instanceStateLock = new ReentrantLock();
+    this.fetchDataLock = new ReentrantLock();
     this.url = url;
     this.cachedTimeInMillis = Long.MIN_VALUE;
     this.cacheExpirationDurationInMillis = 0;
@@ -100,7 +103,8 @@ public class KeysDownloader {
    * <p>Meant to be called by {@link PaymentMethodTokenRecipient}.
    */
   public String download() throws IOException {
-    synchronized (instanceStateLock) {
+    instanceStateLock.lock();
+    try {
       // Checking and using the cache if required.
       if (hasNonExpiredDataCached()) {
         // Proactively triggering a refresh if we are close to the cache expiration.
@@ -109,20 +113,28 @@ public class KeysDownloader {
         }
         return cachedData;
       }
+    } finally {
+      instanceStateLock.unlock();
     }
 
     // Acquiring the fetch lock so we don't have multiple threads trying to fetch from the
     // server at the same time.
-    synchronized (fetchDataLock) {
+    fetchDataLock.lock();
+    try {
       // It is possible that some other thread performed the fetch already and we don't need
       // to fetch anymore, so double checking a fetch is still required.
-      synchronized (instanceStateLock) {
+      instanceStateLock.lock();
+      try {
         if (hasNonExpiredDataCached()) {
           return cachedData;
         }
+      } finally {
+        instanceStateLock.unlock();
       }
       // No other thread fetched, so it is up to this thread to fetch.
       return fetchAndCacheData();
+    } finally {
+      fetchDataLock.unlock();
     }
   }
 
@@ -175,11 +187,14 @@ public class KeysDownloader {
     } finally {
       contentStream.close();
     }
-    synchronized (instanceStateLock) {
+    instanceStateLock.lock();
+    try {
       this.cachedTimeInMillis = currentTimeInMillis;
       this.cacheExpirationDurationInMillis =
           getExpirationDurationInSeconds(httpResponse.getHeaders()) * 1000;
       this.cachedData = data;
+    } finally {
+      instanceStateLock.unlock();
     }
     return data;
   }
@@ -222,20 +237,26 @@ public class KeysDownloader {
   /** Fetches keys in the background. */
   public void refreshInBackground() {
     Runnable refreshRunnable = newRefreshRunnable();
-    synchronized (instanceStateLock) {
+    instanceStateLock.lock();
+    try {
       if (pendingRefreshRunnable != null) {
         return;
       }
       pendingRefreshRunnable = refreshRunnable;
+    } finally {
+      instanceStateLock.unlock();
     }
     try {
       backgroundExecutor.execute(refreshRunnable);
     } catch (Throwable e) {
-      synchronized (instanceStateLock) {
+      instanceStateLock.lock();
+      try {
         // Clearing if we were still the pending runnable.
         if (pendingRefreshRunnable == refreshRunnable) {
           pendingRefreshRunnable = null;
         }
+      } finally {
+        instanceStateLock.unlock();
       }
       throw e;
     }
@@ -245,19 +266,25 @@ public class KeysDownloader {
     return new Runnable() {
       @Override
       public void run() {
-        synchronized (fetchDataLock) {
+        fetchDataLock.lock();
+        try {
           try {
             fetchAndCacheData();
           } catch (IOException e) {
             // Failed to fetch the data. Ok as this was just from the background.
           } finally {
-            synchronized (instanceStateLock) {
+            instanceStateLock.lock();
+            try {
               // Clearing if we were still the pending runnable.
               if (pendingRefreshRunnable == this) {
                 pendingRefreshRunnable = null;
               }
+            } finally {
+              instanceStateLock.unlock();
             }
           }
+        } finally {
+          fetchDataLock.unlock();
         }
       }
     };
@@ -0,0 +1,488 @@
+// Copyright 2022 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+
+package com.google.crypto.tink.util;
+
+import com.google.api.client.http.GenericUrl;
+import com.google.api.client.http.HttpHeaders;
+import com.google.api.client.http.HttpRequest;
+import com.google.api.client.http.HttpResponse;
+import com.google.api.client.http.HttpStatusCodes;
+import com.google.api.client.http.HttpTransport;
+import com.google.api.client.http.javanet.NetHttpTransport;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.security.GeneralSecurityException;
+import java.util.Locale;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Thread-safe downloader that caches the parsed form of a remote document, such as a set of public
+ * keys.
+ *
+ * <p>Unlike {@link KeysDownloader}, which caches the downloaded string, this class runs a {@link
+ * Parser} once per download and caches its result, for example the {@code Map<Long, ECPublicKey>}
+ * or the {@link com.google.crypto.tink.jwt.JwtPublicKeyVerify} built from the document. Callers of
+ * {@link #get} then only read a volatile field.
+ *
+ * <h3>Caching</h3>
+ *
+ * <p>The freshness of a download is taken from its {@code Cache-Control} header: {@code max-age}
+ * (minus the {@code Age} header) is how long the result is fresh, {@code stale-while-revalidate}
+ * how much longer it may be served while a new download is attempted, and {@code no-cache} or
+ * {@code no-store} disable caching. If the header has no {@code stale-while-revalidate} directive,
+ * or a shorter one, {@link Builder#setMaxStaleness} applies.
+ *
+ * <ul>
+ *   <li>Once half of the fresh period has passed, {@link #get} starts a refresh in the background.
+ *   <li>Stale results are returned without blocking while the background refresh runs.
+ *   <li>Only when there is no result, or it is older than the staleness bound, {@link #get}
+ *       downloads synchronously. Concurrent callers then wait for a single download.
+ * </ul>
+ *
+ * <p>After a failed download or parse, the previous result stays in use, and the next attempt is
+ * delayed by an exponential backoff with random jitter, so that many instances don't retry in
+ * lockstep against a server that is down.
+ *
+ * <h3>Usage</h3>
+ *
+ * <pre>{@code
+ * static final ParsedKeysDownloader<JwtPublicKeyVerify> VERIFIER =
+ *     new ParsedKeysDownloader.Builder<JwtPublicKeyVerify>()
+ *         .setUrl("https://example.com/jwks.json")
+ *         .setParser(
+ *             jwks ->
+ *                 JwkSetConverter.toKeysetHandle(jwks, KeyAccess.publicAccess())
+ *                     .getPrimitive(JwtPublicKeyVerify.class))
+ *         .build();
+ *
+ * VerifiedJwt jwt = VERIFIER.get().verifyAndDecode(token, validator);
+ * }</pre>
+ *
+ * @param <T> the type of the parsed result
+ */
+public class ParsedKeysDownloader<T> {
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  private static final NetHttpTransport DEFAULT_HTTP_TRANSPORT =
+      new NetHttpTransport.Builder().build();
+
+  private static final Executor DEFAULT_BACKGROUND_EXECUTOR = Executors.newCachedThreadPool();
+
+  private static final long DEFAULT_MAX_STALENESS_MILLIS = TimeUnit.HOURS.toMillis(1);
+  private static final long DEFAULT_INITIAL_BACKOFF_MILLIS = TimeUnit.SECONDS.toMillis(1);
+  private static final long DEFAULT_MAX_BACKOFF_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+  private static final Pattern DIRECTIVE_PATTERN =
+      Pattern.compile("\\s*([a-zA-Z-]+)\\s*(?:=\\s*\"?(\\d+)\"?)?\\s*");
+
+  /** Converts a downloaded document into the result that is cached. */
+  public interface Parser<T> {
+    /**
+     * Parses {@code data}. Called on the thread that downloaded it, at most once per download.
+     *
+     * <p>If it throws, the previous result stays in use.
+     */
+    T parse(String data) throws GeneralSecurityException, IOException;
+  }
+
+  /** A parsed download and how long it may be used. */
+  private static final class Entry<T> {
+    final T value;
+    final long fetchedAtMillis;
+    final long maxAgeMillis;
+    final long maxStalenessMillis;
+
+    Entry(T value, long fetchedAtMillis, long maxAgeMillis, long maxStalenessMillis) {
+      this.value = value;
+      this.fetchedAtMillis = fetchedAtMillis;
+      this.maxAgeMillis = maxAgeMillis;
+      this.maxStalenessMillis = maxStalenessMillis;
+    }
+
+    long age(long nowMillis) {
+      // An entry from the future means that the clock went backwards; don't trust it.
+      return nowMillis < fetchedAtMillis ? Long.MAX_VALUE : nowMillis - fetchedAtMillis;
+    }
+
+    boolean shouldRefresh(long nowMillis) {
+      return age(nowMillis) >= maxAgeMillis / 2;
+    }
+
+    boolean isUsable(long nowMillis) {
+      long usableMillis = maxAgeMillis + maxStalenessMillis;
+      if (usableMillis < 0) {
+        // Both bounds are at most Long.MAX_VALUE, so a negative sum means it overflowed.
+        usableMillis = Long.MAX_VALUE;
+      }
+      return age(nowMillis) < usableMillis;
+    }
+  }
+
+  private final Executor backgroundExecutor;
+  private final HttpTransport httpTransport;
+  private final String url;
+  private final Parser<T> parser;
+  private final long maxStalenessMillis;
+  private final long initialBackoffMillis;
+  private final long maxBackoffMillis;
+
+  private final Runnable refreshRunnable;
+  private final AtomicBoolean refreshPending = new AtomicBoolean(false);
+  // Held while downloading, so that concurrent callers wait for one download.
+  private final ReentrantLock fetchLock = new ReentrantLock();
+
+  private volatile Entry<T> entry;
+  private volatile long nextAttemptAtMillis = Long.MIN_VALUE;
+  private volatile Exception lastFailure;
+  // Only changed while holding fetchLock.
+  private int consecutiveFailures;
+
+  ParsedKeysDownloader(
+      Executor backgroundExecutor,
+      HttpTransport httpTransport,
+      String url,
+      Parser<T> parser,
+      long maxStalenessMillis,
+      long initialBackoffMillis,
+      long maxBackoffMillis) {
+    validate(url);
+    this.backgroundExecutor = backgroundExecutor;
+    this.httpTransport = httpTransport;
+    this.url = url;
+    this.parser = parser;
+    this.maxStalenessMillis = maxStalenessMillis;
+    this.initialBackoffMillis = initialBackoffMillis;
+    this.maxBackoffMillis = maxBackoffMillis;
+    this.refreshRunnable =
+        new Runnable() {
+          @Override
+          public void run() {
+            fetchLock.lock();
+            try {
+              fetchAndCache();
+            } catch (IOException | GeneralSecurityException e) {
+              // The previous result stays in use, and fetchAndCache scheduled the next attempt.
+            } finally {
+              fetchLock.unlock();
+              refreshPending.set(false);
+            }
+          }
+        };
+  }
+
+  /**
+   * Returns the parsed result of the latest successful download.
+   *
+   * <p>Downloads synchronously only if there is no result yet, or the cached one can't be used any
+   * more; otherwise never blocks.
+   *
+   * @throws IOException if the download or the parser fails, or a recent download failed and the
+   *     next attempt is still delayed by the backoff
+   * @throws GeneralSecurityException if the parser rejects the downloaded document
+   */
+  public T get() throws IOException, GeneralSecurityException {
+    long now = getCurrentTimeInMillis();
+    Entry<T> current = entry;
+    if (current != null && current.isUsable(now)) {
+      if (current.shouldRefresh(now)) {
+        startRefresh(now);
+      }
+      return current.value;
+    }
+
+    fetchLock.lock();
+    try {
+      // Another thread may have downloaded while this one waited for the lock.
+      current = entry;
+      now = getCurrentTimeInMillis();
+      if (current != null && current.isUsable(now)) {
+        return current.value;
+      }
+      if (now < nextAttemptAtMillis) {
+        throw new IOException("Downloading " + url + " failed recently", lastFailure);
+      }
+      return fetchAndCache().value;
+    } finally {
+      fetchLock.unlock();
+    }
+  }
+
+  /**
+   * Downloads and parses the document in the background, unless a download is already running or
+   * the backoff after a failure has not passed yet.
+   *
+   * <p>Call this when initializing your server, to proactively fetch the data.
+   */
+  public void refreshInBackground() {
+    startRefresh(getCurrentTimeInMillis());
+  }
+
+  public String getUrl() {
+    return url;
+  }
+
+  /**
+   * Returns the current time in milliseconds since epoch.
+   *
+   * <p>Visible so tests can override it in subclasses.
+   */
+  long getCurrentTimeInMillis() {
+    return System.currentTimeMillis();
+  }
+
+  private void startRefresh(long now) {
+    if (now < nextAttemptAtMillis || !refreshPending.compareAndSet(false, true)) {
+      return;
+    }
+    try {
+      backgroundExecutor.execute(refreshRunnable);
+    } catch (RuntimeException e) {
+      // The executor is shut down or saturated. The cached result is still usable, so don't fail
+      // the caller; the next call tries again.
+      refreshPending.set(false);
+    }
+  }
+
+  /** Must be called while holding {@code fetchLock}. */
+  private Entry<T> fetchAndCache() throws IOException, GeneralSecurityException {
+    long now = getCurrentTimeInMillis();
+    Entry<T> fetched;
+    try {
+      fetched = fetch(now);
+    } catch (IOException | GeneralSecurityException | RuntimeException e) {
+      recordFailure(now, e);
+      throw e;
+    }
+    consecutiveFailures = 0;
+    lastFailure = null;
+    nextAttemptAtMillis = Long.MIN_VALUE;
+    entry = fetched;
+    return fetched;
+  }
+
+  private Entry<T> fetch(long now) throws IOException, GeneralSecurityException {
+    HttpRequest httpRequest =
+        httpTransport.createRequestFactory().buildGetRequest(new GenericUrl(url));
+    HttpResponse httpResponse = httpRequest.execute();
+    if (httpResponse.getStatusCode() != HttpStatusCodes.STATUS_CODE_OK) {
+      throw new IOException("Unexpected status code = " + httpResponse.getStatusCode());
+    }
+    String data;
+    InputStream contentStream = httpResponse.getContent();
+    try {
+      ByteArrayOutputStream content = new ByteArrayOutputStream();
+      byte[] buffer = new byte[4096];
+      int read;
+      while ((read = contentStream.read(buffer)) != -1) {
+        content.write(buffer, 0, read);
+      }
+      data = new String(content.toByteArray(), UTF_8);
+    } finally {
+      contentStream.close();
+    }
+    T value = parser.parse(data);
+    HttpHeaders headers = httpResponse.getHeaders();
+    return new Entry<T>(
+        value, now, getMaxAgeInMillis(headers), getMaxStalenessInMillis(headers));
+  }
+
+  private void recordFailure(long now, Exception failure) {
+    consecutiveFailures++;
+    long backoff = initialBackoffMillis << Math.min(consecutiveFailures - 1, 30);
+    if (backoff <= 0 || backoff > maxBackoffMillis) {
+      backoff = maxBackoffMillis;
+    }
+    // Wait between half and all of the backoff.
+    long halfBackoff = backoff / 2;
+    nextAttemptAtMillis = now + halfBackoff + ThreadLocalRandom.current().nextLong(halfBackoff + 1);
+    lastFailure = failure;
+  }
+
+  /**
+   * Returns for how long a response is fresh: "max-age" in "Cache-Control" minus the "Age" header,
+   * or zero if the response must not be cached.
+   */
+  static long getMaxAgeInMillis(HttpHeaders headers) {
+    String cacheControl = headers.getCacheControl();
+    if (cacheControl == null) {
+      return 0;
+    }
+    long maxAgeInSeconds = 0;
+    for (String directive : cacheControl.split(",")) {
+      Matcher m = DIRECTIVE_PATTERN.matcher(directive);
+      if (!m.matches()) {
+        continue;
+      }
+      String name = m.group(1).toLowerCase(Locale.ROOT);
+      if (name.equals("no-cache") || name.equals("no-store")) {
+        return 0;
+      }
+      if (name.equals("max-age") && m.group(2) != null) {
+        maxAgeInSeconds = parseSeconds(m.group(2));
+      }
+    }
+    if (headers.getAge() != null) {
+      maxAgeInSeconds -= headers.getAge();
+    }
+    return TimeUnit.SECONDS.toMillis(Math.max(0, maxAgeInSeconds));
+  }
+
+  /**
+   * Returns for how long a response may be served after it stopped being fresh: the larger of
+   * "stale-while-revalidate" in "Cache-Control" and the configured bound, or zero if the response
+   * must not be cached.
+   */
+  long getMaxStalenessInMillis(HttpHeaders headers) {
+    String cacheControl = headers.getCacheControl();
+    if (cacheControl == null) {
+      return maxStalenessMillis;
+    }
+    long staleWhileRevalidateMillis = 0;
+    for (String directive : cacheControl.split(",")) {
+      Matcher m = DIRECTIVE_PATTERN.matcher(directive);
+      if (!m.matches()) {
+        continue;
+      }
+      String name = m.group(1).toLowerCase(Locale.ROOT);
+      if (name.equals("no-cache") || name.equals("no-store")) {
+        return 0;
+      }
+      if (name.equals("stale-while-revalidate") && m.group(2) != null) {
+        staleWhileRevalidateMillis = TimeUnit.SECONDS.toMillis(parseSeconds(m.group(2)));
+      }
+    }
+    return Math.max(staleWhileRevalidateMillis, maxStalenessMillis);
+  }
+
+  /**
+   * Parses the digits of a delta-seconds value. Values too large for a long are clamped, as RFC
+   * 9111 asks for.
+   */
+  private static long parseSeconds(String digits) {
+    try {
+      return Long.parseLong(digits);
+    } catch (NumberFormatException e) {
+      return Long.MAX_VALUE;
+    }
+  }
+
+  private static void validate(String url) {
+    try {
+      URL tmp = new URL(url);
+      if (!tmp.getProtocol().toLowerCase(Locale.ROOT).equals("https")) {
+        throw new IllegalArgumentException("url must point to a HTTPS server");
+      }
+    } catch (MalformedURLException ex) {
+      throw new IllegalArgumentException(ex);
+    }
+  }
+
+  /** Builder for {@link ParsedKeysDownloader}. */
+  public static class Builder<T> {
+    private HttpTransport httpTransport = DEFAULT_HTTP_TRANSPORT;
+    private Executor executor = DEFAULT_BACKGROUND_EXECUTOR;
+    private String url;
+    private Parser<T> parser;
+    private long maxStalenessMillis = DEFAULT_MAX_STALENESS_MILLIS;
+    private long initialBackoffMillis = DEFAULT_INITIAL_BACKOFF_MILLIS;
+    private long maxBackoffMillis = DEFAULT_MAX_BACKOFF_MILLIS;
+
+    /** Sets the url which must point to a HTTPS server. */
+    public Builder<T> setUrl(String val) {
+      this.url = val;
+      return this;
+    }
+
+    /** Sets the parser that converts the downloaded document into the cached result. */
+    public Builder<T> setParser(Parser<T> val) {
+      this.parser = val;
+      return this;
+    }
+
+    /** Sets the background executor. */
+    public Builder<T> setExecutor(Executor val) {
+      this.executor = val;
+      return this;
+    }
+
+    /**
+     * Sets the HTTP transport.
+     *
+     * <p>You generally should not need to set a custom transport as the default transport should
+     * be suited for most use cases.
+     */
+    public Builder<T> setHttpTransport(HttpTransport val) {
+      this.httpTransport = val;
+      return this;
+    }
+
+    /**
+     * Sets for how long a result may be served after its {@code max-age} has passed, while new
+     * downloads are attempted. One hour by default. A longer {@code stale-while-revalidate}
+     * directive in the response takes precedence.
+     */
+    public Builder<T> setMaxStaleness(long duration, TimeUnit unit) {
+      this.maxStalenessMillis = unit.toMillis(duration);
+      return this;
+    }
+
+    /**
+     * Sets the delay after the first failed download, which doubles with every further failure up
+     * to {@code maxBackoff}. One second and five minutes by default. Every delay is shortened by a
+     * random amount of up to half of it.
+     */
+    public Builder<T> setBackoff(long initialBackoff, long maxBackoff, TimeUnit unit) {
+      this.initialBackoffMillis = unit.toMillis(initialBackoff);
+      this.maxBackoffMillis = unit.toMillis(maxBackoff);
+      return this;
+    }
+
+    public ParsedKeysDownloader<T> build() {
+      if (url == null) {
+        throw new IllegalArgumentException("must provide a url with {#setUrl}");
+      }
+      if (parser == null) {
+        throw new IllegalArgumentException("must provide a parser with {#setParser}");
+      }
+      if (maxStalenessMillis < 0
+          || initialBackoffMillis <= 0
+          || maxBackoffMillis < initialBackoffMillis) {
+        throw new IllegalArgumentException("invalid staleness or backoff");
+      }
+      return new ParsedKeysDownloader<T>(
+          executor,
+          httpTransport,
+          url,
+          parser,
+          maxStalenessMillis,
+          initialBackoffMillis,
+          maxBackoffMillis);
+    }
+  }
+}
@@ -0,0 +1,470 @@
+// Copyright 2022 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink.util;
+
+import com.google.crypto.tink.Aead;
+import com.google.crypto.tink.BinaryKeysetReader;
+import com.google.crypto.tink.CleartextKeysetHandle;
+import com.google.crypto.tink.DeterministicAead;
+import com.google.crypto.tink.HybridDecrypt;
+import com.google.crypto.tink.HybridEncrypt;
+import com.google.crypto.tink.JsonKeysetReader;
+import com.google.crypto.tink.KeysetHandle;
+import com.google.crypto.tink.KeysetReader;
+import com.google.crypto.tink.Mac;
+import com.google.crypto.tink.PublicKeySign;
+import com.google.crypto.tink.PublicKeyVerify;
+import com.google.crypto.tink.StreamingAead;
+import com.google.crypto.tink.subtle.EngineFactory;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A keyset that is read from a file and reloaded when the file changes.
+ *
+ * <h3>Usage</h3>
+ *
+ * <pre>{@code
+ * ReloadingKeyset keyset =
+ *     new ReloadingKeyset.Builder()
+ *         .setPath(Paths.get("/etc/keys/keyset.json"))
+ *         .withMasterKey(masterKey)
+ *         .build();
+ * Aead aead = keyset.getPrimitive(Aead.class);
+ * }</pre>
+ *
+ * <p>The file is polled in the background. When its content changes, the new keyset is read and
+ * the primitives of all classes previously requested with {@link #getPrimitive} are created from it
+ * on the polling thread. Only when all of them have been created, they are published together. The
+ * objects returned by {@link #getPrimitive} are stable: they forward every call to the latest
+ * published primitive, so callers keep them across reloads. A call never blocks on a reload and
+ * always runs on one complete primitive, either the old or the new one.
+ *
+ * <p>If the new file can't be read or parsed, the previous keyset stays in use and the failure is
+ * logged; the next poll tries again. Keys should be rotated in the usual order, i.e. a new primary
+ * key should be added to the keyset of every reader before it is made primary anywhere.
+ */
+public final class ReloadingKeyset implements Closeable {
+  private static final Logger logger = Logger.getLogger(ReloadingKeyset.class.getName());
+
+  /** The format of the keyset file. */
+  public enum Format {
+    JSON,
+    BINARY,
+  }
+
+  /** A keyset and the primitives created from it, published as a unit. */
+  private static final class State {
+    final KeysetHandle keysetHandle;
+    final byte[] fileDigest;
+    final Map<Class<?>, Object> primitives;
+
+    State(KeysetHandle keysetHandle, byte[] fileDigest, Map<Class<?>, Object> primitives) {
+      this.keysetHandle = keysetHandle;
+      this.fileDigest = fileDigest;
+      this.primitives = Collections.unmodifiableMap(primitives);
+    }
+  }
+
+  private final Path path;
+  private final Format format;
+  private final Aead masterKey;
+  private final boolean cleartext;
+  private final ScheduledExecutorService executor;
+  private final boolean ownsExecutor;
+  private final ScheduledFuture<?> pollingTask;
+
+  // Serializes reloads and the registration of new primitive classes. Readers never take it.
+  private final ReentrantLock updateLock = new ReentrantLock();
+  private volatile State state;
+
+  private ReloadingKeyset(Builder builder) throws GeneralSecurityException, IOException {
+    this.path = builder.path;
+    this.format = builder.format;
+    this.masterKey = builder.masterKey;
+    this.cleartext = builder.cleartext;
+    byte[] content = Files.readAllBytes(path);
+    this.state =
+        new State(read(content), digest(content), new HashMap<Class<?>, Object>());
+    if (builder.executor != null) {
+      this.executor = builder.executor;
+      this.ownsExecutor = false;
+    } else {
+      this.executor = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory());
+      this.ownsExecutor = true;
+    }
+    this.pollingTask =
+        executor.scheduleWithFixedDelay(
+            new Runnable() {
+              @Override
+              public void run() {
+                try {
+                  reload();
+                } catch (GeneralSecurityException | IOException | RuntimeException e) {
+                  logger.log(Level.WARNING, "cannot reload keyset from " + path, e);
+                }
+              }
+            },
+            builder.pollingIntervalMillis,
+            builder.pollingIntervalMillis,
+            TimeUnit.MILLISECONDS);
+  }
+
+  /** Returns the keyset that is currently in use. */
+  public KeysetHandle getKeysetHandle() {
+    return state.keysetHandle;
+  }
+
+  /**
+   * Returns a primitive of class {@code primitiveClass} that always uses the latest keyset.
+   *
+   * <p>{@code primitiveClass} must be one of {@link Aead}, {@link DeterministicAead}, {@link
+   * StreamingAead}, {@link Mac}, {@link HybridEncrypt}, {@link HybridDecrypt}, {@link
+   * PublicKeySign} and {@link PublicKeyVerify}. The returned object can be kept for the lifetime of
+   * this {@link ReloadingKeyset}.
+   *
+   * @throws GeneralSecurityException if {@code primitiveClass} is not supported or the current
+   *     keyset can't provide it
+   */
+  public <P> P getPrimitive(Class<P> primitiveClass) throws GeneralSecurityException {
+    Object forwarder = newForwarder(primitiveClass);
+    if (forwarder == null) {
+      throw new GeneralSecurityException(
+          "ReloadingKeyset does not support " + primitiveClass.getName());
+    }
+    if (!state.primitives.containsKey(primitiveClass)) {
+      updateLock.lock();
+      try {
+        State current = state;
+        if (!current.primitives.containsKey(primitiveClass)) {
+          Map<Class<?>, Object> primitives = new HashMap<>(current.primitives);
+          primitives.put(primitiveClass, current.keysetHandle.getPrimitive(primitiveClass));
+          state = new State(current.keysetHandle, current.fileDigest, primitives);
+        }
+      } finally {
+        updateLock.unlock();
+      }
+    }
+    return primitiveClass.cast(forwarder);
+  }
+
+  /**
+   * Reads the keyset file now, instead of waiting for the next poll.
+   *
+   * @return true if the file has changed and the new keyset is in use
+   * @throws GeneralSecurityException if the new keyset is invalid; the previous keyset stays in use
+   * @throws IOException if the file can't be read; the previous keyset stays in use
+   */
+  public boolean reload() throws GeneralSecurityException, IOException {
+    updateLock.lock();
+    try {
+      byte[] content = Files.readAllBytes(path);
+      byte[] fileDigest = digest(content);
+      State current = state;
+      if (MessageDigest.isEqual(fileDigest, current.fileDigest)) {
+        return false;
+      }
+      KeysetHandle keysetHandle = read(content);
+      Map<Class<?>, Object> primitives = new HashMap<>();
+      for (Class<?> primitiveClass : current.primitives.keySet()) {
+        primitives.put(primitiveClass, keysetHandle.getPrimitive(primitiveClass));
+      }
+      state = new State(keysetHandle, fileDigest, primitives);
+      return true;
+    } finally {
+      updateLock.unlock();
+    }
+  }
+
+  /** Stops polling the keyset file. Primitives keep working with the last keyset. */
+  @Override
+  public void close() {
+    pollingTask.cancel(false);
+    if (ownsExecutor) {
+      executor.shutdown();
+    }
+  }
+
+  private KeysetHandle read(byte[] content) throws GeneralSecurityException, IOException {
+    KeysetReader reader =
+        format == Format.JSON
+            ? JsonKeysetReader.withBytes(content)
+            : BinaryKeysetReader.withBytes(content);
+    if (cleartext) {
+      return CleartextKeysetHandle.read(reader);
+    }
+    return KeysetHandle.read(reader, masterKey);
+  }
+
+  private static byte[] digest(byte[] content) throws GeneralSecurityException {
+    return EngineFactory.MESSAGE_DIGEST.getInstance("SHA-256").digest(content);
+  }
+
+  /** Returns the primitive of class {@code primitiveClass} of the latest published keyset. */
+  private <P> P current(Class<P> primitiveClass) {
+    return primitiveClass.cast(state.primitives.get(primitiveClass));
+  }
+
+  /**
+   * Returns an object that forwards every call to {@link #current}, or null if {@code
+   * primitiveClass} is not supported.
+   */
+  private Object newForwarder(Class<?> primitiveClass) {
+    if (primitiveClass == Aead.class) {
+      return new ForwardingAead();
+    }
+    if (primitiveClass == DeterministicAead.class) {
+      return new ForwardingDeterministicAead();
+    }
+    if (primitiveClass == StreamingAead.class) {
+      return new ForwardingStreamingAead();
+    }
+    if (primitiveClass == Mac.class) {
+      return new ForwardingMac();
+    }
+    if (primitiveClass == HybridEncrypt.class) {
+      return new ForwardingHybridEncrypt();
+    }
+    if (primitiveClass == HybridDecrypt.class) {
+      return new ForwardingHybridDecrypt();
+    }
+    if (primitiveClass == PublicKeySign.class) {
+      return new ForwardingPublicKeySign();
+    }
+    if (primitiveClass == PublicKeyVerify.class) {
+      return new ForwardingPublicKeyVerify();
+    }
+    return null;
+  }
+
+  private final class ForwardingAead implements Aead {
+    @Override
+    public byte[] encrypt(final byte[] plaintext, final byte[] associatedData)
+        throws GeneralSecurityException {
+      return current(Aead.class).encrypt(plaintext, associatedData);
+    }
+
+    @Override
+    public byte[] decrypt(final byte[] ciphertext, final byte[] associatedData)
+        throws GeneralSecurityException {
+      return current(Aead.class).decrypt(ciphertext, associatedData);
+    }
+  }
+
+  private final class ForwardingDeterministicAead implements DeterministicAead {
+    @Override
+    public byte[] encryptDeterministically(final byte[] plaintext, final byte[] associatedData)
+        throws GeneralSecurityException {
+      return current(DeterministicAead.class).encryptDeterministically(plaintext, associatedData);
+    }
+
+    @Override
+    public byte[] decryptDeterministically(final byte[] ciphertext, final byte[] associatedData)
+        throws GeneralSecurityException {
+      return current(DeterministicAead.class).decryptDeterministically(ciphertext, associatedData);
+    }
+  }
+
+  private final class ForwardingStreamingAead implements StreamingAead {
+    @Override
+    public WritableByteChannel newEncryptingChannel(
+        WritableByteChannel ciphertextDestination, byte[] associatedData)
+        throws GeneralSecurityException, IOException {
+      return current(StreamingAead.class)
+          .newEncryptingChannel(ciphertextDestination, associatedData);
+    }
+
+    @Override
+    public SeekableByteChannel newSeekableDecryptingChannel(
+        SeekableByteChannel ciphertextSource, byte[] associatedData)
+        throws GeneralSecurityException, IOException {
+      return current(StreamingAead.class)
+          .newSeekableDecryptingChannel(ciphertextSource, associatedData);
+    }
+
+    @Override
+    public ReadableByteChannel newDecryptingChannel(
+        ReadableByteChannel ciphertextSource, byte[] associatedData)
+        throws GeneralSecurityException, IOException {
+      return current(StreamingAead.class).newDecryptingChannel(ciphertextSource, associatedData);
+    }
+
+    @Override
+    public OutputStream newEncryptingStream(
+        OutputStream ciphertextDestination, byte[] associatedData)
+        throws GeneralSecurityException, IOException {
+      return current(StreamingAead.class)
+          .newEncryptingStream(ciphertextDestination, associatedData);
+    }
+
+    @Override
+    public InputStream newDecryptingStream(InputStream ciphertextSource, byte[] associatedData)
+        throws GeneralSecurityException, IOException {
+      return current(StreamingAead.class).newDecryptingStream(ciphertextSource, associatedData);
+    }
+  }
+
+  private final class ForwardingMac implements Mac {
+    @Override
+    public byte[] computeMac(final byte[] data) throws GeneralSecurityException {
+      return current(Mac.class).computeMac(data);
+    }
+
+    @Override
+    public void verifyMac(final byte[] mac, final byte[] data) throws GeneralSecurityException {
+      current(Mac.class).verifyMac(mac, data);
+    }
+  }
+
+  private final class ForwardingHybridEncrypt implements HybridEncrypt {
+    @Override
+    public byte[] encrypt(final byte[] plaintext, final byte[] contextInfo)
+        throws GeneralSecurityException {
+      return current(HybridEncrypt.class).encrypt(plaintext, contextInfo);
+    }
+  }
+
+  private final class ForwardingHybridDecrypt implements HybridDecrypt {
+    @Override
+    public byte[] decrypt(final byte[] ciphertext, final byte[] contextInfo)
+        throws GeneralSecurityException {
+      return current(HybridDecrypt.class).decrypt(ciphertext, contextInfo);
+    }
+  }
+
+  private final class ForwardingPublicKeySign implements PublicKeySign {
+    @Override
+    public byte[] sign(final byte[] data) throws GeneralSecurityException {
+      return current(PublicKeySign.class).sign(data);
+    }
+  }
+
+  private final class ForwardingPublicKeyVerify implements PublicKeyVerify {
+    @Override
+    public void verify(final byte[] signature, final byte[] data)
+        throws GeneralSecurityException {
+      current(PublicKeyVerify.class).verify(signature, data);
+    }
+  }
+
+  private static final class DaemonThreadFactory implements ThreadFactory {
+    @Override
+    public Thread newThread(Runnable runnable) {
+      Thread thread = Executors.defaultThreadFactory().newThread(runnable);
+      thread.setDaemon(true);
+      thread.setName("tink-reloading-keyset");
+      return thread;
+    }
+  }
+
+  /** Builder for {@link ReloadingKeyset}. */
+  public static final class Builder {
+    private Path path;
+    private Format format = Format.JSON;
+    private Aead masterKey;
+    private boolean cleartext = false;
+    private long pollingIntervalMillis = TimeUnit.MINUTES.toMillis(1);
+    private ScheduledExecutorService executor;
+
+    /** Sets the keyset file. Required. */
+    public Builder setPath(Path val) {
+      this.path = val;
+      return this;
+    }
+
+    /** Sets the format of the keyset file; the default is {@link Format#JSON}. */
+    public Builder setFormat(Format val) {
+      this.format = val;
+      return this;
+    }
+
+    /**
+     * Sets the {@link Aead} the keyset file is encrypted with. Either this or {@link
+     * #allowCleartextKeyset} is required.
+     */
+    public Builder withMasterKey(Aead val) {
+      this.masterKey = val;
+      return this;
+    }
+
+    /**
+     * Reads the keyset file as a cleartext keyset, like {@link CleartextKeysetHandle#read}.
+     *
+     * <p>Only use this if the file is protected by other means.
+     */
+    public Builder allowCleartextKeyset() {
+      this.cleartext = true;
+      return this;
+    }
+
+    /** Sets how often the file is checked for changes; the default is one minute. */
+    public Builder setPollingInterval(long interval, TimeUnit unit) {
+      if (interval <= 0) {
+        throw new IllegalArgumentException("polling interval must be positive");
+      }
+      this.pollingIntervalMillis = Math.max(1, unit.toMillis(interval));
+      return this;
+    }
+
+    /**
+     * Sets the executor that polls the file. By default, every {@link ReloadingKeyset} uses its
+     * own daemon thread, which {@link ReloadingKeyset#close} stops.
+     */
+    public Builder setExecutor(ScheduledExecutorService val) {
+      this.executor = val;
+      return this;
+    }
+
+    /**
+     * Reads the keyset file and starts polling it.
+     *
+     * @throws GeneralSecurityException if the keyset is invalid
+     * @throws IOException if the file can't be read
+     */
+    public ReloadingKeyset build() throws GeneralSecurityException, IOException {
+      if (path == null) {
+        throw new IllegalArgumentException("must provide a path with {#setPath}");
+      }
+      if ((masterKey != null) == cleartext) {
+        throw new IllegalArgumentException(
+            "must either provide a master key with {#withMasterKey} or call"
+                + " {#allowCleartextKeyset}, but not both");
+      }
+      return new ReloadingKeyset(this);
+    }
+  }
+}
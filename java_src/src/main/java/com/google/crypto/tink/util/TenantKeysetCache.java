@@ -0,0 +1,405 @@
+// Copyright 2022 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink.util;
+
+import com.google.crypto.tink.KeysetHandle;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.security.GeneralSecurityException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Thread-safe cache of one primitive per tenant, for services that hold a separate keyset for each
+ * of many tenants.
+ *
+ * <h3>Usage</h3>
+ *
+ * <pre>{@code
+ * TenantKeysetCache<Aead> cache =
+ *     new TenantKeysetCache.Builder<>(Aead.class)
+ *         .setLoader(
+ *             new TenantKeysetCache.Loader() {
+ *               public KeysetHandle load(String tenantId)
+ *                   throws GeneralSecurityException, IOException {
+ *                 return KeysetHandle.read(
+ *                     BinaryKeysetReader.withBytes(storage.get(tenantId)), masterKey);
+ *               }
+ *             })
+ *         .setMaximumSize(100_000)
+ *         .setExpireAfterWrite(1, TimeUnit.HOURS)
+ *         .build();
+ * Aead aead = cache.get(tenantId);
+ * }</pre>
+ *
+ * <p>The first {@link #get} of a tenant calls the {@link Loader} and creates the primitive; all
+ * other threads asking for the same tenant meanwhile wait for that single load instead of loading
+ * the keyset again. Failed loads are not cached.
+ *
+ * <p>Only the primitive is kept, not the {@link KeysetHandle}. The cache holds at most {@link
+ * Builder#setMaximumSize} tenants and at most {@link Builder#setMaximumWeight} keys summed over all
+ * cached keysets; beyond that, the least recently used tenants are evicted. To keep lookups cheap
+ * under contention, large caches are split into segments that each enforce an equal share of these
+ * limits, so eviction is least recently used per segment.
+ */
+public class TenantKeysetCache<P> {
+  private static final int MAX_SEGMENTS = 16;
+
+  /** Loads the keyset of a tenant, e.g. with {@link KeysetHandle#read}. */
+  public interface Loader {
+    KeysetHandle load(String tenantId) throws GeneralSecurityException, IOException;
+  }
+
+  /** A snapshot of the counters of a {@link TenantKeysetCache}. */
+  public static final class Stats {
+    private final long hitCount;
+    private final long missCount;
+    private final long loadFailureCount;
+    private final long evictionCount;
+
+    Stats(long hitCount, long missCount, long loadFailureCount, long evictionCount) {
+      this.hitCount = hitCount;
+      this.missCount = missCount;
+      this.loadFailureCount = loadFailureCount;
+      this.evictionCount = evictionCount;
+    }
+
+    /** Number of lookups that found the primitive of the tenant already loaded. */
+    public long hitCount() {
+      return hitCount;
+    }
+
+    /** Number of lookups that had to load the tenant's keyset or wait for its load. */
+    public long missCount() {
+      return missCount;
+    }
+
+    /** Number of loads that threw an exception. */
+    public long loadFailureCount() {
+      return loadFailureCount;
+    }
+
+    /** Number of tenants removed because of the size or weight limit, or because they expired. */
+    public long evictionCount() {
+      return evictionCount;
+    }
+
+    /** Returns hits divided by lookups, or 1.0 if there were no lookups. */
+    public double hitRate() {
+      long requestCount = hitCount + missCount;
+      return requestCount == 0 ? 1.0 : (double) hitCount / requestCount;
+    }
+  }
+
+  /** The primitive of a tenant and the number of keys in its keyset. */
+  private static final class Loaded<P> {
+    final P primitive;
+    final long weight;
+
+    Loaded(P primitive, long weight) {
+      this.primitive = primitive;
+      this.weight = weight;
+    }
+  }
+
+  /** A cached primitive, or the pending load of one. */
+  private static final class Entry<P> {
+    final FutureTask<Loaded<P>> load;
+    // Written under the segment lock once the load succeeded.
+    boolean loaded;
+    long weight;
+    long loadedAtNanos;
+
+    Entry(FutureTask<Loaded<P>> load) {
+      this.load = load;
+    }
+  }
+
+  /** A part of the cache with its own lock and least-recently-used order. */
+  private static final class Segment<P> {
+    final LinkedHashMap<String, Entry<P>> entries =
+        new LinkedHashMap<String, Entry<P>>(16, 0.75f, /* accessOrder= */ true);
+    long totalWeight;
+  }
+
+  private final Class<P> primitiveClass;
+  private final Loader loader;
+  private final Segment<P>[] segments;
+  private final long maximumSizePerSegment;
+  private final long maximumWeightPerSegment;
+  private final long expireAfterWriteNanos;
+
+  private final AtomicLong hitCount = new AtomicLong();
+  private final AtomicLong missCount = new AtomicLong();
+  private final AtomicLong loadFailureCount = new AtomicLong();
+  private final AtomicLong evictionCount = new AtomicLong();
+
+  @SuppressWarnings("unchecked") // Generic array creation.
+  TenantKeysetCache(Builder<P> builder) {
+    this.primitiveClass = builder.primitiveClass;
+    this.loader = builder.loader;
+    // Each segment gets at least 64 tenants and 64 keys, so that small limits aren't split into
+    // shares too small to hold a single keyset.
+    long minimumLimit = Math.min(builder.maximumSize, builder.maximumWeight);
+    int segmentCount = (int) Math.max(1, Math.min(MAX_SEGMENTS, minimumLimit / 64));
+    this.segments = new Segment[segmentCount];
+    for (int i = 0; i < segmentCount; i++) {
+      segments[i] = new Segment<P>();
+    }
+    this.maximumSizePerSegment = ceilDiv(builder.maximumSize, segmentCount);
+    this.maximumWeightPerSegment = ceilDiv(builder.maximumWeight, segmentCount);
+    this.expireAfterWriteNanos = builder.expireAfterWriteNanos;
+  }
+
+  /**
+   * Returns the primitive of {@code tenantId}, loading its keyset if it isn't cached.
+   *
+   * @throws GeneralSecurityException if the loader throws it, or the keyset can't provide the
+   *     primitive
+   * @throws IOException if the loader throws it
+   */
+  public P get(final String tenantId) throws GeneralSecurityException, IOException {
+    Segment<P> segment = segmentFor(tenantId);
+    Entry<P> entry;
+    boolean mustLoad = false;
+    synchronized (segment) {
+      entry = segment.entries.get(tenantId);
+      if (entry != null && entry.loaded && isExpired(entry)) {
+        remove(segment, tenantId);
+        evictionCount.incrementAndGet();
+        entry = null;
+      }
+      if (entry == null) {
+        entry =
+            new Entry<P>(
+                new FutureTask<Loaded<P>>(
+                    new Callable<Loaded<P>>() {
+                      @Override
+                      public Loaded<P> call() throws GeneralSecurityException, IOException {
+                        return load(tenantId);
+                      }
+                    }));
+        segment.entries.put(tenantId, entry);
+        mustLoad = true;
+      }
+    }
+    if (mustLoad) {
+      missCount.incrementAndGet();
+      entry.load.run();
+    } else if (entry.load.isDone()) {
+      hitCount.incrementAndGet();
+    } else {
+      missCount.incrementAndGet();
+    }
+    Loaded<P> loaded;
+    try {
+      loaded = entry.load.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("interrupted while loading the keyset of " + tenantId);
+    } catch (ExecutionException e) {
+      if (mustLoad) {
+        loadFailureCount.incrementAndGet();
+        synchronized (segment) {
+          if (segment.entries.get(tenantId) == entry) {
+            segment.entries.remove(tenantId);
+          }
+        }
+      }
+      Throwable cause = e.getCause();
+      if (cause instanceof GeneralSecurityException) {
+        throw (GeneralSecurityException) cause;
+      }
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      }
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new GeneralSecurityException(cause);
+    }
+    if (mustLoad) {
+      synchronized (segment) {
+        if (segment.entries.get(tenantId) == entry) {
+          entry.loaded = true;
+          entry.weight = loaded.weight;
+          entry.loadedAtNanos = currentTimeNanos();
+          segment.totalWeight += entry.weight;
+          evictIfNeeded(segment, entry);
+        }
+      }
+    }
+    return loaded.primitive;
+  }
+
+  /** Removes {@code tenantId} from the cache, e.g. after its keyset was rotated. */
+  public void invalidate(String tenantId) {
+    Segment<P> segment = segmentFor(tenantId);
+    synchronized (segment) {
+      remove(segment, tenantId);
+    }
+  }
+
+  /** Removes all tenants from the cache. */
+  public void invalidateAll() {
+    for (Segment<P> segment : segments) {
+      synchronized (segment) {
+        segment.entries.clear();
+        segment.totalWeight = 0;
+      }
+    }
+  }
+
+  /** Returns the number of cached tenants, including pending loads. */
+  public long size() {
+    long size = 0;
+    for (Segment<P> segment : segments) {
+      synchronized (segment) {
+        size += segment.entries.size();
+      }
+    }
+    return size;
+  }
+
+  /** Returns the current values of the counters. */
+  public Stats getStats() {
+    return new Stats(
+        hitCount.get(), missCount.get(), loadFailureCount.get(), evictionCount.get());
+  }
+
+  /**
+   * Returns the current time in nanoseconds, only used to measure elapsed time.
+   *
+   * <p>Visible so tests can override it in subclasses.
+   */
+  long currentTimeNanos() {
+    return System.nanoTime();
+  }
+
+  private Loaded<P> load(String tenantId) throws GeneralSecurityException, IOException {
+    KeysetHandle keysetHandle = loader.load(tenantId);
+    if (keysetHandle == null) {
+      throw new GeneralSecurityException("loader returned no keyset for " + tenantId);
+    }
+    return new Loaded<P>(
+        keysetHandle.getPrimitive(primitiveClass),
+        keysetHandle.getKeysetInfo().getKeyInfoCount());
+  }
+
+  private boolean isExpired(Entry<P> entry) {
+    return currentTimeNanos() - entry.loadedAtNanos >= expireAfterWriteNanos;
+  }
+
+  private void remove(Segment<P> segment, String tenantId) {
+    Entry<P> entry = segment.entries.remove(tenantId);
+    if (entry != null && entry.loaded) {
+      segment.totalWeight -= entry.weight;
+    }
+  }
+
+  /** Evicts least recently used tenants of {@code segment}, except {@code newest}. */
+  private void evictIfNeeded(Segment<P> segment, Entry<P> newest) {
+    Iterator<Map.Entry<String, Entry<P>>> iterator = segment.entries.entrySet().iterator();
+    while ((segment.entries.size() > maximumSizePerSegment
+            || segment.totalWeight > maximumWeightPerSegment)
+        && iterator.hasNext()) {
+      Entry<P> entry = iterator.next().getValue();
+      if (entry == newest || !entry.loaded) {
+        continue;
+      }
+      iterator.remove();
+      segment.totalWeight -= entry.weight;
+      evictionCount.incrementAndGet();
+    }
+  }
+
+  private Segment<P> segmentFor(String tenantId) {
+    int hash = tenantId.hashCode();
+    hash ^= (hash >>> 16);
+    return segments[(hash & Integer.MAX_VALUE) % segments.length];
+  }
+
+  private static long ceilDiv(long x, long y) {
+    return x / y + (x % y == 0 ? 0 : 1);
+  }
+
+  /** Builder for {@link TenantKeysetCache}. */
+  public static class Builder<P> {
+    private final Class<P> primitiveClass;
+    private Loader loader;
+    private long maximumSize = 10_000;
+    private long maximumWeight = Long.MAX_VALUE;
+    private long expireAfterWriteNanos = Long.MAX_VALUE;
+
+    /** @param primitiveClass the primitive created from every tenant's keyset */
+    public Builder(Class<P> primitiveClass) {
+      this.primitiveClass = primitiveClass;
+    }
+
+    /** Sets the loader of the tenants' keysets. Required. */
+    public Builder<P> setLoader(Loader val) {
+      this.loader = val;
+      return this;
+    }
+
+    /** Sets the maximum number of cached tenants; the default is 10000. */
+    public Builder<P> setMaximumSize(long val) {
+      if (val <= 0) {
+        throw new IllegalArgumentException("maximum size must be positive");
+      }
+      this.maximumSize = val;
+      return this;
+    }
+
+    /**
+     * Sets the maximum number of keys in all cached keysets together. By default, only the number
+     * of tenants is limited.
+     */
+    public Builder<P> setMaximumWeight(long val) {
+      if (val <= 0) {
+        throw new IllegalArgumentException("maximum weight must be positive");
+      }
+      this.maximumWeight = val;
+      return this;
+    }
+
+    /**
+     * Sets how long a tenant's primitive is used after its keyset was loaded. By default, tenants
+     * don't expire.
+     */
+    public Builder<P> setExpireAfterWrite(long duration, TimeUnit unit) {
+      if (duration <= 0) {
+        throw new IllegalArgumentException("duration must be positive");
+      }
+      this.expireAfterWriteNanos = unit.toNanos(duration);
+      return this;
+    }
+
+    public TenantKeysetCache<P> build() {
+      if (loader == null) {
+        throw new IllegalArgumentException("must provide a loader with {#setLoader}");
+      }
+      return new TenantKeysetCache<P>(this);
+    }
+  }
+}
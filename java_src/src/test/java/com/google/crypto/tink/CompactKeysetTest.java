@@ -0,0 +1,182 @@
+// Copyright 2022 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+
+package com.google.crypto.tink;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertThrows;
+
+import com.google.crypto.tink.aead.AeadConfig;
+import com.google.crypto.tink.mac.MacConfig;
+import com.google.crypto.tink.proto.KeyStatusType;
+import com.google.crypto.tink.proto.KeysetInfo;
+import com.google.crypto.tink.signature.SignatureConfig;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for CompactKeyset. */
+@RunWith(JUnit4.class)
+public class CompactKeysetTest {
+  @BeforeClass
+  public static void setUp() throws GeneralSecurityException {
+    AeadConfig.register();
+    MacConfig.register();
+    SignatureConfig.register();
+  }
+
+  private static KeysetHandle newKeysetHandle(String... templateNames) throws Exception {
+    KeysetManager manager =
+        KeysetManager.withKeysetHandle(
+            KeysetHandle.generateNew(KeyTemplates.get(templateNames[0])));
+    for (int i = 1; i < templateNames.length; i++) {
+      manager.add(KeyTemplates.get(templateNames[i]));
+    }
+    return manager.getKeysetHandle();
+  }
+
+  @Test
+  public void toKeysetHandle_returnsSameKeyset() throws Exception {
+    KeysetHandle handle = newKeysetHandle("AES128_GCM", "AES256_GCM_RAW", "HMAC_SHA256_128BITTAG");
+
+    CompactKeyset compact = CompactKeyset.fromKeysetHandle(handle);
+
+    assertThat(compact.toKeysetHandle().getKeyset()).isEqualTo(handle.getKeyset());
+    assertThat(compact.getKeysetInfo()).isEqualTo(handle.getKeysetInfo());
+    assertThat(compact.size()).isEqualTo(3);
+    assertThat(compact.getPrimaryKeyId()).isEqualTo(handle.getKeysetInfo().getPrimaryKeyId());
+  }
+
+  @Test
+  public void toKeysetHandle_keepsStatus() throws Exception {
+    KeysetHandle handle = newKeysetHandle("AES128_GCM", "AES128_GCM");
+    int secondKeyId = handle.getKeysetInfo().getKeyInfo(1).getKeyId();
+    handle = KeysetManager.withKeysetHandle(handle).disable(secondKeyId).getKeysetHandle();
+
+    CompactKeyset compact = CompactKeyset.fromKeysetHandle(handle);
+
+    assertThat(compact.getKeysetInfo().getKeyInfo(1).getStatus())
+        .isEqualTo(KeyStatusType.DISABLED);
+    assertThat(compact.toKeysetHandle().getKeyset()).isEqualTo(handle.getKeyset());
+  }
+
+  @Test
+  public void containsKeyId() throws Exception {
+    KeysetHandle handle = newKeysetHandle("AES128_GCM", "AES128_GCM");
+    CompactKeyset compact = CompactKeyset.fromKeysetHandle(handle);
+
+    for (KeysetInfo.KeyInfo keyInfo : handle.getKeysetInfo().getKeyInfoList()) {
+      assertThat(compact.containsKeyId(keyInfo.getKeyId())).isTrue();
+    }
+    assertThat(compact.containsKeyId(handle.getKeysetInfo().getPrimaryKeyId() + 1)).isFalse();
+  }
+
+  @Test
+  public void containsKeyId_manyKeys() throws Exception {
+    String[] templateNames = new String[20];
+    Arrays.fill(templateNames, "AES128_GCM");
+    KeysetHandle handle = newKeysetHandle(templateNames);
+    CompactKeyset compact = CompactKeyset.fromKeysetHandle(handle);
+
+    Set<Integer> keyIds = new HashSet<>();
+    for (KeysetInfo.KeyInfo keyInfo : handle.getKeysetInfo().getKeyInfoList()) {
+      assertThat(compact.containsKeyId(keyInfo.getKeyId())).isTrue();
+      keyIds.add(keyInfo.getKeyId());
+    }
+    for (int keyId : keyIds) {
+      assertThat(compact.containsKeyId(keyId + 1)).isEqualTo(keyIds.contains(keyId + 1));
+      assertThat(compact.containsKeyId(keyId - 1)).isEqualTo(keyIds.contains(keyId - 1));
+    }
+  }
+
+  @Test
+  public void getPrimitive_withDisabledKey_interoperatesWithKeysetHandle() throws Exception {
+    KeysetHandle handle = newKeysetHandle("AES128_GCM", "AES128_GCM");
+    int secondKeyId = handle.getKeysetInfo().getKeyInfo(1).getKeyId();
+    handle = KeysetManager.withKeysetHandle(handle).disable(secondKeyId).getKeysetHandle();
+    CompactKeyset compact = CompactKeyset.fromKeysetHandle(handle);
+    byte[] plaintext = "plaintext".getBytes(UTF_8);
+    byte[] associatedData = "associatedData".getBytes(UTF_8);
+
+    Aead aead = handle.getPrimitive(Aead.class);
+    Aead compactAead = compact.getPrimitive(Aead.class);
+
+    assertThat(compactAead.decrypt(aead.encrypt(plaintext, associatedData), associatedData))
+        .isEqualTo(plaintext);
+  }
+
+  @Test
+  public void getPrimitive_interoperatesWithKeysetHandle() throws Exception {
+    KeysetHandle handle = newKeysetHandle("AES128_GCM", "AES256_GCM_RAW");
+    CompactKeyset compact = CompactKeyset.fromKeysetHandle(handle);
+    byte[] plaintext = "plaintext".getBytes(UTF_8);
+    byte[] associatedData = "associatedData".getBytes(UTF_8);
+
+    Aead aead = handle.getPrimitive(Aead.class);
+    Aead compactAead = compact.getPrimitive(Aead.class);
+
+    assertThat(compactAead.decrypt(aead.encrypt(plaintext, associatedData), associatedData))
+        .isEqualTo(plaintext);
+    assertThat(aead.decrypt(compactAead.encrypt(plaintext, associatedData), associatedData))
+        .isEqualTo(plaintext);
+  }
+
+  @Test
+  public void getPrimitive_wrongPrimitive_throws() throws Exception {
+    CompactKeyset compact = CompactKeyset.fromKeysetHandle(newKeysetHandle("AES128_GCM"));
+
+    assertThrows(GeneralSecurityException.class, () -> compact.getPrimitive(Mac.class));
+  }
+
+  @Test
+  public void keysetsWithSameStructure_shareLayout() throws Exception {
+    CompactKeyset first =
+        CompactKeyset.fromKeysetHandle(newKeysetHandle("AES128_GCM", "AES128_GCM"));
+    CompactKeyset second =
+        CompactKeyset.fromKeysetHandle(newKeysetHandle("AES128_GCM", "AES128_GCM"));
+    CompactKeyset other = CompactKeyset.fromKeysetHandle(newKeysetHandle("AES256_GCM"));
+
+    assertThat(first.sharesLayoutWith(second)).isTrue();
+    assertThat(first.sharesLayoutWith(other)).isFalse();
+    assertThat(first.toKeysetHandle().getKeyset())
+        .isNotEqualTo(second.toKeysetHandle().getKeyset());
+  }
+
+  @Test
+  public void keysWithDifferentSerializedSizes_shareLayout() throws Exception {
+    // ECDSA private keys are serialized with 32 or 33 bytes for the private value, depending on
+    // its leading bit.
+    CompactKeyset first =
+        CompactKeyset.fromKeysetHandle(newKeysetHandle("ECDSA_P256", "ECDSA_P256"));
+    Set<Integer> serializedSizes = new HashSet<>();
+    for (int i = 0; i < 50; i++) {
+      KeysetHandle handle = newKeysetHandle("ECDSA_P256", "ECDSA_P256");
+      serializedSizes.add(handle.getKeyset().getKey(0).getKeyData().getValue().size());
+      CompactKeyset compact = CompactKeyset.fromKeysetHandle(handle);
+
+      assertThat(compact.sharesLayoutWith(first)).isTrue();
+      assertThat(compact.toKeysetHandle().getKeyset()).isEqualTo(handle.getKeyset());
+    }
+    assertThat(serializedSizes.size()).isGreaterThan(1);
+  }
+}
@@ -0,0 +1,171 @@
+// Copyright 2022 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+
+package com.google.crypto.tink;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import com.google.crypto.tink.config.TinkConfig;
+import com.google.crypto.tink.proto.KeyData;
+import com.google.crypto.tink.proto.KeysetInfo;
+import com.google.crypto.tink.proto.OutputPrefixType;
+import java.security.GeneralSecurityException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for KeyPregenerator. */
+@RunWith(JUnit4.class)
+public class KeyPregeneratorTest {
+  private static final long TIMEOUT_MILLIS = 10_000;
+
+  @BeforeClass
+  public static void setUp() throws GeneralSecurityException {
+    TinkConfig.register();
+  }
+
+  private static void waitForPool(KeyPregenerator pregenerator, KeyTemplate template, int size)
+      throws Exception {
+    long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+    while (pregenerator.available(template) < size) {
+      if (System.currentTimeMillis() > deadline) {
+        throw new AssertionError("pool was not filled in time");
+      }
+      Thread.sleep(10);
+    }
+  }
+
+  @Test
+  public void build_fillsPools() throws Exception {
+    KeyTemplate template = KeyTemplates.get("ECDSA_P256");
+    try (KeyPregenerator pregenerator =
+        KeyPregenerator.newBuilder().addTemplate(template, 3).setThreads(2).build()) {
+      waitForPool(pregenerator, template, 3);
+      assertThat(pregenerator.available(template)).isEqualTo(3);
+      assertThat(pregenerator.available(KeyTemplates.get("AES128_GCM"))).isEqualTo(0);
+    }
+  }
+
+  @Test
+  public void newKeyData_handsOutEveryPooledKeyOnce() throws Exception {
+    KeyTemplate template = KeyTemplates.get("ECDSA_P256");
+    try (KeyPregenerator pregenerator =
+        KeyPregenerator.newBuilder().addTemplate(template, 4).build()) {
+      waitForPool(pregenerator, template, 4);
+      Set<KeyData> keys = new HashSet<>();
+      for (int i = 0; i < 10; i++) {
+        KeyData keyData = pregenerator.newKeyData(template.getProto());
+        assertThat(keyData.getTypeUrl()).isEqualTo(template.getTypeUrl());
+        keys.add(keyData);
+      }
+      assertThat(keys).hasSize(10);
+      // The pool is refilled in the background.
+      waitForPool(pregenerator, template, 4);
+    }
+  }
+
+  @Test
+  public void newKeyData_ignoresOutputPrefixType() throws Exception {
+    KeyTemplate template = KeyTemplates.get("AES128_GCM");
+    KeyTemplate rawTemplate = KeyTemplates.get("AES128_GCM_RAW");
+    assertThat(rawTemplate.getProto().getOutputPrefixType()).isEqualTo(OutputPrefixType.RAW);
+    try (KeyPregenerator pregenerator =
+        KeyPregenerator.newBuilder().addTemplate(template, 2).build()) {
+      waitForPool(pregenerator, template, 2);
+      assertThat(pregenerator.available(rawTemplate)).isEqualTo(2);
+      pregenerator.newKeyData(rawTemplate.getProto());
+      assertThat(pregenerator.available(template)).isAtMost(2);
+    }
+  }
+
+  @Test
+  public void newKeyData_unconfiguredTemplate_generatesInline() throws Exception {
+    KeyTemplate template = KeyTemplates.get("HMAC_SHA256_128BITTAG");
+    try (KeyPregenerator pregenerator =
+        KeyPregenerator.newBuilder().addTemplate(KeyTemplates.get("AES128_GCM"), 1).build()) {
+      KeyData keyData = pregenerator.newKeyData(template.getProto());
+      assertThat(keyData.getTypeUrl()).isEqualTo(template.getTypeUrl());
+      assertThat(pregenerator.available(template)).isEqualTo(0);
+    }
+  }
+
+  @Test
+  public void close_dropsPooledKeysAndGeneratesInline() throws Exception {
+    KeyTemplate template = KeyTemplates.get("AES128_GCM");
+    KeyPregenerator pregenerator = KeyPregenerator.newBuilder().addTemplate(template, 2).build();
+    waitForPool(pregenerator, template, 2);
+    pregenerator.close();
+    assertThat(pregenerator.available(template)).isEqualTo(0);
+    KeyData keyData = pregenerator.newKeyData(template.getProto());
+    assertThat(keyData.getTypeUrl()).isEqualTo(template.getTypeUrl());
+    assertThat(pregenerator.available(template)).isEqualTo(0);
+  }
+
+  @Test
+  public void close_doesNotShutDownProvidedExecutor() throws Exception {
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      KeyTemplate template = KeyTemplates.get("AES128_GCM");
+      KeyPregenerator pregenerator =
+          KeyPregenerator.newBuilder().addTemplate(template, 1).setExecutor(executor).build();
+      waitForPool(pregenerator, template, 1);
+      pregenerator.close();
+      assertThat(executor.isShutdown()).isFalse();
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void build_invalidArguments_throws() throws Exception {
+    assertThrows(GeneralSecurityException.class, () -> KeyPregenerator.newBuilder().build());
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> KeyPregenerator.newBuilder().addTemplate(KeyTemplates.get("AES128_GCM"), 0));
+    assertThrows(
+        IllegalArgumentException.class, () -> KeyPregenerator.newBuilder().setThreads(0));
+    KeyTemplate unknown =
+        KeyTemplate.create(
+            "type.googleapis.com/unknown", new byte[0], KeyTemplate.OutputPrefixType.TINK);
+    assertThrows(
+        GeneralSecurityException.class,
+        () -> KeyPregenerator.newBuilder().addTemplate(unknown, 1).build());
+  }
+
+  @Test
+  public void keysetManager_usesPooledKeys() throws Exception {
+    KeyTemplate template = KeyTemplates.get("ECDSA_P256");
+    try (KeyPregenerator pregenerator =
+        KeyPregenerator.newBuilder().addTemplate(template, 2).build()) {
+      waitForPool(pregenerator, template, 2);
+      KeysetManager manager = KeysetManager.withEmptyKeyset().useKeyPregenerator(pregenerator);
+      manager.add(template);
+      manager.add(KeyTemplates.get("ECDSA_P256_RAW"));
+      KeysetInfo keysetInfo = manager.getKeysetHandle().getKeysetInfo();
+      assertThat(keysetInfo.getKeyInfoCount()).isEqualTo(2);
+      assertThat(keysetInfo.getKeyInfo(1).getOutputPrefixType()).isEqualTo(OutputPrefixType.RAW);
+      // The pool refills after the two keys were taken from it.
+      waitForPool(pregenerator, template, 2);
+    }
+  }
+}
@@ -29,6 +29,7 @@ import com.google.crypto.tink.proto.OutputPrefixType;
 import com.google.crypto.tink.subtle.Hex;
 import java.security.GeneralSecurityException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -133,6 +134,90 @@ public class PrimitiveSetTest {
     assertEquals(2, entry.getKeyId());
   }
 
+  @Test
+  public void testGetPrimitiveForPrefixOf() throws Exception {
+    PrimitiveSet<Mac> pset = PrimitiveSet.newPrimitiveSet(Mac.class);
+    Key tinkKey =
+        Key.newBuilder()
+            .setKeyId(1)
+            .setStatus(KeyStatusType.ENABLED)
+            .setOutputPrefixType(OutputPrefixType.TINK)
+            .build();
+    pset.addPrimitive(new DummyMac1(), tinkKey);
+    Key legacyKey =
+        Key.newBuilder()
+            .setKeyId(2)
+            .setStatus(KeyStatusType.ENABLED)
+            .setOutputPrefixType(OutputPrefixType.LEGACY)
+            .build();
+    pset.addPrimitive(new DummyMac2(), legacyKey);
+    byte[] tinkPrefix = CryptoFormat.getOutputPrefix(tinkKey);
+    byte[] data = Arrays.copyOf(tinkPrefix, tinkPrefix.length + 10);
+
+    List<PrimitiveSet.Entry<Mac>> entries = pset.getPrimitiveForPrefixOf(data);
+    assertThat(entries).hasSize(1);
+    assertEquals(1, entries.get(0).getKeyId());
+
+    byte[] legacyData = CryptoFormat.getOutputPrefix(legacyKey);
+    entries = pset.getPrimitiveForPrefixOf(legacyData);
+    assertThat(entries).hasSize(1);
+    assertEquals(2, entries.get(0).getKeyId());
+
+    assertThat(pset.getPrimitiveForPrefixOf(Arrays.copyOf(tinkPrefix, 4))).isEmpty();
+    data[4] ^= 1;
+    assertThat(pset.getPrimitiveForPrefixOf(data)).isEmpty();
+    assertThat(pset.getPrimitiveForPrefixOf(new byte[0])).isEmpty();
+  }
+
+  @Test
+  public void testGetPrimitiveForPrefixOf_findsPrimitivesAddedAfterLookup() throws Exception {
+    PrimitiveSet<Mac> pset = PrimitiveSet.newPrimitiveSet(Mac.class);
+    Key key1 =
+        Key.newBuilder()
+            .setKeyId(1)
+            .setStatus(KeyStatusType.ENABLED)
+            .setOutputPrefixType(OutputPrefixType.TINK)
+            .build();
+    Key key2 =
+        Key.newBuilder()
+            .setKeyId(2)
+            .setStatus(KeyStatusType.ENABLED)
+            .setOutputPrefixType(OutputPrefixType.TINK)
+            .build();
+    byte[] prefix2 = CryptoFormat.getOutputPrefix(key2);
+
+    pset.addPrimitive(new DummyMac1(), key1);
+    assertThat(pset.getPrimitiveForPrefixOf(prefix2)).isEmpty();
+    pset.addPrimitive(new DummyMac2(), key2);
+
+    List<PrimitiveSet.Entry<Mac>> entries = pset.getPrimitiveForPrefixOf(prefix2);
+    assertThat(entries).hasSize(1);
+    assertEquals(2, entries.get(0).getKeyId());
+    assertThat(pset.getPrimitiveForPrefixOf(CryptoFormat.getOutputPrefix(key1))).hasSize(1);
+  }
+
+  @Test
+  public void testHasRawPrimitives() throws Exception {
+    PrimitiveSet<Mac> pset = PrimitiveSet.newPrimitiveSet(Mac.class);
+    assertThat(pset.hasRawPrimitives()).isFalse();
+    pset.addPrimitive(
+        new DummyMac1(),
+        Key.newBuilder()
+            .setKeyId(1)
+            .setStatus(KeyStatusType.ENABLED)
+            .setOutputPrefixType(OutputPrefixType.TINK)
+            .build());
+    assertThat(pset.hasRawPrimitives()).isFalse();
+    pset.addPrimitive(
+        new DummyMac2(),
+        Key.newBuilder()
+            .setKeyId(2)
+            .setStatus(KeyStatusType.ENABLED)
+            .setOutputPrefixType(OutputPrefixType.RAW)
+            .build());
+    assertThat(pset.hasRawPrimitives()).isTrue();
+  }
+
   @Test
   public void testDuplicateKeys() throws Exception {
     PrimitiveSet<Mac> pset = PrimitiveSet.newPrimitiveSet(Mac.class);
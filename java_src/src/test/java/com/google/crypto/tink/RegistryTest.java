@@ -60,6 +60,7 @@ import java.security.GeneralSecurityException;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -1592,6 +1593,85 @@ public class RegistryTest {
         });
   }
 
+  @Test
+  public void testRegisterKeyTypesLazily_registersOnFirstUse() throws Exception {
+    Registry.reset();
+    AtomicInteger registrations = new AtomicInteger();
+    String typeUrl = new TestKeyTypeManager().getKeyType();
+    Registry.registerKeyTypesLazily(
+        () -> {
+          registrations.incrementAndGet();
+          Registry.registerKeyManager(new TestKeyTypeManager(), true);
+        },
+        typeUrl,
+        "otherTypeUrl");
+    assertThat(registrations.get()).isEqualTo(0);
+
+    assertThat(Registry.getKeyManager(typeUrl, Aead.class).getKeyType()).isEqualTo(typeUrl);
+    Registry.getUntypedKeyManager(typeUrl);
+    assertThat(registrations.get()).isEqualTo(1);
+
+    // The registration ran, but didn't register the other type URL.
+    GeneralSecurityException e =
+        assertThrows(
+            GeneralSecurityException.class, () -> Registry.getUntypedKeyManager("otherTypeUrl"));
+    assertExceptionContains(e, "No key manager found");
+    assertThat(registrations.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void testRegisterKeyTypesLazily_failingRegistration_isRetried() throws Exception {
+    Registry.reset();
+    AtomicInteger attempts = new AtomicInteger();
+    Registry.registerKeyTypesLazily(
+        () -> {
+          attempts.incrementAndGet();
+          throw new GeneralSecurityException("cannot register");
+        },
+        "someTypeUrl");
+
+    GeneralSecurityException e =
+        assertThrows(
+            GeneralSecurityException.class, () -> Registry.getUntypedKeyManager("someTypeUrl"));
+    assertExceptionContains(e, "cannot register");
+    assertThrows(
+        GeneralSecurityException.class, () -> Registry.getUntypedKeyManager("someTypeUrl"));
+    assertThat(attempts.get()).isEqualTo(2);
+  }
+
+  @Test
+  public void testRegisterKeyTypesLazily_alreadyRegistered_isSkipped() throws Exception {
+    Registry.registerKeyTypesLazily(
+        () -> {
+          throw new GeneralSecurityException("must not run");
+        },
+        AeadConfig.AES_GCM_TYPE_URL);
+
+    assertThat(Registry.getUntypedKeyManager(AeadConfig.AES_GCM_TYPE_URL).getKeyType())
+        .isEqualTo(AeadConfig.AES_GCM_TYPE_URL);
+    assertThat(Registry.keyTemplates()).isNotEmpty();
+  }
+
+  @Test
+  public void testRegisterKeyTypesLazily_keyTemplates_registersAll() throws Exception {
+    Registry.reset();
+    Registry.registerKeyTypesLazily(
+        () -> Registry.registerKeyManager(new TestKeyTypeManager(), true),
+        new TestKeyTypeManager().getKeyType());
+
+    assertThat(Registry.keyTemplates()).containsExactly("TINK", "RAW");
+  }
+
+  @Test
+  public void testRegisterKeyTypesLazily_fipsFailsWithPendingRegistration() throws Exception {
+    Registry.reset();
+    Registry.registerKeyTypesLazily(
+        () -> Registry.registerKeyManager(new TestKeyTypeManager(), true),
+        new TestKeyTypeManager().getKeyType());
+
+    assertThrows(GeneralSecurityException.class, Registry::restrictToFipsIfEmpty);
+  }
+
   @Test
   public void testFips_succeedsOnEmptyRegistry() throws Exception {
     Registry.reset();
@@ -75,8 +75,8 @@ public class AeadConfigTest {
       "type.googleapis.com/google.crypto.tink.AesCtrHmacAeadKey",
       "type.googleapis.com/google.crypto.tink.AesGcmKey",
       "type.googleapis.com/google.crypto.tink.AesEaxKey",
-      // AES-GCM-SIV is not included here, as it's not available with the default JCE provider.
-      // "type.googleapis.com/google.crypto.tink.AesGcmSivKey",
+      // AES-GCM-SIV falls back to a portable implementation when no JCE provider supports it.
+      "type.googleapis.com/google.crypto.tink.AesGcmSivKey",
       "type.googleapis.com/google.crypto.tink.ChaCha20Poly1305Key",
       "type.googleapis.com/google.crypto.tink.XChaCha20Poly1305Key",
     };
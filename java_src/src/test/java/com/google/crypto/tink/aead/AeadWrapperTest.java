@@ -24,6 +24,7 @@ import static org.junit.Assert.assertThrows;
 import com.google.crypto.tink.Aead;
 import com.google.crypto.tink.CryptoFormat;
 import com.google.crypto.tink.PrimitiveSet;
+import com.google.crypto.tink.internal.FailureCounter;
 import com.google.crypto.tink.proto.KeyStatusType;
 import com.google.crypto.tink.proto.Keyset.Key;
 import com.google.crypto.tink.proto.OutputPrefixType;
@@ -208,4 +209,34 @@ public class AeadWrapperTest {
     assertEquals(
         CryptoFormat.RAW_PREFIX_SIZE + plaintext.length + ivSize + tagSize, ciphertext.length);
   }
+
+  @Test
+  public void testDecryptWithInvalidCiphertext_isCountedAsFailure() throws Exception {
+    Key tink =
+        TestUtil.createKey(
+            TestUtil.createAesCtrHmacAeadKeyData(
+                Random.randBytes(AES_KEY_SIZE), 12, Random.randBytes(HMAC_KEY_SIZE), 16),
+            42,
+            KeyStatusType.ENABLED,
+            OutputPrefixType.TINK);
+    Aead aead =
+        new AeadWrapper()
+            .wrap(TestUtil.createPrimitiveSet(TestUtil.createKeyset(tink), Aead.class));
+    byte[] associatedData = Random.randBytes(20);
+    byte[] ciphertext = aead.encrypt(Random.randBytes(20), associatedData);
+    long failures = FailureCounter.AEAD.getFailures();
+    long prefixMatchFailures = FailureCounter.AEAD.getPrefixMatchFailures();
+
+    // Unknown prefix.
+    byte[] unknownPrefix = Arrays.copyOf(ciphertext, ciphertext.length);
+    unknownPrefix[1] ^= 1;
+    assertThrows(GeneralSecurityException.class, () -> aead.decrypt(unknownPrefix, associatedData));
+    // Known prefix, but invalid tag.
+    byte[] invalidTag = Arrays.copyOf(ciphertext, ciphertext.length);
+    invalidTag[ciphertext.length - 1] ^= 1;
+    assertThrows(GeneralSecurityException.class, () -> aead.decrypt(invalidTag, associatedData));
+
+    assertEquals(failures + 2, FailureCounter.AEAD.getFailures());
+    assertEquals(prefixMatchFailures + 1, FailureCounter.AEAD.getPrefixMatchFailures());
+  }
 }
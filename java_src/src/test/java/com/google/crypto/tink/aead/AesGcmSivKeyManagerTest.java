@@ -25,6 +25,7 @@ import com.google.crypto.tink.Aead;
 import com.google.crypto.tink.KeyTemplate;
 import com.google.crypto.tink.KeyTypeManager;
 import com.google.crypto.tink.aead.subtle.AesGcmSiv;
+import com.google.crypto.tink.aead.subtle.PortableAesGcmSiv;
 import com.google.crypto.tink.proto.AesGcmSivKey;
 import com.google.crypto.tink.proto.AesGcmSivKeyFormat;
 import com.google.crypto.tink.proto.KeyData.KeyMaterialType;
@@ -133,6 +134,8 @@ public class AesGcmSivKeyManagerTest {
     AesGcmSivKey key = factory.createKey(AesGcmSivKeyFormat.newBuilder().setKeySize(16).build());
     Aead managerAead = manager.getPrimitive(key, Aead.class);
     Aead directAead = new AesGcmSiv(key.getKeyValue().toByteArray());
+    // Conscrypt is installed after AesGcmSivKeyManager was loaded, and must still be used.
+    assertThat(managerAead).isInstanceOf(AesGcmSiv.class);
 
     byte[] plaintext = Random.randBytes(20);
     byte[] associatedData = Random.randBytes(20);
@@ -140,6 +143,20 @@ public class AesGcmSivKeyManagerTest {
         .isEqualTo(plaintext);
   }
 
+  @Test
+  public void getPrimitive_interoperatesWithPortableAesGcmSiv() throws Exception {
+    AesGcmSivKey key = factory.createKey(AesGcmSivKeyFormat.newBuilder().setKeySize(32).build());
+    Aead managerAead = manager.getPrimitive(key, Aead.class);
+    Aead portableAead = new PortableAesGcmSiv(key.getKeyValue().toByteArray());
+
+    byte[] plaintext = Random.randBytes(100);
+    byte[] associatedData = Random.randBytes(20);
+    assertThat(portableAead.decrypt(managerAead.encrypt(plaintext, associatedData), associatedData))
+        .isEqualTo(plaintext);
+    assertThat(managerAead.decrypt(portableAead.encrypt(plaintext, associatedData), associatedData))
+        .isEqualTo(plaintext);
+  }
+
   @Test
   public void testCiphertextSize() throws Exception {
     AesGcmSivKey key = factory.createKey(AesGcmSivKeyFormat.newBuilder().setKeySize(32).build());
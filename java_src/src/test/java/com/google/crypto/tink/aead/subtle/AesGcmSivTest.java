@@ -272,6 +272,21 @@ public class AesGcmSivTest {
     }
   }
 
+  @Test
+  public void testInteroperatesWithPortableAesGcmSiv() throws Exception {
+    for (int keySize : keySizeInBytes) {
+      byte[] key = Random.randBytes(keySize);
+      AesGcmSiv gcmSiv = new AesGcmSiv(key);
+      PortableAesGcmSiv portable = new PortableAesGcmSiv(key);
+      for (int messageSize : new int[] {0, 1, 15, 16, 17, 100, 4096, 100000}) {
+        byte[] message = Random.randBytes(messageSize);
+        byte[] aad = Random.randBytes(messageSize % 40);
+        assertArrayEquals(message, portable.decrypt(gcmSiv.encrypt(message, aad), aad));
+        assertArrayEquals(message, gcmSiv.decrypt(portable.encrypt(message, aad), aad));
+      }
+    }
+  }
+
   @Test
   /**
    * This is a very simple test for the randomness of the nonce. The test simply checks that the
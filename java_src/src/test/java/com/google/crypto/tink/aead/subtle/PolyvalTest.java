@@ -0,0 +1,60 @@
+// Copyright 2022 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+
+package com.google.crypto.tink.aead.subtle;
+
+import static org.junit.Assert.assertEquals;
+
+import com.google.crypto.tink.subtle.Hex;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link Polyval}. */
+@RunWith(JUnit4.class)
+public class PolyvalTest {
+  private static String polyval(String h, String x) {
+    byte[] data = Hex.decode(x);
+    Polyval polyval = new Polyval(Hex.decode(h), 0);
+    polyval.updatePadded(data, 0, data.length);
+    byte[] result = new byte[Polyval.BLOCK_SIZE];
+    polyval.finish(result, 0);
+    return Hex.encode(result);
+  }
+
+  @Test
+  public void testRfc8452Vector() throws Exception {
+    // https://www.rfc-editor.org/rfc/rfc8452#appendix-A
+    assertEquals(
+        "f7a3b47b846119fae5b7866cf5e5b77e",
+        polyval(
+            "25629347589242761d31f826ba4b757b",
+            "4f4f95668c83dfb6401762bb2d01a262d1a24ddd2721d006bbe45f20d3c9f362"));
+  }
+
+  @Test
+  public void testEmptyInput() throws Exception {
+    assertEquals(
+        "00000000000000000000000000000000", polyval("25629347589242761d31f826ba4b757b", ""));
+  }
+
+  @Test
+  public void testPartialBlockIsZeroPadded() throws Exception {
+    String h = "25629347589242761d31f826ba4b757b";
+    assertEquals(polyval(h, "01020300000000000000000000000000"), polyval(h, "010203"));
+  }
+}
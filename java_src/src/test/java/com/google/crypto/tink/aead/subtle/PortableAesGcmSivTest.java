@@ -0,0 +1,237 @@
+// Copyright 2022 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+
+package com.google.crypto.tink.aead.subtle;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+
+import com.google.crypto.tink.subtle.Bytes;
+import com.google.crypto.tink.subtle.Hex;
+import com.google.crypto.tink.subtle.Random;
+import com.google.crypto.tink.testing.TestUtil;
+import com.google.crypto.tink.testing.TestUtil.BytesMutation;
+import com.google.crypto.tink.testing.WycheproofTestUtil;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+import javax.crypto.AEADBadTagException;
+import javax.crypto.Cipher;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link PortableAesGcmSiv}. */
+@RunWith(JUnit4.class)
+public class PortableAesGcmSivTest {
+
+  private Integer[] keySizeInBytes;
+
+  @Before
+  public void setUp() throws Exception {
+    if (Cipher.getMaxAllowedKeyLength("AES") < 256) {
+      System.out.println(
+          "Unlimited Strength Jurisdiction Policy Files are required"
+              + " but not installed. Skip tests with keys larger than 128 bits.");
+      keySizeInBytes = new Integer[] {16};
+    } else {
+      keySizeInBytes = new Integer[] {16, 32};
+    }
+  }
+
+  @Test
+  public void testRfc8452Vectors() throws Exception {
+    // Test vectors from https://www.rfc-editor.org/rfc/rfc8452#appendix-C, as
+    // {key, nonce, plaintext, aad, ciphertext || tag}.
+    String[][] vectors = {
+      {
+        "01000000000000000000000000000000",
+        "030000000000000000000000",
+        "",
+        "",
+        "dc20e2d83f25705bb49e439eca56de25"
+      },
+      {
+        "01000000000000000000000000000000",
+        "030000000000000000000000",
+        "0100000000000000",
+        "",
+        "b5d839330ac7b786578782fff6013b815b287c22493a364c"
+      },
+      {
+        "0100000000000000000000000000000000000000000000000000000000000000",
+        "030000000000000000000000",
+        "",
+        "",
+        "07f5f4169bbf55a8400cd47ea6fd400f"
+      },
+    };
+    for (String[] v : vectors) {
+      byte[] key = Hex.decode(v[0]);
+      if (!Arrays.asList(keySizeInBytes).contains(key.length)) {
+        continue;
+      }
+      PortableAesGcmSiv gcmSiv = new PortableAesGcmSiv(key);
+      byte[] ciphertext = Hex.decode(v[1] + v[4]);
+      assertEquals(v[2], Hex.encode(gcmSiv.decrypt(ciphertext, Hex.decode(v[3]))));
+    }
+  }
+
+  @Test
+  public void testWycheproofVectors() throws Exception {
+    JsonObject json =
+        WycheproofTestUtil.readJson("../wycheproof/testvectors/aes_gcm_siv_test.json");
+    int errors = 0;
+    int cntSkippedTests = 0;
+    JsonArray testGroups = json.getAsJsonArray("testGroups");
+    for (int i = 0; i < testGroups.size(); i++) {
+      JsonObject group = testGroups.get(i).getAsJsonObject();
+      int keySize = group.get("keySize").getAsInt();
+      JsonArray tests = group.getAsJsonArray("tests");
+      if (!Arrays.asList(keySizeInBytes).contains(keySize / 8)) {
+        cntSkippedTests += tests.size();
+        continue;
+      }
+      for (int j = 0; j < tests.size(); j++) {
+        JsonObject testcase = tests.get(j).getAsJsonObject();
+        String tcId =
+            String.format(
+                "testcase %d (%s)",
+                testcase.get("tcId").getAsInt(), testcase.get("comment").getAsString());
+        byte[] iv = Hex.decode(testcase.get("iv").getAsString());
+        byte[] key = Hex.decode(testcase.get("key").getAsString());
+        byte[] msg = Hex.decode(testcase.get("msg").getAsString());
+        byte[] aad = Hex.decode(testcase.get("aad").getAsString());
+        byte[] ct = Hex.decode(testcase.get("ct").getAsString());
+        byte[] tag = Hex.decode(testcase.get("tag").getAsString());
+        byte[] ciphertext = Bytes.concat(iv, ct, tag);
+        // Result is one of "valid", "invalid", "acceptable".
+        // "valid" are test vectors with matching plaintext, ciphertext and tag.
+        // "invalid" are test vectors with invalid parameters or invalid ciphertext and tag.
+        // "acceptable" are test vectors with weak parameters or legacy formats.
+        String result = testcase.get("result").getAsString();
+        // Tink only supports 12-byte iv.
+        if (iv.length != 12) {
+          result = "invalid";
+        }
+
+        try {
+          PortableAesGcmSiv gcmSiv = new PortableAesGcmSiv(key);
+          byte[] decrypted = gcmSiv.decrypt(ciphertext, aad);
+          boolean eq = TestUtil.arrayEquals(decrypted, msg);
+          if (result.equals("invalid")) {
+            System.out.printf(
+                "FAIL %s: accepting invalid ciphertext, cleartext: %s, decrypted: %s%n",
+                tcId, Hex.encode(msg), Hex.encode(decrypted));
+            errors++;
+          } else {
+            if (!eq) {
+              System.out.printf(
+                  "FAIL %s: incorrect decryption, result: %s, expected: %s%n",
+                  tcId, Hex.encode(decrypted), Hex.encode(msg));
+              errors++;
+            }
+          }
+        } catch (GeneralSecurityException ex) {
+          if (result.equals("valid")) {
+            System.out.printf("FAIL %s: cannot decrypt, exception %s%n", tcId, ex);
+            errors++;
+          }
+        }
+      }
+    }
+    System.out.printf("Number of tests skipped: %d", cntSkippedTests);
+    assertEquals(0, errors);
+  }
+
+  @Test
+  public void testEncryptDecrypt() throws Exception {
+    byte[] aad = new byte[] {1, 2, 3};
+    for (int keySize : keySizeInBytes) {
+      PortableAesGcmSiv gcmSiv = new PortableAesGcmSiv(Random.randBytes(keySize));
+      for (int messageSize = 0; messageSize < 75; messageSize++) {
+        byte[] message = Random.randBytes(messageSize);
+        byte[] ciphertext = gcmSiv.encrypt(message, aad);
+        assertEquals(12 + messageSize + 16, ciphertext.length);
+        assertArrayEquals(message, gcmSiv.decrypt(ciphertext, aad));
+      }
+    }
+  }
+
+  @Test
+  public void testLongMessages() throws Exception {
+    // Crosses the boundaries of the chunks in which the key stream is computed.
+    int dataSize = 16;
+    while (dataSize <= (1 << 20)) {
+      byte[] plaintext = Random.randBytes(dataSize);
+      byte[] aad = Random.randBytes(dataSize / 3);
+      for (int keySize : keySizeInBytes) {
+        PortableAesGcmSiv gcmSiv = new PortableAesGcmSiv(Random.randBytes(keySize));
+        byte[] ciphertext = gcmSiv.encrypt(plaintext, aad);
+        assertArrayEquals(plaintext, gcmSiv.decrypt(ciphertext, aad));
+      }
+      dataSize += 5 * dataSize / 11;
+    }
+  }
+
+  @Test
+  public void testModifyCiphertext() throws Exception {
+    byte[] aad = Random.randBytes(33);
+    byte[] message = Random.randBytes(32);
+    PortableAesGcmSiv gcmSiv = new PortableAesGcmSiv(Random.randBytes(16));
+    byte[] ciphertext = gcmSiv.encrypt(message, aad);
+
+    for (BytesMutation mutation : TestUtil.generateMutations(ciphertext)) {
+      assertThrows(
+          String.format(
+              "Decrypting modified ciphertext should fail : ciphertext = %s, aad = %s,"
+                  + " description = %s",
+              Hex.encode(mutation.value), Hex.encode(aad), mutation.description),
+          GeneralSecurityException.class,
+          () -> gcmSiv.decrypt(mutation.value, aad));
+    }
+    for (BytesMutation mutation : TestUtil.generateMutations(aad)) {
+      assertThrows(
+          String.format(
+              "Decrypting with modified aad should fail: aad = %s, description = %s",
+              Hex.encode(mutation.value), mutation.description),
+          GeneralSecurityException.class,
+          () -> gcmSiv.decrypt(ciphertext, mutation.value));
+    }
+  }
+
+  @Test
+  public void testNullAndEmptyAssociatedDataEquivalent() throws Exception {
+    PortableAesGcmSiv gcmSiv = new PortableAesGcmSiv(Random.randBytes(16));
+    byte[] message = Random.randBytes(20);
+    assertArrayEquals(message, gcmSiv.decrypt(gcmSiv.encrypt(message, null), new byte[0]));
+    assertArrayEquals(message, gcmSiv.decrypt(gcmSiv.encrypt(message, new byte[0]), null));
+    assertThrows(
+        AEADBadTagException.class,
+        () -> gcmSiv.decrypt(gcmSiv.encrypt(message, null), new byte[] {0}));
+  }
+
+  @Test
+  public void testInvalidKeySizeOrCiphertext_throws() throws Exception {
+    assertThrows(GeneralSecurityException.class, () -> new PortableAesGcmSiv(new byte[24]));
+    PortableAesGcmSiv gcmSiv = new PortableAesGcmSiv(Random.randBytes(16));
+    assertThrows(GeneralSecurityException.class, () -> gcmSiv.decrypt(new byte[27], null));
+  }
+}
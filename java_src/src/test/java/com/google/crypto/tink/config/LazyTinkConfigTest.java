@@ -0,0 +1,95 @@
+// Copyright 2022 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+
+package com.google.crypto.tink.config;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertThrows;
+
+import com.google.crypto.tink.Aead;
+import com.google.crypto.tink.CleartextKeysetHandle;
+import com.google.crypto.tink.JsonKeysetReader;
+import com.google.crypto.tink.KeyTemplates;
+import com.google.crypto.tink.KeysetHandle;
+import com.google.crypto.tink.Mac;
+import com.google.crypto.tink.Registry;
+import java.security.GeneralSecurityException;
+import java.util.List;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.junit.runners.MethodSorters;
+
+/**
+ * Tests for LazyTinkConfig. Using FixedMethodOrder to ensure that aaaTestLazyRegistration runs
+ * first, before any test looks up a key template by name and thereby registers all key types.
+ */
+@RunWith(JUnit4.class)
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class LazyTinkConfigTest {
+  private static final String AES_GCM_KEYSET =
+      "{\"primaryKeyId\":42,\"key\":[{\"keyData\":{"
+          + "\"typeUrl\":\"type.googleapis.com/google.crypto.tink.AesGcmKey\","
+          + "\"value\":\"GhAAAQIDBAUGBwgJCgsMDQ4P\",\"keyMaterialType\":\"SYMMETRIC\"},"
+          + "\"status\":\"ENABLED\",\"keyId\":42,\"outputPrefixType\":\"TINK\"}]}";
+
+  @Test
+  public void aaaTestLazyRegistration() throws Exception {
+    String macTypeUrl = "type.googleapis.com/google.crypto.tink.HmacKey";
+    String signTypeUrl = "type.googleapis.com/google.crypto.tink.EcdsaPrivateKey";
+    String verifyTypeUrl = "type.googleapis.com/google.crypto.tink.EcdsaPublicKey";
+    String streamingAeadTypeUrl = "type.googleapis.com/google.crypto.tink.AesCtrHmacStreamingKey";
+    GeneralSecurityException e =
+        assertThrows(
+            GeneralSecurityException.class, () -> Registry.getUntypedKeyManager(macTypeUrl));
+    assertThat(e.toString()).contains("No key manager found");
+
+    LazyTinkConfig.register();
+
+    KeysetHandle handle = CleartextKeysetHandle.read(JsonKeysetReader.withString(AES_GCM_KEYSET));
+    Aead aead = handle.getPrimitive(Aead.class);
+    byte[] plaintext = "plaintext".getBytes(UTF_8);
+    byte[] associatedData = "associatedData".getBytes(UTF_8);
+    assertThat(aead.decrypt(aead.encrypt(plaintext, associatedData), associatedData))
+        .isEqualTo(plaintext);
+
+    assertThat(Registry.getKeyManager(macTypeUrl, Mac.class).getKeyType()).isEqualTo(macTypeUrl);
+    assertThat(Registry.getUntypedKeyManager(signTypeUrl).getKeyType()).isEqualTo(signTypeUrl);
+    assertThat(Registry.getUntypedKeyManager(verifyTypeUrl).getKeyType()).isEqualTo(verifyTypeUrl);
+    assertThat(Registry.getUntypedKeyManager(streamingAeadTypeUrl).getKeyType())
+        .isEqualTo(streamingAeadTypeUrl);
+    e =
+        assertThrows(
+            GeneralSecurityException.class,
+            () -> Registry.getUntypedKeyManager("type.googleapis.com/google.crypto.tink.Unknown"));
+    assertThat(e.toString()).contains("No key manager found");
+  }
+
+  @Test
+  public void bbbTestKeyTemplates_registersSameKeyTypesAsTinkConfig() throws Exception {
+    KeysetHandle handle = KeysetHandle.generateNew(KeyTemplates.get("HMAC_SHA256_128BITTAG"));
+    Mac mac = handle.getPrimitive(Mac.class);
+    byte[] data = "data".getBytes(UTF_8);
+    mac.verifyMac(mac.computeMac(data), data);
+
+    List<String> lazyTemplates = Registry.keyTemplates();
+    TinkConfig.register();
+    assertThat(Registry.keyTemplates()).containsExactlyElementsIn(lazyTemplates);
+  }
+}
@@ -19,11 +19,13 @@ package com.google.crypto.tink.daead;
 import static com.google.crypto.tink.testing.TestUtil.assertExceptionContains;
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
 import static org.junit.Assert.fail;
 
 import com.google.crypto.tink.CryptoFormat;
 import com.google.crypto.tink.DeterministicAead;
 import com.google.crypto.tink.PrimitiveSet;
+import com.google.crypto.tink.internal.FailureCounter;
 import com.google.crypto.tink.proto.KeyStatusType;
 import com.google.crypto.tink.proto.Keyset.Key;
 import com.google.crypto.tink.proto.OutputPrefixType;
@@ -209,4 +211,36 @@ public class DeterministicAeadWrapperTest {
     assertArrayEquals(plaintext, daead.decryptDeterministically(ciphertext, associatedData));
     assertEquals(CryptoFormat.RAW_PREFIX_SIZE + plaintext.length + 16, ciphertext.length);
   }
+
+  @Test
+  public void testDecryptWithInvalidCiphertext_isCountedAsFailure() throws Exception {
+    Key tink =
+        TestUtil.createKey(
+            TestUtil.createAesSivKeyData(64), 42, KeyStatusType.ENABLED, OutputPrefixType.TINK);
+    DeterministicAead daead =
+        new DeterministicAeadWrapper()
+            .wrap(
+                TestUtil.createPrimitiveSet(TestUtil.createKeyset(tink), DeterministicAead.class));
+    byte[] associatedData = Random.randBytes(20);
+    byte[] ciphertext = daead.encryptDeterministically(Random.randBytes(20), associatedData);
+    long failures = FailureCounter.DETERMINISTIC_AEAD.getFailures();
+    long prefixMatchFailures = FailureCounter.DETERMINISTIC_AEAD.getPrefixMatchFailures();
+
+    // Unknown prefix.
+    byte[] unknownPrefix = Arrays.copyOf(ciphertext, ciphertext.length);
+    unknownPrefix[1] ^= 1;
+    assertThrows(
+        GeneralSecurityException.class,
+        () -> daead.decryptDeterministically(unknownPrefix, associatedData));
+    // Known prefix, but invalid tag.
+    byte[] invalidTag = Arrays.copyOf(ciphertext, ciphertext.length);
+    invalidTag[CryptoFormat.NON_RAW_PREFIX_SIZE] ^= 1;
+    assertThrows(
+        GeneralSecurityException.class,
+        () -> daead.decryptDeterministically(invalidTag, associatedData));
+
+    assertEquals(failures + 2, FailureCounter.DETERMINISTIC_AEAD.getFailures());
+    assertEquals(
+        prefixMatchFailures + 1, FailureCounter.DETERMINISTIC_AEAD.getPrefixMatchFailures());
+  }
 }
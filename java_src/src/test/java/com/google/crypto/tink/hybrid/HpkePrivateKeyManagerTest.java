@@ -0,0 +1,120 @@
+// Copyright 2022 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink.hybrid;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import com.google.crypto.tink.HybridDecrypt;
+import com.google.crypto.tink.HybridEncrypt;
+import com.google.crypto.tink.KeyTypeManager;
+import com.google.crypto.tink.proto.HpkeAead;
+import com.google.crypto.tink.proto.HpkeKdf;
+import com.google.crypto.tink.proto.HpkeKem;
+import com.google.crypto.tink.proto.HpkeKeyFormat;
+import com.google.crypto.tink.proto.HpkeParams;
+import com.google.crypto.tink.proto.HpkePrivateKey;
+import com.google.crypto.tink.proto.KeyData.KeyMaterialType;
+import com.google.crypto.tink.subtle.Random;
+import com.google.protobuf.ByteString;
+import java.security.GeneralSecurityException;
+import java.util.Map;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for HpkePrivateKeyManager. */
+@RunWith(JUnit4.class)
+public class HpkePrivateKeyManagerTest {
+  private final HpkePrivateKeyManager manager = new HpkePrivateKeyManager();
+  private final KeyTypeManager.KeyFactory<HpkeKeyFormat, HpkePrivateKey> factory =
+      manager.keyFactory();
+
+  @Test
+  public void basics() throws Exception {
+    assertThat(manager.getKeyType())
+        .isEqualTo("type.googleapis.com/google.crypto.tink.HpkePrivateKey");
+    assertThat(manager.getVersion()).isEqualTo(0);
+    assertThat(manager.keyMaterialType()).isEqualTo(KeyMaterialType.ASYMMETRIC_PRIVATE);
+  }
+
+  @Test
+  public void validateKeyFormat_empty_throws() throws Exception {
+    assertThrows(
+        GeneralSecurityException.class,
+        () -> factory.validateKeyFormat(HpkeKeyFormat.getDefaultInstance()));
+  }
+
+  @Test
+  public void validateKeyFormat_unknownAead_throws() throws Exception {
+    HpkeKeyFormat format =
+        HpkeKeyFormat.newBuilder()
+            .setParams(
+                HpkeParams.newBuilder()
+                    .setKem(HpkeKem.DHKEM_X25519_HKDF_SHA256)
+                    .setKdf(HpkeKdf.HKDF_SHA256)
+                    .setAead(HpkeAead.AEAD_UNKNOWN))
+            .build();
+    assertThrows(GeneralSecurityException.class, () -> factory.validateKeyFormat(format));
+  }
+
+  @Test
+  public void createKey_validKey() throws Exception {
+    for (KeyTypeManager.KeyFactory.KeyFormat<HpkeKeyFormat> format :
+        factory.keyFormats().values()) {
+      factory.validateKeyFormat(format.keyFormat);
+      HpkePrivateKey key = factory.createKey(format.keyFormat);
+      manager.validateKey(key);
+      assertThat(key.getPublicKey().getParams()).isEqualTo(format.keyFormat.getParams());
+    }
+  }
+
+  @Test
+  public void validateKey_wrongPrivateKeyLength_throws() throws Exception {
+    HpkePrivateKey key =
+        factory.createKey(
+            factory
+                .keyFormats()
+                .get("DHKEM_X25519_HKDF_SHA256_HKDF_SHA256_AES_128_GCM")
+                .keyFormat);
+    HpkePrivateKey invalidKey =
+        HpkePrivateKey.newBuilder(key).setPrivateKey(ByteString.copyFrom(new byte[31])).build();
+    assertThrows(GeneralSecurityException.class, () -> manager.validateKey(invalidKey));
+  }
+
+  @Test
+  public void getPrimitive_encryptDecrypt() throws Exception {
+    Map<String, KeyTypeManager.KeyFactory.KeyFormat<HpkeKeyFormat>> formats = factory.keyFormats();
+    assertThat(formats).hasSize(6);
+    for (KeyTypeManager.KeyFactory.KeyFormat<HpkeKeyFormat> format : formats.values()) {
+      HpkePrivateKey privateKey = factory.createKey(format.keyFormat);
+      HybridDecrypt hybridDecrypt = manager.getPrimitive(privateKey, HybridDecrypt.class);
+      HybridEncrypt hybridEncrypt =
+          new HpkePublicKeyManager()
+              .getPrimitive(manager.getPublicKey(privateKey), HybridEncrypt.class);
+      byte[] plaintext = Random.randBytes(100);
+      byte[] contextInfo = Random.randBytes(20);
+
+      byte[] ciphertext = hybridEncrypt.encrypt(plaintext, contextInfo);
+
+      assertThat(hybridDecrypt.decrypt(ciphertext, contextInfo)).isEqualTo(plaintext);
+      assertThrows(
+          GeneralSecurityException.class,
+          () -> hybridDecrypt.decrypt(ciphertext, Random.randBytes(20)));
+    }
+  }
+}
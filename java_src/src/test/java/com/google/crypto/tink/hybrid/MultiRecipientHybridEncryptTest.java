@@ -0,0 +1,130 @@
+// Copyright 2022 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink.hybrid;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertThrows;
+
+import com.google.crypto.tink.HybridDecrypt;
+import com.google.crypto.tink.HybridEncrypt;
+import com.google.crypto.tink.KeysetHandle;
+import com.google.crypto.tink.subtle.Random;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for MultiRecipientHybridEncrypt and MultiRecipientHybridDecrypt. */
+@RunWith(JUnit4.class)
+public class MultiRecipientHybridEncryptTest {
+  private static final int NUMBER_OF_RECIPIENTS = 3;
+
+  private final List<HybridEncrypt> encrypters = new ArrayList<>();
+  private final List<HybridDecrypt> decrypters = new ArrayList<>();
+
+  @BeforeClass
+  public static void setUpClass() throws Exception {
+    HybridConfig.register();
+  }
+
+  @Before
+  public void setUp() throws Exception {
+    for (int i = 0; i < NUMBER_OF_RECIPIENTS; i++) {
+      KeysetHandle privateHandle =
+          KeysetHandle.generateNew(HybridKeyTemplates.ECIES_P256_HKDF_HMAC_SHA256_AES128_GCM);
+      encrypters.add(privateHandle.getPublicKeysetHandle().getPrimitive(HybridEncrypt.class));
+      decrypters.add(privateHandle.getPrimitive(HybridDecrypt.class));
+    }
+  }
+
+  @Test
+  public void testEncryptDecrypt_everyRecipient() throws Exception {
+    HybridEncrypt encrypter = new MultiRecipientHybridEncrypt(encrypters);
+    byte[] plaintext = Random.randBytes(1000);
+    byte[] contextInfo = Random.randBytes(20);
+
+    byte[] ciphertext = encrypter.encrypt(plaintext, contextInfo);
+
+    for (HybridDecrypt decrypter : decrypters) {
+      assertArrayEquals(
+          plaintext, new MultiRecipientHybridDecrypt(decrypter).decrypt(ciphertext, contextInfo));
+    }
+  }
+
+  @Test
+  public void testEncryptDecrypt_emptyPlaintextAndContextInfo() throws Exception {
+    HybridEncrypt encrypter = new MultiRecipientHybridEncrypt(encrypters);
+
+    byte[] ciphertext = encrypter.encrypt(new byte[0], new byte[0]);
+
+    assertArrayEquals(
+        new byte[0],
+        new MultiRecipientHybridDecrypt(decrypters.get(1)).decrypt(ciphertext, new byte[0]));
+  }
+
+  @Test
+  public void testDecrypt_notARecipient_throws() throws Exception {
+    HybridEncrypt encrypter = new MultiRecipientHybridEncrypt(encrypters.subList(0, 2));
+    byte[] ciphertext = encrypter.encrypt(Random.randBytes(20), new byte[0]);
+
+    HybridDecrypt decrypter = new MultiRecipientHybridDecrypt(decrypters.get(2));
+
+    assertThrows(GeneralSecurityException.class, () -> decrypter.decrypt(ciphertext, new byte[0]));
+  }
+
+  @Test
+  public void testDecrypt_wrongContextInfo_throws() throws Exception {
+    HybridEncrypt encrypter = new MultiRecipientHybridEncrypt(encrypters);
+    byte[] ciphertext = encrypter.encrypt(Random.randBytes(20), "context".getBytes("UTF-8"));
+
+    HybridDecrypt decrypter = new MultiRecipientHybridDecrypt(decrypters.get(0));
+
+    assertThrows(
+        GeneralSecurityException.class,
+        () -> decrypter.decrypt(ciphertext, "other context".getBytes("UTF-8")));
+  }
+
+  @Test
+  public void testDecrypt_modifiedCiphertext_throws() throws Exception {
+    HybridEncrypt encrypter = new MultiRecipientHybridEncrypt(encrypters);
+    byte[] ciphertext = encrypter.encrypt(Random.randBytes(20), new byte[0]);
+    HybridDecrypt decrypter = new MultiRecipientHybridDecrypt(decrypters.get(0));
+
+    for (int i = 0; i < ciphertext.length; i++) {
+      byte[] modified = Arrays.copyOf(ciphertext, ciphertext.length);
+      modified[i] ^= 1;
+      assertThrows(GeneralSecurityException.class, () -> decrypter.decrypt(modified, new byte[0]));
+    }
+    for (int length = 0; length < ciphertext.length; length++) {
+      byte[] truncated = Arrays.copyOf(ciphertext, length);
+      assertThrows(GeneralSecurityException.class, () -> decrypter.decrypt(truncated, new byte[0]));
+    }
+  }
+
+  @Test
+  public void testConstructor_noRecipients_throws() throws Exception {
+    assertThrows(
+        GeneralSecurityException.class,
+        () -> new MultiRecipientHybridEncrypt(Collections.<HybridEncrypt>emptyList()));
+  }
+}
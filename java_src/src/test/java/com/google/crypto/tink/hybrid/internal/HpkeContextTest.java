@@ -0,0 +1,158 @@
+// Copyright 2022 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink.hybrid.internal;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import com.google.crypto.tink.subtle.Random;
+import com.google.crypto.tink.subtle.X25519;
+import com.google.crypto.tink.testing.TestUtil;
+import java.security.GeneralSecurityException;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link HpkeContext}. */
+@RunWith(JUnit4.class)
+public final class HpkeContextTest {
+  // Test vector of RFC 9180, Appendix A.1.1: DHKEM(X25519, HKDF-SHA256), HKDF-SHA256, AES-128-GCM.
+  private static final byte[] INFO = TestUtil.hexDecode("4f6465206f6e2061204772656369616e2055726e");
+  private static final byte[] SENDER_PRIVATE_KEY =
+      TestUtil.hexDecode("52c4a758a802cd8b936eceea314432798d5baf2d7e9235dc084ab1b9cfa2f736");
+  private static final byte[] ENCAPSULATED_KEY =
+      TestUtil.hexDecode("37fda3567bdbd628e88668c3c8d7e97d1d1253b6d4ea6d44c150f741f1bf4431");
+  private static final byte[] RECIPIENT_PRIVATE_KEY =
+      TestUtil.hexDecode("4612c550263fc8ad58375df3f557aac531d26850903e55a9f23f21d8534e8ac8");
+  private static final byte[] RECIPIENT_PUBLIC_KEY =
+      TestUtil.hexDecode("3948cfe0ad1ddb695d780e59077195da6c56506b027329794ab02bca80815c4d");
+  private static final byte[] SHARED_SECRET =
+      TestUtil.hexDecode("fe0e18c9f024ce43799ae393c7e8fe8fce9d218875e8227b0187c04e7d2ea1fc");
+  private static final byte[] PLAINTEXT =
+      TestUtil.hexDecode("4265617574792069732074727574682c20747275746820626561757479");
+  private static final byte[] ASSOCIATED_DATA = TestUtil.hexDecode("436f756e742d30");
+  private static final byte[] CIPHERTEXT =
+      TestUtil.hexDecode(
+          "f938558b5d72f1a23810b4be2ab4f84331acc02fc97babc53a52ae8218a355a96d8770ac83d07bea87e13c512a");
+
+  private final HkdfHpkeKdf kdf = new HkdfHpkeKdf("HmacSha256");
+  private final X25519HpkeKem kem = new X25519HpkeKem(kdf);
+
+  @Test
+  public void encapsulate_rfcTestVector() throws Exception {
+    HpkeKemEncapOutput output = kem.encapsulate(RECIPIENT_PUBLIC_KEY, SENDER_PRIVATE_KEY);
+
+    assertThat(output.getEncapsulatedKey()).isEqualTo(ENCAPSULATED_KEY);
+    assertThat(output.getSharedSecret()).isEqualTo(SHARED_SECRET);
+  }
+
+  @Test
+  public void decapsulate_rfcTestVector() throws Exception {
+    assertThat(kem.decapsulate(ENCAPSULATED_KEY, RECIPIENT_PRIVATE_KEY, RECIPIENT_PUBLIC_KEY))
+        .isEqualTo(SHARED_SECRET);
+  }
+
+  @Test
+  public void seal_rfcTestVector() throws Exception {
+    HpkeContext context =
+        HpkeContext.createContext(
+            ENCAPSULATED_KEY, SHARED_SECRET, kem, kdf, new AesGcmHpkeAead(16), INFO);
+
+    assertThat(context.seal(PLAINTEXT, ASSOCIATED_DATA)).isEqualTo(CIPHERTEXT);
+  }
+
+  @Test
+  public void open_rfcTestVector() throws Exception {
+    HpkeContext context =
+        HpkeContext.createRecipientContext(
+            ENCAPSULATED_KEY,
+            RECIPIENT_PRIVATE_KEY,
+            RECIPIENT_PUBLIC_KEY,
+            kem,
+            kdf,
+            new AesGcmHpkeAead(16),
+            INFO);
+
+    assertThat(context.open(CIPHERTEXT, ASSOCIATED_DATA)).isEqualTo(PLAINTEXT);
+  }
+
+  @Test
+  public void sealOpen_allAeads_sequenceOfMessages() throws Exception {
+    byte[] recipientPrivateKey = X25519.generatePrivateKey();
+    byte[] recipientPublicKey = X25519.publicFromPrivate(recipientPrivateKey);
+    HpkeAead[] aeads = {
+      new AesGcmHpkeAead(16), new AesGcmHpkeAead(32), new ChaCha20Poly1305HpkeAead()
+    };
+    for (HpkeAead aead : aeads) {
+      HpkeContext sender =
+          HpkeContext.createSenderContext(recipientPublicKey, kem, kdf, aead, INFO);
+      HpkeContext recipient =
+          HpkeContext.createRecipientContext(
+              sender.getEncapsulatedKey(),
+              recipientPrivateKey,
+              recipientPublicKey,
+              kem,
+              kdf,
+              aead,
+              INFO);
+      for (int i = 0; i < 5; i++) {
+        byte[] plaintext = Random.randBytes(i * 7);
+        byte[] ciphertext = sender.seal(plaintext, ASSOCIATED_DATA);
+        assertThat(recipient.open(ciphertext, ASSOCIATED_DATA)).isEqualTo(plaintext);
+      }
+    }
+  }
+
+  @Test
+  public void open_wrongOrder_fails() throws Exception {
+    byte[] recipientPrivateKey = X25519.generatePrivateKey();
+    byte[] recipientPublicKey = X25519.publicFromPrivate(recipientPrivateKey);
+    HpkeAead aead = new ChaCha20Poly1305HpkeAead();
+    HpkeContext sender = HpkeContext.createSenderContext(recipientPublicKey, kem, kdf, aead, INFO);
+    HpkeContext recipient =
+        HpkeContext.createRecipientContext(
+            sender.getEncapsulatedKey(),
+            recipientPrivateKey,
+            recipientPublicKey,
+            kem,
+            kdf,
+            aead,
+            INFO);
+    byte[] first = sender.seal(PLAINTEXT, ASSOCIATED_DATA);
+    byte[] second = sender.seal(PLAINTEXT, ASSOCIATED_DATA);
+
+    assertThrows(GeneralSecurityException.class, () -> recipient.open(second, ASSOCIATED_DATA));
+    // A failed open does not advance the sequence number.
+    assertThat(recipient.open(first, ASSOCIATED_DATA)).isEqualTo(PLAINTEXT);
+    assertThat(recipient.open(second, ASSOCIATED_DATA)).isEqualTo(PLAINTEXT);
+  }
+
+  @Test
+  public void open_wrongInfo_fails() throws Exception {
+    HpkeContext context =
+        HpkeContext.createRecipientContext(
+            ENCAPSULATED_KEY,
+            RECIPIENT_PRIVATE_KEY,
+            RECIPIENT_PUBLIC_KEY,
+            kem,
+            kdf,
+            new AesGcmHpkeAead(16),
+            new byte[0]);
+
+    assertThrows(GeneralSecurityException.class, () -> context.open(CIPHERTEXT, ASSOCIATED_DATA));
+  }
+}
@@ -0,0 +1,199 @@
+// Copyright 2022 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+
+package com.google.crypto.tink.internal;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import com.google.crypto.tink.KmsClients;
+import com.google.crypto.tink.subtle.AesGcmHkdfStreaming;
+import com.google.crypto.tink.subtle.StreamSegmentDecrypter;
+import com.google.crypto.tink.subtle.StreamSegmentEncrypter;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.List;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link TinkEvents}, recorded with JDK Flight Recorder. */
+@RunWith(JUnit4.class)
+public final class TinkEventsTest {
+
+  private static List<RecordedEvent> tinkEvents(Recording recording) throws Exception {
+    Path file = Files.createTempFile("tink-events", ".jfr");
+    try {
+      recording.dump(file);
+      List<RecordedEvent> events = new ArrayList<>();
+      for (RecordedEvent event : RecordingFile.readAllEvents(file)) {
+        if (event.getEventType().getName().startsWith("com.google.crypto.tink.")) {
+          events.add(event);
+        }
+      }
+      return events;
+    } finally {
+      Files.delete(file);
+    }
+  }
+
+  @Test
+  public void begin_withoutRecording_returnsNull() throws Exception {
+    assertThat(TinkEvents.begin(TinkEvents.Type.KEYSET_READ)).isNull();
+    // Must not throw.
+    TinkEvents.commit(null, "read", "typeUrl", 1, 2, true);
+  }
+
+  @Test
+  public void commit_recordsAttributes() throws Exception {
+    List<RecordedEvent> events;
+    try (Recording recording = new Recording()) {
+      recording.enable("com.google.crypto.tink.KeysetRead");
+      recording.start();
+      Object event = TinkEvents.begin(TinkEvents.Type.KEYSET_READ);
+      assertThat(event).isNotNull();
+      TinkEvents.commit(
+          event, "read", "type.googleapis.com/google.crypto.tink.AesGcmKey", 42, 123, true);
+      recording.stop();
+      events = tinkEvents(recording);
+    }
+
+    assertThat(events).hasSize(1);
+    RecordedEvent event = events.get(0);
+    assertThat(event.getEventType().getName()).isEqualTo("com.google.crypto.tink.KeysetRead");
+    assertThat(event.getString("operation")).isEqualTo("read");
+    assertThat(event.getString("keyTypeUrl"))
+        .isEqualTo("type.googleapis.com/google.crypto.tink.AesGcmKey");
+    assertThat(event.getLong("keyId")).isEqualTo(42);
+    assertThat(event.getLong("payloadSize")).isEqualTo(123);
+    assertThat(event.getBoolean("succeeded")).isTrue();
+  }
+
+  @Test
+  public void commit_recordsOnlyAttributesOfType() throws Exception {
+    List<RecordedEvent> events;
+    try (Recording recording = new Recording()) {
+      recording.enable("com.google.crypto.tink.PrimitiveWrap");
+      recording.start();
+      TinkEvents.commit(
+          TinkEvents.begin(TinkEvents.Type.PRIMITIVE_WRAP), "Aead", "ignored", 42, 3, true);
+      recording.stop();
+      events = tinkEvents(recording);
+    }
+
+    assertThat(events).hasSize(1);
+    RecordedEvent event = events.get(0);
+    assertThat(event.hasField("keyTypeUrl")).isFalse();
+    assertThat(event.getLong("keyId")).isEqualTo(42);
+    assertThat(event.getLong("primitiveCount")).isEqualTo(3);
+  }
+
+  @Test
+  public void failedOperation_isRecorded() throws Exception {
+    List<RecordedEvent> events;
+    try (Recording recording = new Recording()) {
+      recording.enable("com.google.crypto.tink.KmsClientLookup");
+      recording.start();
+      assertThrows(
+          GeneralSecurityException.class, () -> KmsClients.get("unknown-kms://projects/p"));
+      recording.stop();
+      events = tinkEvents(recording);
+    }
+
+    assertThat(events).hasSize(1);
+    RecordedEvent event = events.get(0);
+    assertThat(event.getString("operation")).isEqualTo("get");
+    assertThat(event.getString("uriScheme")).isEqualTo("unknown-kms://");
+    assertThat(event.getBoolean("succeeded")).isFalse();
+  }
+
+  @Test
+  public void begin_eventNotEnabled_returnsNull() throws Exception {
+    try (Recording recording = new Recording()) {
+      recording.disable("com.google.crypto.tink.KmsClientLookup");
+      recording.start();
+      assertThat(TinkEvents.begin(TinkEvents.Type.KMS_CLIENT_LOOKUP)).isNull();
+      // Disabled by default.
+      assertThat(TinkEvents.begin(TinkEvents.Type.STREAMING_SEGMENT)).isNull();
+      recording.stop();
+    }
+  }
+
+  @Test
+  public void streamingAead_recordsOneEventPerSegment() throws Exception {
+    AesGcmHkdfStreaming streamingAead =
+        new AesGcmHkdfStreaming(new byte[16], "HmacSha256", 16, 4096, 0);
+    List<RecordedEvent> events;
+    try (Recording recording = new Recording()) {
+      recording.enable("com.google.crypto.tink.StreamingSegment");
+      recording.start();
+      try (OutputStream out =
+          streamingAead.newEncryptingStream(new ByteArrayOutputStream(), new byte[0])) {
+        out.write(new byte[10000]);
+      }
+      recording.stop();
+      events = tinkEvents(recording);
+    }
+
+    assertThat(events).hasSize(3);
+    for (RecordedEvent event : events) {
+      assertThat(event.getString("operation")).isEqualTo("encryptSegment");
+      assertThat(event.getString("keyTypeUrl"))
+          .isEqualTo("type.googleapis.com/google.crypto.tink.AesGcmHkdfStreamingKey");
+      assertThat(event.getBoolean("succeeded")).isTrue();
+    }
+  }
+
+  @Test
+  public void streamingAead_recordsFailedSegment() throws Exception {
+    AesGcmHkdfStreaming streamingAead =
+        new AesGcmHkdfStreaming(new byte[16], "HmacSha256", 16, 4096, 0);
+    StreamSegmentEncrypter encrypter = streamingAead.newStreamSegmentEncrypter(new byte[0]);
+    StreamSegmentDecrypter decrypter = streamingAead.newStreamSegmentDecrypter();
+    decrypter.init(encrypter.getHeader(), new byte[0]);
+    List<RecordedEvent> events;
+    try (Recording recording = new Recording()) {
+      recording.enable("com.google.crypto.tink.StreamingSegment");
+      recording.start();
+      assertThrows(
+          GeneralSecurityException.class,
+          () ->
+              decrypter.decryptSegment(
+                  ByteBuffer.allocate(100), 0, true, ByteBuffer.allocate(100)));
+      recording.stop();
+      events = tinkEvents(recording);
+    }
+
+    assertThat(events).hasSize(1);
+    assertThat(events.get(0).getString("operation")).isEqualTo("decryptSegment");
+    assertThat(events.get(0).getBoolean("succeeded")).isFalse();
+  }
+
+  @Test
+  public void uriScheme() throws Exception {
+    assertThat(TinkEvents.uriScheme("gcp-kms://projects/p/locations/l")).isEqualTo("gcp-kms://");
+    assertThat(TinkEvents.uriScheme("no scheme")).isEmpty();
+  }
+}
@@ -25,6 +25,7 @@ import com.google.crypto.tink.CryptoFormat;
 import com.google.crypto.tink.Mac;
 import com.google.crypto.tink.PrimitiveSet;
 import com.google.crypto.tink.daead.DeterministicAeadConfig;
+import com.google.crypto.tink.internal.FailureCounter;
 import com.google.crypto.tink.proto.KeyStatusType;
 import com.google.crypto.tink.proto.Keyset.Key;
 import com.google.crypto.tink.proto.OutputPrefixType;
@@ -155,4 +156,32 @@ public class MacWrapperTest {
       fail("Valid MAC, should not throw exception");
     }
   }
+
+  @Test
+  public void testVerifyMacWithInvalidTag_isCountedAsFailure() throws Exception {
+    Key tink =
+        TestUtil.createKey(
+            TestUtil.createHmacKeyData(Random.randBytes(HMAC_KEY_SIZE), 16),
+            42,
+            KeyStatusType.ENABLED,
+            OutputPrefixType.TINK);
+    Mac mac =
+        new MacWrapper().wrap(TestUtil.createPrimitiveSet(TestUtil.createKeyset(tink), Mac.class));
+    byte[] data = Random.randBytes(20);
+    byte[] tag = mac.computeMac(data);
+    long failures = FailureCounter.MAC.getFailures();
+    long prefixMatchFailures = FailureCounter.MAC.getPrefixMatchFailures();
+
+    // Unknown prefix.
+    byte[] unknownPrefix = Arrays.copyOf(tag, tag.length);
+    unknownPrefix[1] ^= 1;
+    assertThrows(GeneralSecurityException.class, () -> mac.verifyMac(unknownPrefix, data));
+    // Known prefix, but invalid tag.
+    byte[] invalidTag = Arrays.copyOf(tag, tag.length);
+    invalidTag[tag.length - 1] ^= 1;
+    assertThrows(GeneralSecurityException.class, () -> mac.verifyMac(invalidTag, data));
+
+    assertEquals(failures + 2, FailureCounter.MAC.getFailures());
+    assertEquals(prefixMatchFailures + 1, FailureCounter.MAC.getPrefixMatchFailures());
+  }
 }
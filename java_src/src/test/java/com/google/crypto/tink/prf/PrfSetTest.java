@@ -0,0 +1,114 @@
+// Copyright 2022 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+
+package com.google.crypto.tink.prf;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+
+import com.google.crypto.tink.subtle.PrfHmacJce;
+import com.google.crypto.tink.subtle.Random;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import javax.crypto.spec.SecretKeySpec;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for the convenience methods of {@link PrfSet}. */
+@RunWith(JUnit4.class)
+public class PrfSetTest {
+  private static final int PRIMARY_ID = 1234567;
+
+  private static PrfSet prfSetOf(final Prf prf) {
+    return new PrfSet() {
+      @Override
+      public int getPrimaryId() {
+        return PRIMARY_ID;
+      }
+
+      @Override
+      public Map<Integer, Prf> getPrfs() {
+        return Collections.singletonMap(PRIMARY_ID, prf);
+      }
+    };
+  }
+
+  /** A Prf that is not a {@link BufferedPrf}, to test the fallback paths of {@link PrfSet}. */
+  private static Prf unbuffered(final Prf prf) {
+    return new Prf() {
+      @Override
+      public byte[] compute(byte[] input, int outputLength) throws GeneralSecurityException {
+        return prf.compute(input, outputLength);
+      }
+    };
+  }
+
+  private static Prf newHmacPrf() throws GeneralSecurityException {
+    return new PrfHmacJce("HMACSHA256", new SecretKeySpec(Random.randBytes(32), "HMAC"));
+  }
+
+  private static void assertConsistent(PrfSet prfSet) throws Exception {
+    byte[] input = Random.randBytes(33);
+    byte[] expected = prfSet.computePrimary(input, 16);
+
+    byte[] output = new byte[20];
+    prfSet.computePrimary(input, output, 4, 16);
+    assertArrayEquals(expected, Arrays.copyOfRange(output, 4, 20));
+
+    Arrays.fill(output, (byte) 0);
+    ByteBuffer buffer = ByteBuffer.wrap(input);
+    prfSet.computePrimary(buffer, output, 4, 16);
+    assertArrayEquals(expected, Arrays.copyOfRange(output, 4, 20));
+    assertEquals(0, buffer.remaining());
+
+    assertEquals(ByteBuffer.wrap(expected).getLong(), prfSet.computePrimaryLong(input));
+    assertEquals(ByteBuffer.wrap(expected).getInt(), prfSet.computePrimaryInt(input));
+
+    byte[][] inputs = {input, new byte[0], Random.randBytes(100)};
+    long[] longs = new long[inputs.length];
+    prfSet.computePrimaryLongs(inputs, longs);
+    for (int i = 0; i < inputs.length; i++) {
+      assertEquals(prfSet.computePrimaryLong(inputs[i]), longs[i]);
+    }
+  }
+
+  @Test
+  public void bufferedPrf_consistentWithComputePrimary() throws Exception {
+    assertConsistent(prfSetOf(newHmacPrf()));
+  }
+
+  @Test
+  public void unbufferedPrf_consistentWithComputePrimary() throws Exception {
+    assertConsistent(prfSetOf(unbuffered(newHmacPrf())));
+  }
+
+  @Test
+  public void unbufferedPrf_invalidArguments_throw() throws Exception {
+    final PrfSet prfSet = prfSetOf(unbuffered(newHmacPrf()));
+    assertThrows(
+        IndexOutOfBoundsException.class,
+        () -> prfSet.computePrimary(new byte[0], new byte[8], 4, 8));
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> prfSet.computePrimaryLongs(new byte[2][0], new long[1]));
+  }
+}
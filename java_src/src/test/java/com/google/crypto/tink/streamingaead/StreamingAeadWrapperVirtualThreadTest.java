@@ -0,0 +1,91 @@
+// Copyright 2022 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+
+package com.google.crypto.tink.streamingaead;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assume.assumeTrue;
+
+import com.google.crypto.tink.KeyTemplates;
+import com.google.crypto.tink.KeysetHandle;
+import com.google.crypto.tink.KeysetManager;
+import com.google.crypto.tink.StreamingAead;
+import com.google.crypto.tink.testing.VirtualThreadStreamingWorkload;
+import com.google.crypto.tink.testing.VirtualThreadStreamingWorkload.DecryptionMode;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Tests that the decrypting streams and channels of the StreamingAead wrapper don't pin virtual
+ * threads while they wait for the underlying channel. Skipped on JDKs without virtual threads.
+ */
+@RunWith(JUnit4.class)
+public class StreamingAeadWrapperVirtualThreadTest {
+  private static final int TASKS = 2000;
+  private static final int PLAINTEXT_SIZE = 20000;
+  private static final int CHUNK_SIZE = 1024;
+  private static final long IO_DELAY_MILLIS = 1;
+
+  private StreamingAead streamingAead;
+
+  @BeforeClass
+  public static void setUpClass() throws Exception {
+    StreamingAeadConfig.register();
+  }
+
+  @Before
+  public void setUp() throws Exception {
+    assumeTrue(VirtualThreadStreamingWorkload.isSupported());
+    // The primary key is the second one, so every decryption first tries the other key and then
+    // rewinds the ciphertext.
+    KeysetHandle handle =
+        KeysetManager.withKeysetHandle(
+                KeysetHandle.generateNew(KeyTemplates.get("AES128_GCM_HKDF_4KB")))
+            .add(KeyTemplates.get("AES128_GCM_HKDF_4KB"))
+            .getKeysetHandle();
+    int secondKeyId = handle.getKeysetInfo().getKeyInfo(1).getKeyId();
+    handle = KeysetManager.withKeysetHandle(handle).setPrimary(secondKeyId).getKeysetHandle();
+    streamingAead = handle.getPrimitive(StreamingAead.class);
+  }
+
+  private void assertDoesNotPinVirtualThreads(DecryptionMode mode) throws Exception {
+    VirtualThreadStreamingWorkload.Result result =
+        VirtualThreadStreamingWorkload.run(
+            streamingAead, mode, TASKS, PLAINTEXT_SIZE, CHUNK_SIZE, IO_DELAY_MILLIS);
+
+    assertThat(result.tasks).isEqualTo(TASKS);
+    assertThat(result.pinnedEvents).isEqualTo(0);
+  }
+
+  @Test
+  public void testDecryptingStream_doesNotPinVirtualThreads() throws Exception {
+    assertDoesNotPinVirtualThreads(DecryptionMode.STREAM);
+  }
+
+  @Test
+  public void testDecryptingChannel_doesNotPinVirtualThreads() throws Exception {
+    assertDoesNotPinVirtualThreads(DecryptionMode.CHANNEL);
+  }
+
+  @Test
+  public void testSeekableDecryptingChannel_doesNotPinVirtualThreads() throws Exception {
+    assertDoesNotPinVirtualThreads(DecryptionMode.SEEKABLE_CHANNEL);
+  }
+}
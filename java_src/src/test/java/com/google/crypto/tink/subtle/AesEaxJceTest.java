@@ -274,6 +274,40 @@ public class AesEaxJceTest {
     }
   }
 
+  @Test
+  public void testEaxPaperVectors() throws Exception {
+    Assume.assumeFalse(TinkFips.useOnlyFips());
+    // From the appendix of the EAX paper: key, nonce, header, message, ciphertext || tag.
+    String[][] vectors = {
+      {
+        "233952DEE4D5ED5F9B9C6D6FF80FF478",
+        "62EC67F9C3A4A407FCB2A8C49031A8B3",
+        "6BFB914FD07EAE6B",
+        "",
+        "E037830E8389F27B025A2D6527E79D01"
+      },
+      {
+        "91945D3F4DCBEE0BF45EF52255F095A4",
+        "BECAF043B0A23D843194BA972C66DEBD",
+        "FA3BFD4806EB53FA",
+        "F7FB",
+        "19DD5C4C9331049D0BDAB0277408F67967E5"
+      },
+      {
+        "8395FCF1E95BEBD697BD010BC766AAC3",
+        "22E7ADD93CFC6393C57EC0B3C17D6B44",
+        "126735FCC320D25A",
+        "CA40D7446E545FFAED3BD12A740A659FFBBB3CEAB7",
+        "CB8920F87A6C75CFF39627B56E3ED197C552D295A7CFC46AFC253B4652B1AF3795B124AB6E"
+      },
+    };
+    for (String[] v : vectors) {
+      AesEaxJce eax = new AesEaxJce(Hex.decode(v[0]), IV_SIZE);
+      byte[] ciphertext = Bytes.concat(Hex.decode(v[1]), Hex.decode(v[4]));
+      assertEquals(v[3], Hex.encode(eax.decrypt(ciphertext, Hex.decode(v[2]))).toUpperCase());
+    }
+  }
+
   @Test
   public void testFailIfFipsModeUsed() throws Exception {
     Assume.assumeTrue(TinkFips.useOnlyFips());
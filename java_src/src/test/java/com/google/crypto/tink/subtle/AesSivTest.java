@@ -329,4 +329,56 @@ public class AesSivTest {
     byte[] key = Random.randBytes(16);
     assertThrows(GeneralSecurityException.class, () -> new AesSiv(key));
   }
+
+  @Test
+  public void testWithAssociatedData_sameResultsAsUnbound() throws GeneralSecurityException {
+    Assume.assumeFalse(TinkFips.useOnlyFips());
+
+    AesSiv daead = new AesSiv(Random.randBytes(64));
+    byte[] associatedData = Random.randBytes(20);
+    DeterministicAead bound = daead.withAssociatedData(associatedData);
+    for (int length = 0; length < 50; length++) {
+      byte[] plaintext = Random.randBytes(length);
+      byte[] ciphertext = daead.encryptDeterministically(plaintext, associatedData);
+      assertThat(bound.encryptDeterministically(plaintext, associatedData)).isEqualTo(ciphertext);
+      assertThat(bound.decryptDeterministically(ciphertext, associatedData)).isEqualTo(plaintext);
+
+      // Other associated data still works, and is not confused with the bound one.
+      byte[] otherAssociatedData = Random.randBytes(length);
+      byte[] otherCiphertext = daead.encryptDeterministically(plaintext, otherAssociatedData);
+      assertThat(bound.encryptDeterministically(plaintext, otherAssociatedData))
+          .isEqualTo(otherCiphertext);
+      assertThrows(
+          AEADBadTagException.class,
+          () -> bound.decryptDeterministically(otherCiphertext, associatedData));
+    }
+  }
+
+  @Test
+  public void testWithAssociatedData_nullAndEmptyEquivalent() throws GeneralSecurityException {
+    Assume.assumeFalse(TinkFips.useOnlyFips());
+
+    AesSiv daead = new AesSiv(Random.randBytes(64));
+    byte[] plaintext = Random.randBytes(10);
+    byte[] ciphertext = daead.encryptDeterministically(plaintext, null);
+    assertThat(daead.withAssociatedData(null).encryptDeterministically(plaintext, new byte[0]))
+        .isEqualTo(ciphertext);
+    assertThat(daead.withAssociatedData(new byte[0]).decryptDeterministically(ciphertext, null))
+        .isEqualTo(plaintext);
+  }
+
+  @Test
+  public void testWithAssociatedData_modifiedCiphertext() throws GeneralSecurityException {
+    Assume.assumeFalse(TinkFips.useOnlyFips());
+
+    byte[] associatedData = Random.randBytes(20);
+    DeterministicAead bound = new AesSiv(Random.randBytes(64)).withAssociatedData(associatedData);
+    byte[] ciphertext = bound.encryptDeterministically(Random.randBytes(20), associatedData);
+    for (int b = 0; b < ciphertext.length; b++) {
+      byte[] modified = Arrays.copyOf(ciphertext, ciphertext.length);
+      modified[b] ^= 1;
+      assertThrows(
+          AEADBadTagException.class, () -> bound.decryptDeterministically(modified, associatedData));
+    }
+  }
 }
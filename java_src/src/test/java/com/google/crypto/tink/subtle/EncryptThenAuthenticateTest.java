@@ -25,6 +25,7 @@ import com.google.crypto.tink.testing.TestUtil;
 import java.security.GeneralSecurityException;
 import java.util.Arrays;
 import javax.crypto.Cipher;
+import javax.crypto.spec.SecretKeySpec;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
@@ -240,6 +241,25 @@ public class EncryptThenAuthenticateTest {
     }
   }
 
+  @Test
+  public void testAesCtrHmacCompatibleWithGenericConstruction() throws Exception {
+    byte[] encKey = Random.randBytes(16);
+    byte[] hmacKey = Random.randBytes(32);
+    Aead aesCtrHmac = getAead(hmacKey, encKey, 16, 16, "HMACSHA256");
+    Aead generic =
+        new EncryptThenAuthenticate(
+            new AesCtrJceCipher(encKey, 16),
+            new PrfMac(new PrfHmacJce("HMACSHA256", new SecretKeySpec(hmacKey, "HMAC")), 16),
+            16);
+    for (int size : new int[] {0, 1, 15, 16, 17, 1000, 64 * 1024, 1024 * 1024 + 3}) {
+      byte[] plaintext = Random.randBytes(size);
+      byte[] aad = Random.randBytes(size % 37);
+      assertArrayEquals(plaintext, generic.decrypt(aesCtrHmac.encrypt(plaintext, aad), aad));
+      assertArrayEquals(plaintext, aesCtrHmac.decrypt(generic.encrypt(plaintext, aad), aad));
+      assertArrayEquals(plaintext, aesCtrHmac.decrypt(generic.encrypt(plaintext, null), null));
+    }
+  }
+
   private Aead getAead(byte[] hmacKey, byte[] encKey, int ivSize, int tagLength, String macAlg)
       throws Exception {
     return EncryptThenAuthenticate.newAesCtrHmac(encKey, ivSize, macAlg, hmacKey, tagLength);
@@ -16,6 +16,24 @@
 
 package com.google.crypto.tink.subtle;
 
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThrows;
+
+import com.google.crypto.tink.config.internal.TinkFipsUtil;
+import java.security.GeneralSecurityException;
+import java.security.Provider;
+import java.security.Security;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import org.junit.After;
+import org.junit.Assume;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
@@ -24,6 +42,11 @@ import org.junit.runners.JUnit4;
 @RunWith(JUnit4.class)
 public class EngineFactoryTest {
 
+  @After
+  public void tearDown() throws Exception {
+    EngineFactory.resetProviderSelection();
+  }
+
   @Test
   public void testAtLeastGetsACipherByDefault() throws Exception {
     EngineFactory.CIPHER.getInstance("AES");
@@ -37,4 +60,135 @@ public class EngineFactoryTest {
     EngineFactory.CIPHER.getInstance("AES");
     // didn't throw
   }
+
+  @Test
+  public void testThreadLocalInstance_sameThreadAndAlgorithm_returnsSameEngine() throws Exception {
+    Cipher cipher = EngineFactory.CIPHER.getThreadLocalInstance("AES/CTR/NoPadding");
+
+    assertSame(cipher, EngineFactory.CIPHER.getThreadLocalInstance("AES/CTR/NoPadding"));
+    assertNotSame(cipher, EngineFactory.CIPHER.getThreadLocalInstance("AES/ECB/NoPadding"));
+  }
+
+  @Test
+  public void testThreadLocalInstance_otherThread_returnsOtherEngine() throws Exception {
+    final AtomicReference<Cipher> otherThreadCipher = new AtomicReference<>();
+    Thread thread =
+        new Thread(
+            () -> {
+              try {
+                otherThreadCipher.set(
+                    EngineFactory.CIPHER.getThreadLocalInstance("AES/CTR/NoPadding"));
+              } catch (Exception e) {
+                throw new IllegalStateException(e);
+              }
+            });
+    thread.start();
+    thread.join();
+
+    assertNotSame(
+        otherThreadCipher.get(), EngineFactory.CIPHER.getThreadLocalInstance("AES/CTR/NoPadding"));
+  }
+
+  @Test
+  public void testSetPreferredProvider_isUsed() throws Exception {
+    Assume.assumeFalse(TinkFipsUtil.useOnlyFips());
+    Provider provider = Cipher.getInstance("AES/GCM/NoPadding").getProvider();
+
+    EngineFactory.setPreferredProvider("AES/GCM/NoPadding", provider);
+
+    assertSame(provider, EngineFactory.getSelectedProvider("aes/gcm/nopadding"));
+    assertSame(provider, EngineFactory.CIPHER.getInstance("AES/GCM/NoPadding").getProvider());
+  }
+
+  @Test
+  public void testSetPreferredProvider_providerWithoutAlgorithm_usesDefaultPolicy()
+      throws Exception {
+    Assume.assumeFalse(TinkFipsUtil.useOnlyFips());
+    Provider sun = Security.getProvider("SUN");
+    Assume.assumeTrue(sun != null);
+
+    // The SUN provider has no ciphers.
+    EngineFactory.setPreferredProvider("AES/GCM/NoPadding", sun);
+
+    assertNotNull(EngineFactory.CIPHER.getInstance("AES/GCM/NoPadding"));
+  }
+
+  @Test
+  public void testSetPreferredProvider_fipsMode_rejectsNonFipsProvider() throws Exception {
+    Assume.assumeTrue(TinkFipsUtil.useOnlyFips());
+    Provider sun = Security.getProvider("SUN");
+    Assume.assumeTrue(sun != null);
+
+    assertThrows(
+        GeneralSecurityException.class,
+        () -> EngineFactory.setPreferredProvider("AES/GCM/NoPadding", sun));
+  }
+
+  @Test
+  public void testAdaptiveProviderSelection_selectsInstalledProvider() throws Exception {
+    Assume.assumeFalse(TinkFipsUtil.useOnlyFips());
+    EngineFactory.enableAdaptiveProviderSelection();
+    EngineFactory.awaitProviderSelection();
+
+    Mac mac = EngineFactory.MAC.getInstance("HmacSHA256");
+
+    Provider selected = EngineFactory.getSelectedProvider("HmacSHA256");
+    assertNotNull(selected);
+    assertSame(selected, mac.getProvider());
+    assertSame(selected, Security.getProvider(selected.getName()));
+  }
+
+  @Test
+  public void testAdaptiveProviderSelection_selectedProviderComputesSameResult() throws Exception {
+    Assume.assumeFalse(TinkFipsUtil.useOnlyFips());
+    SecretKeySpec key = new SecretKeySpec(new byte[16], "AES");
+    IvParameterSpec iv = new IvParameterSpec(new byte[16]);
+    byte[] plaintext = new byte[100];
+    Cipher defaultCipher = Cipher.getInstance("AES/CTR/NoPadding");
+    defaultCipher.init(Cipher.ENCRYPT_MODE, key, iv);
+
+    EngineFactory.enableAdaptiveProviderSelection();
+    EngineFactory.awaitProviderSelection();
+    Cipher cipher = EngineFactory.CIPHER.getInstance("AES/CTR/NoPadding");
+    cipher.init(Cipher.ENCRYPT_MODE, key, iv);
+
+    assertArrayEquals(defaultCipher.doFinal(plaintext), cipher.doFinal(plaintext));
+  }
+
+  @Test
+  public void testAdaptiveProviderSelection_otherAlgorithm_isNotBenchmarked() throws Exception {
+    EngineFactory.enableAdaptiveProviderSelection();
+    EngineFactory.awaitProviderSelection();
+
+    EngineFactory.CIPHER.getInstance("AES");
+
+    assertNull(EngineFactory.getSelectedProvider("AES"));
+  }
+
+  @Test
+  public void testAdaptiveProviderSelection_beforeBenchmarkFinishes_returnsEngine()
+      throws Exception {
+    SecretKeySpec key = new SecretKeySpec(new byte[16], "HmacSHA256");
+    Mac defaultMac = Mac.getInstance("HmacSHA256");
+    defaultMac.init(key);
+
+    EngineFactory.enableAdaptiveProviderSelection();
+    // Doesn't wait for the benchmark.
+    Mac mac = EngineFactory.MAC.getInstance("HmacSHA256");
+    mac.init(key);
+
+    assertArrayEquals(defaultMac.doFinal(new byte[100]), mac.doFinal(new byte[100]));
+  }
+
+  @Test
+  public void testAdaptiveProviderSelection_keepsPreferredProvider() throws Exception {
+    Assume.assumeFalse(TinkFipsUtil.useOnlyFips());
+    Provider provider = Mac.getInstance("HmacSHA256").getProvider();
+    EngineFactory.setPreferredProvider("HmacSHA256", provider);
+
+    EngineFactory.enableAdaptiveProviderSelection();
+    EngineFactory.awaitProviderSelection();
+
+    assertSame(provider, EngineFactory.getSelectedProvider("HmacSHA256"));
+  }
 }
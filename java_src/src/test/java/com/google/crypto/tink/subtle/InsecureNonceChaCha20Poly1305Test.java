@@ -0,0 +1,104 @@
+// Copyright 2022 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink.subtle;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import com.google.crypto.tink.config.TinkFips;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+import javax.crypto.AEADBadTagException;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for InsecureNonceChaCha20Poly1305. */
+@RunWith(JUnit4.class)
+public class InsecureNonceChaCha20Poly1305Test {
+  @Before
+  public void setUp() {
+    Assume.assumeFalse(TinkFips.useOnlyFips());
+  }
+
+  /** https://tools.ietf.org/html/rfc8439#section-2.8.2 */
+  @Test
+  public void testRfc8439Vector() throws Exception {
+    byte[] key = Hex.decode("808182838485868788898a8b8c8d8e8f909192939495969798999a9b9c9d9e9f");
+    byte[] nonce = Hex.decode("070000004041424344454647");
+    byte[] associatedData = Hex.decode("50515253c0c1c2c3c4c5c6c7");
+    byte[] plaintext =
+        ("Ladies and Gentlemen of the class of '99: If I could offer you only one tip for the "
+                + "future, sunscreen would be it.")
+            .getBytes("UTF-8");
+    byte[] expected =
+        Hex.decode(
+            "d31a8d34648e60db7b86afbc53ef7ec2a4aded51296e08fea9e2b5a736ee62d6"
+                + "3dbea45e8ca9671282fafb69da92728b1a71de0a9e060b2905d6a5b67ecd3b36"
+                + "92ddbd7f2d778b8c9803aee328091b58fab324e4fad675945585808b4831d7bc"
+                + "3ff4def08e4b7a9de576d26586cec64b6116"
+                + "1ae10b594f09e26a7e902ecbd0600691");
+    InsecureNonceChaCha20Poly1305 cipher = new InsecureNonceChaCha20Poly1305(key);
+
+    assertThat(cipher.encrypt(nonce, plaintext, associatedData)).isEqualTo(expected);
+    assertThat(cipher.decrypt(nonce, expected, associatedData)).isEqualTo(plaintext);
+  }
+
+  @Test
+  public void testCompatibleWithChaCha20Poly1305() throws Exception {
+    byte[] key = Random.randBytes(32);
+    byte[] nonce = Random.randBytes(InsecureNonceChaCha20Poly1305.NONCE_SIZE_IN_BYTES);
+    byte[] plaintext = Random.randBytes(100);
+    byte[] associatedData = Random.randBytes(10);
+
+    byte[] ciphertext =
+        new InsecureNonceChaCha20Poly1305(key).encrypt(nonce, plaintext, associatedData);
+
+    assertThat(
+            new ChaCha20Poly1305(key)
+                .decrypt(Bytes.concat(nonce, ciphertext), associatedData))
+        .isEqualTo(plaintext);
+  }
+
+  @Test
+  public void testModifiedCiphertextFails() throws Exception {
+    InsecureNonceChaCha20Poly1305 cipher = new InsecureNonceChaCha20Poly1305(Random.randBytes(32));
+    byte[] nonce = Random.randBytes(InsecureNonceChaCha20Poly1305.NONCE_SIZE_IN_BYTES);
+    byte[] ciphertext = cipher.encrypt(nonce, Random.randBytes(20), null);
+
+    for (int i = 0; i < ciphertext.length; i++) {
+      byte[] modified = Arrays.copyOf(ciphertext, ciphertext.length);
+      modified[i] ^= 1;
+      assertThrows(AEADBadTagException.class, () -> cipher.decrypt(nonce, modified, null));
+    }
+    byte[] otherNonce = Arrays.copyOf(nonce, nonce.length);
+    otherNonce[0] ^= 1;
+    assertThrows(AEADBadTagException.class, () -> cipher.decrypt(otherNonce, ciphertext, null));
+  }
+
+  @Test
+  public void testInvalidNonceSize() throws Exception {
+    InsecureNonceChaCha20Poly1305 cipher = new InsecureNonceChaCha20Poly1305(Random.randBytes(32));
+
+    assertThrows(
+        GeneralSecurityException.class, () -> cipher.encrypt(new byte[11], new byte[1], null));
+    assertThrows(
+        GeneralSecurityException.class, () -> cipher.decrypt(new byte[13], new byte[16], null));
+  }
+}
@@ -26,8 +26,12 @@ import com.google.crypto.tink.testing.WycheproofTestUtil;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
 import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
@@ -48,6 +52,48 @@ public class KwpTest {
     }
   }
 
+  @Test
+  public void testWrapAllUnwrapAll() throws Exception {
+    Kwp kwp = new Kwp(Random.randBytes(32));
+    List<byte[]> keys = new ArrayList<>();
+    for (int i = 0; i < 3 * Kwp.KEYS_PER_TASK + 5; i++) {
+      keys.add(Random.randBytes(16 + i % 50));
+    }
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<byte[]> wrapped = kwp.wrapAll(keys);
+      assertEquals(keys.size(), wrapped.size());
+      List<byte[]> wrappedInParallel = kwp.wrapAll(keys, executor);
+      List<byte[]> unwrapped = kwp.unwrapAll(wrapped);
+      List<byte[]> unwrappedInParallel = kwp.unwrapAll(wrapped, executor);
+      for (int i = 0; i < keys.size(); i++) {
+        assertArrayEquals(kwp.wrap(keys.get(i)), wrapped.get(i));
+        assertArrayEquals(wrapped.get(i), wrappedInParallel.get(i));
+        assertArrayEquals(keys.get(i), unwrapped.get(i));
+        assertArrayEquals(keys.get(i), unwrappedInParallel.get(i));
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void testUnwrapAllFailsIfAnyKeyIsInvalid() throws Exception {
+    Kwp kwp = new Kwp(Random.randBytes(16));
+    List<byte[]> wrapped = new ArrayList<>();
+    for (int i = 0; i < 2 * Kwp.KEYS_PER_TASK; i++) {
+      wrapped.add(kwp.wrap(Random.randBytes(32)));
+    }
+    wrapped.get(Kwp.KEYS_PER_TASK + 1)[3] ^= 1;
+    assertThrows(GeneralSecurityException.class, () -> kwp.unwrapAll(wrapped));
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      assertThrows(GeneralSecurityException.class, () -> kwp.unwrapAll(wrapped, executor));
+    } finally {
+      executor.shutdown();
+    }
+  }
+
   @Test
   public void testInvalidKeySizes() throws Exception {
     // Tests the wrapping key. Its key size is either 16 or 32.
@@ -17,13 +17,20 @@
 package com.google.crypto.tink.subtle;
 
 import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertThrows;
 
 import com.google.crypto.tink.Mac;
 import com.google.crypto.tink.config.TinkFips;
+import java.nio.ByteBuffer;
 import java.security.GeneralSecurityException;
 import java.security.InvalidAlgorithmParameterException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import javax.crypto.Cipher;
+import javax.crypto.spec.SecretKeySpec;
 import org.junit.Assume;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -178,4 +185,125 @@ public class PrfAesCmacTest {
         InvalidAlgorithmParameterException.class,
         () -> new PrfMac(new PrfAesCmac(Random.randBytes(16)), 17));
   }
+
+  @Test
+  public void testComputeIntoBuffer() throws Exception {
+    Assume.assumeFalse(TinkFips.useOnlyFips());
+    for (MacTestVector t : CMAC_TEST_VECTORS) {
+      PrfAesCmac prf = new PrfAesCmac(t.key);
+      byte[] output = new byte[20];
+      prf.compute(t.message, output, 2, 16);
+      assertArrayEquals(t.tag, Arrays.copyOfRange(output, 2, 18));
+
+      ByteBuffer direct = ByteBuffer.allocateDirect(t.message.length);
+      direct.put(t.message).flip();
+      prf.compute(direct, output, 0, 10);
+      assertArrayEquals(Arrays.copyOf(t.tag, 10), Arrays.copyOf(output, 10));
+      assertEquals(0, direct.remaining());
+    }
+  }
+
+  @Test
+  public void testLongInputs_matchBlockByBlockCmac() throws Exception {
+    Assume.assumeFalse(TinkFips.useOnlyFips());
+    byte[] key = Random.randBytes(32);
+    PrfAesCmac prf = new PrfAesCmac(key);
+    for (int length : new int[] {31, 32, 33, 4095, 4096, 4097, 4112, 4113, 10000}) {
+      byte[] message = Random.randBytes(length + 3);
+      byte[] expected = blockByBlockCmac(key, Arrays.copyOfRange(message, 3, length + 3));
+
+      byte[] output = new byte[16];
+      prf.compute(ByteBuffer.wrap(message, 3, length), output, 0, 16);
+      assertArrayEquals(expected, output);
+
+      ByteBuffer direct = ByteBuffer.allocateDirect(length);
+      direct.put(message, 3, length).flip();
+      prf.compute(direct, output, 0, 16);
+      assertArrayEquals(expected, output);
+    }
+  }
+
+  // CMAC as written in RFC 4493, with one AES call per block.
+  private static byte[] blockByBlockCmac(byte[] key, byte[] message) throws Exception {
+    Cipher aes = Cipher.getInstance("AES/ECB/NoPadding");
+    aes.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(key, "AES"));
+    byte[] subKey1 = AesUtil.dbl(aes.doFinal(new byte[16]));
+    byte[] subKey2 = AesUtil.dbl(subKey1);
+    int blocks = Math.max(1, (message.length + 15) / 16);
+    byte[] state = new byte[16];
+    for (int i = 0; i < blocks - 1; i++) {
+      state = aes.doFinal(Bytes.xor(state, Arrays.copyOfRange(message, 16 * i, 16 * i + 16)));
+    }
+    byte[] last = Arrays.copyOfRange(message, 16 * (blocks - 1), message.length);
+    if (last.length == 16) {
+      last = Bytes.xor(last, subKey1);
+    } else {
+      last = Bytes.xor(AesUtil.cmacPad(last), subKey2);
+    }
+    return aes.doFinal(Bytes.xor(state, last));
+  }
+
+  @Test
+  public void testComputeLongs() throws Exception {
+    Assume.assumeFalse(TinkFips.useOnlyFips());
+    PrfAesCmac prf = new PrfAesCmac(CMAC_TEST_VECTORS[0].key);
+    byte[][] inputs = new byte[CMAC_TEST_VECTORS.length][];
+    for (int i = 0; i < inputs.length; i++) {
+      inputs[i] = CMAC_TEST_VECTORS[i].message;
+    }
+    long[] output = new long[inputs.length];
+    prf.computeLongs(inputs, output);
+    for (int i = 0; i < inputs.length; i++) {
+      long expected = ByteBuffer.wrap(CMAC_TEST_VECTORS[i].tag).getLong();
+      assertEquals(expected, output[i]);
+      assertEquals(expected, prf.computeLong(inputs[i]));
+    }
+  }
+
+  @Test
+  public void testComputeIntoBuffer_invalidRange_throws() throws Exception {
+    Assume.assumeFalse(TinkFips.useOnlyFips());
+    PrfAesCmac prf = new PrfAesCmac(Random.randBytes(16));
+    assertThrows(
+        IndexOutOfBoundsException.class, () -> prf.compute(new byte[0], new byte[16], 1, 16));
+    assertThrows(
+        InvalidAlgorithmParameterException.class,
+        () -> prf.compute(new byte[0], new byte[32], 0, 17));
+    assertThrows(
+        IllegalArgumentException.class, () -> prf.computeLongs(new byte[2][0], new long[1]));
+  }
+
+  @Test
+  public void testConcurrentCallers_matchSingleThreaded() throws Exception {
+    Assume.assumeFalse(TinkFips.useOnlyFips());
+    final PrfAesCmac prf = new PrfAesCmac(Random.randBytes(16));
+    final byte[][] inputs = new byte[64][];
+    final byte[][] expected = new byte[inputs.length][];
+    for (int i = 0; i < inputs.length; i++) {
+      inputs[i] = Random.randBytes(i * 37);
+      expected[i] = prf.compute(inputs[i], 16);
+    }
+    final List<Throwable> errors = Collections.synchronizedList(new ArrayList<Throwable>());
+    Thread[] threads = new Thread[8];
+    for (int t = 0; t < threads.length; t++) {
+      final int offset = t;
+      threads[t] =
+          new Thread(
+              () -> {
+                try {
+                  for (int round = 0; round < 200; round++) {
+                    int i = (offset + round) % inputs.length;
+                    assertArrayEquals(expected[i], prf.compute(inputs[i], 16));
+                  }
+                } catch (Throwable e) {
+                  errors.add(e);
+                }
+              });
+      threads[t].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertEquals(Collections.emptyList(), errors);
+  }
 }
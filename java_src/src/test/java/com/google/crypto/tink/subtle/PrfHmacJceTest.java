@@ -26,6 +26,7 @@ import com.google.crypto.tink.config.TinkFips;
 import com.google.crypto.tink.config.internal.TinkFipsUtil;
 import com.google.crypto.tink.prf.Prf;
 import com.google.crypto.tink.testing.TestUtil;
+import java.nio.ByteBuffer;
 import java.security.GeneralSecurityException;
 import java.security.InvalidAlgorithmParameterException;
 import java.security.Security;
@@ -328,4 +329,57 @@ public class PrfHmacJceTest {
         GeneralSecurityException.class,
         () -> new PrfHmacJce("HMACSHA256", new SecretKeySpec(Random.randBytes(16), "HMAC")));
   }
+
+  @Test
+  public void testComputeIntoBuffer() throws Exception {
+    Assume.assumeTrue(!TinkFips.useOnlyFips() || TinkFipsUtil.fipsModuleAvailable());
+
+    for (MacTestVector t : HMAC_TEST_VECTORS) {
+      PrfHmacJce prf = new PrfHmacJce(t.algName, new SecretKeySpec(t.key, "HMAC"));
+      byte[] output = new byte[t.tag.length + 4];
+      prf.compute(t.message, output, 2, t.tag.length);
+      assertArrayEquals(t.tag, Arrays.copyOfRange(output, 2, t.tag.length + 2));
+
+      ByteBuffer direct = ByteBuffer.allocateDirect(t.message.length);
+      direct.put(t.message).flip();
+      prf.compute(direct, output, 0, 8);
+      assertArrayEquals(Arrays.copyOf(t.tag, 8), Arrays.copyOf(output, 8));
+      assertEquals(0, direct.remaining());
+
+      assertEquals(ByteBuffer.wrap(t.tag).getLong(), prf.computeLong(t.message));
+    }
+  }
+
+  @Test
+  public void testComputeLongs() throws Exception {
+    Assume.assumeTrue(!TinkFips.useOnlyFips() || TinkFipsUtil.fipsModuleAvailable());
+
+    PrfHmacJce prf = new PrfHmacJce("HMACSHA256", new SecretKeySpec(Random.randBytes(32), "HMAC"));
+    byte[][] inputs = new byte[100][];
+    for (int i = 0; i < inputs.length; i++) {
+      inputs[i] = Random.randBytes(i);
+    }
+    long[] output = new long[inputs.length];
+    prf.computeLongs(inputs, output);
+    for (int i = 0; i < inputs.length; i++) {
+      assertEquals(ByteBuffer.wrap(prf.compute(inputs[i], 8)).getLong(), output[i]);
+    }
+  }
+
+  @Test
+  public void testComputeIntoBuffer_invalidRange_throws() throws Exception {
+    Assume.assumeTrue(!TinkFips.useOnlyFips() || TinkFipsUtil.fipsModuleAvailable());
+
+    PrfHmacJce prf = new PrfHmacJce("HMACSHA256", new SecretKeySpec(Random.randBytes(32), "HMAC"));
+    assertThrows(
+        IndexOutOfBoundsException.class, () -> prf.compute(new byte[0], new byte[16], 1, 16));
+    assertThrows(
+        InvalidAlgorithmParameterException.class,
+        () -> prf.compute(new byte[0], new byte[64], 0, 33));
+    assertThrows(
+        IllegalArgumentException.class, () -> prf.computeLongs(new byte[2][0], new long[1]));
+    // A failed call must not leave input in the MAC.
+    byte[] message = Random.randBytes(10);
+    assertArrayEquals(prf.compute(message, 32), prf.compute(message, 32));
+  }
 }
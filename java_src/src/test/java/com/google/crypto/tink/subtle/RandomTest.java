@@ -0,0 +1,69 @@
+// Copyright 2022 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink.subtle;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link Random}. */
+@RunWith(JUnit4.class)
+public class RandomTest {
+  @Test
+  public void randBytes_returnsDistinctValues() throws Exception {
+    Set<String> values = new HashSet<>();
+    for (int i = 0; i < 1000; i++) {
+      values.add(Hex.encode(Random.randBytes(12)));
+    }
+    assertThat(values).hasSize(1000);
+  }
+
+  @Test
+  public void randBytes_largeSize() throws Exception {
+    byte[] rand = Random.randBytes(10000);
+    assertThat(rand).hasLength(10000);
+    assertThat(Arrays.equals(Arrays.copyOf(rand, 16), new byte[16])).isFalse();
+  }
+
+  @Test
+  public void randBytes_threadsGetDistinctValues() throws Exception {
+    final Set<String> values = new HashSet<>();
+    Thread[] threads = new Thread[4];
+    for (int i = 0; i < threads.length; i++) {
+      threads[i] =
+          new Thread(
+              () -> {
+                for (int j = 0; j < 500; j++) {
+                  String value = Hex.encode(Random.randBytes(16));
+                  synchronized (values) {
+                    values.add(value);
+                  }
+                }
+              });
+      threads[i].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertThat(values).hasSize(2000);
+  }
+}
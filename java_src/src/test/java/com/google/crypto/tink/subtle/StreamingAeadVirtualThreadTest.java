@@ -0,0 +1,72 @@
+// Copyright 2022 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+
+package com.google.crypto.tink.subtle;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assume.assumeTrue;
+
+import com.google.crypto.tink.StreamingAead;
+import com.google.crypto.tink.testing.VirtualThreadStreamingWorkload;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Tests that encrypting and decrypting streams don't pin virtual threads while they wait for the
+ * underlying channel. Skipped on JDKs without virtual threads.
+ */
+@RunWith(JUnit4.class)
+public class StreamingAeadVirtualThreadTest {
+  private static final int TASKS = 2000;
+  private static final int PLAINTEXT_SIZE = 20000;
+  private static final int CHUNK_SIZE = 1024;
+  private static final long IO_DELAY_MILLIS = 1;
+
+  @Before
+  public void setUp() {
+    assumeTrue(VirtualThreadStreamingWorkload.isSupported());
+  }
+
+  @Test
+  public void testAesGcmHkdfStreaming_doesNotPinVirtualThreads() throws Exception {
+    StreamingAead streamingAead =
+        new AesGcmHkdfStreaming(Random.randBytes(16), "HmacSha256", 16, 4096, 0);
+
+    VirtualThreadStreamingWorkload.Result result =
+        VirtualThreadStreamingWorkload.run(
+            streamingAead, TASKS, PLAINTEXT_SIZE, CHUNK_SIZE, IO_DELAY_MILLIS);
+
+    assertThat(result.tasks).isEqualTo(TASKS);
+    assertThat(result.pinnedEvents).isEqualTo(0);
+  }
+
+  @Test
+  public void testAesCtrHmacStreaming_doesNotPinVirtualThreads() throws Exception {
+    StreamingAead streamingAead =
+        new AesCtrHmacStreaming(
+            Random.randBytes(16), "HmacSha256", 16, "HmacSha256", 16, 4096, 0);
+
+    VirtualThreadStreamingWorkload.Result result =
+        VirtualThreadStreamingWorkload.run(
+            streamingAead, TASKS, PLAINTEXT_SIZE, CHUNK_SIZE, IO_DELAY_MILLIS);
+
+    assertThat(result.tasks).isEqualTo(TASKS);
+    assertThat(result.pinnedEvents).isEqualTo(0);
+  }
+}
@@ -0,0 +1,373 @@
+// Copyright 2022 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+
+package com.google.crypto.tink.util;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import com.google.api.client.http.HttpHeaders;
+import com.google.api.client.http.HttpStatusCodes;
+import com.google.api.client.http.LowLevelHttpRequest;
+import com.google.api.client.testing.http.MockHttpTransport;
+import com.google.api.client.testing.http.MockLowLevelHttpRequest;
+import com.google.api.client.testing.http.MockLowLevelHttpResponse;
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link ParsedKeysDownloader}. */
+@RunWith(JUnit4.class)
+public class ParsedKeysDownloaderTest {
+  private static final long INITIAL_CURRENT_TIME_IN_MILLIS = 1000000;
+  private static final long INITIAL_BACKOFF_MILLIS = 1000;
+  private static final long MAX_BACKOFF_MILLIS = 8000;
+
+  private final Queue<Runnable> backgroundTasks = new ArrayDeque<>();
+  private long currentTimeInMillis;
+  private String content;
+  private String cacheControl;
+  private int statusCode;
+  private int httpRequestCount;
+  private int parseCount;
+
+  @Before
+  public void setUp() {
+    currentTimeInMillis = INITIAL_CURRENT_TIME_IN_MILLIS;
+    content = "keys1";
+    cacheControl = "public, max-age=10";
+    statusCode = HttpStatusCodes.STATUS_CODE_OK;
+    httpRequestCount = 0;
+    parseCount = 0;
+  }
+
+  @Test
+  public void build_rejectsNonHttpsUrl() {
+    assertThrows(
+        IllegalArgumentException.class,
+        () ->
+            new ParsedKeysDownloader.Builder<String>()
+                .setUrl("http://abc")
+                .setParser(data -> data)
+                .build());
+  }
+
+  @Test
+  public void build_requiresParser() {
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> new ParsedKeysDownloader.Builder<String>().setUrl("https://abc").build());
+  }
+
+  @Test
+  public void get_parsesOncePerDownload() throws Exception {
+    ParsedKeysDownloader<String> downloader = newDownloader(TimeUnit.HOURS.toMillis(1));
+
+    assertThat(downloader.get()).isEqualTo("parsed keys1");
+    currentTimeInMillis += 4000;
+    assertThat(downloader.get()).isEqualTo("parsed keys1");
+    assertThat(downloader.get()).isEqualTo("parsed keys1");
+
+    assertThat(httpRequestCount).isEqualTo(1);
+    assertThat(parseCount).isEqualTo(1);
+    assertThat(backgroundTasks).isEmpty();
+  }
+
+  @Test
+  public void get_afterHalfOfMaxAge_refreshesInBackground() throws Exception {
+    ParsedKeysDownloader<String> downloader = newDownloader(TimeUnit.HOURS.toMillis(1));
+    downloader.get();
+    content = "keys2";
+
+    currentTimeInMillis += 5000;
+    assertThat(downloader.get()).isEqualTo("parsed keys1");
+    assertThat(backgroundTasks).hasSize(1);
+    // A refresh is already pending.
+    assertThat(downloader.get()).isEqualTo("parsed keys1");
+    assertThat(backgroundTasks).hasSize(1);
+
+    runBackgroundTasks();
+    assertThat(downloader.get()).isEqualTo("parsed keys2");
+    assertThat(httpRequestCount).isEqualTo(2);
+  }
+
+  @Test
+  public void get_staleResult_isReturnedWithoutBlocking() throws Exception {
+    ParsedKeysDownloader<String> downloader = newDownloader(TimeUnit.HOURS.toMillis(1));
+    downloader.get();
+    content = "keys2";
+
+    currentTimeInMillis += TimeUnit.MINUTES.toMillis(30);
+    assertThat(downloader.get()).isEqualTo("parsed keys1");
+    assertThat(httpRequestCount).isEqualTo(1);
+
+    runBackgroundTasks();
+    assertThat(downloader.get()).isEqualTo("parsed keys2");
+  }
+
+  @Test
+  public void get_resultOlderThanMaxStaleness_downloadsSynchronously() throws Exception {
+    ParsedKeysDownloader<String> downloader = newDownloader(TimeUnit.HOURS.toMillis(1));
+    downloader.get();
+    content = "keys2";
+
+    currentTimeInMillis += 10000 + TimeUnit.HOURS.toMillis(1);
+    assertThat(downloader.get()).isEqualTo("parsed keys2");
+    assertThat(httpRequestCount).isEqualTo(2);
+  }
+
+  @Test
+  public void get_staleWhileRevalidate_extendsMaxStaleness() throws Exception {
+    cacheControl = "max-age=10, stale-while-revalidate=100";
+    ParsedKeysDownloader<String> downloader = newDownloader(0);
+    downloader.get();
+    content = "keys2";
+
+    currentTimeInMillis += 50000;
+    assertThat(downloader.get()).isEqualTo("parsed keys1");
+    assertThat(httpRequestCount).isEqualTo(1);
+
+    currentTimeInMillis += 60000;
+    assertThat(downloader.get()).isEqualTo("parsed keys2");
+    assertThat(httpRequestCount).isEqualTo(2);
+  }
+
+  @Test
+  public void get_hugeMaxAgeAndStaleWhileRevalidate_isCachedWithoutOverflow() throws Exception {
+    cacheControl = "max-age=99999999999999999999, stale-while-revalidate=99999999999999999999";
+    ParsedKeysDownloader<String> downloader = newDownloader(TimeUnit.HOURS.toMillis(1));
+    assertThat(downloader.get()).isEqualTo("parsed keys1");
+    content = "keys2";
+
+    currentTimeInMillis += TimeUnit.DAYS.toMillis(365);
+    assertThat(downloader.get()).isEqualTo("parsed keys1");
+    assertThat(httpRequestCount).isEqualTo(1);
+    assertThat(backgroundTasks).isEmpty();
+  }
+
+  @Test
+  public void get_noCache_downloadsEveryTime() throws Exception {
+    cacheControl = "max-age=10, no-cache";
+    ParsedKeysDownloader<String> downloader = newDownloader(TimeUnit.HOURS.toMillis(1));
+
+    downloader.get();
+    downloader.get();
+
+    assertThat(httpRequestCount).isEqualTo(2);
+    assertThat(parseCount).isEqualTo(2);
+  }
+
+  @Test
+  public void get_parserFailsInBackground_keepsPreviousResult() throws Exception {
+    ParsedKeysDownloader<String> downloader = newDownloader(TimeUnit.HOURS.toMillis(1));
+    downloader.get();
+    content = "invalid";
+
+    currentTimeInMillis += 20000;
+    downloader.get();
+    runBackgroundTasks();
+
+    assertThat(downloader.get()).isEqualTo("parsed keys1");
+  }
+
+  @Test
+  public void get_afterFailedRefresh_waitsForJitteredBackoff() throws Exception {
+    ParsedKeysDownloader<String> downloader = newDownloader(TimeUnit.HOURS.toMillis(1));
+    downloader.get();
+    statusCode = HttpStatusCodes.STATUS_CODE_SERVER_ERROR;
+
+    currentTimeInMillis += 20000;
+    downloader.get();
+    runBackgroundTasks();
+    assertThat(httpRequestCount).isEqualTo(2);
+
+    // The first backoff is between half and all of INITIAL_BACKOFF_MILLIS.
+    currentTimeInMillis += INITIAL_BACKOFF_MILLIS / 2 - 1;
+    downloader.get();
+    assertThat(backgroundTasks).isEmpty();
+
+    currentTimeInMillis += INITIAL_BACKOFF_MILLIS / 2 + 1;
+    downloader.get();
+    assertThat(backgroundTasks).hasSize(1);
+    runBackgroundTasks();
+    assertThat(httpRequestCount).isEqualTo(3);
+
+    // The second backoff is between INITIAL_BACKOFF_MILLIS and twice that.
+    currentTimeInMillis += INITIAL_BACKOFF_MILLIS - 1;
+    downloader.get();
+    assertThat(backgroundTasks).isEmpty();
+
+    statusCode = HttpStatusCodes.STATUS_CODE_OK;
+    content = "keys2";
+    currentTimeInMillis += INITIAL_BACKOFF_MILLIS + 1;
+    downloader.get();
+    runBackgroundTasks();
+    assertThat(downloader.get()).isEqualTo("parsed keys2");
+  }
+
+  @Test
+  public void get_backoffIsBoundedByMaxBackoff() throws Exception {
+    ParsedKeysDownloader<String> downloader = newDownloader(TimeUnit.HOURS.toMillis(1));
+    downloader.get();
+    statusCode = HttpStatusCodes.STATUS_CODE_SERVER_ERROR;
+    currentTimeInMillis += 20000;
+
+    for (int i = 0; i < 10; i++) {
+      currentTimeInMillis += MAX_BACKOFF_MILLIS;
+      downloader.get();
+      assertThat(backgroundTasks).hasSize(1);
+      runBackgroundTasks();
+    }
+    assertThat(httpRequestCount).isEqualTo(11);
+  }
+
+  @Test
+  public void get_withoutResultDuringBackoff_throwsWithoutDownloading() throws Exception {
+    ParsedKeysDownloader<String> downloader = newDownloader(TimeUnit.HOURS.toMillis(1));
+    statusCode = HttpStatusCodes.STATUS_CODE_SERVER_ERROR;
+
+    assertThrows(IOException.class, downloader::get);
+    IOException e = assertThrows(IOException.class, downloader::get);
+    assertThat(e).hasMessageThat().contains("failed recently");
+    assertThat(httpRequestCount).isEqualTo(1);
+
+    statusCode = HttpStatusCodes.STATUS_CODE_OK;
+    currentTimeInMillis += INITIAL_BACKOFF_MILLIS;
+    assertThat(downloader.get()).isEqualTo("parsed keys1");
+  }
+
+  @Test
+  public void get_parserRejectsFirstDownload_throws() throws Exception {
+    content = "invalid";
+    ParsedKeysDownloader<String> downloader = newDownloader(TimeUnit.HOURS.toMillis(1));
+
+    assertThrows(GeneralSecurityException.class, downloader::get);
+  }
+
+  @Test
+  public void refreshInBackground_downloadsOnce() throws Exception {
+    ParsedKeysDownloader<String> downloader = newDownloader(TimeUnit.HOURS.toMillis(1));
+
+    downloader.refreshInBackground();
+    downloader.refreshInBackground();
+    assertThat(backgroundTasks).hasSize(1);
+    runBackgroundTasks();
+
+    assertThat(downloader.get()).isEqualTo("parsed keys1");
+    assertThat(httpRequestCount).isEqualTo(1);
+  }
+
+  @Test
+  public void refreshInBackground_rejectedByExecutor_doesNotThrow() throws Exception {
+    ParsedKeysDownloader<String> downloader =
+        new ParsedKeysDownloader<String>(
+            command -> {
+              throw new java.util.concurrent.RejectedExecutionException();
+            },
+            newHttpTransport(),
+            "https://someUrl",
+            data -> data,
+            0,
+            INITIAL_BACKOFF_MILLIS,
+            MAX_BACKOFF_MILLIS);
+
+    downloader.refreshInBackground();
+    assertThat(downloader.get()).isEqualTo("keys1");
+  }
+
+  @Test
+  public void getMaxAgeInMillis_subtractsAge() {
+    HttpHeaders headers = new HttpHeaders().setCacheControl("public, max-age=100").setAge(30L);
+
+    assertThat(ParsedKeysDownloader.getMaxAgeInMillis(headers)).isEqualTo(70000L);
+  }
+
+  @Test
+  public void getMaxAgeInMillis_withoutCacheControl_isZero() {
+    assertThat(ParsedKeysDownloader.getMaxAgeInMillis(new HttpHeaders())).isEqualTo(0L);
+  }
+
+  @Test
+  public void getMaxAgeInMillis_noStore_isZero() {
+    HttpHeaders headers = new HttpHeaders().setCacheControl("max-age=100, no-store");
+
+    assertThat(ParsedKeysDownloader.getMaxAgeInMillis(headers)).isEqualTo(0L);
+  }
+
+  @Test
+  public void getMaxAgeInMillis_hugeMaxAge_isClamped() {
+    HttpHeaders headers = new HttpHeaders().setCacheControl("max-age=99999999999999999999");
+
+    assertThat(ParsedKeysDownloader.getMaxAgeInMillis(headers)).isEqualTo(Long.MAX_VALUE);
+  }
+
+  private void runBackgroundTasks() {
+    Runnable task;
+    while ((task = backgroundTasks.poll()) != null) {
+      task.run();
+    }
+  }
+
+  private ParsedKeysDownloader<String> newDownloader(long maxStalenessMillis) {
+    Executor queueingExecutor = backgroundTasks::add;
+    return new ParsedKeysDownloader<String>(
+        queueingExecutor,
+        newHttpTransport(),
+        "https://someUrl",
+        data -> {
+          parseCount++;
+          if (!data.startsWith("keys")) {
+            throw new GeneralSecurityException("invalid keys");
+          }
+          return "parsed " + data;
+        },
+        maxStalenessMillis,
+        INITIAL_BACKOFF_MILLIS,
+        MAX_BACKOFF_MILLIS) {
+      @Override
+      long getCurrentTimeInMillis() {
+        return currentTimeInMillis;
+      }
+    };
+  }
+
+  private MockHttpTransport newHttpTransport() {
+    return new MockHttpTransport() {
+      @Override
+      public LowLevelHttpRequest buildRequest(String method, String url) throws IOException {
+        httpRequestCount++;
+        assertThat(url).isEqualTo("https://someUrl");
+        assertThat(method).isEqualTo("GET");
+        MockLowLevelHttpResponse response =
+            new MockLowLevelHttpResponse().setContent(content).setStatusCode(statusCode);
+        if (cacheControl != null) {
+          response.addHeader("Cache-Control", cacheControl);
+        }
+        MockLowLevelHttpRequest request = new MockLowLevelHttpRequest(url);
+        request.setResponse(response);
+        return request;
+      }
+    };
+  }
+}
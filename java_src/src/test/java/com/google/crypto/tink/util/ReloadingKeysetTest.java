@@ -0,0 +1,219 @@
+// Copyright 2022 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink.util;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import com.google.crypto.tink.Aead;
+import com.google.crypto.tink.BinaryKeysetWriter;
+import com.google.crypto.tink.CleartextKeysetHandle;
+import com.google.crypto.tink.JsonKeysetWriter;
+import com.google.crypto.tink.KeyTemplates;
+import com.google.crypto.tink.KeysetHandle;
+import com.google.crypto.tink.Mac;
+import com.google.crypto.tink.aead.AeadConfig;
+import com.google.crypto.tink.mac.MacConfig;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.util.concurrent.TimeUnit;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link ReloadingKeyset}. */
+@RunWith(JUnit4.class)
+public class ReloadingKeysetTest {
+  @Rule public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+  @BeforeClass
+  public static void setUp() throws Exception {
+    AeadConfig.register();
+    MacConfig.register();
+  }
+
+  private static void writeJson(KeysetHandle handle, Path path) throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    CleartextKeysetHandle.write(handle, JsonKeysetWriter.withOutputStream(out));
+    Files.write(path, out.toByteArray());
+  }
+
+  private static void writeEncryptedBinary(KeysetHandle handle, Aead masterKey, Path path)
+      throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    handle.write(BinaryKeysetWriter.withOutputStream(out), masterKey);
+    Files.write(path, out.toByteArray());
+  }
+
+  private static ReloadingKeyset.Builder newBuilder(Path path) {
+    // Tests call reload() explicitly.
+    return new ReloadingKeyset.Builder().setPath(path).setPollingInterval(1, TimeUnit.HOURS);
+  }
+
+  @Test
+  public void reload_publishesNewKeysetBehindSamePrimitive() throws Exception {
+    Path path = tmpFolder.newFile().toPath();
+    KeysetHandle first = KeysetHandle.generateNew(KeyTemplates.get("AES128_GCM"));
+    writeJson(first, path);
+    byte[] associatedData = "ad".getBytes(StandardCharsets.UTF_8);
+
+    try (ReloadingKeyset keyset = newBuilder(path).allowCleartextKeyset().build()) {
+      Aead aead = keyset.getPrimitive(Aead.class);
+      byte[] ciphertext1 = aead.encrypt(new byte[] {1}, associatedData);
+      assertThat(first.getPrimitive(Aead.class).decrypt(ciphertext1, associatedData))
+          .isEqualTo(new byte[] {1});
+      assertThat(keyset.reload()).isFalse();
+
+      KeysetHandle second = KeysetHandle.generateNew(KeyTemplates.get("AES128_GCM"));
+      writeJson(second, path);
+      assertThat(keyset.reload()).isTrue();
+
+      byte[] ciphertext2 = aead.encrypt(new byte[] {2}, associatedData);
+      assertThat(second.getPrimitive(Aead.class).decrypt(ciphertext2, associatedData))
+          .isEqualTo(new byte[] {2});
+      assertThrows(
+          GeneralSecurityException.class, () -> aead.decrypt(ciphertext1, associatedData));
+      assertThat(keyset.getKeysetHandle().getKeysetInfo())
+          .isEqualTo(second.getKeysetInfo());
+    }
+  }
+
+  @Test
+  public void reload_invalidFile_keepsPreviousKeyset() throws Exception {
+    Path path = tmpFolder.newFile().toPath();
+    KeysetHandle handle = KeysetHandle.generateNew(KeyTemplates.get("HMAC_SHA256_128BITTAG"));
+    writeJson(handle, path);
+
+    try (ReloadingKeyset keyset = newBuilder(path).allowCleartextKeyset().build()) {
+      Mac mac = keyset.getPrimitive(Mac.class);
+      byte[] tag = mac.computeMac(new byte[] {1, 2, 3});
+
+      Files.write(path, "not a keyset".getBytes(StandardCharsets.UTF_8));
+      assertThrows(Exception.class, keyset::reload);
+
+      mac.verifyMac(tag, new byte[] {1, 2, 3});
+      handle.getPrimitive(Mac.class).verifyMac(mac.computeMac(new byte[] {4}), new byte[] {4});
+    }
+  }
+
+  @Test
+  public void reload_primitiveNotInNewKeyset_keepsPreviousKeyset() throws Exception {
+    Path path = tmpFolder.newFile().toPath();
+    writeJson(KeysetHandle.generateNew(KeyTemplates.get("AES128_GCM")), path);
+
+    try (ReloadingKeyset keyset = newBuilder(path).allowCleartextKeyset().build()) {
+      Aead aead = keyset.getPrimitive(Aead.class);
+
+      writeJson(KeysetHandle.generateNew(KeyTemplates.get("HMAC_SHA256_128BITTAG")), path);
+      assertThrows(GeneralSecurityException.class, keyset::reload);
+
+      byte[] ciphertext = aead.encrypt(new byte[] {1}, new byte[0]);
+      assertThat(aead.decrypt(ciphertext, new byte[0])).isEqualTo(new byte[] {1});
+    }
+  }
+
+  @Test
+  public void encryptedBinaryKeyset() throws Exception {
+    Aead masterKey =
+        KeysetHandle.generateNew(KeyTemplates.get("AES256_GCM")).getPrimitive(Aead.class);
+    Path path = tmpFolder.newFile().toPath();
+    KeysetHandle handle = KeysetHandle.generateNew(KeyTemplates.get("AES128_GCM"));
+    writeEncryptedBinary(handle, masterKey, path);
+
+    try (ReloadingKeyset keyset =
+        newBuilder(path)
+            .setFormat(ReloadingKeyset.Format.BINARY)
+            .withMasterKey(masterKey)
+            .build()) {
+      byte[] ciphertext = handle.getPrimitive(Aead.class).encrypt(new byte[] {1}, new byte[0]);
+      assertThat(keyset.getPrimitive(Aead.class).decrypt(ciphertext, new byte[0]))
+          .isEqualTo(new byte[] {1});
+    }
+  }
+
+  @Test
+  public void build_cleartextKeysetWithMasterKey_throws() throws Exception {
+    Aead masterKey =
+        KeysetHandle.generateNew(KeyTemplates.get("AES256_GCM")).getPrimitive(Aead.class);
+    Path path = tmpFolder.newFile().toPath();
+    writeJson(KeysetHandle.generateNew(KeyTemplates.get("AES128_GCM")), path);
+
+    assertThrows(Exception.class, () -> newBuilder(path).withMasterKey(masterKey).build());
+  }
+
+  @Test
+  public void build_withoutMasterKeyOrCleartext_throws() throws Exception {
+    Path path = tmpFolder.newFile().toPath();
+    writeJson(KeysetHandle.generateNew(KeyTemplates.get("AES128_GCM")), path);
+
+    assertThrows(IllegalArgumentException.class, () -> newBuilder(path).build());
+  }
+
+  @Test
+  public void build_masterKeyAndCleartext_throws() throws Exception {
+    Aead masterKey =
+        KeysetHandle.generateNew(KeyTemplates.get("AES256_GCM")).getPrimitive(Aead.class);
+    Path path = tmpFolder.newFile().toPath();
+    writeJson(KeysetHandle.generateNew(KeyTemplates.get("AES128_GCM")), path);
+
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> newBuilder(path).withMasterKey(masterKey).allowCleartextKeyset().build());
+  }
+
+  @Test
+  public void getPrimitive_unsupportedClass_throws() throws Exception {
+    Path path = tmpFolder.newFile().toPath();
+    writeJson(KeysetHandle.generateNew(KeyTemplates.get("AES128_GCM")), path);
+
+    try (ReloadingKeyset keyset = newBuilder(path).allowCleartextKeyset().build()) {
+      assertThrows(GeneralSecurityException.class, () -> keyset.getPrimitive(String.class));
+    }
+  }
+
+  @Test
+  public void polling_picksUpChanges() throws Exception {
+    Path path = tmpFolder.newFile().toPath();
+    writeJson(KeysetHandle.generateNew(KeyTemplates.get("AES128_GCM")), path);
+
+    try (ReloadingKeyset keyset =
+        new ReloadingKeyset.Builder()
+            .setPath(path)
+            .allowCleartextKeyset()
+            .setPollingInterval(10, TimeUnit.MILLISECONDS)
+            .build()) {
+      Aead aead = keyset.getPrimitive(Aead.class);
+      KeysetHandle second = KeysetHandle.generateNew(KeyTemplates.get("AES128_GCM"));
+      writeJson(second, path);
+
+      long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+      while (!keyset.getKeysetHandle().getKeysetInfo().equals(second.getKeysetInfo())
+          && System.nanoTime() < deadline) {
+        Thread.sleep(10);
+      }
+      byte[] ciphertext = aead.encrypt(new byte[] {1}, new byte[0]);
+      assertThat(second.getPrimitive(Aead.class).decrypt(ciphertext, new byte[0]))
+          .isEqualTo(new byte[] {1});
+    }
+  }
+}
@@ -0,0 +1,235 @@
+// Copyright 2022 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink.util;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import com.google.crypto.tink.Aead;
+import com.google.crypto.tink.KeyTemplates;
+import com.google.crypto.tink.KeysetHandle;
+import com.google.crypto.tink.KeysetManager;
+import com.google.crypto.tink.aead.AeadConfig;
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link TenantKeysetCache}. */
+@RunWith(JUnit4.class)
+public class TenantKeysetCacheTest {
+  @BeforeClass
+  public static void setUp() throws Exception {
+    AeadConfig.register();
+  }
+
+  /** Generates one keyset per tenant and counts how often each tenant is loaded. */
+  private static final class CountingLoader implements TenantKeysetCache.Loader {
+    final ConcurrentHashMap<String, KeysetHandle> keysets = new ConcurrentHashMap<>();
+    final AtomicInteger loadCount = new AtomicInteger();
+    volatile CountDownLatch release = new CountDownLatch(0);
+
+    @Override
+    public KeysetHandle load(String tenantId) throws GeneralSecurityException, IOException {
+      loadCount.incrementAndGet();
+      try {
+        release.await();
+      } catch (InterruptedException e) {
+        throw new IOException(e);
+      }
+      if (tenantId.startsWith("missing")) {
+        throw new IOException("no keyset for " + tenantId);
+      }
+      KeysetHandle handle = keysets.get(tenantId);
+      if (handle == null) {
+        handle = KeysetHandle.generateNew(KeyTemplates.get("AES128_GCM"));
+        KeysetHandle previous = keysets.putIfAbsent(tenantId, handle);
+        if (previous != null) {
+          handle = previous;
+        }
+      }
+      return handle;
+    }
+  }
+
+  @Test
+  public void get_returnsPrimitiveOfTenant() throws Exception {
+    CountingLoader loader = new CountingLoader();
+    TenantKeysetCache<Aead> cache =
+        new TenantKeysetCache.Builder<>(Aead.class).setLoader(loader).build();
+
+    byte[] ciphertext = cache.get("tenant1").encrypt(new byte[] {1}, new byte[0]);
+
+    Aead expected = loader.keysets.get("tenant1").getPrimitive(Aead.class);
+    assertThat(expected.decrypt(ciphertext, new byte[0])).isEqualTo(new byte[] {1});
+    assertThrows(
+        GeneralSecurityException.class,
+        () -> cache.get("tenant2").decrypt(ciphertext, new byte[0]));
+  }
+
+  @Test
+  public void get_cachesPrimitive() throws Exception {
+    CountingLoader loader = new CountingLoader();
+    TenantKeysetCache<Aead> cache =
+        new TenantKeysetCache.Builder<>(Aead.class).setLoader(loader).build();
+
+    Aead first = cache.get("tenant");
+    Aead second = cache.get("tenant");
+
+    assertThat(second).isSameInstanceAs(first);
+    assertThat(loader.loadCount.get()).isEqualTo(1);
+    TenantKeysetCache.Stats stats = cache.getStats();
+    assertThat(stats.hitCount()).isEqualTo(1);
+    assertThat(stats.missCount()).isEqualTo(1);
+    assertThat(stats.hitRate()).isEqualTo(0.5);
+  }
+
+  @Test
+  public void get_concurrentRequestsForColdTenant_loadOnce() throws Exception {
+    final CountingLoader loader = new CountingLoader();
+    loader.release = new CountDownLatch(1);
+    final TenantKeysetCache<Aead> cache =
+        new TenantKeysetCache.Builder<>(Aead.class).setLoader(loader).build();
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<Aead>> futures = new ArrayList<>();
+      for (int i = 0; i < 8; i++) {
+        futures.add(executor.submit((Callable<Aead>) () -> cache.get("tenant")));
+      }
+      // Give all threads the chance to ask for the tenant while the load is blocked.
+      Thread.sleep(100);
+      loader.release.countDown();
+      Aead first = futures.get(0).get();
+      for (Future<Aead> future : futures) {
+        assertThat(future.get()).isSameInstanceAs(first);
+      }
+    } finally {
+      executor.shutdown();
+    }
+    assertThat(loader.loadCount.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void get_failedLoadIsNotCached() throws Exception {
+    CountingLoader loader = new CountingLoader();
+    TenantKeysetCache<Aead> cache =
+        new TenantKeysetCache.Builder<>(Aead.class).setLoader(loader).build();
+
+    assertThrows(IOException.class, () -> cache.get("missing"));
+    assertThrows(IOException.class, () -> cache.get("missing"));
+
+    assertThat(loader.loadCount.get()).isEqualTo(2);
+    assertThat(cache.getStats().loadFailureCount()).isEqualTo(2);
+    assertThat(cache.size()).isEqualTo(0);
+  }
+
+  @Test
+  public void maximumSize_evictsLeastRecentlyUsed() throws Exception {
+    CountingLoader loader = new CountingLoader();
+    TenantKeysetCache<Aead> cache =
+        new TenantKeysetCache.Builder<>(Aead.class).setLoader(loader).setMaximumSize(2).build();
+
+    cache.get("a");
+    cache.get("b");
+    cache.get("a");
+    cache.get("c");
+
+    assertThat(cache.size()).isEqualTo(2);
+    assertThat(cache.getStats().evictionCount()).isEqualTo(1);
+    cache.get("a");
+    assertThat(loader.loadCount.get()).isEqualTo(3);
+    cache.get("b");
+    assertThat(loader.loadCount.get()).isEqualTo(4);
+  }
+
+  @Test
+  public void maximumWeight_countsKeys() throws Exception {
+    CountingLoader loader = new CountingLoader();
+    TenantKeysetCache<Aead> cache =
+        new TenantKeysetCache.Builder<>(Aead.class).setLoader(loader).setMaximumWeight(3).build();
+    KeysetHandle twoKeys =
+        KeysetManager.withKeysetHandle(KeysetHandle.generateNew(KeyTemplates.get("AES128_GCM")))
+            .add(KeyTemplates.get("AES128_GCM"))
+            .getKeysetHandle();
+    loader.keysets.put("big", twoKeys);
+
+    cache.get("big");
+    cache.get("small1");
+    assertThat(cache.size()).isEqualTo(2);
+    cache.get("small2");
+
+    assertThat(cache.size()).isEqualTo(2);
+    assertThat(cache.getStats().evictionCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void expireAfterWrite_reloads() throws Exception {
+    CountingLoader loader = new CountingLoader();
+    final long[] now = {0};
+    TenantKeysetCache<Aead> cache =
+        new TenantKeysetCache<Aead>(
+            new TenantKeysetCache.Builder<>(Aead.class)
+                .setLoader(loader)
+                .setExpireAfterWrite(1, TimeUnit.MINUTES)) {
+          @Override
+          long currentTimeNanos() {
+            return now[0];
+          }
+        };
+
+    cache.get("tenant");
+    now[0] += TimeUnit.SECONDS.toNanos(59);
+    cache.get("tenant");
+    assertThat(loader.loadCount.get()).isEqualTo(1);
+    now[0] += TimeUnit.SECONDS.toNanos(1);
+    cache.get("tenant");
+    assertThat(loader.loadCount.get()).isEqualTo(2);
+  }
+
+  @Test
+  public void invalidate_reloads() throws Exception {
+    CountingLoader loader = new CountingLoader();
+    TenantKeysetCache<Aead> cache =
+        new TenantKeysetCache.Builder<>(Aead.class).setLoader(loader).build();
+
+    cache.get("tenant");
+    cache.invalidate("tenant");
+    cache.get("tenant");
+    cache.invalidateAll();
+    cache.get("tenant");
+
+    assertThat(loader.loadCount.get()).isEqualTo(3);
+  }
+
+  @Test
+  public void build_withoutLoader_throws() throws Exception {
+    assertThrows(
+        IllegalArgumentException.class, () -> new TenantKeysetCache.Builder<>(Aead.class).build());
+  }
+}
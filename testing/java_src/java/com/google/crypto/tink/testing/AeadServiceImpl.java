@@ -17,9 +17,6 @@
 package com.google.crypto.tink.testing;
 
 import com.google.crypto.tink.Aead;
-import com.google.crypto.tink.BinaryKeysetReader;
-import com.google.crypto.tink.CleartextKeysetHandle;
-import com.google.crypto.tink.KeysetHandle;
 import com.google.crypto.tink.proto.testing.AeadDecryptRequest;
 import com.google.crypto.tink.proto.testing.AeadDecryptResponse;
 import com.google.crypto.tink.proto.testing.AeadEncryptRequest;
@@ -44,10 +41,7 @@ public final class AeadServiceImpl extends AeadImplBase {
       AeadEncryptRequest request, StreamObserver<AeadEncryptResponse> responseObserver) {
     AeadEncryptResponse response;
     try {
-      KeysetHandle keysetHandle =
-          CleartextKeysetHandle.read(
-              BinaryKeysetReader.withBytes(request.getKeyset().toByteArray()));
-      Aead aead = keysetHandle.getPrimitive(Aead.class);
+      Aead aead = KeysetCache.getPrimitive(request.getKeyset(), Aead.class);
       byte[] ciphertext =
           aead.encrypt(
               request.getPlaintext().toByteArray(), request.getAssociatedData().toByteArray());
@@ -69,10 +63,7 @@ public final class AeadServiceImpl extends AeadImplBase {
       AeadDecryptRequest request, StreamObserver<AeadDecryptResponse> responseObserver) {
     AeadDecryptResponse response;
     try {
-      KeysetHandle keysetHandle =
-          CleartextKeysetHandle.read(
-              BinaryKeysetReader.withBytes(request.getKeyset().toByteArray()));
-      Aead aead = keysetHandle.getPrimitive(Aead.class);
+      Aead aead = KeysetCache.getPrimitive(request.getKeyset(), Aead.class);
       byte[] plaintext =
           aead.decrypt(
               request.getCiphertext().toByteArray(), request.getAssociatedData().toByteArray());
@@ -0,0 +1,309 @@
+// Copyright 2022 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink.testing;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.crypto.tink.Aead;
+import com.google.crypto.tink.DeterministicAead;
+import com.google.crypto.tink.HybridDecrypt;
+import com.google.crypto.tink.HybridEncrypt;
+import com.google.crypto.tink.KeysetHandle;
+import com.google.crypto.tink.Mac;
+import com.google.crypto.tink.PublicKeySign;
+import com.google.crypto.tink.PublicKeyVerify;
+import com.google.crypto.tink.StreamingAead;
+import com.google.crypto.tink.prf.PrfSet;
+import com.google.crypto.tink.proto.testing.BenchmarkGrpc.BenchmarkImplBase;
+import com.google.crypto.tink.proto.testing.BenchmarkRequest;
+import com.google.crypto.tink.proto.testing.BenchmarkResponse;
+import com.google.protobuf.InvalidProtocolBufferException;
+import io.grpc.Status;
+import io.grpc.stub.StreamObserver;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+
+/**
+ * Implements a gRPC Benchmark Testing service.
+ *
+ * <p>The operations run in the server process, one after the other, so the results do not include
+ * any RPC overhead and can be compared with the servers of the other languages.
+ */
+public final class BenchmarkServiceImpl extends BenchmarkImplBase {
+  // Bounds the memory used for the latencies, 8 bytes per operation.
+  static final int MAX_OPERATIONS = 10_000_000;
+  static final int MAX_MESSAGE_SIZE = 64 * 1024 * 1024;
+  private static final byte[] ASSOCIATED_DATA = "associated data".getBytes(UTF_8);
+  private static final int PRF_OUTPUT_LENGTH = 16;
+
+  /** A single operation of the benchmark, bound to its primitive and input. */
+  private interface Operation {
+    void run() throws GeneralSecurityException, IOException;
+  }
+
+  public BenchmarkServiceImpl() throws GeneralSecurityException {
+  }
+
+  /** Runs a benchmark. */
+  @Override
+  public void run(BenchmarkRequest request, StreamObserver<BenchmarkResponse> responseObserver) {
+    BenchmarkResponse response;
+    try {
+      if (request.getOperations() <= 0 || request.getOperations() > MAX_OPERATIONS) {
+        throw new GeneralSecurityException(
+            "operations must be between 1 and " + MAX_OPERATIONS);
+      }
+      if (request.getMessageSize() < 0 || request.getMessageSize() > MAX_MESSAGE_SIZE) {
+        throw new GeneralSecurityException("message_size must be at most " + MAX_MESSAGE_SIZE);
+      }
+      if (request.getWarmupOperations() < 0 || request.getWarmupOperations() > MAX_OPERATIONS) {
+        throw new GeneralSecurityException(
+            "warmup_operations must be at most " + MAX_OPERATIONS);
+      }
+      Operation operation = newOperation(request);
+      response =
+          BenchmarkResponse.newBuilder()
+              .setOutput(measure(operation, request.getWarmupOperations(), request.getOperations()))
+              .build();
+    } catch (GeneralSecurityException | InvalidProtocolBufferException e) {
+      response = BenchmarkResponse.newBuilder().setErr(e.toString()).build();
+    } catch (IOException e) {
+      responseObserver.onError(Status.UNKNOWN.withDescription(e.getMessage()).asException());
+      return;
+    }
+    responseObserver.onNext(response);
+    responseObserver.onCompleted();
+  }
+
+  private static BenchmarkResponse.Output measure(
+      Operation operation, int warmupOperations, int operations)
+      throws GeneralSecurityException, IOException {
+    for (int i = 0; i < warmupOperations; i++) {
+      operation.run();
+    }
+    long[] latencies = new long[operations];
+    long start = System.nanoTime();
+    long previous = start;
+    for (int i = 0; i < operations; i++) {
+      operation.run();
+      long now = System.nanoTime();
+      latencies[i] = now - previous;
+      previous = now;
+    }
+    long totalNanos = previous - start;
+    Arrays.sort(latencies);
+    return BenchmarkResponse.Output.newBuilder()
+        .setOperations(operations)
+        .setTotalNanos(totalNanos)
+        .setOperationsPerSecond(operations * 1e9 / Math.max(1, totalNanos))
+        .setP50LatencyNanos(percentile(latencies, 50))
+        .setP90LatencyNanos(percentile(latencies, 90))
+        .setP99LatencyNanos(percentile(latencies, 99))
+        .setMaxLatencyNanos(latencies[operations - 1])
+        .build();
+  }
+
+  /** Returns the nearest-rank percentile of the sorted, non-empty {@code values}. */
+  private static long percentile(long[] sortedValues, int percent) {
+    int rank = (int) Math.ceil(percent / 100.0 * sortedValues.length);
+    return sortedValues[Math.max(0, rank - 1)];
+  }
+
+  private static Operation newOperation(BenchmarkRequest request)
+      throws GeneralSecurityException, IOException {
+    final byte[] message = new byte[request.getMessageSize()];
+    switch (request.getOperation()) {
+      case BENCHMARK_AEAD_ENCRYPT:
+        {
+          final Aead aead = KeysetCache.getPrimitive(request.getKeyset(), Aead.class);
+          return new Operation() {
+            @Override
+            public void run() throws GeneralSecurityException {
+              aead.encrypt(message, ASSOCIATED_DATA);
+            }
+          };
+        }
+      case BENCHMARK_AEAD_DECRYPT:
+        {
+          final Aead aead = KeysetCache.getPrimitive(request.getKeyset(), Aead.class);
+          final byte[] ciphertext = aead.encrypt(message, ASSOCIATED_DATA);
+          return new Operation() {
+            @Override
+            public void run() throws GeneralSecurityException {
+              aead.decrypt(ciphertext, ASSOCIATED_DATA);
+            }
+          };
+        }
+      case BENCHMARK_DETERMINISTIC_AEAD_ENCRYPT:
+        {
+          final DeterministicAead daead =
+              KeysetCache.getPrimitive(request.getKeyset(), DeterministicAead.class);
+          return new Operation() {
+            @Override
+            public void run() throws GeneralSecurityException {
+              daead.encryptDeterministically(message, ASSOCIATED_DATA);
+            }
+          };
+        }
+      case BENCHMARK_DETERMINISTIC_AEAD_DECRYPT:
+        {
+          final DeterministicAead daead =
+              KeysetCache.getPrimitive(request.getKeyset(), DeterministicAead.class);
+          final byte[] ciphertext = daead.encryptDeterministically(message, ASSOCIATED_DATA);
+          return new Operation() {
+            @Override
+            public void run() throws GeneralSecurityException {
+              daead.decryptDeterministically(ciphertext, ASSOCIATED_DATA);
+            }
+          };
+        }
+      case BENCHMARK_STREAMING_AEAD_ENCRYPT:
+        {
+          final StreamingAead streamingAead =
+              KeysetCache.getPrimitive(request.getKeyset(), StreamingAead.class);
+          final ByteArrayOutputStream ciphertextStream = new ByteArrayOutputStream();
+          return new Operation() {
+            @Override
+            public void run() throws GeneralSecurityException, IOException {
+              ciphertextStream.reset();
+              try (OutputStream encryptingStream =
+                  streamingAead.newEncryptingStream(ciphertextStream, ASSOCIATED_DATA)) {
+                encryptingStream.write(message);
+              }
+            }
+          };
+        }
+      case BENCHMARK_STREAMING_AEAD_DECRYPT:
+        {
+          final StreamingAead streamingAead =
+              KeysetCache.getPrimitive(request.getKeyset(), StreamingAead.class);
+          ByteArrayOutputStream ciphertextStream = new ByteArrayOutputStream();
+          try (OutputStream encryptingStream =
+              streamingAead.newEncryptingStream(ciphertextStream, ASSOCIATED_DATA)) {
+            encryptingStream.write(message);
+          }
+          final byte[] ciphertext = ciphertextStream.toByteArray();
+          final byte[] buffer = new byte[StreamingAeadServiceImpl.BUFFER_SIZE];
+          return new Operation() {
+            @Override
+            public void run() throws GeneralSecurityException, IOException {
+              try (InputStream decryptingStream =
+                  streamingAead.newDecryptingStream(
+                      new ByteArrayInputStream(ciphertext), ASSOCIATED_DATA)) {
+                while (decryptingStream.read(buffer) != -1) {
+                  // The plaintext is discarded.
+                }
+              }
+            }
+          };
+        }
+      case BENCHMARK_MAC_COMPUTE:
+        {
+          final Mac mac = KeysetCache.getPrimitive(request.getKeyset(), Mac.class);
+          return new Operation() {
+            @Override
+            public void run() throws GeneralSecurityException {
+              mac.computeMac(message);
+            }
+          };
+        }
+      case BENCHMARK_MAC_VERIFY:
+        {
+          final Mac mac = KeysetCache.getPrimitive(request.getKeyset(), Mac.class);
+          final byte[] tag = mac.computeMac(message);
+          return new Operation() {
+            @Override
+            public void run() throws GeneralSecurityException {
+              mac.verifyMac(tag, message);
+            }
+          };
+        }
+      case BENCHMARK_PRF_COMPUTE:
+        {
+          final PrfSet prfSet = KeysetCache.getPrimitive(request.getKeyset(), PrfSet.class);
+          return new Operation() {
+            @Override
+            public void run() throws GeneralSecurityException {
+              prfSet.computePrimary(message, PRF_OUTPUT_LENGTH);
+            }
+          };
+        }
+      case BENCHMARK_HYBRID_ENCRYPT:
+        {
+          final HybridEncrypt hybridEncrypt =
+              publicKeysetHandle(request).getPrimitive(HybridEncrypt.class);
+          return new Operation() {
+            @Override
+            public void run() throws GeneralSecurityException {
+              hybridEncrypt.encrypt(message, ASSOCIATED_DATA);
+            }
+          };
+        }
+      case BENCHMARK_HYBRID_DECRYPT:
+        {
+          final HybridDecrypt hybridDecrypt =
+              KeysetCache.getPrimitive(request.getKeyset(), HybridDecrypt.class);
+          final byte[] ciphertext =
+              publicKeysetHandle(request)
+                  .getPrimitive(HybridEncrypt.class)
+                  .encrypt(message, ASSOCIATED_DATA);
+          return new Operation() {
+            @Override
+            public void run() throws GeneralSecurityException {
+              hybridDecrypt.decrypt(ciphertext, ASSOCIATED_DATA);
+            }
+          };
+        }
+      case BENCHMARK_SIGN:
+        {
+          final PublicKeySign signer =
+              KeysetCache.getPrimitive(request.getKeyset(), PublicKeySign.class);
+          return new Operation() {
+            @Override
+            public void run() throws GeneralSecurityException {
+              signer.sign(message);
+            }
+          };
+        }
+      case BENCHMARK_VERIFY:
+        {
+          final PublicKeyVerify verifier =
+              publicKeysetHandle(request).getPrimitive(PublicKeyVerify.class);
+          final byte[] signature =
+              KeysetCache.getPrimitive(request.getKeyset(), PublicKeySign.class).sign(message);
+          return new Operation() {
+            @Override
+            public void run() throws GeneralSecurityException {
+              verifier.verify(signature, message);
+            }
+          };
+        }
+      default:
+        throw new GeneralSecurityException("unsupported operation: " + request.getOperation());
+    }
+  }
+
+  private static KeysetHandle publicKeysetHandle(BenchmarkRequest request)
+      throws GeneralSecurityException, IOException {
+    return KeysetCache.getKeysetHandle(request.getKeyset()).getPublicKeysetHandle();
+  }
+}
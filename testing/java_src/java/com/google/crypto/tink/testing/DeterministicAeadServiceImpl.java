@@ -16,10 +16,7 @@
 
 package com.google.crypto.tink.testing;
 
-import com.google.crypto.tink.BinaryKeysetReader;
-import com.google.crypto.tink.CleartextKeysetHandle;
 import com.google.crypto.tink.DeterministicAead;
-import com.google.crypto.tink.KeysetHandle;
 import com.google.crypto.tink.proto.testing.DeterministicAeadDecryptRequest;
 import com.google.crypto.tink.proto.testing.DeterministicAeadDecryptResponse;
 import com.google.crypto.tink.proto.testing.DeterministicAeadEncryptRequest;
@@ -45,10 +42,8 @@ public final class DeterministicAeadServiceImpl extends DeterministicAeadImplBas
       StreamObserver<DeterministicAeadEncryptResponse> responseObserver) {
     DeterministicAeadEncryptResponse response;
     try {
-      KeysetHandle keysetHandle =
-          CleartextKeysetHandle.read(
-              BinaryKeysetReader.withBytes(request.getKeyset().toByteArray()));
-      DeterministicAead daead = keysetHandle.getPrimitive(DeterministicAead.class);
+      DeterministicAead daead =
+          KeysetCache.getPrimitive(request.getKeyset(), DeterministicAead.class);
       byte[] ciphertext =
           daead.encryptDeterministically(
               request.getPlaintext().toByteArray(), request.getAssociatedData().toByteArray());
@@ -73,10 +68,8 @@ public final class DeterministicAeadServiceImpl extends DeterministicAeadImplBas
       StreamObserver<DeterministicAeadDecryptResponse> responseObserver) {
     DeterministicAeadDecryptResponse response;
     try {
-      KeysetHandle keysetHandle =
-          CleartextKeysetHandle.read(
-              BinaryKeysetReader.withBytes(request.getKeyset().toByteArray()));
-      DeterministicAead daead = keysetHandle.getPrimitive(DeterministicAead.class);
+      DeterministicAead daead =
+          KeysetCache.getPrimitive(request.getKeyset(), DeterministicAead.class);
       byte[] plaintext =
           daead.decryptDeterministically(
               request.getCiphertext().toByteArray(), request.getAssociatedData().toByteArray());
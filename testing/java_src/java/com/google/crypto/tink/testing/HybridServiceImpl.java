@@ -16,11 +16,8 @@
 
 package com.google.crypto.tink.testing;
 
-import com.google.crypto.tink.BinaryKeysetReader;
-import com.google.crypto.tink.CleartextKeysetHandle;
 import com.google.crypto.tink.HybridDecrypt;
 import com.google.crypto.tink.HybridEncrypt;
-import com.google.crypto.tink.KeysetHandle;
 import com.google.crypto.tink.proto.testing.HybridDecryptRequest;
 import com.google.crypto.tink.proto.testing.HybridDecryptResponse;
 import com.google.crypto.tink.proto.testing.HybridEncryptRequest;
@@ -45,10 +42,8 @@ public final class HybridServiceImpl extends HybridImplBase {
       HybridEncryptRequest request, StreamObserver<HybridEncryptResponse> responseObserver) {
     HybridEncryptResponse response;
     try {
-      KeysetHandle publicKeysetHandle =
-          CleartextKeysetHandle.read(
-              BinaryKeysetReader.withBytes(request.getPublicKeyset().toByteArray()));
-      HybridEncrypt hybridEncrypt = publicKeysetHandle.getPrimitive(HybridEncrypt.class);
+      HybridEncrypt hybridEncrypt =
+          KeysetCache.getPrimitive(request.getPublicKeyset(), HybridEncrypt.class);
       byte[] ciphertext =
           hybridEncrypt.encrypt(
               request.getPlaintext().toByteArray(), request.getContextInfo().toByteArray());
@@ -70,10 +65,8 @@ public final class HybridServiceImpl extends HybridImplBase {
       HybridDecryptRequest request, StreamObserver<HybridDecryptResponse> responseObserver) {
     HybridDecryptResponse response;
     try {
-      KeysetHandle privateKeysetHandle =
-          CleartextKeysetHandle.read(
-              BinaryKeysetReader.withBytes(request.getPrivateKeyset().toByteArray()));
-      HybridDecrypt hybridDecrypt = privateKeysetHandle.getPrimitive(HybridDecrypt.class);
+      HybridDecrypt hybridDecrypt =
+          KeysetCache.getPrimitive(request.getPrivateKeyset(), HybridDecrypt.class);
       byte[] plaintext =
           hybridDecrypt.decrypt(
               request.getCiphertext().toByteArray(), request.getContextInfo().toByteArray());
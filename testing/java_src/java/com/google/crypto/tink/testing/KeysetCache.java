@@ -0,0 +1,89 @@
+// Copyright 2022 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink.testing;
+
+import com.google.crypto.tink.BinaryKeysetReader;
+import com.google.crypto.tink.CleartextKeysetHandle;
+import com.google.crypto.tink.KeysetHandle;
+import com.google.protobuf.ByteString;
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Parses the serialized keysets of testing requests and creates their primitives.
+ *
+ * <p>By default every request parses its keyset and creates a new primitive, so that each request
+ * tests the whole path from the serialized keyset. In throughput mode ({@link #setEnabled}) the
+ * primitives are cached by serialized keyset and primitive class, so that a series of requests
+ * with the same keyset measures the cryptographic operations rather than keyset parsing.
+ */
+public final class KeysetCache {
+  // Cross-language tests generate many keysets; the cache is cleared when it holds this many.
+  private static final int MAX_KEYSETS = 1000;
+
+  private static volatile boolean enabled = false;
+
+  private static final ConcurrentHashMap<ByteString, ConcurrentHashMap<Class<?>, Object>>
+      primitives = new ConcurrentHashMap<>();
+
+  private KeysetCache() {}
+
+  /** Enables or disables caching of primitives. Disabling the cache also clears it. */
+  public static void setEnabled(boolean value) {
+    enabled = value;
+    if (!value) {
+      primitives.clear();
+    }
+  }
+
+  /** Parses {@code serializedKeyset}. Keyset handles are never cached. */
+  public static KeysetHandle getKeysetHandle(ByteString serializedKeyset)
+      throws GeneralSecurityException, IOException {
+    return CleartextKeysetHandle.read(BinaryKeysetReader.withBytes(serializedKeyset.toByteArray()));
+  }
+
+  /**
+   * Returns the {@code primitiveClass} primitive of {@code serializedKeyset}. Keysets that cannot
+   * be parsed or do not have such a primitive are not cached, so they fail on every call.
+   */
+  public static <P> P getPrimitive(ByteString serializedKeyset, Class<P> primitiveClass)
+      throws GeneralSecurityException, IOException {
+    if (!enabled) {
+      return getKeysetHandle(serializedKeyset).getPrimitive(primitiveClass);
+    }
+    ConcurrentHashMap<Class<?>, Object> keysetPrimitives = primitives.get(serializedKeyset);
+    if (keysetPrimitives == null) {
+      if (primitives.size() >= MAX_KEYSETS) {
+        primitives.clear();
+      }
+      keysetPrimitives = new ConcurrentHashMap<>();
+      ConcurrentHashMap<Class<?>, Object> existing =
+          primitives.putIfAbsent(serializedKeyset, keysetPrimitives);
+      if (existing != null) {
+        keysetPrimitives = existing;
+      }
+    }
+    Object primitive = keysetPrimitives.get(primitiveClass);
+    if (primitive == null) {
+      // Two threads may both create the primitive; either one can be cached.
+      primitive = getKeysetHandle(serializedKeyset).getPrimitive(primitiveClass);
+      keysetPrimitives.put(primitiveClass, primitive);
+    }
+    return primitiveClass.cast(primitive);
+  }
+}
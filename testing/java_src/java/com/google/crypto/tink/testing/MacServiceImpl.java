@@ -16,9 +16,6 @@
 
 package com.google.crypto.tink.testing;
 
-import com.google.crypto.tink.BinaryKeysetReader;
-import com.google.crypto.tink.CleartextKeysetHandle;
-import com.google.crypto.tink.KeysetHandle;
 import com.google.crypto.tink.Mac;
 import com.google.crypto.tink.proto.testing.ComputeMacRequest;
 import com.google.crypto.tink.proto.testing.ComputeMacResponse;
@@ -45,10 +42,7 @@ public final class MacServiceImpl extends MacImplBase {
       StreamObserver<ComputeMacResponse> responseObserver) {
     ComputeMacResponse response;
     try {
-      KeysetHandle keysetHandle =
-          CleartextKeysetHandle.read(
-              BinaryKeysetReader.withBytes(request.getKeyset().toByteArray()));
-      Mac mac = keysetHandle.getPrimitive(Mac.class);
+      Mac mac = KeysetCache.getPrimitive(request.getKeyset(), Mac.class);
       byte[] macValue = mac.computeMac(request.getData().toByteArray());
       response = ComputeMacResponse.newBuilder().setMacValue(ByteString.copyFrom(macValue)).build();
     } catch (GeneralSecurityException | InvalidProtocolBufferException e)  {
@@ -68,10 +62,7 @@ public final class MacServiceImpl extends MacImplBase {
       StreamObserver<VerifyMacResponse> responseObserver) {
     VerifyMacResponse response;
     try {
-      KeysetHandle keysetHandle =
-          CleartextKeysetHandle.read(
-              BinaryKeysetReader.withBytes(request.getKeyset().toByteArray()));
-      Mac mac = keysetHandle.getPrimitive(Mac.class);
+      Mac mac = KeysetCache.getPrimitive(request.getKeyset(), Mac.class);
       mac.verifyMac(request.getMacValue().toByteArray(), request.getData().toByteArray());
       response = VerifyMacResponse.getDefaultInstance();
     } catch (GeneralSecurityException | InvalidProtocolBufferException e) {
@@ -16,9 +16,6 @@
 
 package com.google.crypto.tink.testing;
 
-import com.google.crypto.tink.BinaryKeysetReader;
-import com.google.crypto.tink.CleartextKeysetHandle;
-import com.google.crypto.tink.KeysetHandle;
 import com.google.crypto.tink.prf.Prf;
 import com.google.crypto.tink.prf.PrfSet;
 import com.google.crypto.tink.proto.testing.PrfSetComputeRequest;
@@ -46,10 +43,7 @@ public final class PrfSetServiceImpl extends PrfSetImplBase {
       PrfSetKeyIdsRequest request, StreamObserver<PrfSetKeyIdsResponse> responseObserver) {
     PrfSetKeyIdsResponse response;
     try {
-      KeysetHandle keysetHandle =
-          CleartextKeysetHandle.read(
-              BinaryKeysetReader.withBytes(request.getKeyset().toByteArray()));
-      PrfSet prfSet = keysetHandle.getPrimitive(PrfSet.class);
+      PrfSet prfSet = KeysetCache.getPrimitive(request.getKeyset(), PrfSet.class);
       PrfSetKeyIdsResponse.Output output = PrfSetKeyIdsResponse.Output.newBuilder()
           .setPrimaryKeyId(prfSet.getPrimaryId())
           .addAllKeyId(prfSet.getPrfs().keySet())
@@ -74,10 +68,7 @@ public final class PrfSetServiceImpl extends PrfSetImplBase {
       PrfSetComputeRequest request, StreamObserver<PrfSetComputeResponse> responseObserver) {
     PrfSetComputeResponse response;
     try {
-      KeysetHandle keysetHandle =
-          CleartextKeysetHandle.read(
-              BinaryKeysetReader.withBytes(request.getKeyset().toByteArray()));
-      PrfSet prfSet = keysetHandle.getPrimitive(PrfSet.class);
+      PrfSet prfSet = KeysetCache.getPrimitive(request.getKeyset(), PrfSet.class);
       Map<Integer, Prf> prfs = prfSet.getPrfs();
       if (!prfs.containsKey(request.getKeyId())) {
         response = PrfSetComputeResponse.newBuilder().setErr("Unknown Key ID.").build();
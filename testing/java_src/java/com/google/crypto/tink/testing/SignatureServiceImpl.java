@@ -16,9 +16,6 @@
 
 package com.google.crypto.tink.testing;
 
-import com.google.crypto.tink.BinaryKeysetReader;
-import com.google.crypto.tink.CleartextKeysetHandle;
-import com.google.crypto.tink.KeysetHandle;
 import com.google.crypto.tink.PublicKeySign;
 import com.google.crypto.tink.PublicKeyVerify;
 import com.google.crypto.tink.proto.testing.SignatureGrpc.SignatureImplBase;
@@ -46,10 +43,8 @@ public final class SignatureServiceImpl extends SignatureImplBase {
       StreamObserver<SignatureSignResponse> responseObserver) {
     SignatureSignResponse response;
     try {
-      KeysetHandle privateKeysetHandle =
-          CleartextKeysetHandle.read(
-              BinaryKeysetReader.withBytes(request.getPrivateKeyset().toByteArray()));
-      PublicKeySign signer = privateKeysetHandle.getPrimitive(PublicKeySign.class);
+      PublicKeySign signer =
+          KeysetCache.getPrimitive(request.getPrivateKeyset(), PublicKeySign.class);
       byte[] signatureValue = signer.sign(request.getData().toByteArray());
       response = SignatureSignResponse.newBuilder().setSignature(ByteString.copyFrom(signatureValue)).build();
     } catch (GeneralSecurityException | InvalidProtocolBufferException e)  {
@@ -69,10 +64,8 @@ public final class SignatureServiceImpl extends SignatureImplBase {
       StreamObserver<SignatureVerifyResponse> responseObserver) {
     SignatureVerifyResponse response;
     try {
-      KeysetHandle publicKeysetHandle =
-          CleartextKeysetHandle.read(
-              BinaryKeysetReader.withBytes(request.getPublicKeyset().toByteArray()));
-      PublicKeyVerify verifier = publicKeysetHandle.getPrimitive(PublicKeyVerify.class);
+      PublicKeyVerify verifier =
+          KeysetCache.getPrimitive(request.getPublicKeyset(), PublicKeyVerify.class);
       verifier.verify(request.getSignature().toByteArray(), request.getData().toByteArray());
       response = SignatureVerifyResponse.getDefaultInstance();
     } catch (GeneralSecurityException | InvalidProtocolBufferException e) {
@@ -16,9 +16,6 @@
 
 package com.google.crypto.tink.testing;
 
-import com.google.crypto.tink.BinaryKeysetReader;
-import com.google.crypto.tink.CleartextKeysetHandle;
-import com.google.crypto.tink.KeysetHandle;
 import com.google.crypto.tink.StreamingAead;
 import com.google.crypto.tink.proto.testing.StreamingAeadDecryptRequest;
 import com.google.crypto.tink.proto.testing.StreamingAeadDecryptResponse;
@@ -29,7 +26,6 @@ import com.google.protobuf.ByteString;
 import com.google.protobuf.InvalidProtocolBufferException;
 import io.grpc.Status;
 import io.grpc.stub.StreamObserver;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -37,6 +33,7 @@ import java.security.GeneralSecurityException;
 
 /** Implements a gRPC StreamingAead Testing service. */
 public final class StreamingAeadServiceImpl extends StreamingAeadImplBase {
+  static final int BUFFER_SIZE = 64 * 1024;
 
   public StreamingAeadServiceImpl() throws GeneralSecurityException {
   }
@@ -48,11 +45,10 @@ public final class StreamingAeadServiceImpl extends StreamingAeadImplBase {
       StreamObserver<StreamingAeadEncryptResponse> responseObserver) {
     StreamingAeadEncryptResponse response;
     try {
-      KeysetHandle keysetHandle = CleartextKeysetHandle.read(
-          BinaryKeysetReader.withBytes(request.getKeyset().toByteArray()));
-      StreamingAead streamingAead = keysetHandle.getPrimitive(StreamingAead.class);
+      StreamingAead streamingAead =
+          KeysetCache.getPrimitive(request.getKeyset(), StreamingAead.class);
 
-      ByteArrayOutputStream ciphertextStream = new ByteArrayOutputStream();
+      ByteString.Output ciphertextStream = ByteString.newOutput();
       try (OutputStream encryptingStream =
           streamingAead.newEncryptingStream(
               ciphertextStream, request.getAssociatedData().toByteArray())) {
@@ -60,7 +56,7 @@ public final class StreamingAeadServiceImpl extends StreamingAeadImplBase {
       }
       response =
           StreamingAeadEncryptResponse.newBuilder()
-              .setCiphertext(ByteString.copyFrom(ciphertextStream.toByteArray()))
+              .setCiphertext(ciphertextStream.toByteString())
               .build();
 
     } catch (GeneralSecurityException | InvalidProtocolBufferException e)  {
@@ -80,24 +76,24 @@ public final class StreamingAeadServiceImpl extends StreamingAeadImplBase {
       StreamObserver<StreamingAeadDecryptResponse> responseObserver) {
     StreamingAeadDecryptResponse response;
     try {
-      KeysetHandle keysetHandle = CleartextKeysetHandle.read(
-          BinaryKeysetReader.withBytes(request.getKeyset().toByteArray()));
-      StreamingAead streamingAead = keysetHandle.getPrimitive(StreamingAead.class);
+      StreamingAead streamingAead =
+          KeysetCache.getPrimitive(request.getKeyset(), StreamingAead.class);
 
       InputStream ciphertextStream = request.getCiphertext().newInput();
       InputStream decryptingStream = streamingAead.newDecryptingStream(
           ciphertextStream, request.getAssociatedData().toByteArray());
-      ByteArrayOutputStream plaintextStream = new ByteArrayOutputStream();
+      ByteString.Output plaintextStream = ByteString.newOutput();
+      byte[] buffer = new byte[BUFFER_SIZE];
       while (true) {
-        int bytesRead = decryptingStream.read();
+        int bytesRead = decryptingStream.read(buffer);
         if (bytesRead == -1) {
           break;
         }
-        plaintextStream.write(bytesRead);
+        plaintextStream.write(buffer, 0, bytesRead);
       }
 
       response = StreamingAeadDecryptResponse.newBuilder().setPlaintext(
-          ByteString.copyFrom(plaintextStream.toByteArray())).build();
+          plaintextStream.toByteString()).build();
     } catch (GeneralSecurityException | InvalidProtocolBufferException e) {
       response = StreamingAeadDecryptResponse.newBuilder().setErr(e.toString()).build();
     } catch (IOException e) {
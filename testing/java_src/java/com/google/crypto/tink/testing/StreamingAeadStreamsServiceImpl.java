@@ -0,0 +1,216 @@
+// Copyright 2022 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink.testing;
+
+import com.google.crypto.tink.StreamingAead;
+import com.google.crypto.tink.proto.testing.StreamingAeadChunkRequest;
+import com.google.crypto.tink.proto.testing.StreamingAeadChunkResponse;
+import com.google.crypto.tink.proto.testing.StreamingAeadStreamsGrpc.StreamingAeadStreamsImplBase;
+import com.google.protobuf.ByteString;
+import io.grpc.stub.StreamObserver;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.GeneralSecurityException;
+
+/**
+ * Implements a gRPC StreamingAeadStreams Testing service, which encrypts and decrypts messages
+ * that are sent and returned in chunks.
+ */
+public final class StreamingAeadStreamsServiceImpl extends StreamingAeadStreamsImplBase {
+  // The size of the chunks that are returned, except for the last one.
+  static final int CHUNK_SIZE = StreamingAeadServiceImpl.BUFFER_SIZE;
+
+  public StreamingAeadStreamsServiceImpl() throws GeneralSecurityException {
+  }
+
+  /** Encrypts a message, returning ciphertext chunks while the plaintext chunks arrive. */
+  @Override
+  public StreamObserver<StreamingAeadChunkRequest> encryptStream(
+      final StreamObserver<StreamingAeadChunkResponse> responseObserver) {
+    return new StreamObserver<StreamingAeadChunkRequest>() {
+      private OutputStream encryptingStream = null;
+      private boolean failed = false;
+
+      @Override
+      public void onNext(StreamingAeadChunkRequest request) {
+        if (failed) {
+          return;
+        }
+        try {
+          if (encryptingStream == null) {
+            StreamingAead streamingAead =
+                KeysetCache.getPrimitive(request.getKeyset(), StreamingAead.class);
+            encryptingStream =
+                streamingAead.newEncryptingStream(
+                    new ChunkOutputStream(responseObserver),
+                    request.getAssociatedData().toByteArray());
+          }
+          request.getChunk().writeTo(encryptingStream);
+        } catch (GeneralSecurityException | IOException e) {
+          failed = true;
+          sendError(responseObserver, e);
+        }
+      }
+
+      @Override
+      public void onError(Throwable t) {
+        // The client cancelled the call; nothing can be sent anymore.
+      }
+
+      @Override
+      public void onCompleted() {
+        if (failed) {
+          return;
+        }
+        if (encryptingStream == null) {
+          sendError(responseObserver, new IOException("no request received"));
+          return;
+        }
+        try {
+          // Closing the encrypting stream writes the last segment and closes the ChunkOutputStream,
+          // which sends the remaining ciphertext.
+          encryptingStream.close();
+        } catch (IOException e) {
+          sendError(responseObserver, e);
+          return;
+        }
+        responseObserver.onCompleted();
+      }
+    };
+  }
+
+  /**
+   * Decrypts a message. The ciphertext chunks are collected without copying them, and the
+   * plaintext is returned in chunks.
+   */
+  @Override
+  public StreamObserver<StreamingAeadChunkRequest> decryptStream(
+      final StreamObserver<StreamingAeadChunkResponse> responseObserver) {
+    return new StreamObserver<StreamingAeadChunkRequest>() {
+      private StreamingAeadChunkRequest firstRequest = null;
+      private ByteString ciphertext = ByteString.EMPTY;
+
+      @Override
+      public void onNext(StreamingAeadChunkRequest request) {
+        if (firstRequest == null) {
+          firstRequest = request;
+        }
+        ciphertext = ciphertext.concat(request.getChunk());
+      }
+
+      @Override
+      public void onError(Throwable t) {
+        // The client cancelled the call; nothing can be sent anymore.
+      }
+
+      @Override
+      public void onCompleted() {
+        if (firstRequest == null) {
+          sendError(responseObserver, new IOException("no request received"));
+          return;
+        }
+        try {
+          StreamingAead streamingAead =
+              KeysetCache.getPrimitive(firstRequest.getKeyset(), StreamingAead.class);
+          InputStream decryptingStream =
+              streamingAead.newDecryptingStream(
+                  ciphertext.newInput(), firstRequest.getAssociatedData().toByteArray());
+          byte[] buffer = new byte[CHUNK_SIZE];
+          int length;
+          while ((length = readFully(decryptingStream, buffer)) > 0) {
+            responseObserver.onNext(
+                StreamingAeadChunkResponse.newBuilder()
+                    .setChunk(ByteString.copyFrom(buffer, 0, length))
+                    .build());
+          }
+        } catch (GeneralSecurityException | IOException e) {
+          sendError(responseObserver, e);
+          return;
+        }
+        responseObserver.onCompleted();
+      }
+    };
+  }
+
+  /** Reads until {@code buffer} is full or the stream ends, and returns the number of bytes read. */
+  private static int readFully(InputStream in, byte[] buffer) throws IOException {
+    int length = 0;
+    while (length < buffer.length) {
+      int read = in.read(buffer, length, buffer.length - length);
+      if (read == -1) {
+        break;
+      }
+      length += read;
+    }
+    return length;
+  }
+
+  private static void sendError(
+      StreamObserver<StreamingAeadChunkResponse> responseObserver, Exception e) {
+    responseObserver.onNext(StreamingAeadChunkResponse.newBuilder().setErr(e.toString()).build());
+    responseObserver.onCompleted();
+  }
+
+  /** Sends everything written to it as chunks of {@link #CHUNK_SIZE} bytes. */
+  private static final class ChunkOutputStream extends OutputStream {
+    private final StreamObserver<StreamingAeadChunkResponse> responseObserver;
+    private final byte[] buffer = new byte[CHUNK_SIZE];
+    private int length = 0;
+
+    ChunkOutputStream(StreamObserver<StreamingAeadChunkResponse> responseObserver) {
+      this.responseObserver = responseObserver;
+    }
+
+    @Override
+    public void write(int b) {
+      buffer[length++] = (byte) b;
+      if (length == CHUNK_SIZE) {
+        sendChunk();
+      }
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+      while (len > 0) {
+        int n = Math.min(len, CHUNK_SIZE - length);
+        System.arraycopy(b, off, buffer, length, n);
+        length += n;
+        off += n;
+        len -= n;
+        if (length == CHUNK_SIZE) {
+          sendChunk();
+        }
+      }
+    }
+
+    @Override
+    public void close() {
+      if (length > 0) {
+        sendChunk();
+      }
+    }
+
+    private void sendChunk() {
+      responseObserver.onNext(
+          StreamingAeadChunkResponse.newBuilder()
+              .setChunk(ByteString.copyFrom(buffer, 0, length))
+              .build());
+      length = 0;
+    }
+  }
+}
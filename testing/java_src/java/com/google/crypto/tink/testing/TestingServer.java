@@ -46,11 +46,17 @@ public final class TestingServer {
   public static void main(String[] args)
       throws InterruptedException, GeneralSecurityException, IOException {
 
-    if ((args.length != 2) || !args[0].equals("--port")) {
-      System.out.println("Usage: TestingServer --port <port>");
+    if ((args.length != 2 && args.length != 3)
+        || !args[0].equals("--port")
+        || (args.length == 3 && !args[2].equals("--throughput"))) {
+      System.out.println("Usage: TestingServer --port <port> [--throughput]");
       System.exit(1);
     }
     int port = Integer.parseInt(args[1]);
+    if (args.length == 3) {
+      // Requests with the same keyset reuse its primitive instead of parsing the keyset again.
+      KeysetCache.setEnabled(true);
+    }
 
     installConscrypt();
     AeadConfig.register();
@@ -71,11 +77,13 @@ public final class TestingServer {
         .addService(new AeadServiceImpl())
         .addService(new DeterministicAeadServiceImpl())
         .addService(new StreamingAeadServiceImpl())
+        .addService(new StreamingAeadStreamsServiceImpl())
         .addService(new HybridServiceImpl())
         .addService(new MacServiceImpl())
         .addService(new PrfSetServiceImpl())
         .addService(new SignatureServiceImpl())
         .addService(new JwtServiceImpl())
+        .addService(new BenchmarkServiceImpl())
         .build()
         .start()
         .awaitTermination();
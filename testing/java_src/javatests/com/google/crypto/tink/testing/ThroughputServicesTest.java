@@ -0,0 +1,306 @@
+// Copyright 2022 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink.testing;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import com.google.crypto.tink.Aead;
+import com.google.crypto.tink.aead.AesGcmKeyManager;
+import com.google.crypto.tink.config.TinkConfig;
+import com.google.crypto.tink.internal.KeyTemplateProtoConverter;
+import com.google.crypto.tink.proto.testing.BenchmarkGrpc;
+import com.google.crypto.tink.proto.testing.BenchmarkOperation;
+import com.google.crypto.tink.proto.testing.BenchmarkRequest;
+import com.google.crypto.tink.proto.testing.BenchmarkResponse;
+import com.google.crypto.tink.proto.testing.KeysetGenerateRequest;
+import com.google.crypto.tink.proto.testing.KeysetGenerateResponse;
+import com.google.crypto.tink.proto.testing.KeysetGrpc;
+import com.google.crypto.tink.proto.testing.StreamingAeadChunkRequest;
+import com.google.crypto.tink.proto.testing.StreamingAeadChunkResponse;
+import com.google.crypto.tink.proto.testing.StreamingAeadDecryptRequest;
+import com.google.crypto.tink.proto.testing.StreamingAeadDecryptResponse;
+import com.google.crypto.tink.proto.testing.StreamingAeadEncryptRequest;
+import com.google.crypto.tink.proto.testing.StreamingAeadEncryptResponse;
+import com.google.crypto.tink.proto.testing.StreamingAeadGrpc;
+import com.google.crypto.tink.proto.testing.StreamingAeadStreamsGrpc;
+import com.google.crypto.tink.streamingaead.AesGcmHkdfStreamingKeyManager;
+import com.google.protobuf.ByteString;
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.internal.testing.StreamRecorder;
+import io.grpc.stub.StreamObserver;
+import java.util.List;
+import java.util.Random;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for the services used to measure throughput. */
+@RunWith(JUnit4.class)
+public final class ThroughputServicesTest {
+  private Server server;
+  private ManagedChannel channel;
+  KeysetGrpc.KeysetBlockingStub keysetStub;
+  StreamingAeadGrpc.StreamingAeadBlockingStub streamingAeadStub;
+  StreamingAeadStreamsGrpc.StreamingAeadStreamsStub streamingAeadStreamsStub;
+  BenchmarkGrpc.BenchmarkBlockingStub benchmarkStub;
+
+  @Before
+  public void setUp() throws Exception {
+    TinkConfig.register();
+    String serverName = InProcessServerBuilder.generateName();
+    server = InProcessServerBuilder
+        .forName(serverName)
+        .directExecutor()
+        .addService(new KeysetServiceImpl())
+        .addService(new StreamingAeadServiceImpl())
+        .addService(new StreamingAeadStreamsServiceImpl())
+        .addService(new BenchmarkServiceImpl())
+        .build()
+        .start();
+    channel = InProcessChannelBuilder
+        .forName(serverName)
+        .directExecutor()
+        .build();
+    keysetStub = KeysetGrpc.newBlockingStub(channel);
+    streamingAeadStub = StreamingAeadGrpc.newBlockingStub(channel);
+    streamingAeadStreamsStub = StreamingAeadStreamsGrpc.newStub(channel);
+    benchmarkStub = BenchmarkGrpc.newBlockingStub(channel);
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    KeysetCache.setEnabled(false);
+    assertThat(channel.shutdown().awaitTermination(5, SECONDS)).isTrue();
+    assertThat(server.shutdown().awaitTermination(5, SECONDS)).isTrue();
+  }
+
+  private ByteString generateKeyset(byte[] template) {
+    KeysetGenerateResponse response =
+        keysetStub.generate(
+            KeysetGenerateRequest.newBuilder().setTemplate(ByteString.copyFrom(template)).build());
+    assertThat(response.getErr()).isEmpty();
+    return response.getKeyset();
+  }
+
+  private ByteString generateStreamingAeadKeyset() throws Exception {
+    return generateKeyset(
+        KeyTemplateProtoConverter.toByteArray(
+            AesGcmHkdfStreamingKeyManager.aes128GcmHkdf4KBTemplate()));
+  }
+
+  private static byte[] randomBytes(int length) {
+    byte[] result = new byte[length];
+    new Random(length).nextBytes(result);
+    return result;
+  }
+
+  /**
+   * Sends {@code data} in chunks of {@code chunkSize} bytes, the first of them with the keyset and
+   * the associated data, and returns the responses.
+   */
+  private static List<StreamingAeadChunkResponse> sendInChunks(
+      StreamObserver<StreamingAeadChunkRequest> requestObserver,
+      StreamRecorder<StreamingAeadChunkResponse> recorder,
+      ByteString keyset,
+      byte[] associatedData,
+      byte[] data,
+      int chunkSize)
+      throws Exception {
+    int offset = 0;
+    do {
+      int length = Math.min(chunkSize, data.length - offset);
+      StreamingAeadChunkRequest.Builder request =
+          StreamingAeadChunkRequest.newBuilder().setChunk(ByteString.copyFrom(data, offset, length));
+      if (offset == 0) {
+        request.setKeyset(keyset).setAssociatedData(ByteString.copyFrom(associatedData));
+      }
+      requestObserver.onNext(request.build());
+      offset += length;
+    } while (offset < data.length);
+    requestObserver.onCompleted();
+    assertThat(recorder.awaitCompletion(5, SECONDS)).isTrue();
+    return recorder.getValues();
+  }
+
+  private static ByteString concatChunks(List<StreamingAeadChunkResponse> responses) {
+    ByteString result = ByteString.EMPTY;
+    for (StreamingAeadChunkResponse response : responses) {
+      assertThat(response.getErr()).isEmpty();
+      assertThat(response.getChunk().size()).isAtMost(StreamingAeadStreamsServiceImpl.CHUNK_SIZE);
+      result = result.concat(response.getChunk());
+    }
+    return result;
+  }
+
+  @Test
+  public void encryptStream_decryptsWithUnaryDecrypt() throws Exception {
+    ByteString keyset = generateStreamingAeadKeyset();
+    byte[] plaintext = randomBytes(300_000);
+    byte[] associatedData = "encrypt_stream".getBytes(UTF_8);
+
+    StreamRecorder<StreamingAeadChunkResponse> recorder = StreamRecorder.create();
+    List<StreamingAeadChunkResponse> responses =
+        sendInChunks(
+            streamingAeadStreamsStub.encryptStream(recorder),
+            recorder,
+            keyset,
+            associatedData,
+            plaintext,
+            100_000);
+    assertThat(responses.size()).isGreaterThan(1);
+    ByteString ciphertext = concatChunks(responses);
+
+    StreamingAeadDecryptResponse decResponse =
+        streamingAeadStub.decrypt(
+            StreamingAeadDecryptRequest.newBuilder()
+                .setKeyset(keyset)
+                .setCiphertext(ciphertext)
+                .setAssociatedData(ByteString.copyFrom(associatedData))
+                .build());
+    assertThat(decResponse.getErr()).isEmpty();
+    assertThat(decResponse.getPlaintext().toByteArray()).isEqualTo(plaintext);
+  }
+
+  @Test
+  public void decryptStream_decryptsUnaryEncrypt() throws Exception {
+    ByteString keyset = generateStreamingAeadKeyset();
+    byte[] plaintext = randomBytes(200_000);
+    byte[] associatedData = "decrypt_stream".getBytes(UTF_8);
+    StreamingAeadEncryptResponse encResponse =
+        streamingAeadStub.encrypt(
+            StreamingAeadEncryptRequest.newBuilder()
+                .setKeyset(keyset)
+                .setPlaintext(ByteString.copyFrom(plaintext))
+                .setAssociatedData(ByteString.copyFrom(associatedData))
+                .build());
+    assertThat(encResponse.getErr()).isEmpty();
+
+    StreamRecorder<StreamingAeadChunkResponse> recorder = StreamRecorder.create();
+    List<StreamingAeadChunkResponse> responses =
+        sendInChunks(
+            streamingAeadStreamsStub.decryptStream(recorder),
+            recorder,
+            keyset,
+            associatedData,
+            encResponse.getCiphertext().toByteArray(),
+            1000);
+    assertThat(concatChunks(responses).toByteArray()).isEqualTo(plaintext);
+  }
+
+  @Test
+  public void encryptStream_failsOnBadKeyset() throws Exception {
+    StreamRecorder<StreamingAeadChunkResponse> recorder = StreamRecorder.create();
+    List<StreamingAeadChunkResponse> responses =
+        sendInChunks(
+            streamingAeadStreamsStub.encryptStream(recorder),
+            recorder,
+            ByteString.copyFrom("bad keyset".getBytes(UTF_8)),
+            new byte[0],
+            randomBytes(100),
+            10);
+    assertThat(responses).hasSize(1);
+    assertThat(responses.get(0).getErr()).isNotEmpty();
+  }
+
+  @Test
+  public void decryptStream_failsOnBadCiphertext() throws Exception {
+    ByteString keyset = generateStreamingAeadKeyset();
+    StreamRecorder<StreamingAeadChunkResponse> recorder = StreamRecorder.create();
+    List<StreamingAeadChunkResponse> responses =
+        sendInChunks(
+            streamingAeadStreamsStub.decryptStream(recorder),
+            recorder,
+            keyset,
+            new byte[0],
+            randomBytes(10_000),
+            1000);
+    assertThat(responses.get(responses.size() - 1).getErr()).isNotEmpty();
+  }
+
+  @Test
+  public void benchmark_aeadEncrypt() throws Exception {
+    ByteString keyset =
+        generateKeyset(KeyTemplateProtoConverter.toByteArray(AesGcmKeyManager.aes128GcmTemplate()));
+    BenchmarkResponse response =
+        benchmarkStub.run(
+            BenchmarkRequest.newBuilder()
+                .setKeyset(keyset)
+                .setOperation(BenchmarkOperation.BENCHMARK_AEAD_ENCRYPT)
+                .setMessageSize(1024)
+                .setOperations(100)
+                .setWarmupOperations(10)
+                .build());
+    assertThat(response.getErr()).isEmpty();
+    BenchmarkResponse.Output output = response.getOutput();
+    assertThat(output.getOperations()).isEqualTo(100);
+    assertThat(output.getOperationsPerSecond()).isGreaterThan(0.0);
+    assertThat(output.getP50LatencyNanos()).isAtMost(output.getP90LatencyNanos());
+    assertThat(output.getP90LatencyNanos()).isAtMost(output.getP99LatencyNanos());
+    assertThat(output.getP99LatencyNanos()).isAtMost(output.getMaxLatencyNanos());
+  }
+
+  @Test
+  public void benchmark_failsOnInvalidRequests() throws Exception {
+    ByteString keyset = generateStreamingAeadKeyset();
+    BenchmarkRequest validRequest =
+        BenchmarkRequest.newBuilder()
+            .setKeyset(keyset)
+            .setOperation(BenchmarkOperation.BENCHMARK_STREAMING_AEAD_DECRYPT)
+            .setMessageSize(100)
+            .setOperations(10)
+            .build();
+    assertThat(benchmarkStub.run(validRequest).getErr()).isEmpty();
+    assertThat(benchmarkStub.run(validRequest.toBuilder().setOperations(0).build()).getErr())
+        .isNotEmpty();
+    assertThat(
+            benchmarkStub
+                .run(
+                    validRequest.toBuilder()
+                        .setOperation(BenchmarkOperation.BENCHMARK_AEAD_ENCRYPT)
+                        .build())
+                .getErr())
+        .isNotEmpty();
+    assertThat(
+            benchmarkStub
+                .run(
+                    validRequest.toBuilder()
+                        .setOperation(BenchmarkOperation.BENCHMARK_OPERATION_UNKNOWN)
+                        .build())
+                .getErr())
+        .isNotEmpty();
+  }
+
+  @Test
+  public void keysetCache_reusesPrimitivesOnlyWhenEnabled() throws Exception {
+    ByteString keyset =
+        generateKeyset(KeyTemplateProtoConverter.toByteArray(AesGcmKeyManager.aes128GcmTemplate()));
+    assertThat(KeysetCache.getPrimitive(keyset, Aead.class))
+        .isNotSameInstanceAs(KeysetCache.getPrimitive(keyset, Aead.class));
+
+    KeysetCache.setEnabled(true);
+    Aead aead = KeysetCache.getPrimitive(keyset, Aead.class);
+    assertThat(KeysetCache.getPrimitive(ByteString.copyFrom(keyset.toByteArray()), Aead.class))
+        .isSameInstanceAs(aead);
+  }
+}
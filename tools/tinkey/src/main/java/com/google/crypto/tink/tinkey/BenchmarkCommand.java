@@ -0,0 +1,252 @@
+// Copyright 2022 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+
+package com.google.crypto.tink.tinkey;
+
+import com.google.crypto.tink.Aead;
+import com.google.crypto.tink.BinaryKeysetReader;
+import com.google.crypto.tink.CleartextKeysetHandle;
+import com.google.crypto.tink.KeysetHandle;
+import com.google.crypto.tink.subtle.Base64;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import org.kohsuke.args4j.Option;
+
+/**
+ * Measures how fast the primitive of a keyset runs on this machine, e.g. to compare key templates
+ * before rolling one out.
+ */
+public class BenchmarkCommand extends InOptions implements Command {
+  /** Master key URIs with this prefix hold the master keyset itself, so no KMS is contacted. */
+  static final String FAKE_KMS_PREFIX = "fake-kms://";
+
+  @Option(
+      name = "--message-size",
+      metaVar = "bytes",
+      required = false,
+      usage = "The size of the messages to encrypt, sign, MAC, etc. 1024 is default")
+  int messageSize = 1024;
+
+  @Option(
+      name = "--duration",
+      metaVar = "seconds",
+      required = false,
+      usage = "How long each operation is measured. 10 is default")
+  int durationSeconds = 10;
+
+  @Option(
+      name = "--warmup",
+      metaVar = "seconds",
+      required = false,
+      usage = "How long each operation runs before it is measured. 2 is default")
+  int warmupSeconds = 2;
+
+  @Option(
+      name = "--threads",
+      metaVar = "count",
+      required = false,
+      usage = "The number of threads running each operation. 1 is default")
+  int threads = 1;
+
+  @Option(
+      name = "--operation",
+      metaVar = "encrypt | decrypt | sign | verify | compute",
+      required = false,
+      usage = "The operation to measure. All operations of the primitive are measured by default")
+  String operation;
+
+  @Option(
+      name = "--out",
+      metaVar = "path/to/results",
+      handler = OutputStreamHandler.class,
+      required = false,
+      usage = "The output filename, must not exist, to write the results to or "
+          + "standard output if not specified")
+  OutputStream outputStream;
+
+  @Option(
+      name = "--out-format",
+      metaVar = "text | json",
+      required = false,
+      usage = "The output format: text or json (case-insensitive). text is default")
+  String outFormat;
+
+  @Override
+  void validate() {
+    super.validate();
+    if (outputStream == null) {
+      outputStream = System.out;
+    }
+    if (outFormat != null
+        && !outFormat.toLowerCase(Locale.ROOT).equals("text")
+        && !outFormat.toLowerCase(Locale.ROOT).equals("json")) {
+      TinkeyUtil.die("invalid format: " + outFormat);
+    }
+    if (messageSize < 0 || durationSeconds <= 0 || warmupSeconds < 0 || threads <= 0) {
+      TinkeyUtil.die(
+          "--message-size and --warmup must not be negative, --duration and --threads must be"
+              + " positive");
+    }
+  }
+
+  @Override
+  public void run() throws Exception {
+    validate();
+    KeysetHandle handle = getKeysetHandle(inputStream, inFormat, masterKeyUri, credentialPath);
+    PrintStream out = new PrintStream(outputStream, true, "UTF-8");
+    benchmark(
+        out,
+        handle,
+        operation,
+        messageSize,
+        TimeUnit.SECONDS.toNanos(warmupSeconds),
+        TimeUnit.SECONDS.toNanos(durationSeconds),
+        threads,
+        outFormat != null && outFormat.toLowerCase(Locale.ROOT).equals("json"));
+  }
+
+  /**
+   * Returns the keyset in {@code inputStream} like {@link TinkeyUtil#getKeysetHandle}, but also
+   * accepts {@code fake-kms://} master key URIs, so that benchmarks only need local files.
+   */
+  static KeysetHandle getKeysetHandle(
+      InputStream inputStream, String inFormat, String masterKeyUri, String credentialPath)
+      throws IOException, GeneralSecurityException {
+    if (masterKeyUri == null
+        || !masterKeyUri.toLowerCase(Locale.ROOT).startsWith(FAKE_KMS_PREFIX)) {
+      return TinkeyUtil.getKeysetHandle(inputStream, inFormat, masterKeyUri, credentialPath);
+    }
+    byte[] masterKeyset = Base64.urlSafeDecode(masterKeyUri.substring(FAKE_KMS_PREFIX.length()));
+    Aead masterKey =
+        CleartextKeysetHandle.read(BinaryKeysetReader.withBytes(masterKeyset))
+            .getPrimitive(Aead.class);
+    return KeysetHandle.read(TinkeyUtil.createKeysetReader(inputStream, inFormat), masterKey);
+  }
+
+  /**
+   * Benchmarks {@code operation} (or all operations if null) of the primitive of {@code handle}
+   * and prints the results to {@code out}.
+   */
+  public static void benchmark(
+      PrintStream out,
+      KeysetHandle handle,
+      String operation,
+      int messageSize,
+      long warmupNanos,
+      long durationNanos,
+      int threads,
+      boolean json)
+      throws GeneralSecurityException, IOException, InterruptedException {
+    KeysetBenchmark.PrimitiveType type = KeysetBenchmark.detectPrimitiveType(handle);
+    List<String> operations = type.operations;
+    if (operation != null) {
+      if (!type.operations.contains(operation)) {
+        throw new IllegalArgumentException(
+            type.name + " supports only the operations " + type.operations);
+      }
+      operations = new ArrayList<>();
+      operations.add(operation);
+    }
+    List<KeysetBenchmark.Result> results = new ArrayList<>();
+    for (String op : operations) {
+      results.add(
+          KeysetBenchmark.run(
+              handle, type, op, messageSize, warmupNanos, durationNanos, threads));
+    }
+    if (json) {
+      printJson(out, type, messageSize, threads, results);
+    } else {
+      printText(out, type, messageSize, threads, results);
+    }
+  }
+
+  private static void printText(
+      PrintStream out,
+      KeysetBenchmark.PrimitiveType type,
+      int messageSize,
+      int threads,
+      List<KeysetBenchmark.Result> results) {
+    out.printf(
+        Locale.ROOT,
+        "%s, messages of %d bytes, %d thread(s)%n",
+        type.name,
+        messageSize,
+        threads);
+    out.printf(
+        Locale.ROOT,
+        "%-10s %14s %10s %12s %12s %12s%n",
+        "operation",
+        "ops/s",
+        "MB/s",
+        "p50 (us)",
+        "p99 (us)",
+        "p99.9 (us)");
+    for (KeysetBenchmark.Result result : results) {
+      out.printf(
+          Locale.ROOT,
+          "%-10s %14.1f %10.2f %12.2f %12.2f %12.2f%n",
+          result.operation,
+          result.operationsPerSecond(),
+          result.operationsPerSecond() * messageSize / 1e6,
+          result.p50Nanos / 1e3,
+          result.p99Nanos / 1e3,
+          result.p999Nanos / 1e3);
+    }
+  }
+
+  private static void printJson(
+      PrintStream out,
+      KeysetBenchmark.PrimitiveType type,
+      int messageSize,
+      int threads,
+      List<KeysetBenchmark.Result> results) {
+    StringBuilder json = new StringBuilder();
+    json.append(String.format(
+        Locale.ROOT,
+        "{\"primitive\": \"%s\", \"message_size\": %d, \"threads\": %d, \"results\": [",
+        type.name,
+        messageSize,
+        threads));
+    for (int i = 0; i < results.size(); i++) {
+      KeysetBenchmark.Result result = results.get(i);
+      if (i > 0) {
+        json.append(", ");
+      }
+      json.append(String.format(
+          Locale.ROOT,
+          "{\"operation\": \"%s\", \"operations\": %d, \"elapsed_nanos\": %d, "
+              + "\"operations_per_second\": %.1f, \"p50_nanos\": %d, \"p99_nanos\": %d, "
+              + "\"p999_nanos\": %d}",
+          result.operation,
+          result.operations,
+          result.elapsedNanos,
+          result.operationsPerSecond(),
+          result.p50Nanos,
+          result.p99Nanos,
+          result.p999Nanos));
+    }
+    json.append("]}");
+    out.println(json);
+  }
+}
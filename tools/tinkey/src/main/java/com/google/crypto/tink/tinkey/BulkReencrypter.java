@@ -0,0 +1,437 @@
+// Copyright 2022 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+
+package com.google.crypto.tink.tinkey;
+
+import com.google.crypto.tink.Aead;
+import com.google.crypto.tink.StreamingAead;
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Re-encrypts files in place under the primary key of a keyset, e.g. after {@code tinkey
+ * rotate-keyset}.
+ *
+ * <p>Every file is decrypted with the keyset primitive, which tries all keys of the keyset, and
+ * encrypted again with its primary key. Keysets with a {@link StreamingAead} primitive are
+ * processed as streams, so files of any size need only a small buffer; keysets with an {@link Aead}
+ * primitive read whole files and are meant for small blobs.
+ *
+ * <p>Files are processed in parallel on a fixed number of threads. The new ciphertext is written to
+ * a temporary file in the same directory, synced, and then renamed over the original, so a file
+ * always holds either its old or its new ciphertext. If a checkpoint file is set, every finished
+ * file is appended to it, and files listed in it are skipped, so an interrupted run can be resumed.
+ * Re-encrypting a file twice is harmless, as the new primary key can decrypt it.
+ */
+public final class BulkReencrypter {
+  /** Suffix of the temporary files. Files with this suffix are never re-encrypted. */
+  public static final String TEMP_FILE_SUFFIX = ".tinkey-tmp";
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+  private static final long MAX_AEAD_FILE_SIZE = 1L << 30;
+
+  /** Receives progress updates. Called concurrently from the worker threads. */
+  public interface ProgressListener {
+    /** Called after {@code file} has been re-encrypted. */
+    void fileDone(Path file, Progress progress);
+
+    /** Called after re-encrypting {@code file} failed; the file is left unchanged. */
+    void fileFailed(Path file, Exception cause, Progress progress);
+  }
+
+  /** A snapshot of the progress of a run. */
+  public static final class Progress {
+    private final long totalFiles;
+    private final long doneFiles;
+    private final long failedFiles;
+    private final long skippedFiles;
+    private final long bytesRead;
+    private final long bytesWritten;
+    private final long elapsedNanos;
+
+    Progress(
+        long totalFiles,
+        long doneFiles,
+        long failedFiles,
+        long skippedFiles,
+        long bytesRead,
+        long bytesWritten,
+        long elapsedNanos) {
+      this.totalFiles = totalFiles;
+      this.doneFiles = doneFiles;
+      this.failedFiles = failedFiles;
+      this.skippedFiles = skippedFiles;
+      this.bytesRead = bytesRead;
+      this.bytesWritten = bytesWritten;
+      this.elapsedNanos = elapsedNanos;
+    }
+
+    /** Returns the number of files of the run, including skipped ones. */
+    public long getTotalFiles() {
+      return totalFiles;
+    }
+
+    /** Returns the number of files re-encrypted so far. */
+    public long getDoneFiles() {
+      return doneFiles;
+    }
+
+    /** Returns the number of files that could not be re-encrypted. */
+    public long getFailedFiles() {
+      return failedFiles;
+    }
+
+    /** Returns the number of files skipped because they are listed in the checkpoint file. */
+    public long getSkippedFiles() {
+      return skippedFiles;
+    }
+
+    /** Returns the number of ciphertext bytes read from the re-encrypted files. */
+    public long getBytesRead() {
+      return bytesRead;
+    }
+
+    /** Returns the number of ciphertext bytes written to the re-encrypted files. */
+    public long getBytesWritten() {
+      return bytesWritten;
+    }
+
+    public long getElapsedNanos() {
+      return elapsedNanos;
+    }
+
+    /** Returns the number of ciphertext bytes read per second. */
+    public double getBytesReadPerSecond() {
+      return elapsedNanos == 0 ? 0 : bytesRead * 1e9 / elapsedNanos;
+    }
+  }
+
+  /** Builder for {@link BulkReencrypter}. */
+  public static final class Builder {
+    private StreamingAead streamingAead = null;
+    private Aead aead = null;
+    private byte[] associatedData = new byte[0];
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private Path checkpointFile = null;
+    private ProgressListener progressListener = null;
+
+    /** Re-encrypts files as streams with {@code streamingAead}. */
+    public Builder setStreamingAead(StreamingAead streamingAead) {
+      this.streamingAead = streamingAead;
+      return this;
+    }
+
+    /** Re-encrypts whole files with {@code aead}. Files larger than 1 GiB fail. */
+    public Builder setAead(Aead aead) {
+      this.aead = aead;
+      return this;
+    }
+
+    /** The associated data of all files. Empty by default. */
+    public Builder setAssociatedData(byte[] associatedData) {
+      this.associatedData = associatedData.clone();
+      return this;
+    }
+
+    /** The number of files processed in parallel. The number of processors by default. */
+    public Builder setThreads(int threads) {
+      this.threads = threads;
+      return this;
+    }
+
+    /** Records finished files in {@code checkpointFile}, and skips files already recorded there. */
+    public Builder setCheckpointFile(Path checkpointFile) {
+      this.checkpointFile = checkpointFile;
+      return this;
+    }
+
+    public Builder setProgressListener(ProgressListener progressListener) {
+      this.progressListener = progressListener;
+      return this;
+    }
+
+    public BulkReencrypter build() throws GeneralSecurityException {
+      if ((streamingAead == null) == (aead == null)) {
+        throw new GeneralSecurityException("exactly one of StreamingAead and Aead must be set");
+      }
+      if (threads <= 0) {
+        throw new GeneralSecurityException("the number of threads must be positive");
+      }
+      return new BulkReencrypter(this);
+    }
+  }
+
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  private final StreamingAead streamingAead;
+  private final Aead aead;
+  private final byte[] associatedData;
+  private final int threads;
+  private final Path checkpointFile;
+  private final ProgressListener progressListener;
+
+  private BulkReencrypter(Builder builder) {
+    this.streamingAead = builder.streamingAead;
+    this.aead = builder.aead;
+    this.associatedData = builder.associatedData;
+    this.threads = builder.threads;
+    this.checkpointFile = builder.checkpointFile;
+    this.progressListener = builder.progressListener;
+  }
+
+  /**
+   * Re-encrypts all regular files below {@code directory}, except the checkpoint file and leftover
+   * temporary files.
+   */
+  public Progress reencryptDirectory(Path directory) throws IOException, InterruptedException {
+    final List<Path> files = new ArrayList<>();
+    final Path checkpoint = checkpointFile == null ? null : checkpointFile.toAbsolutePath();
+    Files.walkFileTree(
+        directory,
+        new SimpleFileVisitor<Path>() {
+          @Override
+          public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+            if (attributes.isRegularFile()
+                && !file.getFileName().toString().endsWith(TEMP_FILE_SUFFIX)
+                && !file.toAbsolutePath().equals(checkpoint)) {
+              files.add(file);
+            }
+            return FileVisitResult.CONTINUE;
+          }
+        });
+    Collections.sort(files);
+    return reencryptFiles(files);
+  }
+
+  /** Re-encrypts {@code files}. */
+  public Progress reencryptFiles(List<Path> files) throws IOException, InterruptedException {
+    final Run run = new Run(files.size(), readCheckpoint());
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try (BufferedWriter checkpoint = openCheckpoint()) {
+      run.checkpoint = checkpoint;
+      List<Future<?>> futures = new ArrayList<>(files.size());
+      for (final Path file : files) {
+        if (run.finished.contains(checkpointKey(file))) {
+          run.skippedFiles.incrementAndGet();
+          continue;
+        }
+        futures.add(
+            executor.submit(
+                new Runnable() {
+                  @Override
+                  public void run() {
+                    run.process(file);
+                  }
+                }));
+      }
+      for (Future<?> future : futures) {
+        try {
+          future.get();
+        } catch (ExecutionException e) {
+          throw new IOException("re-encryption failed", e.getCause());
+        }
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+    return run.progress();
+  }
+
+  private Set<String> readCheckpoint() throws IOException {
+    Set<String> finished = new HashSet<>();
+    if (checkpointFile != null && Files.exists(checkpointFile)) {
+      finished.addAll(Files.readAllLines(checkpointFile, StandardCharsets.UTF_8));
+    }
+    return finished;
+  }
+
+  private BufferedWriter openCheckpoint() throws IOException {
+    if (checkpointFile == null) {
+      return null;
+    }
+    return new BufferedWriter(
+        new OutputStreamWriter(
+            new FileOutputStream(checkpointFile.toFile(), /* append= */ true),
+            StandardCharsets.UTF_8));
+  }
+
+  private static String checkpointKey(Path file) {
+    return file.toAbsolutePath().normalize().toString();
+  }
+
+  /** The state of one call of {@link #reencryptFiles}. */
+  private final class Run {
+    final long totalFiles;
+    final Set<String> finished;
+    final long startNanos = System.nanoTime();
+    final AtomicLong doneFiles = new AtomicLong();
+    final AtomicLong failedFiles = new AtomicLong();
+    final AtomicLong skippedFiles = new AtomicLong();
+    final AtomicLong bytesRead = new AtomicLong();
+    final AtomicLong bytesWritten = new AtomicLong();
+    BufferedWriter checkpoint;
+
+    Run(long totalFiles, Set<String> finished) {
+      this.totalFiles = totalFiles;
+      this.finished = finished;
+    }
+
+    Progress progress() {
+      return new Progress(
+          totalFiles,
+          doneFiles.get(),
+          failedFiles.get(),
+          skippedFiles.get(),
+          bytesRead.get(),
+          bytesWritten.get(),
+          System.nanoTime() - startNanos);
+    }
+
+    void process(Path file) {
+      try {
+        long size = reencrypt(file);
+        bytesRead.addAndGet(size);
+        bytesWritten.addAndGet(Files.size(file));
+        recordFinished(file);
+        doneFiles.incrementAndGet();
+        if (progressListener != null) {
+          progressListener.fileDone(file, progress());
+        }
+      } catch (GeneralSecurityException | IOException e) {
+        failedFiles.incrementAndGet();
+        if (progressListener != null) {
+          progressListener.fileFailed(file, e, progress());
+        }
+      }
+    }
+
+    private void recordFinished(Path file) throws IOException {
+      if (checkpoint == null) {
+        return;
+      }
+      synchronized (checkpoint) {
+        checkpoint.write(checkpointKey(file));
+        checkpoint.newLine();
+        checkpoint.flush();
+      }
+    }
+  }
+
+  /** Re-encrypts {@code file} in place and returns its original size. */
+  private long reencrypt(Path file) throws GeneralSecurityException, IOException {
+    long size = Files.size(file);
+    Path directory = file.toAbsolutePath().getParent();
+    Path temp = Files.createTempFile(directory, "." + file.getFileName() + ".", TEMP_FILE_SUFFIX);
+    try {
+      copyPermissions(file, temp);
+      if (streamingAead != null) {
+        reencryptStream(file, temp);
+      } else {
+        reencryptWhole(file, temp, size);
+      }
+      Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(temp);
+    }
+    return size;
+  }
+
+  private void reencryptStream(Path file, Path temp) throws GeneralSecurityException, IOException {
+    try (InputStream ciphertext = Files.newInputStream(file);
+        InputStream plaintext = streamingAead.newDecryptingStream(ciphertext, associatedData);
+        OutputStream out =
+            streamingAead.newEncryptingStream(new SyncingOutputStream(temp), associatedData)) {
+      byte[] buffer = new byte[BUFFER_SIZE];
+      int read;
+      while ((read = plaintext.read(buffer)) != -1) {
+        out.write(buffer, 0, read);
+      }
+    }
+  }
+
+  private void reencryptWhole(Path file, Path temp, long size)
+      throws GeneralSecurityException, IOException {
+    if (size > MAX_AEAD_FILE_SIZE) {
+      throw new IOException("file too large for Aead, use a StreamingAead keyset: " + file);
+    }
+    byte[] plaintext = aead.decrypt(Files.readAllBytes(file), associatedData);
+    try (OutputStream out = new SyncingOutputStream(temp)) {
+      out.write(aead.encrypt(plaintext, associatedData));
+    }
+  }
+
+  private static void copyPermissions(Path from, Path to) throws IOException {
+    try {
+      Files.setPosixFilePermissions(to, Files.getPosixFilePermissions(from));
+    } catch (UnsupportedOperationException e) {
+      // Not a POSIX file system; the temporary file keeps the default permissions.
+    }
+  }
+
+  /** A file output stream that syncs the file to disk when it is closed. */
+  private static final class SyncingOutputStream extends FilterOutputStream {
+    private final FileOutputStream fileOut;
+
+    SyncingOutputStream(Path path) throws IOException {
+      this(new FileOutputStream(path.toFile()));
+    }
+
+    private SyncingOutputStream(FileOutputStream fileOut) {
+      super(fileOut);
+      this.fileOut = fileOut;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      fileOut.write(b, off, len);
+    }
+
+    @Override
+    public void close() throws IOException {
+      try {
+        fileOut.getFD().sync();
+      } finally {
+        fileOut.close();
+      }
+    }
+  }
+}
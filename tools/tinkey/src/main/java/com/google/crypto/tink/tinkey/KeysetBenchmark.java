@@ -0,0 +1,434 @@
+// Copyright 2022 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+
+package com.google.crypto.tink.tinkey;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.crypto.tink.Aead;
+import com.google.crypto.tink.DeterministicAead;
+import com.google.crypto.tink.HybridDecrypt;
+import com.google.crypto.tink.HybridEncrypt;
+import com.google.crypto.tink.KeysetHandle;
+import com.google.crypto.tink.Mac;
+import com.google.crypto.tink.PublicKeySign;
+import com.google.crypto.tink.PublicKeyVerify;
+import com.google.crypto.tink.StreamingAead;
+import com.google.crypto.tink.prf.PrfSet;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Measures the throughput and latency of the primitive of a keyset on the local machine.
+ *
+ * <p>The primitive is detected from the keyset, and each of its operations is run on a fixed
+ * message by a number of threads for a fixed time, after a warm-up phase. Latencies are recorded
+ * in a histogram whose percentiles are within 1% of the measured values, so long runs need
+ * constant memory.
+ */
+final class KeysetBenchmark {
+  private static final byte[] ASSOCIATED_DATA = "tinkey benchmark".getBytes(UTF_8);
+  private static final int PRF_OUTPUT_LENGTH = 16;
+  private static final int STREAM_BUFFER_SIZE = 64 * 1024;
+
+  /** The primitives that can be benchmarked, with their operations. */
+  enum PrimitiveType {
+    AEAD("Aead", "encrypt", "decrypt"),
+    DETERMINISTIC_AEAD("DeterministicAead", "encrypt", "decrypt"),
+    STREAMING_AEAD("StreamingAead", "encrypt", "decrypt"),
+    MAC("Mac", "compute", "verify"),
+    PRF("PrfSet", "compute"),
+    HYBRID("HybridDecrypt", "encrypt", "decrypt"),
+    HYBRID_ENCRYPT("HybridEncrypt", "encrypt"),
+    SIGNATURE("PublicKeySign", "sign", "verify");
+
+    final String name;
+    final List<String> operations;
+
+    PrimitiveType(String name, String... operations) {
+      this.name = name;
+      this.operations = Collections.unmodifiableList(Arrays.asList(operations));
+    }
+  }
+
+  /** The result of benchmarking one operation. */
+  static final class Result {
+    final String operation;
+    final long operations;
+    final long elapsedNanos;
+    final long p50Nanos;
+    final long p99Nanos;
+    final long p999Nanos;
+
+    Result(String operation, long operations, long elapsedNanos, Histogram latencies) {
+      this.operation = operation;
+      this.operations = operations;
+      this.elapsedNanos = elapsedNanos;
+      this.p50Nanos = latencies.percentile(0.5);
+      this.p99Nanos = latencies.percentile(0.99);
+      this.p999Nanos = latencies.percentile(0.999);
+    }
+
+    double operationsPerSecond() {
+      return operations * 1e9 / Math.max(1, elapsedNanos);
+    }
+  }
+
+  /** A single operation on a fixed message. Each instance is used by one thread only. */
+  private interface Operation {
+    void run() throws GeneralSecurityException, IOException;
+  }
+
+  /** Returns the primitive type of {@code handle}. */
+  static PrimitiveType detectPrimitiveType(KeysetHandle handle) throws GeneralSecurityException {
+    if (hasPrimitive(handle, Aead.class)) {
+      return PrimitiveType.AEAD;
+    }
+    if (hasPrimitive(handle, DeterministicAead.class)) {
+      return PrimitiveType.DETERMINISTIC_AEAD;
+    }
+    if (hasPrimitive(handle, StreamingAead.class)) {
+      return PrimitiveType.STREAMING_AEAD;
+    }
+    if (hasPrimitive(handle, Mac.class)) {
+      return PrimitiveType.MAC;
+    }
+    if (hasPrimitive(handle, PrfSet.class)) {
+      return PrimitiveType.PRF;
+    }
+    if (hasPrimitive(handle, HybridDecrypt.class)) {
+      return PrimitiveType.HYBRID;
+    }
+    if (hasPrimitive(handle, HybridEncrypt.class)) {
+      return PrimitiveType.HYBRID_ENCRYPT;
+    }
+    if (hasPrimitive(handle, PublicKeySign.class)) {
+      return PrimitiveType.SIGNATURE;
+    }
+    if (hasPrimitive(handle, PublicKeyVerify.class)) {
+      throw new GeneralSecurityException(
+          "cannot benchmark a public signature keyset, use the private keyset instead");
+    }
+    throw new GeneralSecurityException("the primitive of the keyset is not supported");
+  }
+
+  private static boolean hasPrimitive(KeysetHandle handle, Class<?> primitiveClass) {
+    try {
+      handle.getPrimitive(primitiveClass);
+      return true;
+    } catch (GeneralSecurityException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Runs {@code operation} of {@code type} on messages of {@code messageSize} bytes with {@code
+   * threads} threads, first for {@code warmupNanos} without measuring and then for {@code
+   * durationNanos}.
+   */
+  static Result run(
+      final KeysetHandle handle,
+      final PrimitiveType type,
+      final String operation,
+      final int messageSize,
+      final long warmupNanos,
+      final long durationNanos,
+      int threads)
+      throws GeneralSecurityException, IOException, InterruptedException {
+    if (!type.operations.contains(operation)) {
+      throw new IllegalArgumentException(type.name + " does not support " + operation);
+    }
+    final long start = System.nanoTime();
+    final long measurementStart = start + warmupNanos;
+    final long end = measurementStart + durationNanos;
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      List<Future<Histogram>> futures = new ArrayList<>();
+      for (int i = 0; i < threads; i++) {
+        futures.add(
+            executor.submit(
+                new Callable<Histogram>() {
+                  @Override
+                  public Histogram call() throws Exception {
+                    Operation op =
+                        newOperation(handle, type, operation, new byte[messageSize]);
+                    while (System.nanoTime() < measurementStart) {
+                      op.run();
+                    }
+                    Histogram latencies = new Histogram();
+                    long previous = System.nanoTime();
+                    while (previous < end) {
+                      op.run();
+                      long now = System.nanoTime();
+                      latencies.record(now - previous);
+                      previous = now;
+                    }
+                    return latencies;
+                  }
+                }));
+      }
+      Histogram latencies = new Histogram();
+      for (Future<Histogram> future : futures) {
+        latencies.add(future.get());
+      }
+      return new Result(
+          operation,
+          latencies.count(),
+          Math.max(System.nanoTime(), end) - measurementStart,
+          latencies);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof GeneralSecurityException) {
+        throw (GeneralSecurityException) cause;
+      }
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      }
+      throw new IllegalStateException(cause);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private static Operation newOperation(
+      KeysetHandle handle, PrimitiveType type, String operation, final byte[] message)
+      throws GeneralSecurityException, IOException {
+    switch (type) {
+      case AEAD:
+        {
+          final Aead aead = handle.getPrimitive(Aead.class);
+          if (operation.equals("encrypt")) {
+            return new Operation() {
+              @Override
+              public void run() throws GeneralSecurityException {
+                aead.encrypt(message, ASSOCIATED_DATA);
+              }
+            };
+          }
+          final byte[] ciphertext = aead.encrypt(message, ASSOCIATED_DATA);
+          return new Operation() {
+            @Override
+            public void run() throws GeneralSecurityException {
+              aead.decrypt(ciphertext, ASSOCIATED_DATA);
+            }
+          };
+        }
+      case DETERMINISTIC_AEAD:
+        {
+          final DeterministicAead daead = handle.getPrimitive(DeterministicAead.class);
+          if (operation.equals("encrypt")) {
+            return new Operation() {
+              @Override
+              public void run() throws GeneralSecurityException {
+                daead.encryptDeterministically(message, ASSOCIATED_DATA);
+              }
+            };
+          }
+          final byte[] ciphertext = daead.encryptDeterministically(message, ASSOCIATED_DATA);
+          return new Operation() {
+            @Override
+            public void run() throws GeneralSecurityException {
+              daead.decryptDeterministically(ciphertext, ASSOCIATED_DATA);
+            }
+          };
+        }
+      case STREAMING_AEAD:
+        {
+          final StreamingAead streamingAead = handle.getPrimitive(StreamingAead.class);
+          final ByteArrayOutputStream ciphertextStream = new ByteArrayOutputStream();
+          final Operation encrypt =
+              new Operation() {
+                @Override
+                public void run() throws GeneralSecurityException, IOException {
+                  ciphertextStream.reset();
+                  try (OutputStream encryptingStream =
+                      streamingAead.newEncryptingStream(ciphertextStream, ASSOCIATED_DATA)) {
+                    encryptingStream.write(message);
+                  }
+                }
+              };
+          if (operation.equals("encrypt")) {
+            return encrypt;
+          }
+          encrypt.run();
+          final byte[] ciphertext = ciphertextStream.toByteArray();
+          final byte[] buffer = new byte[STREAM_BUFFER_SIZE];
+          return new Operation() {
+            @Override
+            public void run() throws GeneralSecurityException, IOException {
+              try (InputStream decryptingStream =
+                  streamingAead.newDecryptingStream(
+                      new ByteArrayInputStream(ciphertext), ASSOCIATED_DATA)) {
+                while (decryptingStream.read(buffer) != -1) {
+                  // The plaintext is discarded.
+                }
+              }
+            }
+          };
+        }
+      case MAC:
+        {
+          final Mac mac = handle.getPrimitive(Mac.class);
+          if (operation.equals("compute")) {
+            return new Operation() {
+              @Override
+              public void run() throws GeneralSecurityException {
+                mac.computeMac(message);
+              }
+            };
+          }
+          final byte[] tag = mac.computeMac(message);
+          return new Operation() {
+            @Override
+            public void run() throws GeneralSecurityException {
+              mac.verifyMac(tag, message);
+            }
+          };
+        }
+      case PRF:
+        {
+          final PrfSet prfSet = handle.getPrimitive(PrfSet.class);
+          return new Operation() {
+            @Override
+            public void run() throws GeneralSecurityException {
+              prfSet.computePrimary(message, PRF_OUTPUT_LENGTH);
+            }
+          };
+        }
+      case HYBRID:
+      case HYBRID_ENCRYPT:
+        {
+          KeysetHandle publicHandle =
+              type == PrimitiveType.HYBRID ? handle.getPublicKeysetHandle() : handle;
+          final HybridEncrypt hybridEncrypt = publicHandle.getPrimitive(HybridEncrypt.class);
+          if (operation.equals("encrypt")) {
+            return new Operation() {
+              @Override
+              public void run() throws GeneralSecurityException {
+                hybridEncrypt.encrypt(message, ASSOCIATED_DATA);
+              }
+            };
+          }
+          final HybridDecrypt hybridDecrypt = handle.getPrimitive(HybridDecrypt.class);
+          final byte[] ciphertext = hybridEncrypt.encrypt(message, ASSOCIATED_DATA);
+          return new Operation() {
+            @Override
+            public void run() throws GeneralSecurityException {
+              hybridDecrypt.decrypt(ciphertext, ASSOCIATED_DATA);
+            }
+          };
+        }
+      case SIGNATURE:
+        {
+          final PublicKeySign signer = handle.getPrimitive(PublicKeySign.class);
+          if (operation.equals("sign")) {
+            return new Operation() {
+              @Override
+              public void run() throws GeneralSecurityException {
+                signer.sign(message);
+              }
+            };
+          }
+          final PublicKeyVerify verifier =
+              handle.getPublicKeysetHandle().getPrimitive(PublicKeyVerify.class);
+          final byte[] signature = signer.sign(message);
+          return new Operation() {
+            @Override
+            public void run() throws GeneralSecurityException {
+              verifier.verify(signature, message);
+            }
+          };
+        }
+    }
+    throw new IllegalArgumentException("unsupported primitive: " + type);
+  }
+
+  /**
+   * A histogram of latencies in nanoseconds. Values below 128 are counted exactly, larger ones in
+   * buckets of 64 per power of two. A bucket is less than 1/64 of its lowest value wide and is
+   * reported by its middle, so the relative error of a percentile is at most 1/128, below 1%.
+   */
+  static final class Histogram {
+    private static final int SUB_BUCKETS = 64;
+    private static final int EXACT_VALUES = 2 * SUB_BUCKETS;
+    private final long[] counts = new long[SUB_BUCKETS * 60];
+    private long count = 0;
+
+    void record(long nanos) {
+      counts[index(Math.max(0, nanos))]++;
+      count++;
+    }
+
+    void add(Histogram other) {
+      for (int i = 0; i < counts.length; i++) {
+        counts[i] += other.counts[i];
+      }
+      count += other.count;
+    }
+
+    long count() {
+      return count;
+    }
+
+    /** Returns the value below which a {@code fraction} of the values lie, or 0 if empty. */
+    long percentile(double fraction) {
+      long rank = (long) Math.ceil(fraction * count);
+      long seen = 0;
+      for (int i = 0; i < counts.length; i++) {
+        seen += counts[i];
+        if (seen >= rank && seen > 0) {
+          return value(i);
+        }
+      }
+      return 0;
+    }
+
+    private static int index(long value) {
+      if (value < EXACT_VALUES) {
+        return (int) value;
+      }
+      // Shift the value so that its highest bit is bit 6, i.e. the mantissa is in [64, 128).
+      int shift = 63 - Long.numberOfLeadingZeros(value) - 6;
+      return shift * SUB_BUCKETS + (int) (value >>> shift);
+    }
+
+    /** Returns the middle of the values in bucket {@code index}. */
+    private static long value(int index) {
+      if (index < EXACT_VALUES) {
+        return index;
+      }
+      int shift = index / SUB_BUCKETS - 1;
+      long mantissa = index % SUB_BUCKETS + SUB_BUCKETS;
+      return (mantissa << shift) + ((1L << shift) >>> 1);
+    }
+  }
+
+  private KeysetBenchmark() {}
+}
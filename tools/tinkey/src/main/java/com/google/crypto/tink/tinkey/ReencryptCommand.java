@@ -0,0 +1,179 @@
+// Copyright 2022 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+
+package com.google.crypto.tink.tinkey;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.crypto.tink.Aead;
+import com.google.crypto.tink.KeysetHandle;
+import com.google.crypto.tink.StreamingAead;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.kohsuke.args4j.Option;
+
+/**
+ * Re-encrypts files under the primary key of a keyset, e.g. to migrate data to a new key after
+ * {@code rotate-keyset}. See {@link BulkReencrypter}.
+ */
+public class ReencryptCommand extends InOptions implements Command {
+  private static final long PROGRESS_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+  @Option(
+      name = "--dir",
+      metaVar = "path/to/directory",
+      required = false,
+      usage = "The directory whose files, including those in subdirectories, are re-encrypted")
+  String directory;
+
+  @Option(
+      name = "--file-list",
+      metaVar = "path/to/list",
+      required = false,
+      usage = "A file listing the files to re-encrypt, one path per line")
+  String fileList;
+
+  @Option(
+      name = "--checkpoint",
+      metaVar = "path/to/checkpoint",
+      required = false,
+      usage = "Records re-encrypted files in this file, and skips files already recorded there, "
+          + "so that an interrupted run can be resumed")
+  String checkpoint;
+
+  @Option(
+      name = "--threads",
+      metaVar = "count",
+      required = false,
+      usage = "The number of files re-encrypted in parallel. The number of processors is default")
+  int threads = Runtime.getRuntime().availableProcessors();
+
+  @Option(
+      name = "--associated-data",
+      metaVar = "string",
+      required = false,
+      usage = "The associated data the files were encrypted with. Empty by default")
+  String associatedData = "";
+
+  @Override
+  void validate() {
+    super.validate();
+    if ((directory == null) == (fileList == null)) {
+      TinkeyUtil.die("exactly one of --dir and --file-list must be specified");
+    }
+    if (threads <= 0) {
+      TinkeyUtil.die("--threads must be positive");
+    }
+  }
+
+  @Override
+  public void run() throws Exception {
+    validate();
+    KeysetHandle handle =
+        TinkeyUtil.getKeysetHandle(inputStream, inFormat, masterKeyUri, credentialPath);
+    BulkReencrypter.Progress progress =
+        reencrypt(
+            System.out,
+            handle,
+            directory == null ? null : Paths.get(directory),
+            fileList == null ? null : Paths.get(fileList),
+            checkpoint == null ? null : Paths.get(checkpoint),
+            threads,
+            associatedData.getBytes(UTF_8));
+    if (progress.getFailedFiles() > 0) {
+      TinkeyUtil.die(progress.getFailedFiles() + " files could not be re-encrypted");
+    }
+  }
+
+  /**
+   * Re-encrypts the files below {@code directory}, or the files listed in {@code fileList}, under
+   * the primary key of {@code handle}, and prints progress and throughput to {@code out}.
+   */
+  public static BulkReencrypter.Progress reencrypt(
+      final PrintStream out,
+      KeysetHandle handle,
+      Path directory,
+      Path fileList,
+      Path checkpoint,
+      int threads,
+      byte[] associatedData)
+      throws Exception {
+    BulkReencrypter.Builder builder =
+        BulkReencrypter.builder()
+            .setThreads(threads)
+            .setAssociatedData(associatedData)
+            .setCheckpointFile(checkpoint);
+    try {
+      builder.setStreamingAead(handle.getPrimitive(StreamingAead.class));
+    } catch (GeneralSecurityException e) {
+      builder.setAead(handle.getPrimitive(Aead.class));
+    }
+    final AtomicLong lastReport = new AtomicLong(System.nanoTime());
+    builder.setProgressListener(
+        new BulkReencrypter.ProgressListener() {
+          @Override
+          public void fileDone(Path file, BulkReencrypter.Progress progress) {
+            long last = lastReport.get();
+            if (System.nanoTime() - last >= PROGRESS_INTERVAL_NANOS
+                && lastReport.compareAndSet(last, System.nanoTime())) {
+              report(out, progress);
+            }
+          }
+
+          @Override
+          public void fileFailed(Path file, Exception cause, BulkReencrypter.Progress progress) {
+            out.println("failed to re-encrypt " + file + ": " + cause);
+          }
+        });
+    BulkReencrypter reencrypter = builder.build();
+    BulkReencrypter.Progress progress;
+    if (directory != null) {
+      progress = reencrypter.reencryptDirectory(directory);
+    } else {
+      List<Path> files = new ArrayList<>();
+      for (String line : Files.readAllLines(fileList, UTF_8)) {
+        if (!line.trim().isEmpty()) {
+          files.add(Paths.get(line.trim()));
+        }
+      }
+      progress = reencrypter.reencryptFiles(files);
+    }
+    report(out, progress);
+    return progress;
+  }
+
+  private static void report(PrintStream out, BulkReencrypter.Progress progress) {
+    out.printf(
+        Locale.ROOT,
+        "%d/%d files re-encrypted, %d failed, %d skipped, %.1f MB in %.1f s (%.1f MB/s)%n",
+        progress.getDoneFiles(),
+        progress.getTotalFiles(),
+        progress.getFailedFiles(),
+        progress.getSkippedFiles(),
+        progress.getBytesRead() / 1e6,
+        progress.getElapsedNanos() / 1e9,
+        progress.getBytesReadPerSecond() / 1e6);
+  }
+}
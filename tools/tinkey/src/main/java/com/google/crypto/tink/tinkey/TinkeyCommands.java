@@ -33,6 +33,7 @@ public final class TinkeyCommands {
   )
   @SubCommands({
     @SubCommand(name = "add-key", impl = AddKeyCommand.class),
+    @SubCommand(name = "benchmark", impl = BenchmarkCommand.class),
     @SubCommand(name = "convert-keyset", impl = ConvertKeysetCommand.class),
     @SubCommand(name = "create-keyset", impl = CreateKeysetCommand.class),
     @SubCommand(name = "create-public-keyset", impl = CreatePublicKeysetCommand.class),
@@ -42,6 +43,7 @@ public final class TinkeyCommands {
     @SubCommand(name = "enable-key", impl = EnableKeyCommand.class),
     @SubCommand(name = "list-keyset", impl = ListKeysetCommand.class),
     @SubCommand(name = "list-key-templates", impl = ListKeyTemplatesCommand.class),
+    @SubCommand(name = "reencrypt", impl = ReencryptCommand.class),
     @SubCommand(name = "rotate-keyset", impl = RotateKeysetCommand.class),
     @SubCommand(name = "promote-key", impl = PromoteKeyCommand.class),
   })
@@ -0,0 +1,173 @@
+// Copyright 2022 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+
+package com.google.crypto.tink.tinkey;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertThrows;
+
+import com.google.crypto.tink.Aead;
+import com.google.crypto.tink.CleartextKeysetHandle;
+import com.google.crypto.tink.JsonKeysetWriter;
+import com.google.crypto.tink.KeyTemplates;
+import com.google.crypto.tink.KeysetHandle;
+import com.google.crypto.tink.aead.AeadConfig;
+import com.google.crypto.tink.mac.MacConfig;
+import com.google.crypto.tink.prf.PrfConfig;
+import com.google.crypto.tink.signature.SignatureConfig;
+import com.google.crypto.tink.testing.FakeKmsClient;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.security.GeneralSecurityException;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@code BenchmarkCommand}. */
+@RunWith(JUnit4.class)
+public class BenchmarkCommandTest {
+  private static final long WARMUP_NANOS = 1_000_000L;
+  private static final long DURATION_NANOS = 20_000_000L;
+
+  @BeforeClass
+  public static void setUp() throws Exception {
+    AeadConfig.register();
+    MacConfig.register();
+    PrfConfig.register();
+    SignatureConfig.register();
+  }
+
+  private static String benchmark(KeysetHandle handle, String operation, boolean json)
+      throws Exception {
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    BenchmarkCommand.benchmark(
+        new PrintStream(outputStream, true, "UTF-8"),
+        handle,
+        operation,
+        100,
+        WARMUP_NANOS,
+        DURATION_NANOS,
+        2,
+        json);
+    return new String(outputStream.toByteArray(), UTF_8);
+  }
+
+  @Test
+  public void detectPrimitiveType() throws Exception {
+    assertThat(
+            KeysetBenchmark.detectPrimitiveType(
+                KeysetHandle.generateNew(KeyTemplates.get("AES128_GCM"))))
+        .isEqualTo(KeysetBenchmark.PrimitiveType.AEAD);
+    assertThat(
+            KeysetBenchmark.detectPrimitiveType(
+                KeysetHandle.generateNew(KeyTemplates.get("HMAC_SHA256_128BITTAG"))))
+        .isEqualTo(KeysetBenchmark.PrimitiveType.MAC);
+    assertThat(
+            KeysetBenchmark.detectPrimitiveType(
+                KeysetHandle.generateNew(KeyTemplates.get("HMAC_SHA256_PRF"))))
+        .isEqualTo(KeysetBenchmark.PrimitiveType.PRF);
+    assertThat(
+            KeysetBenchmark.detectPrimitiveType(
+                KeysetHandle.generateNew(KeyTemplates.get("ECDSA_P256"))))
+        .isEqualTo(KeysetBenchmark.PrimitiveType.SIGNATURE);
+  }
+
+  @Test
+  public void benchmarkAead_text_listsAllOperations() throws Exception {
+    String output =
+        benchmark(KeysetHandle.generateNew(KeyTemplates.get("AES128_GCM")), null, false);
+
+    assertThat(output).contains("Aead, messages of 100 bytes, 2 thread(s)");
+    assertThat(output).contains("p99.9 (us)");
+    assertThat(output).contains("encrypt");
+    assertThat(output).contains("decrypt");
+  }
+
+  @Test
+  public void benchmarkMac_json_onlyRequestedOperation() throws Exception {
+    String output =
+        benchmark(
+            KeysetHandle.generateNew(KeyTemplates.get("HMAC_SHA256_128BITTAG")), "verify", true);
+
+    assertThat(output).startsWith("{\"primitive\": \"Mac\", \"message_size\": 100");
+    assertThat(output).contains("\"operation\": \"verify\"");
+    assertThat(output).doesNotContain("\"operation\": \"compute\"");
+    assertThat(output).contains("\"p999_nanos\": ");
+  }
+
+  @Test
+  public void benchmark_unsupportedOperation_throws() throws Exception {
+    KeysetHandle handle = KeysetHandle.generateNew(KeyTemplates.get("HMAC_SHA256_PRF"));
+
+    assertThrows(IllegalArgumentException.class, () -> benchmark(handle, "decrypt", false));
+  }
+
+  @Test
+  public void run_measuresEveryOperation() throws Exception {
+    KeysetHandle handle = KeysetHandle.generateNew(KeyTemplates.get("ECDSA_P256"));
+
+    KeysetBenchmark.Result result =
+        KeysetBenchmark.run(
+            handle,
+            KeysetBenchmark.PrimitiveType.SIGNATURE,
+            "sign",
+            64,
+            WARMUP_NANOS,
+            DURATION_NANOS,
+            1);
+
+    assertThat(result.operations).isGreaterThan(0L);
+    assertThat(result.p50Nanos).isAtMost(result.p99Nanos);
+    assertThat(result.p99Nanos).isAtMost(result.p999Nanos);
+  }
+
+  @Test
+  public void getKeysetHandle_fakeKmsMasterKey_decryptsLocally() throws Exception {
+    String masterKeyUri = FakeKmsClient.createFakeKeyUri();
+    Aead masterKey = new FakeKmsClient().getAead(masterKeyUri);
+    KeysetHandle handle = KeysetHandle.generateNew(KeyTemplates.get("AES128_GCM"));
+    ByteArrayOutputStream encryptedKeyset = new ByteArrayOutputStream();
+    handle.write(JsonKeysetWriter.withOutputStream(encryptedKeyset), masterKey);
+
+    KeysetHandle decrypted =
+        BenchmarkCommand.getKeysetHandle(
+            new ByteArrayInputStream(encryptedKeyset.toByteArray()), "json", masterKeyUri, null);
+
+    assertThat(CleartextKeysetHandle.getKeyset(decrypted))
+        .isEqualTo(CleartextKeysetHandle.getKeyset(handle));
+  }
+
+  @Test
+  public void getKeysetHandle_wrongFakeKmsMasterKey_throws() throws Exception {
+    Aead masterKey = new FakeKmsClient().getAead(FakeKmsClient.createFakeKeyUri());
+    KeysetHandle handle = KeysetHandle.generateNew(KeyTemplates.get("AES128_GCM"));
+    ByteArrayOutputStream encryptedKeyset = new ByteArrayOutputStream();
+    handle.write(JsonKeysetWriter.withOutputStream(encryptedKeyset), masterKey);
+
+    assertThrows(
+        GeneralSecurityException.class,
+        () ->
+            BenchmarkCommand.getKeysetHandle(
+                new ByteArrayInputStream(encryptedKeyset.toByteArray()),
+                "json",
+                FakeKmsClient.createFakeKeyUri(),
+                null));
+  }
+}
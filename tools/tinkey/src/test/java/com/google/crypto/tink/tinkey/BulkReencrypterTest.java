@@ -0,0 +1,223 @@
+// Copyright 2022 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+
+package com.google.crypto.tink.tinkey;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertThrows;
+
+import com.google.crypto.tink.Aead;
+import com.google.crypto.tink.KeyTemplates;
+import com.google.crypto.tink.KeysetHandle;
+import com.google.crypto.tink.KeysetManager;
+import com.google.crypto.tink.StreamingAead;
+import com.google.crypto.tink.aead.AeadConfig;
+import com.google.crypto.tink.streamingaead.StreamingAeadConfig;
+import com.google.crypto.tink.subtle.Random;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@code BulkReencrypter}. */
+@RunWith(JUnit4.class)
+public class BulkReencrypterTest {
+  private static final byte[] ASSOCIATED_DATA = "associated data".getBytes(UTF_8);
+
+  @Rule public final TemporaryFolder tempFolder = new TemporaryFolder();
+
+  @BeforeClass
+  public static void setUp() throws Exception {
+    AeadConfig.register();
+    StreamingAeadConfig.register();
+  }
+
+  /** Returns {@code handle} with a new primary key of the same type, and the new key only. */
+  private static KeysetHandle[] rotate(KeysetHandle handle, String template) throws Exception {
+    int oldPrimary = handle.getKeysetInfo().getPrimaryKeyId();
+    KeysetManager manager = KeysetManager.withKeysetHandle(handle).add(KeyTemplates.get(template));
+    KeysetHandle withNewKey = manager.getKeysetHandle();
+    int newPrimary =
+        withNewKey.getKeysetInfo().getKeyInfo(withNewKey.getKeysetInfo().getKeyInfoCount() - 1)
+            .getKeyId();
+    KeysetHandle rotated = manager.setPrimary(newPrimary).getKeysetHandle();
+    KeysetHandle newKeyOnly =
+        KeysetManager.withKeysetHandle(rotated).delete(oldPrimary).getKeysetHandle();
+    return new KeysetHandle[] {rotated, newKeyOnly};
+  }
+
+  private static byte[] encrypt(StreamingAead streamingAead, byte[] plaintext) throws Exception {
+    ByteArrayOutputStream ciphertext = new ByteArrayOutputStream();
+    try (OutputStream out = streamingAead.newEncryptingStream(ciphertext, ASSOCIATED_DATA)) {
+      out.write(plaintext);
+    }
+    return ciphertext.toByteArray();
+  }
+
+  private static byte[] decrypt(StreamingAead streamingAead, Path file) throws Exception {
+    ByteArrayOutputStream plaintext = new ByteArrayOutputStream();
+    try (InputStream in =
+        streamingAead.newDecryptingStream(Files.newInputStream(file), ASSOCIATED_DATA)) {
+      byte[] buffer = new byte[4096];
+      int read;
+      while ((read = in.read(buffer)) != -1) {
+        plaintext.write(buffer, 0, read);
+      }
+    }
+    return plaintext.toByteArray();
+  }
+
+  @Test
+  public void reencryptDirectory_streamingAead_usesNewPrimary() throws Exception {
+    KeysetHandle oldHandle = KeysetHandle.generateNew(KeyTemplates.get("AES128_GCM_HKDF_4KB"));
+    StreamingAead oldStreamingAead = oldHandle.getPrimitive(StreamingAead.class);
+    Path directory = tempFolder.newFolder().toPath();
+    Files.createDirectory(directory.resolve("sub"));
+    List<Path> files = new ArrayList<>();
+    List<byte[]> plaintexts = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      byte[] plaintext = Random.randBytes(i * 3000);
+      Path file = directory.resolve(i % 2 == 0 ? "sub/file" + i : "file" + i);
+      Files.write(file, encrypt(oldStreamingAead, plaintext));
+      files.add(file);
+      plaintexts.add(plaintext);
+    }
+    KeysetHandle[] rotated = rotate(oldHandle, "AES128_GCM_HKDF_4KB");
+
+    BulkReencrypter.Progress progress =
+        BulkReencrypter.builder()
+            .setStreamingAead(rotated[0].getPrimitive(StreamingAead.class))
+            .setAssociatedData(ASSOCIATED_DATA)
+            .setThreads(3)
+            .build()
+            .reencryptDirectory(directory);
+
+    assertThat(progress.getTotalFiles()).isEqualTo(10);
+    assertThat(progress.getDoneFiles()).isEqualTo(10);
+    assertThat(progress.getFailedFiles()).isEqualTo(0);
+    StreamingAead newStreamingAead = rotated[1].getPrimitive(StreamingAead.class);
+    for (int i = 0; i < files.size(); i++) {
+      assertThat(decrypt(newStreamingAead, files.get(i))).isEqualTo(plaintexts.get(i));
+    }
+  }
+
+  @Test
+  public void reencryptFiles_aead_usesNewPrimary() throws Exception {
+    KeysetHandle oldHandle = KeysetHandle.generateNew(KeyTemplates.get("AES128_GCM"));
+    byte[] plaintext = Random.randBytes(100);
+    Path file = tempFolder.newFile().toPath();
+    Files.write(file, oldHandle.getPrimitive(Aead.class).encrypt(plaintext, ASSOCIATED_DATA));
+    KeysetHandle[] rotated = rotate(oldHandle, "AES128_GCM");
+
+    BulkReencrypter.Progress progress =
+        BulkReencrypter.builder()
+            .setAead(rotated[0].getPrimitive(Aead.class))
+            .setAssociatedData(ASSOCIATED_DATA)
+            .build()
+            .reencryptFiles(Arrays.asList(file));
+
+    assertThat(progress.getDoneFiles()).isEqualTo(1);
+    assertThat(
+            rotated[1].getPrimitive(Aead.class).decrypt(Files.readAllBytes(file), ASSOCIATED_DATA))
+        .isEqualTo(plaintext);
+  }
+
+  @Test
+  public void reencryptDirectory_invalidCiphertext_leavesFileUnchanged() throws Exception {
+    KeysetHandle handle = KeysetHandle.generateNew(KeyTemplates.get("AES128_GCM_HKDF_4KB"));
+    Path directory = tempFolder.newFolder().toPath();
+    byte[] garbage = Random.randBytes(1000);
+    Files.write(directory.resolve("garbage"), garbage);
+    final List<Path> failed = new ArrayList<>();
+
+    BulkReencrypter.Progress progress =
+        BulkReencrypter.builder()
+            .setStreamingAead(handle.getPrimitive(StreamingAead.class))
+            .setProgressListener(
+                new BulkReencrypter.ProgressListener() {
+                  @Override
+                  public void fileDone(Path file, BulkReencrypter.Progress progress) {}
+
+                  @Override
+                  public void fileFailed(
+                      Path file, Exception cause, BulkReencrypter.Progress progress) {
+                    synchronized (failed) {
+                      failed.add(file);
+                    }
+                  }
+                })
+            .build()
+            .reencryptDirectory(directory);
+
+    assertThat(progress.getFailedFiles()).isEqualTo(1);
+    assertThat(failed).containsExactly(directory.resolve("garbage"));
+    assertThat(Files.readAllBytes(directory.resolve("garbage"))).isEqualTo(garbage);
+    // No temporary file is left behind.
+    assertThat(directory.toFile().list()).asList().containsExactly("garbage");
+  }
+
+  @Test
+  public void reencryptDirectory_checkpoint_skipsFinishedFiles() throws Exception {
+    KeysetHandle handle = KeysetHandle.generateNew(KeyTemplates.get("AES128_GCM_HKDF_4KB"));
+    StreamingAead streamingAead = handle.getPrimitive(StreamingAead.class);
+    Path directory = tempFolder.newFolder().toPath();
+    Path first = directory.resolve("first");
+    Path second = directory.resolve("second");
+    Files.write(first, encrypt(streamingAead, Random.randBytes(100)));
+    Files.write(second, encrypt(streamingAead, Random.randBytes(100)));
+    byte[] firstCiphertext = Files.readAllBytes(first);
+    Path checkpoint = directory.resolve("checkpoint");
+    Files.write(checkpoint, Arrays.asList(first.toAbsolutePath().toString()), UTF_8);
+    BulkReencrypter reencrypter =
+        BulkReencrypter.builder()
+            .setStreamingAead(streamingAead)
+            .setAssociatedData(ASSOCIATED_DATA)
+            .setCheckpointFile(checkpoint)
+            .build();
+
+    BulkReencrypter.Progress progress = reencrypter.reencryptDirectory(directory);
+
+    assertThat(progress.getTotalFiles()).isEqualTo(2);
+    assertThat(progress.getSkippedFiles()).isEqualTo(1);
+    assertThat(progress.getDoneFiles()).isEqualTo(1);
+    assertThat(Files.readAllBytes(first)).isEqualTo(firstCiphertext);
+    assertThat(Files.readAllLines(checkpoint, UTF_8))
+        .containsExactly(first.toAbsolutePath().toString(), second.toAbsolutePath().toString());
+
+    BulkReencrypter.Progress resumed = reencrypter.reencryptDirectory(directory);
+
+    assertThat(resumed.getSkippedFiles()).isEqualTo(2);
+    assertThat(resumed.getDoneFiles()).isEqualTo(0);
+  }
+
+  @Test
+  public void build_withoutPrimitive_throws() throws Exception {
+    assertThrows(GeneralSecurityException.class, () -> BulkReencrypter.builder().build());
+  }
+}